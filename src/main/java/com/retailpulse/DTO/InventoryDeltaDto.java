@@ -0,0 +1,7 @@
+package com.retailpulse.DTO;
+
+/**
+ * Change to the stock of a product at a business entity, with the cost price that moves with it.
+ */
+public record InventoryDeltaDto(int quantity, double costPrice) {
+}
@@ -0,0 +1,7 @@
+package com.retailpulse.DTO;
+
+/**
+ * Stock of a product at a business entity held in inventory slots, on top of its inventory row.
+ */
+public record InventorySlotTotalDto(Long productId, Long businessEntityId, Long quantity) {
+}
@@ -0,0 +1,7 @@
+package com.retailpulse.DTO;
+
+/**
+ * Units sold of a product at a business entity that have not yet been written to its inventory row.
+ */
+public record PendingStockDto(Long productId, Long businessEntityId, Long quantity) {
+}
@@ -0,0 +1,60 @@
+package com.retailpulse.config;
+
+import com.retailpulse.entity.IdBlocks;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Moves every {@link IdBlocks} segment past the highest id already in its table, so blocks handed out after
+ * switching from AUTO_INCREMENT never reuse an id. A segment that is already further ahead is left alone.
+ * <p>
+ * A fleet mixing nodes on id blocks with nodes still on AUTO_INCREMENT is not supported: MySQL moves AUTO_INCREMENT
+ * only past ids already inserted, so the old nodes go on handing out ids from inside the new nodes' blocks. Stop
+ * every node on AUTO_INCREMENT before the first node on id blocks starts.
+ */
+@Component
+public class IdBlockInitializer implements SmartLifecycle {
+
+    private static final Logger LOG = LoggerFactory.getLogger(IdBlockInitializer.class);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private volatile boolean running;
+
+    public IdBlockInitializer(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void start() {
+        for (String segment : IdBlocks.SEGMENTS) {
+            // The pooled optimizer hands out the block ending at the stored value, so keep a whole block above the max
+            jdbcTemplate.update("INSERT INTO " + IdBlocks.TABLE + " (" + IdBlocks.SEGMENT_COLUMN + ", " + IdBlocks.NEXT_VALUE_COLUMN + ") "
+                            + "SELECT ?, COALESCE(MAX(id), 0) + ? FROM " + segment + " "
+                            + "ON DUPLICATE KEY UPDATE " + IdBlocks.NEXT_VALUE_COLUMN + " = GREATEST("
+                            + IdBlocks.NEXT_VALUE_COLUMN + ", VALUES(" + IdBlocks.NEXT_VALUE_COLUMN + "))",
+                    segment, IdBlocks.ALLOCATION_SIZE);
+        }
+        LOG.info("Id blocks ready for {}", IdBlocks.SEGMENTS);
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // Before anything that may insert starts, the stock reservation engine (MAX_VALUE - 8192) included
+    @Override
+    public int getPhase() {
+        return Integer.MAX_VALUE - 16384;
+    }
+}
@@ -0,0 +1,42 @@
+package com.retailpulse.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.retry.RetryCallback;
+import org.springframework.retry.RetryContext;
+import org.springframework.retry.RetryListener;
+import org.springframework.retry.annotation.EnableRetry;
+
+@Configuration
+@EnableRetry
+public class RetryConfig {
+
+    public static final String INVENTORY_LOCK_RETRY_LISTENER = "inventoryLockRetryListener";
+
+    @Bean(INVENTORY_LOCK_RETRY_LISTENER)
+    public RetryListener inventoryLockRetryListener(MeterRegistry meterRegistry) {
+        Counter retries = Counter.builder("inventory.lock.retries")
+                .description("Attempts re-run after an inventory lock timeout or deadlock")
+                .register(meterRegistry);
+        Counter exhausted = Counter.builder("inventory.lock.retries.exhausted")
+                .description("Operations that still hit a lock timeout or deadlock on their last attempt")
+                .register(meterRegistry);
+
+        return new RetryListener() {
+            @Override
+            public <T, E extends Throwable> void close(RetryContext context, RetryCallback<T, E> callback, Throwable throwable) {
+                // The retry count includes the failure that ended the operation, which was not retried
+                int retried = throwable == null ? context.getRetryCount() : context.getRetryCount() - 1;
+                if (retried > 0) {
+                    retries.increment(retried);
+                }
+                if (throwable instanceof PessimisticLockingFailureException) {
+                    exhausted.increment();
+                }
+            }
+        };
+    }
+}
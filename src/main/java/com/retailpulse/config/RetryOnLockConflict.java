@@ -0,0 +1,26 @@
+package com.retailpulse.config;
+
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.retry.annotation.Backoff;
+import org.springframework.retry.annotation.Retryable;
+
+import java.lang.annotation.*;
+
+/**
+ * Re-runs a transactional method when it loses a deadlock or times out waiting for a row lock.
+ * The retry advice wraps the transaction advice, so every attempt runs in a fresh transaction.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+@Retryable(
+        retryFor = PessimisticLockingFailureException.class,
+        maxAttemptsExpression = "${inventory.lock.max-attempts:3}",
+        backoff = @Backoff(
+                delayExpression = "${inventory.lock.backoff-delay-ms:50}",
+                maxDelayExpression = "${inventory.lock.backoff-max-delay-ms:500}",
+                multiplier = 2,
+                random = true),
+        listeners = RetryConfig.INVENTORY_LOCK_RETRY_LISTENER)
+public @interface RetryOnLockConflict {
+}
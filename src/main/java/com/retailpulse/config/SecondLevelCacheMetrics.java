@@ -0,0 +1,44 @@
+package com.retailpulse.config;
+
+import com.retailpulse.entity.CacheRegions;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.stereotype.Component;
+
+/**
+ * Publishes the hit ratio of each {@link CacheRegions} region as {@code hibernate.cache.hit.ratio}. The hit and miss
+ * counts behind it are also published per region by Hibernate's own metrics.
+ */
+@Component
+public class SecondLevelCacheMetrics implements MeterBinder {
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    public SecondLevelCacheMetrics(EntityManagerFactory entityManagerFactory) {
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        for (String region : CacheRegions.REGIONS) {
+            Gauge.builder("hibernate.cache.hit.ratio", statistics, stats -> hitRatio(stats.getCacheRegionStatistics(region)))
+                    .description("Share of second-level cache lookups answered from the cache since startup")
+                    .tag("region", region)
+                    .register(registry);
+        }
+    }
+
+    private static double hitRatio(CacheRegionStatistics regionStatistics) {
+        if (regionStatistics == null) {
+            return Double.NaN;
+        }
+        long lookups = regionStatistics.getHitCount() + regionStatistics.getMissCount();
+        return lookups == 0 ? Double.NaN : (double) regionStatistics.getHitCount() / lookups;
+    }
+}
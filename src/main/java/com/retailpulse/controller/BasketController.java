@@ -0,0 +1,74 @@
+package com.retailpulse.controller;
+
+import com.retailpulse.controller.request.SalesDetailsDto;
+import com.retailpulse.controller.response.BasketResponseDto;
+import com.retailpulse.controller.response.SalesTransactionResponseDto;
+import com.retailpulse.controller.response.TaxResultDto;
+import com.retailpulse.controller.response.TransientSalesTransactionDto;
+import com.retailpulse.service.BasketService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/sales/baskets")
+public class BasketController {
+    private final BasketService basketService;
+
+    @Autowired
+    public BasketController(BasketService basketService) {
+        this.basketService = basketService;
+    }
+
+    @PostMapping
+    public ResponseEntity<BasketResponseDto> openBasket(@RequestParam long businessEntityId) {
+        return ResponseEntity.ok(basketService.openBasket(businessEntityId));
+    }
+
+    @GetMapping("/{basketId}")
+    public ResponseEntity<TaxResultDto> getBasket(@PathVariable String basketId) {
+        return ResponseEntity.ok(basketService.getBasket(basketId));
+    }
+
+    /**
+     * Endpoint to scan a product into a basket.
+     *
+     * @param basketId        the ID of the basket
+     * @param salesDetailsDto the product, quantity and unit price scanned
+     * @return the updated basket totals
+     */
+    @PostMapping("/{basketId}/lines")
+    public ResponseEntity<BasketResponseDto> addLine(@PathVariable String basketId, @RequestBody SalesDetailsDto salesDetailsDto) {
+        return ResponseEntity.ok(basketService.addLine(basketId, salesDetailsDto));
+    }
+
+    @PutMapping("/{basketId}/lines/{productId}")
+    public ResponseEntity<BasketResponseDto> changeQuantity(@PathVariable String basketId,
+                                                            @PathVariable long productId,
+                                                            @RequestParam int quantity) {
+        return ResponseEntity.ok(basketService.changeQuantity(basketId, productId, quantity));
+    }
+
+    @DeleteMapping("/{basketId}/lines/{productId}")
+    public ResponseEntity<BasketResponseDto> removeLine(@PathVariable String basketId, @PathVariable long productId) {
+        return ResponseEntity.ok(basketService.removeLine(basketId, productId));
+    }
+
+    @DeleteMapping("/{basketId}")
+    public ResponseEntity<Void> discardBasket(@PathVariable String basketId) {
+        basketService.discardBasket(basketId);
+        return ResponseEntity.ok().build();
+    }
+
+    @PostMapping("/{basketId}/checkout")
+    public ResponseEntity<SalesTransactionResponseDto> checkout(@PathVariable String basketId) {
+        return ResponseEntity.ok(basketService.checkout(basketId));
+    }
+
+    @PostMapping("/{basketId}/suspend")
+    public ResponseEntity<List<TransientSalesTransactionDto>> suspend(@PathVariable String basketId) {
+        return ResponseEntity.ok(basketService.suspend(basketId));
+    }
+}
@@ -1,15 +1,16 @@
 package com.retailpulse.controller;
 
+import com.retailpulse.controller.response.StockTakeSummaryDto;
 import com.retailpulse.entity.Inventory;
 import com.retailpulse.service.InventoryService;
+import com.retailpulse.service.StockTakeService;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.web.bind.annotation.GetMapping;
-import org.springframework.web.bind.annotation.PathVariable;
-import org.springframework.web.bind.annotation.RequestMapping;
-import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 import java.util.logging.Logger;
 
@@ -20,9 +21,11 @@ public class InventoryController {
     private static final Logger logger = Logger.getLogger(InventoryController.class.getName());
 
     private final InventoryService inventoryService;
+    private final StockTakeService stockTakeService;
 
-    public InventoryController(InventoryService inventoryService) {
+    public InventoryController(InventoryService inventoryService, StockTakeService stockTakeService) {
         this.inventoryService = inventoryService;
+        this.stockTakeService = stockTakeService;
     }
 
     @GetMapping
@@ -59,4 +62,18 @@ public class InventoryController {
                         "Inventory not found with productId: " + productId + " and businessEntityId: " + businessEntityId));
         return ResponseEntity.ok(inventory);
     }
+
+    // The counted lines are read from the request body as they arrive rather than bound to a list first
+    @PostMapping("/stockTake/{businessEntityId}")
+    public ResponseEntity<StockTakeSummaryDto> applyStockTake(@PathVariable Long businessEntityId,
+                                                              @RequestParam(defaultValue = "false") boolean partial,
+                                                              InputStream content) throws IOException {
+        logger.info("Applying " + (partial ? "partial " : "") + "stock-take of businessEntityId: " + businessEntityId);
+        try (content) {
+            StockTakeSummaryDto summary = stockTakeService.applyStockTake(businessEntityId, content, partial);
+            logger.info("Applied stock-take of businessEntityId " + businessEntityId + ": " + summary.productsAdjusted()
+                    + " products adjusted, " + summary.linesRejected() + " lines rejected");
+            return ResponseEntity.ok(summary);
+        }
+    }
 }
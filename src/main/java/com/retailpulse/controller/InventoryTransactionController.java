@@ -1,12 +1,15 @@
 package com.retailpulse.controller;
 
 import com.retailpulse.DTO.InventoryTransactionProductDto;
+import com.retailpulse.controller.response.InventoryTransactionResultDto;
 import com.retailpulse.entity.InventoryTransaction;
 import com.retailpulse.service.InventoryTransactionService;
+import com.retailpulse.service.InventoryTransferResult;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.logging.Logger;
 
@@ -41,6 +44,32 @@ public class InventoryTransactionController {
         }
     }
 
+    /**
+     * Posts many transfers in one call, e.g. a store replenishment or a supplier delivery.
+     *
+     * @param inventoryTransactions the transfer lines
+     * @param atomic                apply no line if any line is rejected
+     * @return one result per line, in the same order
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<List<InventoryTransactionResultDto>> createInventoryTransactions(
+            @RequestBody List<InventoryTransaction> inventoryTransactions,
+            @RequestParam(defaultValue = "false") boolean atomic) {
+        logger.info("Received request to create " + inventoryTransactions.size() + " inventory transactions, atomic: " + atomic);
+        List<InventoryTransferResult> results = inventoryTransactionService.saveInventoryTransactions(inventoryTransactions, atomic);
+        List<InventoryTransactionResultDto> resultDtos = new ArrayList<>(results.size());
+        for (int i = 0; i < results.size(); i++) {
+            InventoryTransferResult result = results.get(i);
+            resultDtos.add(new InventoryTransactionResultDto(
+                    i,
+                    result.isAccepted(),
+                    result.transaction(),
+                    result.isAccepted() ? null : result.error().getErrorCode(),
+                    result.isAccepted() ? null : result.error().getMessage()));
+        }
+        return ResponseEntity.ok(resultDtos);
+    }
+
 //    @PutMapping("/{id}")
 //    public InventoryTransaction updateInventoryTransaction(@PathVariable UUID id, @RequestBody InventoryTransaction inventoryTransaction) {
 //        logger.info("Received request to update inventory transaction with id: " + id);
@@ -1,13 +1,19 @@
 package com.retailpulse.controller;
 
+import com.retailpulse.controller.response.ProductImportReportDto;
+import com.retailpulse.controller.response.ProductSearchResultDto;
 import com.retailpulse.entity.Product;
 import com.retailpulse.service.ProductService;
+import com.retailpulse.service.productImport.ProductImportService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 import java.util.logging.Logger;
 
@@ -17,10 +23,12 @@ public class ProductController {
 
     private static final Logger logger = Logger.getLogger(ProductController.class.getName());
     private final ProductService productService;
+    private final ProductImportService productImportService;
 
     @Autowired
-    public ProductController(ProductService productService) {
+    public ProductController(ProductService productService, ProductImportService productImportService) {
         this.productService = productService;
+        this.productImportService = productImportService;
     }
 
     @GetMapping
@@ -29,6 +37,13 @@ public class ProductController {
         return ResponseEntity.ok(productService.getAllProducts());
     }
 
+    @GetMapping("/search")
+    public ResponseEntity<ProductSearchResultDto> searchProducts(@RequestParam("q") String query,
+                                                                 @RequestParam(defaultValue = "0") int page,
+                                                                 @RequestParam(defaultValue = "20") int size) {
+        return ResponseEntity.ok(productService.searchProducts(query, page, size));
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<Product> getProductById(@PathVariable Long id) {
         logger.info("Fetching product with id: " + id);
@@ -50,6 +65,14 @@ public class ProductController {
         return ResponseEntity.ok(product);
     }
 
+    @GetMapping("/barcode/{barcode}")
+    public ResponseEntity<Product> getProductByBarcode(@PathVariable String barcode) {
+        Product product = productService.getProductByBarcode(barcode)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        "Product not found with barcode: " + barcode.replaceAll("[\n\r]", "_")));
+        return ResponseEntity.ok(product);
+    }
+
     @PostMapping
     public ResponseEntity<Product> createProduct(@RequestBody Product product) {
         logger.info("Received request to create product: " + product);
@@ -63,6 +86,18 @@ public class ProductController {
         }
     }
 
+    @PostMapping("/import")
+    public ResponseEntity<ProductImportReportDto> importProducts(@RequestParam("file") MultipartFile file) throws IOException {
+        String filename = file.getOriginalFilename() == null ? "" : file.getOriginalFilename().replaceAll("[\n\r]", "_");
+        logger.info("Importing products from " + filename + " (" + file.getSize() + " bytes)");
+        try (InputStream content = file.getInputStream()) {
+            ProductImportReportDto report = productImportService.importProducts(filename, content);
+            logger.info("Imported products from " + filename + ": " + report.created() + " created, "
+                    + report.updated() + " updated, " + report.rejected() + " rejected");
+            return ResponseEntity.ok(report);
+        }
+    }
+
     @PutMapping("/{id}")
     public ResponseEntity<Product> updateProduct(@PathVariable Long id, @RequestBody Product product) {
         logger.info("Received request to update product with id: " + id);
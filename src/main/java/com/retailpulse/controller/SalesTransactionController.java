@@ -1,47 +1,93 @@
 package com.retailpulse.controller;
 
+import com.retailpulse.controller.request.OfflineSaleDto;
 import com.retailpulse.controller.request.SalesDetailsDto;
 import com.retailpulse.controller.request.SalesTransactionRequestDto;
 import com.retailpulse.controller.request.SuspendedTransactionDto;
+import com.retailpulse.controller.response.OfflineSaleResultDto;
 import com.retailpulse.controller.response.SalesTransactionResponseDto;
 import com.retailpulse.controller.response.TaxResultDto;
 import com.retailpulse.controller.response.TransientSalesTransactionDto;
+import com.retailpulse.service.CheckoutBatcher;
+import com.retailpulse.service.CheckoutIdempotencyService;
+import com.retailpulse.service.CheckoutResult;
+import com.retailpulse.service.IdempotencyClaim;
+import com.retailpulse.service.OfflineSalesService;
 import com.retailpulse.service.SalesTransactionService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.ArrayList;
 import java.util.List;
 
 @RestController
 @RequestMapping("/api/sales")
 public class SalesTransactionController {
     private final SalesTransactionService salesTransactionService;
+    private final CheckoutBatcher checkoutBatcher;
+    private final CheckoutIdempotencyService checkoutIdempotencyService;
+    private final OfflineSalesService offlineSalesService;
 
     @Autowired
-    public SalesTransactionController(SalesTransactionService salesTransactionService) {
+    public SalesTransactionController(SalesTransactionService salesTransactionService, CheckoutBatcher checkoutBatcher,
+                                      CheckoutIdempotencyService checkoutIdempotencyService,
+                                      OfflineSalesService offlineSalesService) {
         this.salesTransactionService = salesTransactionService;
+        this.checkoutBatcher = checkoutBatcher;
+        this.checkoutIdempotencyService = checkoutIdempotencyService;
+        this.offlineSalesService = offlineSalesService;
     }
 
     @PostMapping("/calculateSalesTax")
-    public ResponseEntity<TaxResultDto> calculateSalesTax(@RequestBody List<SalesDetailsDto> salesDetailsDtos) {
-        TaxResultDto taxResultDto = salesTransactionService.calculateSalesTax(salesDetailsDtos);
+    public ResponseEntity<TaxResultDto> calculateSalesTax(@RequestBody List<SalesDetailsDto> salesDetailsDtos,
+                                                          @RequestParam(required = false) Long businessEntityId) {
+        TaxResultDto taxResultDto = salesTransactionService.calculateSalesTax(salesDetailsDtos, businessEntityId);
         return ResponseEntity.ok(taxResultDto);
     }
 
     /**
-     * Endpoint to create a new SalesTransaction.
+     * Endpoint to create a new SalesTransaction. A request repeated with the same Idempotency-Key gets the
+     * transaction created by the first one.
      *
-     * @param requestDto the SalesTransactionRequestDto containing transaction details
+     * @param idempotencyKey optional key identifying the checkout across retries
+     * @param requestDto     the SalesTransactionRequestDto containing transaction details
      * @return the created SalesTransaction
      */
     @PostMapping("/createTransaction")
-    public ResponseEntity<SalesTransactionResponseDto> createSalesTransaction(@RequestBody SalesTransactionRequestDto requestDto) {
-        SalesTransactionResponseDto responseDto = salesTransactionService.createSalesTransaction(requestDto);
+    public ResponseEntity<SalesTransactionResponseDto> createSalesTransaction(
+            @RequestHeader(name = "Idempotency-Key", required = false) String idempotencyKey,
+            @RequestBody SalesTransactionRequestDto requestDto) {
+        SalesTransactionResponseDto responseDto = idempotencyKey == null
+                ? checkout(requestDto, null)
+                : checkoutIdempotencyService.execute(idempotencyKey, requestDto, claim -> checkout(requestDto, claim));
         return new ResponseEntity<>(responseDto, HttpStatus.OK);
     }
 
+    /**
+     * Endpoint to create the sales a POS queued while offline. Sales already created by an earlier call with the
+     * same idempotency key are returned instead of created again.
+     *
+     * @param offlineSales the queued sales, in the order they were made
+     * @return one result per sale, in the same order
+     */
+    @PostMapping("/createTransactions")
+    public ResponseEntity<List<OfflineSaleResultDto>> createOfflineSalesTransactions(@RequestBody List<OfflineSaleDto> offlineSales) {
+        List<CheckoutResult> results = offlineSalesService.createOfflineSales(offlineSales);
+        List<OfflineSaleResultDto> resultDtos = new ArrayList<>(results.size());
+        for (int i = 0; i < results.size(); i++) {
+            CheckoutResult result = results.get(i);
+            resultDtos.add(new OfflineSaleResultDto(
+                    offlineSales.get(i).idempotencyKey(),
+                    result.isAccepted(),
+                    result.response(),
+                    result.isAccepted() ? null : result.error().getErrorCode(),
+                    result.isAccepted() ? null : result.error().getMessage()));
+        }
+        return ResponseEntity.ok(resultDtos);
+    }
+
     /**
      * Endpoint to update an existing SalesTransaction.
      *
@@ -63,10 +109,22 @@ public class SalesTransactionController {
         return ResponseEntity.ok(transactionHistory);
     }
 
+    @GetMapping("/{businessEntityId}/suspended-transactions")
+    public ResponseEntity<List<TransientSalesTransactionDto>> getSuspendedTransactions(@PathVariable Long businessEntityId) {
+        List<TransientSalesTransactionDto> transactionHistory = salesTransactionService.getSuspendedTransactions(businessEntityId);
+        return ResponseEntity.ok(transactionHistory);
+    }
+
     @DeleteMapping("/{businessEntityId}/suspended-transactions/{transactionId}")
     public ResponseEntity<List<TransientSalesTransactionDto>> restoreTransaction(@PathVariable Long businessEntityId, @PathVariable Long transactionId) {
         List<TransientSalesTransactionDto> transactionHistory = salesTransactionService.restoreTransaction(businessEntityId, transactionId);
         return ResponseEntity.ok(transactionHistory);
     }
 
+    private SalesTransactionResponseDto checkout(SalesTransactionRequestDto requestDto, IdempotencyClaim claim) {
+        return checkoutBatcher.isEnabled()
+                ? checkoutBatcher.createSalesTransaction(requestDto, claim)
+                : salesTransactionService.createSalesTransaction(requestDto, claim);
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,10 @@
+package com.retailpulse.controller.request;
+
+/**
+ * A sale made while the POS was offline, replayed with the idempotency key the terminal gave it.
+ */
+public record OfflineSaleDto(
+        String idempotencyKey,
+        SalesTransactionRequestDto sale
+) {
+}
@@ -0,0 +1,13 @@
+package com.retailpulse.controller.response;
+
+public record BasketResponseDto(
+        String basketId,
+        long businessEntityId,
+        int lineCount,
+        String subTotalAmount,
+        String taxType,
+        String taxRate,
+        String taxAmount,
+        String totalAmount
+) {
+}
@@ -0,0 +1,12 @@
+package com.retailpulse.controller.response;
+
+import com.retailpulse.entity.InventoryTransaction;
+
+public record InventoryTransactionResultDto(
+        int line,
+        boolean accepted,
+        InventoryTransaction transaction,
+        String errorCode,
+        String errorMessage
+) {
+}
@@ -0,0 +1,10 @@
+package com.retailpulse.controller.response;
+
+public record OfflineSaleResultDto(
+        String idempotencyKey,
+        boolean accepted,
+        SalesTransactionResponseDto transaction,
+        String errorCode,
+        String errorMessage
+) {
+}
@@ -0,0 +1,7 @@
+package com.retailpulse.controller.response;
+
+public record ProductImportErrorDto(
+        int row,
+        String message
+) {
+}
@@ -0,0 +1,13 @@
+package com.retailpulse.controller.response;
+
+import java.util.List;
+
+public record ProductImportReportDto(
+        int rowsRead,
+        int created,
+        int updated,
+        int rejected,
+        // Only the first product.import.max-reported-errors rejected rows are listed
+        List<ProductImportErrorDto> errors
+) {
+}
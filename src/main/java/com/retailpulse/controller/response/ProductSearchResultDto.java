@@ -0,0 +1,14 @@
+package com.retailpulse.controller.response;
+
+import com.retailpulse.entity.Product;
+
+import java.util.List;
+
+public record ProductSearchResultDto(
+        String query,
+        int page,
+        int size,
+        int totalMatches,
+        List<Product> products
+) {
+}
@@ -0,0 +1,7 @@
+package com.retailpulse.controller.response;
+
+public record StockTakeErrorDto(
+        int line,
+        String message
+) {
+}
@@ -0,0 +1,20 @@
+package com.retailpulse.controller.response;
+
+import java.util.List;
+
+public record StockTakeSummaryDto(
+        Long businessEntityId,
+        int linesRead,
+        int linesRejected,
+        int productsCounted,
+        int productsAdjusted,
+        long unitsOver,
+        long unitsShort,
+        double costOver,
+        double costShort,
+        // The inventory.stock-take.max-reported-variances largest adjustments by cost, then by units
+        List<StockTakeVarianceDto> largestVariances,
+        // Only the first inventory.stock-take.max-reported-errors rejected lines are listed
+        List<StockTakeErrorDto> errors
+) {
+}
@@ -0,0 +1,10 @@
+package com.retailpulse.controller.response;
+
+public record StockTakeVarianceDto(
+        Long productId,
+        int expected,
+        int counted,
+        int variance,
+        double costPricePerUnit
+) {
+}
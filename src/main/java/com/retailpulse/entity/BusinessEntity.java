@@ -2,14 +2,21 @@ package com.retailpulse.entity;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = CacheRegions.BUSINESS_ENTITY)
 @Getter
 @Setter
 @NoArgsConstructor
 public class BusinessEntity {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = IdBlocks.BUSINESS_ENTITY)
+    @TableGenerator(name = IdBlocks.BUSINESS_ENTITY, table = IdBlocks.TABLE, pkColumnName = IdBlocks.SEGMENT_COLUMN,
+            valueColumnName = IdBlocks.NEXT_VALUE_COLUMN, pkColumnValue = IdBlocks.BUSINESS_ENTITY,
+            allocationSize = IdBlocks.ALLOCATION_SIZE)
     private Long id;
 
     @Column(nullable = false)
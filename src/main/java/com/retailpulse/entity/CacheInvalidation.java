@@ -0,0 +1,44 @@
+package com.retailpulse.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+
+import java.time.Instant;
+
+/**
+ * One change to a cached entity, appended in the transaction that made it, so every node can evict its copy. The
+ * id orders the log: each node reads on from the highest id it has seen.
+ */
+@Getter
+@Entity
+@Table(name = "cache_invalidation", indexes = @Index(name = "idx_cache_invalidation_changed_at", columnList = "changed_at"))
+public class CacheInvalidation {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // One of the CacheRegions entity regions
+    @Column(name = "entity_type", nullable = false, length = 30)
+    private String entityType;
+
+    @Column(name = "entity_id", nullable = false)
+    private Long entityId;
+
+    // Node that made the change; it has already updated its own caches
+    @Column(name = "origin", nullable = false, length = 36)
+    private String origin;
+
+    @Column(name = "changed_at", nullable = false)
+    private Instant changedAt;
+
+    protected CacheInvalidation() {
+    }
+
+    public CacheInvalidation(String entityType, Long entityId, String origin, Instant changedAt) {
+        this.entityType = entityType;
+        this.entityId = entityId;
+        this.origin = origin;
+        this.changedAt = changedAt;
+    }
+}
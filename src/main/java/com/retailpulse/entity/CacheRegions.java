@@ -0,0 +1,22 @@
+package com.retailpulse.entity;
+
+import java.util.List;
+
+/**
+ * Regions of the Hibernate second-level cache, each configured with its own size and time to live in
+ * {@code ehcache.xml}. Only reference data read on most write paths and changed rarely is cached.
+ */
+public final class CacheRegions {
+    // Prevent instantiation
+    private CacheRegions() {}
+
+    public static final String PRODUCT = "product";
+    public static final String BUSINESS_ENTITY = "business_entity";
+    public static final String SALES_TAX = "sales_tax";
+    public static final String PRODUCT_BY_SKU = "product_by_sku";
+
+    /**
+     * Regions reported with a hit ratio metric.
+     */
+    public static final List<String> REGIONS = List.of(PRODUCT, BUSINESS_ENTITY, SALES_TAX, PRODUCT_BY_SKU);
+}
@@ -0,0 +1,29 @@
+package com.retailpulse.entity;
+
+import java.util.List;
+
+/**
+ * Ids of the entities written in bulk are handed out in blocks of {@link #ALLOCATION_SIZE} from the
+ * {@code id_block} table, one row per entity table, instead of by AUTO_INCREMENT. Hibernate then knows the ids
+ * before inserting and can send the rows of a flush as JDBC batches.
+ */
+public final class IdBlocks {
+    // Prevent instantiation
+    private IdBlocks() {}
+
+    public static final String TABLE = "id_block";
+    public static final String SEGMENT_COLUMN = "segment";
+    public static final String NEXT_VALUE_COLUMN = "next_val";
+    public static final int ALLOCATION_SIZE = 50;
+
+    public static final String SALES_TRANSACTION = "sales_transaction";
+    public static final String SALES_DETAILS = "sales_details";
+    public static final String PRODUCT = "product";
+    public static final String BUSINESS_ENTITY = "business_entity";
+    public static final String SALES_TAX = "sales_tax";
+
+    /**
+     * Segments, each named after the table whose ids it allocates.
+     */
+    public static final List<String> SEGMENTS = List.of(SALES_TRANSACTION, SALES_DETAILS, PRODUCT, BUSINESS_ENTITY, SALES_TAX);
+}
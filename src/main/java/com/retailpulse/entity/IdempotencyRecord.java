@@ -0,0 +1,48 @@
+package com.retailpulse.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+
+import java.time.Instant;
+
+/**
+ * The claim on an {@code Idempotency-Key} and, once the sale has committed, its response, kept so a retry of the
+ * same request is answered without creating the sale again. A claim without a response is still being checked out
+ * by the attempt named in {@code attempt}; the response is written in the transaction that creates the sale.
+ */
+@Getter
+@Entity
+public class IdempotencyRecord {
+
+    @Id
+    @Column(length = 100)
+    private String idempotencyKey;
+
+    // SHA-256 of the request body, so a key reused for a different sale is rejected rather than replayed
+    @Column(nullable = false, length = 64)
+    private String fingerprint;
+
+    @Column(nullable = false, length = 36)
+    private String attempt;
+
+    @Lob
+    private String response;
+
+    @Column(nullable = false)
+    private Instant createdAt;
+
+    protected IdempotencyRecord() {
+    }
+
+    public IdempotencyRecord(String idempotencyKey, String fingerprint, String attempt, String response, Instant createdAt) {
+        this.idempotencyKey = idempotencyKey;
+        this.fingerprint = fingerprint;
+        this.attempt = attempt;
+        this.response = response;
+        this.createdAt = createdAt;
+    }
+
+    public boolean isPending() {
+        return response == null;
+    }
+}
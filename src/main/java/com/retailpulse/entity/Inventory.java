@@ -5,6 +5,7 @@ import lombok.Data;
 
 @Data
 @Entity
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_inventory_business_entity_product", columnNames = {"business_entity_id", "product_id"}))
 public class Inventory {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -0,0 +1,39 @@
+package com.retailpulse.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One share of a hot product's stock at a business entity. The available quantity of such a product is the
+ * quantity of its {@link Inventory} row plus the quantities of all its slots, so concurrent checkouts can
+ * each decrement a different row.
+ */
+@Data
+@NoArgsConstructor
+@Entity
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_inventory_slot_business_entity_product_slot",
+        columnNames = {"business_entity_id", "product_id", "slot_index"}))
+public class InventorySlot {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long productId;
+
+    @Column(nullable = false)
+    private Long businessEntityId;
+
+    @Column(nullable = false)
+    private int slotIndex;
+
+    @Column(nullable = false)
+    private int quantity;
+
+    public InventorySlot(Long productId, Long businessEntityId, int slotIndex) {
+        this.productId = productId;
+        this.businessEntityId = businessEntityId;
+        this.slotIndex = slotIndex;
+    }
+}
@@ -0,0 +1,85 @@
+package com.retailpulse.entity;
+
+import java.math.BigDecimal;
+
+/**
+ * A decimal amount held as a long count of minor units and a scale, e.g. 12.50 is {@code (1250, 2)}. Arithmetic
+ * is exact and rounding follows {@link java.math.RoundingMode#HALF_UP}, so results equal the same computation done
+ * with {@link BigDecimal} without allocating on every step. Any operation that would overflow a long throws
+ * {@link ArithmeticException}.
+ */
+public record Money(long unscaled, int scale) {
+
+    public static final Money ZERO = new Money(0, 0);
+
+    // Powers of ten that fit in a long
+    private static final long[] TEN_POWERS = {
+            1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L, 1_000_000_000L,
+            10_000_000_000L, 100_000_000_000L, 1_000_000_000_000L, 10_000_000_000_000L, 100_000_000_000_000L,
+            1_000_000_000_000_000L, 10_000_000_000_000_000L, 100_000_000_000_000_000L, 1_000_000_000_000_000_000L
+    };
+
+    public Money {
+        if (scale < 0) {
+            throw new IllegalArgumentException("Scale must not be negative: " + scale);
+        }
+    }
+
+    public static Money of(BigDecimal amount) {
+        // A negative scale ("1E+2") is a whole number, so it can always be written with scale 0
+        BigDecimal nonNegativeScale = amount.scale() < 0 ? amount.setScale(0) : amount;
+        return new Money(nonNegativeScale.unscaledValue().longValueExact(), nonNegativeScale.scale());
+    }
+
+    public Money plus(Money other) {
+        if (scale == other.scale) {
+            return new Money(Math.addExact(unscaled, other.unscaled), scale);
+        }
+        int commonScale = Math.max(scale, other.scale);
+        return new Money(Math.addExact(rescaled(commonScale), other.rescaled(commonScale)), commonScale);
+    }
+
+    public Money minus(Money other) {
+        return plus(new Money(Math.negateExact(other.unscaled), other.scale));
+    }
+
+    public Money times(int quantity) {
+        return new Money(Math.multiplyExact(unscaled, quantity), scale);
+    }
+
+    public Money times(Money factor) {
+        return new Money(Math.multiplyExact(unscaled, factor.unscaled), Math.addExact(scale, factor.scale));
+    }
+
+    /**
+     * Rounds to the given number of decimal places, halves away from zero.
+     */
+    public Money roundHalfUp(int newScale) {
+        if (newScale >= scale) {
+            return new Money(rescaled(newScale), newScale);
+        }
+        long divisor = tenPower(scale - newScale);
+        long quotient = unscaled / divisor;
+        long remainder = Math.abs(unscaled % divisor);
+        // remainder < divisor <= 10^18, so doubling it cannot overflow
+        if (remainder * 2 >= divisor) {
+            quotient += Long.signum(unscaled);
+        }
+        return new Money(quotient, newScale);
+    }
+
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(unscaled, scale);
+    }
+
+    private long rescaled(int newScale) {
+        return Math.multiplyExact(unscaled, tenPower(newScale - scale));
+    }
+
+    private static long tenPower(int exponent) {
+        if (exponent >= TEN_POWERS.length) {
+            throw new ArithmeticException("Scale difference too large: " + exponent);
+        }
+        return TEN_POWERS[exponent];
+    }
+}
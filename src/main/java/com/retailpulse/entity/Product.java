@@ -2,13 +2,21 @@ package com.retailpulse.entity;
 
 import jakarta.persistence.*;
 import lombok.Data;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 @Data
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = CacheRegions.PRODUCT)
+@Table(indexes = @Index(name = "idx_product_barcode", columnList = "barcode"))
 public class Product {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = IdBlocks.PRODUCT)
+    @TableGenerator(name = IdBlocks.PRODUCT, table = IdBlocks.TABLE, pkColumnName = IdBlocks.SEGMENT_COLUMN,
+            valueColumnName = IdBlocks.NEXT_VALUE_COLUMN, pkColumnValue = IdBlocks.PRODUCT,
+            allocationSize = IdBlocks.ALLOCATION_SIZE)
     private Long id;
 
     @Column(nullable = false, unique = true)
@@ -28,4 +36,24 @@ public class Product {
 
     @Column(nullable = false)
     private boolean active = true;
+
+    /**
+     * Returns a detached copy, e.g. for an in-memory index that callers and the persistence context must not change.
+     */
+    public Product copy() {
+        Product copy = new Product();
+        copy.setId(id);
+        copy.setSku(sku);
+        copy.setDescription(description);
+        copy.setCategory(category);
+        copy.setSubcategory(subcategory);
+        copy.setBrand(brand);
+        copy.setOrigin(origin);
+        copy.setUom(uom);
+        copy.setVendorCode(vendorCode);
+        copy.setBarcode(barcode);
+        copy.setRrp(rrp);
+        copy.setActive(active);
+        return copy;
+    }
 }
@@ -2,6 +2,7 @@ package com.retailpulse.entity;
 
 import jakarta.persistence.*;
 import lombok.Data;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 
@@ -11,7 +12,10 @@ import java.math.BigDecimal;
 @Entity
 public class SalesDetails {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = IdBlocks.SALES_DETAILS)
+    @TableGenerator(name = IdBlocks.SALES_DETAILS, table = IdBlocks.TABLE, pkColumnName = IdBlocks.SEGMENT_COLUMN,
+            valueColumnName = IdBlocks.NEXT_VALUE_COLUMN, pkColumnValue = IdBlocks.SALES_DETAILS,
+            allocationSize = IdBlocks.ALLOCATION_SIZE)
     private Long id;
 
     @Setter
@@ -28,6 +32,11 @@ public class SalesDetails {
     @Column(nullable = false)
     private BigDecimal salesPricePerUnit;
 
+    // Fixed-point copy of salesPricePerUnit, built on first use
+    @Transient
+    @Getter(AccessLevel.NONE)
+    private Money salesPricePerUnitMoney;
+
     protected SalesDetails() {}
 
     public SalesDetails(Long productId, int quantity, BigDecimal salesPricePerUnit) {
@@ -36,7 +45,26 @@ public class SalesDetails {
         this.salesPricePerUnit = salesPricePerUnit;
     }
 
+    public void amend(int quantity, BigDecimal salesPricePerUnit) {
+        this.quantity = quantity;
+        // "50.0" and "50.00" are the same price; keeping the old scale leaves an unchanged line clean
+        if (this.salesPricePerUnit.compareTo(salesPricePerUnit) != 0) {
+            this.salesPricePerUnit = salesPricePerUnit;
+            this.salesPricePerUnitMoney = null;
+        }
+    }
+
     public BigDecimal getSubTotal() {
         return salesPricePerUnit.multiply(BigDecimal.valueOf(quantity));
     }
+
+    /**
+     * The unrounded line total in fixed point; throws {@link ArithmeticException} if it does not fit a long.
+     */
+    public Money getSubTotalMoney() {
+        if (salesPricePerUnitMoney == null) {
+            salesPricePerUnitMoney = Money.of(salesPricePerUnit);
+        }
+        return salesPricePerUnitMoney.times(quantity);
+    }
 }
@@ -1,17 +1,26 @@
 package com.retailpulse.entity;
 
 import jakarta.persistence.*;
+import lombok.AccessLevel;
 import lombok.Getter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.time.Instant;
 
 @Getter
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = CacheRegions.SALES_TAX)
 public class SalesTax {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = IdBlocks.SALES_TAX)
+    @TableGenerator(name = IdBlocks.SALES_TAX, table = IdBlocks.TABLE, pkColumnName = IdBlocks.SEGMENT_COLUMN,
+            valueColumnName = IdBlocks.NEXT_VALUE_COLUMN, pkColumnValue = IdBlocks.SALES_TAX,
+            allocationSize = IdBlocks.ALLOCATION_SIZE)
     private Long id;
 
     @Enumerated(EnumType.STRING)
@@ -19,6 +28,19 @@ public class SalesTax {
 
     private BigDecimal taxRate;
 
+    // Store the rate applies to; null applies to every store without a rule of its own
+    private Long businessEntityId;
+
+    // Start (inclusive) and end (exclusive) of the period the rate applies to; null leaves that side open
+    private Instant effectiveFrom;
+
+    private Instant effectiveTo;
+
+    // Fixed-point copy of taxRate, built on first use
+    @Transient
+    @Getter(AccessLevel.NONE)
+    private Money taxRateMoney;
+
     protected SalesTax() {
     }
 
@@ -27,8 +49,31 @@ public class SalesTax {
         this.taxRate = taxRate;
     }
 
+    public SalesTax(TaxType taxType, BigDecimal taxRate, Long businessEntityId, Instant effectiveFrom, Instant effectiveTo) {
+        this.taxType = taxType;
+        this.taxRate = taxRate;
+        this.businessEntityId = businessEntityId;
+        this.effectiveFrom = effectiveFrom;
+        this.effectiveTo = effectiveTo;
+    }
+
+    public boolean isEffectiveAt(Instant instant) {
+        return (effectiveFrom == null || !instant.isBefore(effectiveFrom))
+                && (effectiveTo == null || instant.isBefore(effectiveTo));
+    }
+
     public BigDecimal calculateTax(BigDecimal subtotal) {
         return subtotal.multiply(this.taxRate).setScale(2, RoundingMode.HALF_UP);
     }
 
+    /**
+     * Same as {@link #calculateTax(BigDecimal)} in fixed point; throws {@link ArithmeticException} on overflow.
+     */
+    public Money calculateTax(Money subtotal) {
+        if (taxRateMoney == null) {
+            taxRateMoney = Money.of(taxRate);
+        }
+        return subtotal.times(taxRateMoney).roundHalfUp(2);
+    }
+
 }
@@ -1,7 +1,5 @@
 package com.retailpulse.entity;
 
-import com.retailpulse.controller.request.SalesDetailsDto;
-import com.retailpulse.util.DateUtil;
 import jakarta.persistence.*;
 import lombok.Data;
 import lombok.Getter;
@@ -10,16 +8,17 @@ import org.hibernate.annotations.CreationTimestamp;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.Instant;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.UUID;
+import java.util.*;
 
 @Getter
 @Entity
 public class SalesTransaction {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = IdBlocks.SALES_TRANSACTION)
+    @TableGenerator(name = IdBlocks.SALES_TRANSACTION, table = IdBlocks.TABLE, pkColumnName = IdBlocks.SEGMENT_COLUMN,
+            valueColumnName = IdBlocks.NEXT_VALUE_COLUMN, pkColumnValue = IdBlocks.SALES_TRANSACTION,
+            allocationSize = IdBlocks.ALLOCATION_SIZE)
     private Long id;
 
     @Column(nullable = false)
@@ -43,6 +42,10 @@ public class SalesTransaction {
     @OneToMany(cascade = CascadeType.ALL, mappedBy = "salesTransaction", orphanRemoval = true)
     private List<SalesDetails> salesDetailEntities = new ArrayList<>();
 
+    // True while the stock of this sale is held by the in-memory reservation engine and not yet written to inventory
+    @Column(nullable = false)
+    private boolean stockPending = false;
+
     protected SalesTransaction() {}
 
     public SalesTransaction(Long businessEntityId, SalesTax salesTax) {
@@ -50,69 +53,97 @@ public class SalesTransaction {
         this.salesTax = salesTax;
     }
 
+    public void markStockPending() {
+        this.stockPending = true;
+    }
+
+    public void clearStockPending() {
+        this.stockPending = false;
+    }
+
     public void addSalesDetails(SalesDetails detail) {
-        detail.setSalesTransaction(this);
-        salesDetailEntities.add(detail);
+        addSalesDetails(List.of(detail));
+    }
+
+    /**
+     * Adds several lines and works out the totals once, rather than once per line.
+     */
+    public void addSalesDetails(Collection<SalesDetails> details) {
+        for (SalesDetails detail : details) {
+            detail.setSalesTransaction(this);
+            salesDetailEntities.add(detail);
+        }
         recalculateTotal();
     }
 
-    public void updateSalesDetails(List<SalesDetails> details) {
-        this.salesDetailEntities.clear();
+    /**
+     * Replaces the sales details with the given lines while touching only what changed: a line for a product
+     * already on the transaction is amended in place, extra lines are added and lines no longer present are removed.
+     *
+     * @return the change in quantity sold per product, leaving out products whose quantity is unchanged
+     */
+    public SortedMap<Long, Integer> updateSalesDetails(List<SalesDetails> details) {
+        SortedMap<Long, Integer> quantityChanges = new TreeMap<>();
+        Map<Long, Deque<SalesDetails>> existingByProduct = new HashMap<>();
+        for (SalesDetails existing : salesDetailEntities) {
+            existingByProduct.computeIfAbsent(existing.getProductId(), productId -> new ArrayDeque<>()).add(existing);
+            quantityChanges.merge(existing.getProductId(), -existing.getQuantity(), Integer::sum);
+        }
 
         for (SalesDetails detail : details) {
-            this.addSalesDetails(detail);
+            quantityChanges.merge(detail.getProductId(), detail.getQuantity(), Integer::sum);
+            Deque<SalesDetails> unmatched = existingByProduct.get(detail.getProductId());
+            SalesDetails existing = unmatched == null ? null : unmatched.poll();
+            if (existing != null) {
+                existing.amend(detail.getQuantity(), detail.getSalesPricePerUnit());
+            } else {
+                detail.setSalesTransaction(this);
+                salesDetailEntities.add(detail);
+            }
         }
+
+        // Orphan removal deletes the rows of lines that were not matched
+        existingByProduct.values().forEach(salesDetailEntities::removeAll);
+        quantityChanges.values().removeIf(change -> change == 0);
+        recalculateTotal();
+        return quantityChanges;
     }
 
-    public SalesTransactionMemento saveToMemento() {
-        return new SalesTransactionMemento(
-                System.currentTimeMillis(),
-                this.businessEntityId,
-                this.subtotal.toPlainString(),
-                this.salesTax.getTaxType().name(),
-                this.salesTax.getTaxRate().toPlainString(),
-                this.salesTaxAmount.toPlainString(),
-                this.total.toPlainString(),
-                this.salesDetailEntities.stream().map(
-                        salesDetails -> new SalesDetailsDto(
-                                salesDetails.getProductId(),
-                                salesDetails.getQuantity(),
-                                salesDetails.getSalesPricePerUnit().toString()
-                        )
-                ).toList(),
-                DateUtil.convertInstantToString(Instant.now(), DateUtil.DATE_TIME_FORMAT)
-        );
+    public SalesTransactionMemento saveToMemento(long transactionId) {
+        return new SalesTransactionMemento(transactionId, this.businessEntityId, this.salesTax, this.salesDetailEntities, Instant.now());
     }
 
     public SalesTransaction restoreFromMemento(SalesTransactionMemento memento) {
         this.id = memento.transactionId();
         this.businessEntityId = memento.businessEntityId();
-        this.salesTax = new SalesTax(TaxType.valueOf(memento.taxType()), new BigDecimal(memento.taxRate()));
-        this.subtotal = new BigDecimal(memento.subTotal());
-        this.salesTaxAmount = new BigDecimal(memento.taxAmount());
-        this.total = new BigDecimal(memento.totalAmount());
-        this.transactionDate = DateUtil.convertStringToInstant(memento.transactionDateTime(), DateUtil.DATE_TIME_FORMAT);
-
-        for (SalesDetailsDto salesDetailsDto : memento.salesDetails()) {
-            SalesDetails salesDetails = new SalesDetails(
-                    salesDetailsDto.productId(),
-                    salesDetailsDto.quantity(),
-                    new BigDecimal(salesDetailsDto.salesPricePerUnit())
-            );
-            this.addSalesDetails(salesDetails);
-        }
+        this.salesTax = memento.salesTax();
+        this.transactionDate = memento.suspendedAt();
+        this.addSalesDetails(memento.salesDetails());
 
         return this;
     }
 
     private void recalculateTotal() {
-        BigDecimal subtotal = salesDetailEntities.stream()
-                .map(SalesDetails::getSubTotal)
-                .reduce(BigDecimal.ZERO, BigDecimal::add)
-                .setScale(2, RoundingMode.HALF_UP);
-        this.subtotal = subtotal;
-        this.salesTaxAmount = salesTax.calculateTax(subtotal);
-        this.total = subtotal.add(salesTaxAmount).setScale(2, RoundingMode.HALF_UP);
+        try {
+            Money lineTotal = Money.ZERO;
+            for (SalesDetails salesDetails : salesDetailEntities) {
+                lineTotal = lineTotal.plus(salesDetails.getSubTotalMoney());
+            }
+            Money subtotal = lineTotal.roundHalfUp(2);
+            Money salesTaxAmount = salesTax.calculateTax(subtotal);
+            this.subtotal = subtotal.toBigDecimal();
+            this.salesTaxAmount = salesTaxAmount.toBigDecimal();
+            this.total = subtotal.plus(salesTaxAmount).toBigDecimal();
+        } catch (ArithmeticException e) {
+            // Amounts beyond the range of long minor units
+            BigDecimal subtotal = salesDetailEntities.stream()
+                    .map(SalesDetails::getSubTotal)
+                    .reduce(BigDecimal.ZERO, BigDecimal::add)
+                    .setScale(2, RoundingMode.HALF_UP);
+            this.subtotal = subtotal;
+            this.salesTaxAmount = salesTax.calculateTax(subtotal);
+            this.total = subtotal.add(salesTaxAmount).setScale(2, RoundingMode.HALF_UP);
+        }
     }
 
 }
@@ -1,18 +1,163 @@
 package com.retailpulse.entity;
 
-import com.retailpulse.controller.request.SalesDetailsDto;
-
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
 
-public record SalesTransactionMemento(
-        Long transactionId,
-        Long businessEntityId,
-        String subTotal,
-        String taxType,
-        String taxRate,
-        String taxAmount,
-        String totalAmount,
-        List<SalesDetailsDto> salesDetails,
-        String transactionDateTime
-) {
+/**
+ * Compact snapshot of a suspended sale. Lines are kept as parallel primitive arrays and amounts as minor units
+ * with a scale, so thousands of suspended carts cost a few hundred bytes each and nothing is parsed back from
+ * strings. Totals are not stored; they are worked out again when the sale is restored.
+ */
+public final class SalesTransactionMemento {
+
+    private final long transactionId;
+    private final long businessEntityId;
+    private final TaxType taxType;
+    private final long taxRateUnscaled;
+    private final int taxRateScale;
+    private final long[] productIds;
+    private final int[] quantities;
+    private final long[] priceUnscaled;
+    private final byte[] priceScales;
+    private final long suspendedAtMillis;
+
+    /**
+     * @throws ArithmeticException if a price or the tax rate does not fit in long minor units
+     */
+    public SalesTransactionMemento(long transactionId, long businessEntityId, SalesTax salesTax,
+                                   List<SalesDetails> salesDetails, Instant suspendedAt) {
+        this.transactionId = transactionId;
+        this.businessEntityId = businessEntityId;
+        this.taxType = salesTax.getTaxType();
+        Money taxRate = Money.of(salesTax.getTaxRate());
+        this.taxRateUnscaled = taxRate.unscaled();
+        this.taxRateScale = taxRate.scale();
+        int lineCount = salesDetails.size();
+        this.productIds = new long[lineCount];
+        this.quantities = new int[lineCount];
+        this.priceUnscaled = new long[lineCount];
+        this.priceScales = new byte[lineCount];
+        for (int i = 0; i < lineCount; i++) {
+            SalesDetails line = salesDetails.get(i);
+            Money price = Money.of(line.getSalesPricePerUnit());
+            if (price.scale() > Byte.MAX_VALUE) {
+                throw new ArithmeticException("Price scale too large: " + price.scale());
+            }
+            productIds[i] = line.getProductId();
+            quantities[i] = line.getQuantity();
+            priceUnscaled[i] = price.unscaled();
+            priceScales[i] = (byte) price.scale();
+        }
+        this.suspendedAtMillis = suspendedAt.toEpochMilli();
+    }
+
+    private SalesTransactionMemento(long transactionId, long businessEntityId, TaxType taxType, long taxRateUnscaled,
+                                    int taxRateScale, long[] productIds, int[] quantities, long[] priceUnscaled,
+                                    byte[] priceScales, long suspendedAtMillis) {
+        this.transactionId = transactionId;
+        this.businessEntityId = businessEntityId;
+        this.taxType = taxType;
+        this.taxRateUnscaled = taxRateUnscaled;
+        this.taxRateScale = taxRateScale;
+        this.productIds = productIds;
+        this.quantities = quantities;
+        this.priceUnscaled = priceUnscaled;
+        this.priceScales = priceScales;
+        this.suspendedAtMillis = suspendedAtMillis;
+    }
+
+    /**
+     * Reads a memento written by {@link #encode(ByteBuffer)}.
+     */
+    public static SalesTransactionMemento decode(ByteBuffer buffer) {
+        long transactionId = buffer.getLong();
+        long businessEntityId = buffer.getLong();
+        byte[] taxTypeName = new byte[buffer.getShort()];
+        buffer.get(taxTypeName);
+        long taxRateUnscaled = buffer.getLong();
+        int taxRateScale = buffer.getInt();
+        long suspendedAtMillis = buffer.getLong();
+        int lineCount = buffer.getInt();
+        long[] productIds = new long[lineCount];
+        int[] quantities = new int[lineCount];
+        long[] priceUnscaled = new long[lineCount];
+        byte[] priceScales = new byte[lineCount];
+        for (int i = 0; i < lineCount; i++) {
+            productIds[i] = buffer.getLong();
+            quantities[i] = buffer.getInt();
+            priceUnscaled[i] = buffer.getLong();
+            priceScales[i] = buffer.get();
+        }
+        return new SalesTransactionMemento(transactionId, businessEntityId,
+                TaxType.valueOf(new String(taxTypeName, StandardCharsets.UTF_8)), taxRateUnscaled, taxRateScale,
+                productIds, quantities, priceUnscaled, priceScales, suspendedAtMillis);
+    }
+
+    public int encodedSize() {
+        return 8 + 8 + 2 + taxType.name().getBytes(StandardCharsets.UTF_8).length + 8 + 4 + 8 + 4
+                + productIds.length * (8 + 4 + 8 + 1);
+    }
+
+    /**
+     * Writes the memento in a fixed binary layout; the tax type is written by name so it survives enum reordering.
+     */
+    public void encode(ByteBuffer buffer) {
+        byte[] taxTypeName = taxType.name().getBytes(StandardCharsets.UTF_8);
+        buffer.putLong(transactionId);
+        buffer.putLong(businessEntityId);
+        buffer.putShort((short) taxTypeName.length);
+        buffer.put(taxTypeName);
+        buffer.putLong(taxRateUnscaled);
+        buffer.putInt(taxRateScale);
+        buffer.putLong(suspendedAtMillis);
+        buffer.putInt(productIds.length);
+        for (int i = 0; i < productIds.length; i++) {
+            buffer.putLong(productIds[i]);
+            buffer.putInt(quantities[i]);
+            buffer.putLong(priceUnscaled[i]);
+            buffer.put(priceScales[i]);
+        }
+    }
+
+    public long transactionId() {
+        return transactionId;
+    }
+
+    public long businessEntityId() {
+        return businessEntityId;
+    }
+
+    public long suspendedAtMillis() {
+        return suspendedAtMillis;
+    }
+
+    public int lineCount() {
+        return productIds.length;
+    }
+
+    /**
+     * Decodes the tax the sale was suspended with.
+     */
+    public SalesTax salesTax() {
+        return new SalesTax(taxType, BigDecimal.valueOf(taxRateUnscaled, taxRateScale));
+    }
+
+    /**
+     * Decodes the lines of the sale; each call returns new, unattached lines.
+     */
+    public List<SalesDetails> salesDetails() {
+        List<SalesDetails> salesDetails = new ArrayList<>(productIds.length);
+        for (int i = 0; i < productIds.length; i++) {
+            salesDetails.add(new SalesDetails(productIds[i], quantities[i], BigDecimal.valueOf(priceUnscaled[i], priceScales[i])));
+        }
+        return salesDetails;
+    }
+
+    public Instant suspendedAt() {
+        return Instant.ofEpochMilli(suspendedAtMillis);
+    }
 }
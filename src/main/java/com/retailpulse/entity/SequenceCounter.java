@@ -0,0 +1,16 @@
+package com.retailpulse.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Entity
+@NoArgsConstructor
+public class SequenceCounter {
+
+    @Id
+    private String name; // One row per sequence, e.g. "suspended-transaction"
+
+    private Long counter;
+}
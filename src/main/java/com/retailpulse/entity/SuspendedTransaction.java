@@ -0,0 +1,70 @@
+package com.retailpulse.entity;
+
+import jakarta.persistence.*;
+import lombok.AccessLevel;
+import lombok.Getter;
+import org.springframework.data.domain.Persistable;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+
+/**
+ * A suspended sale shared by every node, stored as its compact {@link SalesTransactionMemento} encoding.
+ * <p>
+ * Its key is assigned before it is saved, so it tells Spring Data itself whether it is new; otherwise every
+ * save would be a merge that selects the row before inserting it.
+ */
+@Getter
+@Entity
+@IdClass(SuspendedTransactionKey.class)
+public class SuspendedTransaction implements Persistable<SuspendedTransactionKey> {
+
+    @Id
+    private Long businessEntityId;
+
+    @Id
+    private Long transactionId;
+
+    @Lob
+    @Column(nullable = false)
+    private byte[] memento;
+
+    @Column(nullable = false)
+    private Instant suspendedAt;
+
+    @Transient
+    @Getter(AccessLevel.NONE)
+    private boolean persisted;
+
+    protected SuspendedTransaction() {
+    }
+
+    public SuspendedTransaction(SalesTransactionMemento memento) {
+        this.businessEntityId = memento.businessEntityId();
+        this.transactionId = memento.transactionId();
+        ByteBuffer buffer = ByteBuffer.allocate(memento.encodedSize());
+        memento.encode(buffer);
+        this.memento = buffer.array();
+        this.suspendedAt = memento.suspendedAt();
+    }
+
+    public SalesTransactionMemento toMemento() {
+        return SalesTransactionMemento.decode(ByteBuffer.wrap(memento));
+    }
+
+    @Override
+    public SuspendedTransactionKey getId() {
+        return new SuspendedTransactionKey(businessEntityId, transactionId);
+    }
+
+    @Override
+    public boolean isNew() {
+        return !persisted;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markPersisted() {
+        persisted = true;
+    }
+}
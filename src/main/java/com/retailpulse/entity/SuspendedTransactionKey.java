@@ -0,0 +1,17 @@
+package com.retailpulse.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SuspendedTransactionKey implements Serializable {
+
+    private Long businessEntityId;
+
+    private Long transactionId;
+}
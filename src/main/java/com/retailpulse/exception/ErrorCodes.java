@@ -6,4 +6,8 @@ public final class ErrorCodes {
 
     public static final String NOT_FOUND = "NOT_FOUND";
     public static final String INSUFFICIENT_INVENTORY = "INSUFFICIENT_INVENTORY";
+    public static final String LIMIT_EXCEEDED = "LIMIT_EXCEEDED";
+    public static final String CHECKOUT_FAILED = "CHECKOUT_FAILED";
+    public static final String INVALID_REQUEST = "INVALID_REQUEST";
+    public static final String BATCH_REJECTED = "BATCH_REJECTED";
 }
@@ -0,0 +1,27 @@
+package com.retailpulse.repository;
+
+import com.retailpulse.entity.CacheInvalidation;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface CacheInvalidationRepository extends JpaRepository<CacheInvalidation, Long> {
+
+    List<CacheInvalidation> findByIdGreaterThanOrderByIdAsc(Long id, Limit limit);
+
+    List<CacheInvalidation> findByIdIn(Collection<Long> ids);
+
+    @Query("SELECT MAX(c.id) FROM CacheInvalidation c")
+    Optional<Long> findMaxId();
+
+    @Modifying
+    @Query("DELETE FROM CacheInvalidation c WHERE c.changedAt < :cutoff")
+    int deleteExpired(@Param("cutoff") Instant cutoff);
+}
@@ -0,0 +1,53 @@
+package com.retailpulse.repository;
+
+import com.retailpulse.entity.IdempotencyRecord;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.Optional;
+
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, String> {
+
+    // Reads the latest committed claim rather than the transaction's snapshot, and keeps it until the claim is decided
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT r FROM IdempotencyRecord r WHERE r.idempotencyKey = :idempotencyKey")
+    Optional<IdempotencyRecord> lockByIdempotencyKey(@Param("idempotencyKey") String idempotencyKey);
+
+    // Returns 0 without writing when the key is already claimed; a claim still being inserted is waited for
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "idempotency_record"))
+    @Query(value = "INSERT IGNORE INTO idempotency_record (idempotency_key, fingerprint, attempt, created_at) " +
+            "VALUES (:idempotencyKey, :fingerprint, :attempt, :createdAt)", nativeQuery = true)
+    int claim(@Param("idempotencyKey") String idempotencyKey, @Param("fingerprint") String fingerprint,
+              @Param("attempt") String attempt, @Param("createdAt") Instant createdAt);
+
+    // Takes over an abandoned claim or an expired record, provided no other attempt took it over first
+    @Modifying
+    @Query("UPDATE IdempotencyRecord r SET r.fingerprint = :fingerprint, r.attempt = :attempt, r.response = NULL, " +
+            "r.createdAt = :createdAt WHERE r.idempotencyKey = :idempotencyKey AND r.attempt = :previousAttempt")
+    int reclaim(@Param("idempotencyKey") String idempotencyKey, @Param("previousAttempt") String previousAttempt,
+                @Param("fingerprint") String fingerprint, @Param("attempt") String attempt,
+                @Param("createdAt") Instant createdAt);
+
+    @Modifying
+    @Query("UPDATE IdempotencyRecord r SET r.response = :response, r.createdAt = :createdAt " +
+            "WHERE r.idempotencyKey = :idempotencyKey AND r.attempt = :attempt AND r.response IS NULL")
+    int complete(@Param("idempotencyKey") String idempotencyKey, @Param("attempt") String attempt,
+                 @Param("response") String response, @Param("createdAt") Instant createdAt);
+
+    @Modifying
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.idempotencyKey = :idempotencyKey AND r.attempt = :attempt AND r.response IS NULL")
+    int release(@Param("idempotencyKey") String idempotencyKey, @Param("attempt") String attempt);
+
+    @Modifying
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.createdAt < :cutoff")
+    int deleteExpired(@Param("cutoff") Instant cutoff);
+}
@@ -1,15 +1,27 @@
 package com.retailpulse.repository;
 
 import com.retailpulse.entity.Inventory;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface InventoryRepository extends JpaRepository<Inventory, Long> {
+public interface InventoryRepository extends JpaRepository<Inventory, Long>, InventoryRepositoryCustom {
     Optional<Inventory> findByProductIdAndBusinessEntityId(long productId, long businessEntityId);
     List<Inventory> findByProductId(Long productId);
     List<Inventory> findByBusinessEntityId(Long businessEntityId);
+
+    // Rows are locked in (businessEntityId, productId) order, which is the order of the unique index scan
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT i FROM Inventory i WHERE i.businessEntityId = :businessEntityId AND i.productId IN :productIds " +
+            "ORDER BY i.businessEntityId, i.productId")
+    List<Inventory> lockByBusinessEntityIdAndProductIdIn(@Param("businessEntityId") long businessEntityId,
+                                                         @Param("productIds") Collection<Long> productIds);
 }
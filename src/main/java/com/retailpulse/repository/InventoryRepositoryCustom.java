@@ -0,0 +1,75 @@
+package com.retailpulse.repository;
+
+import com.retailpulse.DTO.InventoryDeltaDto;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Set-based inventory operations that go straight to JDBC so a whole basket costs a constant
+ * number of round trips instead of one SELECT and one UPDATE per line.
+ */
+public interface InventoryRepositoryCustom {
+
+    /**
+     * Reads the current quantity of every listed product held by a business entity in one keyed query,
+     * including stock held in inventory slots. Products without an inventory row are absent from the returned map.
+     */
+    Map<Long, Integer> findQuantitiesByProductId(long businessEntityId, Collection<Long> productIds);
+
+    /**
+     * Reads the quantity of every listed product's inventory row in one keyed query, leaving out inventory slots.
+     * Cheaper than {@link #findQuantitiesByProductId} while no product has slots.
+     */
+    Map<Long, Integer> findRowQuantitiesByProductId(long businessEntityId, Collection<Long> productIds);
+
+    /**
+     * Deducts quantities as one JDBC batch. A row is only updated while it still holds enough stock,
+     * and rows are touched in the iteration order of {@code quantitiesByProductId}.
+     *
+     * @return the product ids whose row was missing or no longer held enough stock
+     */
+    List<Long> deductQuantities(long businessEntityId, Map<Long, Integer> quantitiesByProductId);
+
+    /**
+     * Adds quantities as one JDBC batch, in the iteration order of {@code quantitiesByProductId}.
+     *
+     * @return the product ids that have no inventory row for the business entity
+     */
+    List<Long> addQuantities(long businessEntityId, Map<Long, Integer> quantitiesByProductId);
+
+    /**
+     * Applies signed quantity changes as one JDBC batch, in the iteration order of {@code deltasByProductId}.
+     * A negative change is only applied while the row still holds enough stock; a positive one always is.
+     *
+     * @return the product ids whose row was missing, or no longer held enough stock for a negative change
+     */
+    List<Long> applyQuantityDeltas(long businessEntityId, Map<Long, Integer> deltasByProductId);
+
+    /**
+     * Takes the quantity and cost price of each delta out of the business entity's rows as one JDBC batch.
+     * A row is only updated while it still holds at least the quantity, and rows are touched in the
+     * iteration order of {@code deltasByProductId}.
+     *
+     * @return the product ids whose row was missing or no longer held enough stock
+     */
+    List<Long> deductStock(long businessEntityId, Map<Long, InventoryDeltaDto> deltasByProductId);
+
+    /**
+     * Adds the quantity and cost price of each delta to the business entity's rows as one JDBC batch of upserts,
+     * creating the rows of products the business entity does not hold yet.
+     */
+    void addStock(long businessEntityId, Map<Long, InventoryDeltaDto> deltasByProductId);
+
+    /**
+     * Streams every inventory row of a business entity in product id order, with its quantity including stock held
+     * in inventory slots. A plain read, so it takes no row locks.
+     */
+    void readStockLevels(long businessEntityId, StockLevelHandler handler);
+
+    @FunctionalInterface
+    interface StockLevelHandler {
+        void accept(long productId, int quantity, double totalCostPrice);
+    }
+}
@@ -0,0 +1,207 @@
+package com.retailpulse.repository;
+
+import com.retailpulse.DTO.InventoryDeltaDto;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.IncorrectUpdateSemanticsDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.sql.Statement;
+import java.util.*;
+import java.util.function.Function;
+
+public class InventoryRepositoryCustomImpl implements InventoryRepositoryCustom {
+
+    private static final Logger LOG = LoggerFactory.getLogger(InventoryRepositoryCustomImpl.class);
+
+    // Hot products keep part of their stock in inventory_slot rows, which count towards the available quantity
+    private static final String SELECT_QUANTITIES =
+            "SELECT i.product_id, i.quantity + COALESCE(SUM(s.quantity), 0) AS quantity FROM inventory i " +
+            "LEFT JOIN inventory_slot s ON s.business_entity_id = i.business_entity_id AND s.product_id = i.product_id " +
+            "WHERE i.business_entity_id = :businessEntityId AND i.product_id IN (:productIds) " +
+            "GROUP BY i.product_id, i.quantity";
+    private static final String SELECT_STOCK_LEVELS =
+            "SELECT i.product_id, i.quantity + COALESCE(SUM(s.quantity), 0) AS quantity, i.total_cost_price FROM inventory i " +
+            "LEFT JOIN inventory_slot s ON s.business_entity_id = i.business_entity_id AND s.product_id = i.product_id " +
+            "WHERE i.business_entity_id = ? " +
+            "GROUP BY i.product_id, i.quantity, i.total_cost_price ORDER BY i.product_id";
+    private static final String SELECT_ROW_QUANTITIES =
+            "SELECT product_id, quantity FROM inventory WHERE business_entity_id = :businessEntityId AND product_id IN (:productIds)";
+    private static final String LOCK_ROW_QUANTITIES = SELECT_ROW_QUANTITIES + " ORDER BY product_id FOR UPDATE";
+    private static final String DEDUCT_QUANTITY =
+            "UPDATE inventory SET quantity = quantity - ? WHERE business_entity_id = ? AND product_id = ? AND quantity >= ?";
+    private static final String ADD_QUANTITY =
+            "UPDATE inventory SET quantity = quantity + ? WHERE business_entity_id = ? AND product_id = ?";
+    // The guard only applies to negative deltas, so returns and deductions share one statement and one batch
+    private static final String APPLY_QUANTITY_DELTA =
+            "UPDATE inventory SET quantity = quantity + ? WHERE business_entity_id = ? AND product_id = ? AND (? >= 0 OR quantity >= ?)";
+    private static final String DEDUCT_STOCK =
+            "UPDATE inventory SET quantity = quantity - ?, total_cost_price = total_cost_price - ? " +
+            "WHERE business_entity_id = ? AND product_id = ? AND quantity >= ?";
+    // Relies on the (business_entity_id, product_id) unique key to turn a second insert of the same row into an update
+    private static final String UPSERT_STOCK =
+            "INSERT INTO inventory (business_entity_id, product_id, quantity, total_cost_price) VALUES (?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE quantity = quantity + VALUES(quantity), " +
+            "total_cost_price = total_cost_price + VALUES(total_cost_price)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    // Set once the driver answered a batch with SUCCESS_NO_INFO (-2) instead of a count per statement, as drivers
+    // that rewrite or bulk-send batches do. Guarded batches then lock and read their rows first to check against.
+    private volatile boolean updateCountsUnreported;
+
+    public InventoryRepositoryCustomImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+    }
+
+    @Override
+    public Map<Long, Integer> findQuantitiesByProductId(long businessEntityId, Collection<Long> productIds) {
+        Map<Long, Integer> quantities = new HashMap<>();
+        if (productIds.isEmpty()) {
+            return quantities;
+        }
+
+        MapSqlParameterSource parameters = new MapSqlParameterSource()
+                .addValue("businessEntityId", businessEntityId)
+                .addValue("productIds", productIds);
+        RowCallbackHandler collectQuantity = rs -> quantities.put(rs.getLong("product_id"), rs.getInt("quantity"));
+        namedParameterJdbcTemplate.query(SELECT_QUANTITIES, parameters, collectQuantity);
+        return quantities;
+    }
+
+    @Override
+    public Map<Long, Integer> findRowQuantitiesByProductId(long businessEntityId, Collection<Long> productIds) {
+        return productIds.isEmpty() ? new HashMap<>() : rowQuantities(businessEntityId, productIds, false);
+    }
+
+    @Override
+    public void readStockLevels(long businessEntityId, StockLevelHandler handler) {
+        jdbcTemplate.query(SELECT_STOCK_LEVELS,
+                (RowCallbackHandler) rs -> handler.accept(rs.getLong("product_id"), rs.getInt("quantity"), rs.getDouble("total_cost_price")),
+                businessEntityId);
+    }
+
+    @Override
+    public List<Long> deductQuantities(long businessEntityId, Map<Long, Integer> quantitiesByProductId) {
+        List<Long> productIds = new ArrayList<>(quantitiesByProductId.keySet());
+        List<Object[]> batchArgs = productIds.stream()
+                .map(productId -> {
+                    int quantity = quantitiesByProductId.get(productId);
+                    return new Object[]{quantity, businessEntityId, productId, quantity};
+                })
+                .toList();
+
+        return guardedDeduct(DEDUCT_QUANTITY, businessEntityId, productIds, quantitiesByProductId::get, batchArgs);
+    }
+
+    @Override
+    public List<Long> addQuantities(long businessEntityId, Map<Long, Integer> quantitiesByProductId) {
+        List<Long> productIds = new ArrayList<>(quantitiesByProductId.keySet());
+        List<Object[]> batchArgs = productIds.stream()
+                .map(productId -> new Object[]{quantitiesByProductId.get(productId), businessEntityId, productId})
+                .toList();
+
+        int[] updateCounts = jdbcTemplate.batchUpdate(ADD_QUANTITY, batchArgs);
+        List<Long> unmatched = productIdsWithCount(productIds, updateCounts, 0);
+        List<Long> unreported = productIdsWithCount(productIds, updateCounts, Statement.SUCCESS_NO_INFO);
+        if (!unreported.isEmpty()) {
+            // An unguarded add matches whenever the row exists
+            Set<Long> existing = rowQuantities(businessEntityId, unreported, false).keySet();
+            unmatched.addAll(unreported.stream().filter(productId -> !existing.contains(productId)).toList());
+        }
+        return unmatched;
+    }
+
+    @Override
+    public List<Long> applyQuantityDeltas(long businessEntityId, Map<Long, Integer> deltasByProductId) {
+        List<Long> productIds = new ArrayList<>(deltasByProductId.keySet());
+        List<Object[]> batchArgs = productIds.stream()
+                .map(productId -> {
+                    int delta = deltasByProductId.get(productId);
+                    return new Object[]{delta, businessEntityId, productId, delta, -delta};
+                })
+                .toList();
+
+        return guardedDeduct(APPLY_QUANTITY_DELTA, businessEntityId, productIds, productId -> -deltasByProductId.get(productId), batchArgs);
+    }
+
+    @Override
+    public List<Long> deductStock(long businessEntityId, Map<Long, InventoryDeltaDto> deltasByProductId) {
+        List<Long> productIds = new ArrayList<>(deltasByProductId.keySet());
+        List<Object[]> batchArgs = productIds.stream()
+                .map(productId -> {
+                    InventoryDeltaDto delta = deltasByProductId.get(productId);
+                    return new Object[]{delta.quantity(), delta.costPrice(), businessEntityId, productId, delta.quantity()};
+                })
+                .toList();
+
+        return guardedDeduct(DEDUCT_STOCK, businessEntityId, productIds, productId -> deltasByProductId.get(productId).quantity(), batchArgs);
+    }
+
+    @Override
+    public void addStock(long businessEntityId, Map<Long, InventoryDeltaDto> deltasByProductId) {
+        List<Object[]> batchArgs = deltasByProductId.entrySet().stream()
+                .map(entry -> new Object[]{businessEntityId, entry.getKey(), entry.getValue().quantity(), entry.getValue().costPrice()})
+                .toList();
+
+        jdbcTemplate.batchUpdate(UPSERT_STOCK, batchArgs);
+    }
+
+    /**
+     * Runs a batch of updates guarded by {@code quantity >= ?} and returns the products whose row was missing or short.
+     * A count of SUCCESS_NO_INFO says nothing about whether the guard held, so once a driver has answered with one,
+     * the rows are locked and read before the batch and read again after it: a row matched only if it dropped by
+     * exactly its quantity, which the lock makes certain. The batch that first shows the driver's behaviour has no
+     * such reading and is failed, rolling its transaction back, rather than guessed at.
+     */
+    private List<Long> guardedDeduct(String sql, long businessEntityId, List<Long> productIds,
+                                     Function<Long, Integer> quantityOf, List<Object[]> batchArgs) {
+        Map<Long, Integer> before = updateCountsUnreported && !productIds.isEmpty()
+                ? rowQuantities(businessEntityId, productIds, true) : null;
+        int[] updateCounts = jdbcTemplate.batchUpdate(sql, batchArgs);
+        List<Long> unmatched = productIdsWithCount(productIds, updateCounts, 0);
+        List<Long> unreported = productIdsWithCount(productIds, updateCounts, Statement.SUCCESS_NO_INFO);
+        if (unreported.isEmpty()) {
+            return unmatched;
+        }
+        if (before == null) {
+            updateCountsUnreported = true;
+            LOG.warn("JDBC driver reports no update counts for batched inventory updates; guarded batches will read their rows back");
+            throw new IncorrectUpdateSemanticsDataAccessException(
+                    "Cannot tell which guarded inventory updates matched for product id: " + unreported);
+        }
+
+        Map<Long, Integer> after = rowQuantities(businessEntityId, unreported, false);
+        Set<Long> unmatchedIds = new HashSet<>(unmatched);
+        unreported.stream()
+                .filter(productId -> !before.containsKey(productId) || !after.containsKey(productId)
+                        || after.get(productId) != before.get(productId) - quantityOf.apply(productId))
+                .forEach(unmatchedIds::add);
+        return productIds.stream().filter(unmatchedIds::contains).toList();
+    }
+
+    private Map<Long, Integer> rowQuantities(long businessEntityId, Collection<Long> productIds, boolean lock) {
+        Map<Long, Integer> quantities = new HashMap<>();
+        MapSqlParameterSource parameters = new MapSqlParameterSource()
+                .addValue("businessEntityId", businessEntityId)
+                .addValue("productIds", productIds);
+        namedParameterJdbcTemplate.query(lock ? LOCK_ROW_QUANTITIES : SELECT_ROW_QUANTITIES, parameters,
+                (RowCallbackHandler) rs -> quantities.put(rs.getLong("product_id"), rs.getInt("quantity")));
+        return quantities;
+    }
+
+    private static List<Long> productIdsWithCount(List<Long> productIds, int[] updateCounts, int count) {
+        List<Long> matching = new ArrayList<>();
+        for (int i = 0; i < updateCounts.length; i++) {
+            if (updateCounts[i] == count) {
+                matching.add(productIds.get(i));
+            }
+        }
+        return matching;
+    }
+}
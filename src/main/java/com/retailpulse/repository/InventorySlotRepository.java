@@ -0,0 +1,45 @@
+package com.retailpulse.repository;
+
+import com.retailpulse.DTO.InventorySlotTotalDto;
+import com.retailpulse.entity.InventorySlot;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface InventorySlotRepository extends JpaRepository<InventorySlot, Long> {
+
+    // Slots are always locked in slot order, before the inventory row of the same product
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM InventorySlot s WHERE s.businessEntityId = :businessEntityId AND s.productId = :productId " +
+            "ORDER BY s.slotIndex")
+    List<InventorySlot> lockSlots(@Param("businessEntityId") long businessEntityId, @Param("productId") long productId);
+
+    @Modifying
+    @Query("UPDATE InventorySlot s SET s.quantity = s.quantity - :quantity WHERE s.businessEntityId = :businessEntityId " +
+            "AND s.productId = :productId AND s.slotIndex = :slotIndex AND s.quantity >= :quantity")
+    int deductFromSlot(@Param("businessEntityId") long businessEntityId, @Param("productId") long productId,
+                       @Param("slotIndex") int slotIndex, @Param("quantity") int quantity);
+
+    @Modifying
+    @Query("UPDATE InventorySlot s SET s.quantity = s.quantity + :quantity WHERE s.businessEntityId = :businessEntityId " +
+            "AND s.productId = :productId AND s.slotIndex = :slotIndex")
+    int addToSlot(@Param("businessEntityId") long businessEntityId, @Param("productId") long productId,
+                  @Param("slotIndex") int slotIndex, @Param("quantity") int quantity);
+
+    /**
+     * Sums slot stock per product and business entity. A null filter matches every value.
+     */
+    @Query("SELECT new com.retailpulse.DTO.InventorySlotTotalDto(s.productId, s.businessEntityId, SUM(s.quantity)) " +
+            "FROM InventorySlot s WHERE (:productId IS NULL OR s.productId = :productId) " +
+            "AND (:businessEntityId IS NULL OR s.businessEntityId = :businessEntityId) " +
+            "GROUP BY s.productId, s.businessEntityId")
+    List<InventorySlotTotalDto> sumSlotQuantities(@Param("productId") Long productId,
+                                                  @Param("businessEntityId") Long businessEntityId);
+}
@@ -1,12 +1,33 @@
 package com.retailpulse.repository;
 
+import com.retailpulse.entity.CacheRegions;
 import com.retailpulse.entity.Product;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface ProductRepository extends JpaRepository<Product, Long> {
+    // Served from the query cache until a write to the product table invalidates it
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = CacheRegions.PRODUCT_BY_SKU)
+    })
     Optional<Product> findBySku(String sku);
+
+    Optional<Product> findFirstByBarcodeAndActiveTrue(String barcode);
+
+    List<Product> findByActiveTrueAndBarcodeIsNotNull();
+
+    List<Product> findByActiveTrue();
+
+    List<Product> findByBarcodeIn(Collection<String> barcodes);
+
+    List<Product> findByVendorCodeIn(Collection<String> vendorCodes);
 }
@@ -1,9 +1,12 @@
 package com.retailpulse.repository;
 
 import com.retailpulse.entity.SKUCounter;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
@@ -13,10 +16,18 @@ import java.util.Optional;
 public interface SKUCounterRepository extends JpaRepository<SKUCounter, Long> {
     Optional<SKUCounter> findByName(String name);
 
+    // Naming the table the native updates touch keeps Hibernate from evicting the whole second-level cache
     @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "skucounter"))
     @Query(value = "UPDATE skucounter SET counter = LAST_INSERT_ID(counter + 1) WHERE name = :name", nativeQuery = true)
     void incrementAndStore(@Param("name") String name);
 
+    // Reserves the next blockSize values; LAST_INSERT_ID() then returns the last of them
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "skucounter"))
+    @Query(value = "UPDATE skucounter SET counter = LAST_INSERT_ID(counter + :blockSize) WHERE name = :name", nativeQuery = true)
+    void incrementAndStoreBy(@Param("name") String name, @Param("blockSize") int blockSize);
+
     @Query(value = "SELECT LAST_INSERT_ID()", nativeQuery = true)
     Long getLastInsertedId();
 
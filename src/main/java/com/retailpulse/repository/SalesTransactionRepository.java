@@ -1,9 +1,29 @@
 package com.retailpulse.repository;
 
+import com.retailpulse.DTO.PendingStockDto;
 import com.retailpulse.entity.SalesTransaction;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+
 @Repository
 public interface SalesTransactionRepository extends JpaRepository<SalesTransaction, Long> {
+
+    @Query("SELECT new com.retailpulse.DTO.PendingStockDto(d.productId, t.businessEntityId, SUM(d.quantity)) " +
+            "FROM SalesDetails d JOIN d.salesTransaction t WHERE t.stockPending = true " +
+            "GROUP BY d.productId, t.businessEntityId")
+    List<PendingStockDto> sumPendingStock();
+
+    @Modifying
+    @Query("UPDATE SalesTransaction t SET t.stockPending = false WHERE t.id IN :ids")
+    int clearStockPending(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query("UPDATE SalesTransaction t SET t.stockPending = false WHERE t.stockPending = true")
+    int clearAllStockPending();
 }
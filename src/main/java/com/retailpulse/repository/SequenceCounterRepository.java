@@ -0,0 +1,32 @@
+package com.retailpulse.repository;
+
+import com.retailpulse.entity.SequenceCounter;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface SequenceCounterRepository extends JpaRepository<SequenceCounter, String> {
+
+    // Creates the counter at 1 or increments it in one statement, so nodes drawing the first value together cannot
+    // race; LAST_INSERT_ID() then returns the value drawn on this connection
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "sequence_counter"))
+    @Query(value = "INSERT INTO sequence_counter (name, counter) VALUES (:name, LAST_INSERT_ID(1)) " +
+            "ON DUPLICATE KEY UPDATE counter = LAST_INSERT_ID(counter + 1)", nativeQuery = true)
+    void incrementAndStore(@Param("name") String name);
+
+    // Creates the counter at floor unless it exists; a no-op on every later call
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "sequence_counter"))
+    @Query(value = "INSERT IGNORE INTO sequence_counter (name, counter) VALUES (:name, :floor)", nativeQuery = true)
+    void createIfMissing(@Param("name") String name, @Param("floor") long floor);
+
+    @Query(value = "SELECT LAST_INSERT_ID()", nativeQuery = true)
+    Long getLastInsertedId();
+}
@@ -0,0 +1,31 @@
+package com.retailpulse.repository;
+
+import com.retailpulse.entity.SuspendedTransaction;
+import com.retailpulse.entity.SuspendedTransactionKey;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.List;
+
+public interface SuspendedTransactionRepository extends JpaRepository<SuspendedTransaction, SuspendedTransactionKey> {
+
+    List<SuspendedTransaction> findByBusinessEntityIdAndSuspendedAtAfterOrderByTransactionId(Long businessEntityId, Instant cutoff);
+
+    long countByBusinessEntityIdAndSuspendedAtAfter(Long businessEntityId, Instant cutoff);
+
+    long countBySuspendedAtAfter(Instant cutoff);
+
+    @Query("SELECT COALESCE(MAX(s.transactionId), 0) FROM SuspendedTransaction s")
+    long findMaxTransactionId();
+
+    @Modifying
+    @Query("DELETE FROM SuspendedTransaction s WHERE s.businessEntityId = :businessEntityId AND s.transactionId = :transactionId")
+    int deleteTransaction(@Param("businessEntityId") Long businessEntityId, @Param("transactionId") Long transactionId);
+
+    @Modifying
+    @Query("DELETE FROM SuspendedTransaction s WHERE s.suspendedAt < :cutoff")
+    int deleteExpired(@Param("cutoff") Instant cutoff);
+}
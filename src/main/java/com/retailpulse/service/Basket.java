@@ -0,0 +1,142 @@
+package com.retailpulse.service;
+
+import com.retailpulse.controller.request.SalesDetailsDto;
+import com.retailpulse.entity.SalesTax;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An open POS basket. The subtotal is kept up to date as lines change, so every scan costs the same no matter
+ * how many lines the basket already holds. Callers synchronize on the basket.
+ */
+final class Basket {
+
+    private final String id;
+    private final long businessEntityId;
+    private final SalesTax salesTax;
+    private final Map<Long, Line> lines = new LinkedHashMap<>();
+    private BigDecimal subtotal = BigDecimal.ZERO;
+    private volatile long lastAccessMillis;
+    // Set once the basket leaves the store, e.g. for checkout; a change made after that would be lost
+    private boolean closed;
+
+    Basket(String id, long businessEntityId, SalesTax salesTax) {
+        this.id = id;
+        this.businessEntityId = businessEntityId;
+        this.salesTax = salesTax;
+        this.lastAccessMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * Adds a quantity of a product. Scanning a product already in the basket adds to its line and takes the
+     * new price.
+     */
+    void addLine(long productId, int quantity, BigDecimal salesPricePerUnit) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be positive for product id: " + productId);
+        }
+        Line line = lines.get(productId);
+        setLine(productId, line == null ? quantity : line.quantity() + quantity, salesPricePerUnit);
+    }
+
+    /**
+     * Sets the quantity of a product line; a quantity of zero removes the line.
+     */
+    void changeQuantity(long productId, int quantity) {
+        Line line = lines.get(productId);
+        if (line == null) {
+            throw new IllegalArgumentException("Product id: " + productId + " is not in basket: " + id);
+        }
+        if (quantity == 0) {
+            removeLine(productId);
+        } else {
+            setLine(productId, quantity, line.salesPricePerUnit());
+        }
+    }
+
+    void removeLine(long productId) {
+        Line line = lines.remove(productId);
+        if (line == null) {
+            throw new IllegalArgumentException("Product id: " + productId + " is not in basket: " + id);
+        }
+        subtotal = subtotal.subtract(line.lineTotal());
+    }
+
+    String getId() {
+        return id;
+    }
+
+    long getBusinessEntityId() {
+        return businessEntityId;
+    }
+
+    SalesTax getSalesTax() {
+        return salesTax;
+    }
+
+    int getLineCount() {
+        return lines.size();
+    }
+
+    BigDecimal getSubtotal() {
+        return subtotal.setScale(2, RoundingMode.HALF_UP);
+    }
+
+    BigDecimal getTaxAmount() {
+        return salesTax.calculateTax(getSubtotal());
+    }
+
+    BigDecimal getTotal() {
+        return getSubtotal().add(getTaxAmount()).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    List<SalesDetailsDto> getSalesDetails() {
+        return lines.entrySet().stream()
+                .map(entry -> new SalesDetailsDto(entry.getKey(), entry.getValue().quantity(),
+                        entry.getValue().salesPricePerUnit().toString()))
+                .toList();
+    }
+
+    long getLastAccessMillis() {
+        return lastAccessMillis;
+    }
+
+    void touch() {
+        lastAccessMillis = System.currentTimeMillis();
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    void close() {
+        closed = true;
+    }
+
+    void reopen() {
+        closed = false;
+    }
+
+    private void setLine(long productId, int quantity, BigDecimal salesPricePerUnit) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be positive for product id: " + productId);
+        }
+        Line line = new Line(quantity, salesPricePerUnit);
+        Line previous = lines.put(productId, line);
+        if (previous != null) {
+            subtotal = subtotal.subtract(previous.lineTotal());
+        }
+        subtotal = subtotal.add(line.lineTotal());
+    }
+
+    private record Line(int quantity, BigDecimal salesPricePerUnit) {
+
+        BigDecimal lineTotal() {
+            return salesPricePerUnit.multiply(BigDecimal.valueOf(quantity));
+        }
+    }
+}
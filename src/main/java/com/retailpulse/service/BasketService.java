@@ -0,0 +1,277 @@
+package com.retailpulse.service;
+
+import com.retailpulse.controller.request.SalesDetailsDto;
+import com.retailpulse.controller.request.SalesTransactionRequestDto;
+import com.retailpulse.controller.request.SuspendedTransactionDto;
+import com.retailpulse.controller.response.BasketResponseDto;
+import com.retailpulse.controller.response.SalesTransactionResponseDto;
+import com.retailpulse.controller.response.TaxResultDto;
+import com.retailpulse.controller.response.TransientSalesTransactionDto;
+import com.retailpulse.entity.TaxType;
+import com.retailpulse.exception.ErrorCodes;
+import com.retailpulse.service.exception.BusinessException;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Server-side POS baskets. Each scan changes one line and gets the updated totals back without the client
+ * re-posting the whole basket. Baskets live in memory only: at most {@code basket.max-baskets} are kept, and a
+ * basket untouched for {@code basket.ttl-ms} is dropped. A basket ends by being checked out or suspended.
+ */
+@Service
+public class BasketService implements SmartLifecycle {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BasketService.class);
+
+    private final SalesTransactionService salesTransactionService;
+    private final CheckoutBatcher checkoutBatcher;
+    private final TaxRuleEngine taxRuleEngine;
+    private final Map<String, Basket> baskets = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService sweepExecutor;
+    private volatile boolean running;
+
+    @Value("${basket.max-baskets:10000}")
+    private int maxBaskets = 10000;
+
+    @Value("${basket.ttl-ms:1800000}")
+    private long ttlMs = 1800000;
+
+    @Value("${basket.sweep-interval-ms:60000}")
+    private long sweepIntervalMs = 60000;
+
+    public BasketService(SalesTransactionService salesTransactionService,
+                         CheckoutBatcher checkoutBatcher,
+                         TaxRuleEngine taxRuleEngine,
+                         MeterRegistry meterRegistry) {
+        this.salesTransactionService = salesTransactionService;
+        this.checkoutBatcher = checkoutBatcher;
+        this.taxRuleEngine = taxRuleEngine;
+        meterRegistry.gaugeMapSize("basket.open", List.of(), baskets);
+    }
+
+    /**
+     * Opens an empty basket at a store, taxed at the GST rate in effect there now.
+     */
+    public BasketResponseDto openBasket(long businessEntityId) {
+        if (baskets.size() >= maxBaskets) {
+            evictExpired();
+            if (baskets.size() >= maxBaskets) {
+                evictLeastRecentlyUsed();
+            }
+        }
+        Basket basket = new Basket(UUID.randomUUID().toString(), businessEntityId,
+                taxRuleEngine.currentRule(businessEntityId, TaxType.GST));
+        baskets.put(basket.getId(), basket);
+        return toResponseDto(basket);
+    }
+
+    public TaxResultDto getBasket(String basketId) {
+        return update(basketId, basket -> new TaxResultDto(
+                basket.getSubtotal().toString(),
+                basket.getSalesTax().getTaxType().name(),
+                basket.getSalesTax().getTaxRate().toString(),
+                basket.getTaxAmount().toString(),
+                basket.getTotal().toString(),
+                basket.getSalesDetails()));
+    }
+
+    public BasketResponseDto addLine(String basketId, SalesDetailsDto salesDetailsDto) {
+        BigDecimal salesPricePerUnit = new BigDecimal(salesDetailsDto.salesPricePerUnit());
+        return update(basketId, basket -> {
+            basket.addLine(salesDetailsDto.productId(), salesDetailsDto.quantity(), salesPricePerUnit);
+            return toResponseDto(basket);
+        });
+    }
+
+    public BasketResponseDto changeQuantity(String basketId, long productId, int quantity) {
+        return update(basketId, basket -> {
+            basket.changeQuantity(productId, quantity);
+            return toResponseDto(basket);
+        });
+    }
+
+    public BasketResponseDto removeLine(String basketId, long productId) {
+        return update(basketId, basket -> {
+            basket.removeLine(productId);
+            return toResponseDto(basket);
+        });
+    }
+
+    public void discardBasket(String basketId) {
+        take(basketId);
+    }
+
+    /**
+     * Turns the basket into a sale. The basket is closed first so a double-submitted checkout cannot sell it
+     * twice and a scan arriving meanwhile is rejected rather than lost, and reopened if the sale is rejected.
+     * After any other failure the sale may still commit, so the basket stays closed and the failure is reported
+     * as {@link ErrorCodes#CHECKOUT_FAILED}.
+     */
+    public SalesTransactionResponseDto checkout(String basketId) {
+        Basket basket = take(basketId);
+        SalesTransactionRequestDto requestDto;
+        synchronized (basket) {
+            requestDto = new SalesTransactionRequestDto(basket.getBusinessEntityId(), basket.getTaxAmount().toString(),
+                    basket.getTotal().toString(), basket.getSalesDetails());
+        }
+        try {
+            return checkoutBatcher.isEnabled()
+                    ? checkoutBatcher.createSalesTransaction(requestDto)
+                    : salesTransactionService.createSalesTransaction(requestDto);
+        } catch (RuntimeException e) {
+            if (isRejected(e)) {
+                restore(basketId, basket);
+                throw e;
+            }
+            if (e instanceof BusinessException) {
+                // The batcher's CHECKOUT_FAILED already says the outcome is not known
+                throw e;
+            }
+            LOG.warn("Checkout of basket {} failed with its outcome unknown", basketId, e);
+            throw new BusinessException(ErrorCodes.CHECKOUT_FAILED, "Checkout of basket " + basketId
+                    + " failed and its outcome is not known; check the store's sales before selling it again");
+        }
+    }
+
+    /**
+     * Moves the basket to the store's suspended transactions.
+     */
+    public List<TransientSalesTransactionDto> suspend(String basketId) {
+        Basket basket = take(basketId);
+        SuspendedTransactionDto suspendedTransactionDto;
+        synchronized (basket) {
+            suspendedTransactionDto = new SuspendedTransactionDto(basket.getBusinessEntityId(), basket.getSalesDetails());
+        }
+        try {
+            return salesTransactionService.suspendTransaction(suspendedTransactionDto);
+        } catch (RuntimeException e) {
+            restore(basketId, basket);
+            throw e;
+        }
+    }
+
+    void evictExpired() {
+        long cutoff = System.currentTimeMillis() - ttlMs;
+        baskets.values().stream()
+                .filter(basket -> basket.getLastAccessMillis() < cutoff)
+                .toList()
+                .forEach(basket -> evict(basket, cutoff));
+    }
+
+    @Override
+    public void start() {
+        sweepExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "basket-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweepExecutor.scheduleWithFixedDelay(this::evictExpired, sweepIntervalMs, sweepIntervalMs, TimeUnit.MILLISECONDS);
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        sweepExecutor.shutdownNow();
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private <T> T update(String basketId, Function<Basket, T> action) {
+        Basket basket = find(basketId);
+        synchronized (basket) {
+            // Taken for checkout, suspension or eviction since it was found
+            if (basket.isClosed()) {
+                throw new BusinessException(ErrorCodes.NOT_FOUND, "Basket not found for id: " + basketId);
+            }
+            basket.touch();
+            return action.apply(basket);
+        }
+    }
+
+    private Basket find(String basketId) {
+        Basket basket = baskets.get(basketId);
+        if (basket == null || basket.getLastAccessMillis() < System.currentTimeMillis() - ttlMs) {
+            throw new BusinessException(ErrorCodes.NOT_FOUND, "Basket not found for id: " + basketId);
+        }
+        return basket;
+    }
+
+    // Closed under the basket's lock, so every change made before is in the basket and none is made after
+    private Basket take(String basketId) {
+        Basket basket = find(basketId);
+        synchronized (basket) {
+            if (basket.isClosed() || !baskets.remove(basketId, basket)) {
+                throw new BusinessException(ErrorCodes.NOT_FOUND, "Basket not found for id: " + basketId);
+            }
+            basket.close();
+        }
+        return basket;
+    }
+
+    // A sale rejected for its stock or content was rolled back; CHECKOUT_FAILED leaves the outcome open
+    private static boolean isRejected(RuntimeException e) {
+        return e instanceof BusinessException businessException
+                ? !ErrorCodes.CHECKOUT_FAILED.equals(businessException.getErrorCode())
+                : e instanceof IllegalArgumentException;
+    }
+
+    // Puts back a basket whose checkout or suspension did not happen
+    private void restore(String basketId, Basket basket) {
+        synchronized (basket) {
+            basket.reopen();
+            basket.touch();
+        }
+        baskets.putIfAbsent(basketId, basket);
+    }
+
+    // Only reached when the store is full of live baskets, so scanning them all is rare
+    private void evictLeastRecentlyUsed() {
+        baskets.values().stream()
+                .min(Comparator.comparingLong(Basket::getLastAccessMillis))
+                .ifPresent(basket -> evict(basket, Long.MAX_VALUE));
+    }
+
+    // Skipped if the basket was used again after cutoff, since it was picked for eviction
+    private void evict(Basket basket, long cutoff) {
+        synchronized (basket) {
+            if (basket.getLastAccessMillis() < cutoff && baskets.remove(basket.getId(), basket)) {
+                basket.close();
+            }
+        }
+    }
+
+    private BasketResponseDto toResponseDto(Basket basket) {
+        return new BasketResponseDto(
+                basket.getId(),
+                basket.getBusinessEntityId(),
+                basket.getLineCount(),
+                basket.getSubtotal().toString(),
+                basket.getSalesTax().getTaxType().name(),
+                basket.getSalesTax().getTaxRate().toString(),
+                basket.getTaxAmount().toString(),
+                basket.getTotal().toString());
+    }
+}
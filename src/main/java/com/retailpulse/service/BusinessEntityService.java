@@ -3,6 +3,7 @@ package com.retailpulse.service;
 import com.retailpulse.controller.request.BusinessEntityRequestDto;
 import com.retailpulse.controller.response.BusinessEntityResponseDto;
 import com.retailpulse.entity.BusinessEntity;
+import com.retailpulse.entity.CacheRegions;
 import com.retailpulse.entity.Inventory;
 import com.retailpulse.repository.BusinessEntityRepository;
 import com.retailpulse.repository.InventoryRepository;
@@ -10,6 +11,7 @@ import com.retailpulse.service.exception.BusinessException;
 import org.jetbrains.annotations.NotNull;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.function.Consumer;
@@ -23,11 +25,14 @@ public class BusinessEntityService {
 
     private final BusinessEntityRepository businessEntityRepository;
     private final InventoryRepository inventoryRepository;
+    private final CacheInvalidationLog cacheInvalidationLog;
 
     @Autowired
-    public BusinessEntityService(BusinessEntityRepository businessEntityRepository, InventoryRepository inventoryRepository) {
+    public BusinessEntityService(BusinessEntityRepository businessEntityRepository, InventoryRepository inventoryRepository,
+                                 CacheInvalidationLog cacheInvalidationLog) {
         this.businessEntityRepository = businessEntityRepository;
         this.inventoryRepository = inventoryRepository;
+        this.cacheInvalidationLog = cacheInvalidationLog;
     }
 
     public List<BusinessEntityResponseDto> getAllBusinessEntities() {
@@ -59,9 +64,11 @@ public class BusinessEntityService {
         return businessEntityResponseDto;
     }
 
+    @Transactional
     public BusinessEntityResponseDto saveBusinessEntity(BusinessEntityRequestDto request) {
         BusinessEntity businessEntity = new BusinessEntity(request.name(), request.location(), request.type(), request.external());
         BusinessEntity savedBusinessEntity = businessEntityRepository.save(businessEntity);
+        cacheInvalidationLog.append(CacheRegions.BUSINESS_ENTITY, savedBusinessEntity.getId());
         return new BusinessEntityResponseDto(
                 savedBusinessEntity.getId(),
                 savedBusinessEntity.getName(),
@@ -72,6 +79,7 @@ public class BusinessEntityService {
         );
     }
 
+    @Transactional
     public BusinessEntityResponseDto updateBusinessEntity(Long id, BusinessEntityRequestDto businessEntityDetails) {
         BusinessEntity businessEntity = businessEntityRepository.findById(id)
                 .orElseThrow(() -> new BusinessException(BUSINESS_ENTITY_NOT_FOUND, BUSINESS_ENTITY_NOT_FOUND_DESC + id));
@@ -87,6 +95,7 @@ public class BusinessEntityService {
         updateField(businessEntityDetails.external(), businessEntity::setExternal);
 
         BusinessEntity updatedBusinessEntity = businessEntityRepository.save(businessEntity);
+        cacheInvalidationLog.append(CacheRegions.BUSINESS_ENTITY, updatedBusinessEntity.getId());
 
         return new BusinessEntityResponseDto(
                 updatedBusinessEntity.getId(),
@@ -108,6 +117,7 @@ public class BusinessEntityService {
         updater.accept(newValue);
     }
 
+    @Transactional
     public BusinessEntityResponseDto deleteBusinessEntity(Long id) {
         BusinessEntity businessEntity = businessEntityRepository.findById(id)
                 .orElseThrow(() -> new BusinessException(BUSINESS_ENTITY_NOT_FOUND, BUSINESS_ENTITY_NOT_FOUND_DESC + id));
@@ -124,6 +134,7 @@ public class BusinessEntityService {
         businessEntity.setActive(false);
 
         BusinessEntity updatedBusinessEntity = businessEntityRepository.save(businessEntity);
+        cacheInvalidationLog.append(CacheRegions.BUSINESS_ENTITY, updatedBusinessEntity.getId());
 
         return new BusinessEntityResponseDto(
                 updatedBusinessEntity.getId(),
@@ -0,0 +1,63 @@
+package com.retailpulse.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Appends changes to cached entities to the {@code cache_invalidation} table, for {@link CacheInvalidationPoller} on
+ * the other nodes to evict. Called inside the transaction that makes the change, the entries commit or roll back
+ * with it.
+ */
+@Component
+public class CacheInvalidationLog {
+
+    private static final String INSERT = "INSERT INTO cache_invalidation (entity_type, entity_id, origin, changed_at) VALUES (?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String origin = UUID.randomUUID().toString();
+
+    // Off for a single node, which has no other caches to keep in line
+    @Value("${cache.invalidation.enabled:true}")
+    private boolean enabled = true;
+
+    public CacheInvalidationLog(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Identifies this node in the entries it appends.
+     */
+    public String origin() {
+        return origin;
+    }
+
+    /**
+     * Records that the given entities of one {@link com.retailpulse.entity.CacheRegions} region have changed.
+     */
+    public void append(String entityType, Collection<Long> entityIds) {
+        if (!enabled) {
+            return;
+        }
+        List<Object[]> batchArgs = entityIds.stream()
+                .filter(Objects::nonNull)
+                .distinct()
+                .map(entityId -> new Object[]{entityType, entityId, origin, Timestamp.from(Instant.now())})
+                .toList();
+        if (!batchArgs.isEmpty()) {
+            // One JDBC batch, sent as a multi-row INSERT, however many entities changed
+            jdbcTemplate.batchUpdate(INSERT, batchArgs);
+        }
+    }
+
+    public void append(String entityType, Long entityId) {
+        append(entityType, List.of(entityId));
+    }
+}
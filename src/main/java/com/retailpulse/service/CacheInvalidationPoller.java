@@ -0,0 +1,250 @@
+package com.retailpulse.service;
+
+import com.retailpulse.entity.BusinessEntity;
+import com.retailpulse.entity.CacheInvalidation;
+import com.retailpulse.entity.CacheRegions;
+import com.retailpulse.entity.Product;
+import com.retailpulse.entity.SalesTax;
+import com.retailpulse.repository.CacheInvalidationRepository;
+import com.retailpulse.repository.ProductRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.persistence.Cache;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps this node's caches in line with changes made on other nodes, without a message broker. Every
+ * {@code cache.invalidation.poll-interval-ms} it reads the {@code cache_invalidation} entries appended since the last
+ * poll by {@link CacheInvalidationLog} and, for each changed entity, evicts it from the second-level cache and
+ * refreshes the in-memory product indexes or tax rules. A change is therefore seen everywhere within about one poll
+ * interval of its commit; the delay is recorded in {@code cache.invalidation.lag}.
+ * <p>
+ * Ids are taken in insert order but commit in any order, so an id skipped by a poll may belong to a transaction that
+ * has not committed yet. Skipped ids are looked up again on each poll for {@code cache.invalidation.gap-timeout-ms}.
+ * If polling has failed for longer than entries are kept, everything is evicted, as entries may have been missed.
+ */
+@Component
+public class CacheInvalidationPoller implements SmartLifecycle {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CacheInvalidationPoller.class);
+
+    // A larger jump in ids is taken as ids lost to rolled-back inserts rather than commits still to come
+    private static final int MAX_TRACKED_GAP = 1000;
+
+    private final CacheInvalidationRepository cacheInvalidationRepository;
+    private final CacheInvalidationLog cacheInvalidationLog;
+    private final EntityManagerFactory entityManagerFactory;
+    private final ProductRepository productRepository;
+    private final ProductBarcodeIndex productBarcodeIndex;
+    private final ProductSearchIndex productSearchIndex;
+    private final TaxRuleEngine taxRuleEngine;
+    private final TransactionTemplate transactionTemplate;
+    private final Timer lagTimer;
+    private final Counter appliedCounter;
+
+    // Guarded by this; polls never overlap
+    private long cursor;
+    private final Map<Long, Long> missingSince = new HashMap<>();
+    private volatile long lastPollMillis = System.currentTimeMillis();
+    private ScheduledExecutorService pollExecutor;
+    private volatile boolean running;
+
+    @Value("${cache.invalidation.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${cache.invalidation.poll-interval-ms:500}")
+    private long pollIntervalMs = 500;
+
+    @Value("${cache.invalidation.batch-size:1000}")
+    private int batchSize = 1000;
+
+    @Value("${cache.invalidation.gap-timeout-ms:10000}")
+    private long gapTimeoutMs = 10000;
+
+    @Value("${cache.invalidation.retention-ms:3600000}")
+    private long retentionMs = 3600000;
+
+    @Value("${cache.invalidation.sweep-interval-ms:60000}")
+    private long sweepIntervalMs = 60000;
+
+    public CacheInvalidationPoller(CacheInvalidationRepository cacheInvalidationRepository,
+                                   CacheInvalidationLog cacheInvalidationLog,
+                                   EntityManagerFactory entityManagerFactory,
+                                   ProductRepository productRepository,
+                                   ProductBarcodeIndex productBarcodeIndex,
+                                   ProductSearchIndex productSearchIndex,
+                                   TaxRuleEngine taxRuleEngine,
+                                   PlatformTransactionManager transactionManager,
+                                   MeterRegistry meterRegistry) {
+        this.cacheInvalidationRepository = cacheInvalidationRepository;
+        this.cacheInvalidationLog = cacheInvalidationLog;
+        this.entityManagerFactory = entityManagerFactory;
+        this.productRepository = productRepository;
+        this.productBarcodeIndex = productBarcodeIndex;
+        this.productSearchIndex = productSearchIndex;
+        this.taxRuleEngine = taxRuleEngine;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.lagTimer = Timer.builder("cache.invalidation.lag")
+                .description("Time from a change on another node to its eviction on this one")
+                .register(meterRegistry);
+        this.appliedCounter = meterRegistry.counter("cache.invalidation.applied");
+        meterRegistry.gauge("cache.invalidation.poll.age", this, poller -> System.currentTimeMillis() - poller.lastPollMillis);
+    }
+
+    /**
+     * Reads and applies the entries appended since the last poll.
+     */
+    public synchronized void poll() {
+        long now = System.currentTimeMillis();
+        if (now - lastPollMillis > retentionMs) {
+            LOG.warn("No cache invalidations read for {} ms, longer than they are kept; evicting all cached entities",
+                    now - lastPollMillis);
+            evictAll();
+        }
+
+        if (!missingSince.isEmpty()) {
+            List<CacheInvalidation> late = cacheInvalidationRepository.findByIdIn(Set.copyOf(missingSince.keySet()));
+            late.forEach(entry -> missingSince.remove(entry.getId()));
+            apply(late);
+            missingSince.values().removeIf(since -> now - since > gapTimeoutMs);
+        }
+
+        List<CacheInvalidation> entries;
+        do {
+            entries = cacheInvalidationRepository.findByIdGreaterThanOrderByIdAsc(cursor, Limit.of(batchSize));
+            for (CacheInvalidation entry : entries) {
+                long skipped = entry.getId() - cursor - 1;
+                if (skipped > 0 && skipped <= MAX_TRACKED_GAP) {
+                    for (long id = cursor + 1; id < entry.getId(); id++) {
+                        missingSince.put(id, now);
+                    }
+                }
+                cursor = entry.getId();
+            }
+            apply(entries);
+        } while (entries.size() == batchSize);
+        lastPollMillis = now;
+    }
+
+    void evictExpired() {
+        int expired = transactionTemplate.execute(status ->
+                cacheInvalidationRepository.deleteExpired(Instant.now().minusMillis(retentionMs)));
+        if (expired > 0) {
+            LOG.debug("Deleted {} expired cache invalidations", expired);
+        }
+    }
+
+    @Override
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        // Caches start empty, so only changes from here on matter
+        cursor = cacheInvalidationRepository.findMaxId().orElse(0L);
+        lastPollMillis = System.currentTimeMillis();
+        pollExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cache-invalidation-poller");
+            thread.setDaemon(true);
+            return thread;
+        });
+        pollExecutor.scheduleWithFixedDelay(this::pollQuietly, pollIntervalMs, pollIntervalMs, TimeUnit.MILLISECONDS);
+        pollExecutor.scheduleWithFixedDelay(this::evictExpiredQuietly, sweepIntervalMs, sweepIntervalMs, TimeUnit.MILLISECONDS);
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        pollExecutor.shutdownNow();
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // Take the cursor before the product indexes and tax rules (MAX_VALUE - 4096) load, so no change falls between
+    @Override
+    public int getPhase() {
+        return Integer.MAX_VALUE - 6144;
+    }
+
+    private void apply(List<CacheInvalidation> entries) {
+        Map<String, Set<Long>> changed = new HashMap<>();
+        Instant now = Instant.now();
+        for (CacheInvalidation entry : entries) {
+            if (entry.getOrigin().equals(cacheInvalidationLog.origin())) {
+                continue;
+            }
+            changed.computeIfAbsent(entry.getEntityType(), type -> new HashSet<>()).add(entry.getEntityId());
+            Duration lag = Duration.between(entry.getChangedAt(), now);
+            // Clocks of the nodes may differ slightly
+            lagTimer.record(lag.isNegative() ? Duration.ZERO : lag);
+            appliedCounter.increment();
+        }
+
+        Cache cache = entityManagerFactory.getCache();
+        changed.forEach((entityType, ids) -> {
+            switch (entityType) {
+                case CacheRegions.PRODUCT -> {
+                    ids.forEach(id -> cache.evict(Product.class, id));
+                    // A new product may answer a SKU lookup cached as not found
+                    entityManagerFactory.unwrap(SessionFactory.class).getCache().evictQueryRegion(CacheRegions.PRODUCT_BY_SKU);
+                    List<Product> products = productRepository.findAllById(ids);
+                    productBarcodeIndex.refresh(products);
+                    productSearchIndex.refresh(products);
+                }
+                case CacheRegions.BUSINESS_ENTITY -> ids.forEach(id -> cache.evict(BusinessEntity.class, id));
+                case CacheRegions.SALES_TAX -> {
+                    ids.forEach(id -> cache.evict(SalesTax.class, id));
+                    taxRuleEngine.reload();
+                }
+                default -> LOG.warn("Ignoring cache invalidation of unknown entity type {}", entityType);
+            }
+        });
+    }
+
+    private void evictAll() {
+        entityManagerFactory.getCache().evictAll();
+        productBarcodeIndex.rebuild();
+        productSearchIndex.rebuild();
+        taxRuleEngine.reload();
+    }
+
+    private void pollQuietly() {
+        try {
+            poll();
+        } catch (RuntimeException e) {
+            // Retried on the next poll from the same cursor; cached entries stay as they are meanwhile
+            LOG.error("Failed to read cache invalidations", e);
+        }
+    }
+
+    private void evictExpiredQuietly() {
+        try {
+            evictExpired();
+        } catch (RuntimeException e) {
+            LOG.error("Failed to delete expired cache invalidations", e);
+        }
+    }
+}
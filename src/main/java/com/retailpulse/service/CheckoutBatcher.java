@@ -0,0 +1,240 @@
+package com.retailpulse.service;
+
+import com.retailpulse.controller.request.SalesTransactionRequestDto;
+import com.retailpulse.controller.response.SalesTransactionResponseDto;
+import com.retailpulse.exception.ErrorCodes;
+import com.retailpulse.service.exception.BusinessException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Group commit for checkouts. Concurrent calls are collected for up to {@code checkout.batching.max-wait-ms}
+ * or {@code max-batch-size} requests and written by {@link SalesTransactionService#createSalesTransactions}
+ * in one database transaction, so a burst of checkouts pays for one commit instead of one each.
+ * <p>
+ * A checkout rejected for stock only fails its own caller. If the group transaction itself fails, every
+ * checkout in it is retried on its own, so one bad request never takes its batch-mates down with it.
+ */
+@Component
+public class CheckoutBatcher implements SmartLifecycle {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CheckoutBatcher.class);
+
+    private final SalesTransactionService salesTransactionService;
+    private final DistributionSummary batchSizeSummary;
+    private final Counter fallbackCounter;
+    // Held shared while a checkout is queued and exclusively while stopping, so nothing is queued after the final drain
+    private final ReadWriteLock stateLock = new ReentrantReadWriteLock();
+
+    private BlockingQueue<PendingCheckout> queue;
+    private ExecutorService workers;
+    private volatile boolean running;
+
+    @Value("${checkout.batching.enabled:false}")
+    private boolean enabled;
+
+    @Value("${checkout.batching.max-batch-size:64}")
+    private int maxBatchSize = 64;
+
+    @Value("${checkout.batching.max-wait-ms:5}")
+    private long maxWaitMs = 5;
+
+    @Value("${checkout.batching.workers:2}")
+    private int workerCount = 2;
+
+    @Value("${checkout.batching.queue-capacity:2048}")
+    private int queueCapacity = 2048;
+
+    @Value("${checkout.batching.result-timeout-ms:30000}")
+    private long resultTimeoutMs = 30000;
+
+    public CheckoutBatcher(SalesTransactionService salesTransactionService, MeterRegistry meterRegistry) {
+        this.salesTransactionService = salesTransactionService;
+        this.batchSizeSummary = DistributionSummary.builder("checkout.batch.size")
+                .description("Checkouts written per group transaction")
+                .register(meterRegistry);
+        this.fallbackCounter = Counter.builder("checkout.batch.fallbacks")
+                .description("Group transactions that failed and were retried one checkout at a time")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Creates a sale as part of the next group and waits for its own result. Falls back to a transaction of
+     * its own when batching is stopped or the queue is full, or when no worker has taken the sale from the queue
+     * within {@code checkout.batching.result-timeout-ms}. A sale a worker is still writing after that time fails
+     * with {@link ErrorCodes#CHECKOUT_FAILED}, as its outcome is not known yet.
+     */
+    public SalesTransactionResponseDto createSalesTransaction(SalesTransactionRequestDto requestDto) {
+        return createSalesTransaction(requestDto, null);
+    }
+
+    /**
+     * Creates a sale holding an idempotency claim as part of the next group, as {@link #createSalesTransaction}
+     * does; its response is recorded under the claimed key in the group's transaction.
+     *
+     * @param claim the claim on the checkout's Idempotency-Key, or {@code null} if it has none
+     */
+    public SalesTransactionResponseDto createSalesTransaction(SalesTransactionRequestDto requestDto, IdempotencyClaim claim) {
+        PendingCheckout checkout = new PendingCheckout(requestDto, claim, new CompletableFuture<>());
+        if (!enqueue(checkout)) {
+            return salesTransactionService.createSalesTransaction(requestDto, claim);
+        }
+
+        try {
+            return checkout.result().get(resultTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new CompletionException(e.getCause());
+        } catch (TimeoutException e) {
+            if (queue.remove(checkout)) {
+                return salesTransactionService.createSalesTransaction(requestDto, claim);
+            }
+            throw new BusinessException(ErrorCodes.CHECKOUT_FAILED,
+                    "Checkout still being written after " + resultTimeoutMs + " ms; its outcome is not known yet");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            queue.remove(checkout);
+            throw new BusinessException(ErrorCodes.CHECKOUT_FAILED, "Interrupted while waiting for checkout");
+        }
+    }
+
+    @Override
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        queue = new LinkedBlockingQueue<>(queueCapacity);
+        workers = Executors.newFixedThreadPool(workerCount, runnable -> {
+            Thread thread = new Thread(runnable, "checkout-batcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        running = true;
+        for (int i = 0; i < workerCount; i++) {
+            workers.execute(this::collectBatches);
+        }
+    }
+
+    @Override
+    public void stop() {
+        stateLock.writeLock().lock();
+        try {
+            if (!running) {
+                return;
+            }
+            running = false;
+        } finally {
+            stateLock.writeLock().unlock();
+        }
+        workers.shutdown();
+        try {
+            workers.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Whatever was queued after the workers stopped polling still gets written
+        List<PendingCheckout> leftover = new ArrayList<>();
+        queue.drainTo(leftover);
+        if (!leftover.isEmpty()) {
+            write(leftover);
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // Start before and stop after the web server (MAX_VALUE - 2048), but stop before the reservation engine drains
+    @Override
+    public int getPhase() {
+        return Integer.MAX_VALUE - 4096;
+    }
+
+    private boolean enqueue(PendingCheckout checkout) {
+        stateLock.readLock().lock();
+        try {
+            return running && queue.offer(checkout);
+        } finally {
+            stateLock.readLock().unlock();
+        }
+    }
+
+    private void collectBatches() {
+        while (running) {
+            try {
+                PendingCheckout first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                List<PendingCheckout> batch = new ArrayList<>(maxBatchSize);
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+                while (batch.size() < maxBatchSize) {
+                    PendingCheckout next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                write(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    void write(List<PendingCheckout> batch) {
+        batchSizeSummary.record(batch.size());
+        List<CheckoutResult> results;
+        try {
+            results = salesTransactionService.createSalesTransactions(batch.stream().map(PendingCheckout::request).toList(),
+                    batch.stream().map(PendingCheckout::claim).toList());
+        } catch (RuntimeException e) {
+            LOG.warn("Group checkout of {} sales failed, retrying them one at a time", batch.size(), e);
+            fallbackCounter.increment();
+            batch.forEach(this::writeAlone);
+            return;
+        }
+
+        for (int i = 0; i < batch.size(); i++) {
+            CheckoutResult result = results.get(i);
+            if (result.isAccepted()) {
+                batch.get(i).result().complete(result.response());
+            } else {
+                batch.get(i).result().completeExceptionally(result.error());
+            }
+        }
+    }
+
+    private void writeAlone(PendingCheckout checkout) {
+        try {
+            checkout.result().complete(salesTransactionService.createSalesTransaction(checkout.request(), checkout.claim()));
+        } catch (RuntimeException e) {
+            checkout.result().completeExceptionally(e);
+        }
+    }
+
+    record PendingCheckout(SalesTransactionRequestDto request, IdempotencyClaim claim,
+                           CompletableFuture<SalesTransactionResponseDto> result) {
+    }
+}
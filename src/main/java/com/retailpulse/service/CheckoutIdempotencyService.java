@@ -0,0 +1,503 @@
+package com.retailpulse.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.retailpulse.controller.request.SalesTransactionRequestDto;
+import com.retailpulse.controller.response.SalesTransactionResponseDto;
+import com.retailpulse.entity.IdempotencyRecord;
+import com.retailpulse.exception.ErrorCodes;
+import com.retailpulse.repository.IdempotencyRecordRepository;
+import com.retailpulse.service.exception.BusinessException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Runs a checkout at most once per {@code Idempotency-Key}, so a terminal retrying after a timeout gets the original
+ * sale back instead of a second one. The key is claimed by inserting its {@code idempotency_record} row before the
+ * checkout runs, and the sale writes its response into that row in its own transaction, so on every node a retry
+ * either finds the response or waits for the attempt holding the claim. A claim not completed within
+ * {@code idempotency.pending-timeout-ms}, e.g. because its node died, is taken over by the next retry; the sale of
+ * the abandoned attempt can then no longer commit. Responses are kept for {@code idempotency.ttl-ms}, and the most
+ * recent {@code idempotency.max-entries} also in memory.
+ * <p>
+ * A key sent again with a different request body is rejected with {@link ErrorCodes#INVALID_REQUEST}. Only successful
+ * checkouts are recorded; after a failure the claim is released and the same key may be tried again.
+ */
+@Service
+public class CheckoutIdempotencyService implements SmartLifecycle {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CheckoutIdempotencyService.class);
+
+    static final int MAX_KEY_LENGTH = 100;
+
+    private final IdempotencyRecordRepository idempotencyRecordRepository;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final Map<String, Attempt> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, CachedResponse> recent;
+    private final Counter replayCounter;
+
+    private ScheduledExecutorService sweepExecutor;
+    private volatile boolean running;
+
+    @Value("${idempotency.max-entries:10000}")
+    private int maxEntries = 10000;
+
+    @Value("${idempotency.ttl-ms:86400000}")
+    private long ttlMs = 86400000;
+
+    @Value("${idempotency.sweep-interval-ms:600000}")
+    private long sweepIntervalMs = 600000;
+
+    @Value("${idempotency.pending-timeout-ms:35000}")
+    private long pendingTimeoutMs = 35000;
+
+    @Value("${idempotency.poll-interval-ms:100}")
+    private long pollIntervalMs = 100;
+
+    public CheckoutIdempotencyService(IdempotencyRecordRepository idempotencyRecordRepository,
+                                      ObjectMapper objectMapper,
+                                      PlatformTransactionManager transactionManager,
+                                      MeterRegistry meterRegistry) {
+        this.idempotencyRecordRepository = idempotencyRecordRepository;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.recent = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedResponse> eldest) {
+                return size() > maxEntries;
+            }
+        });
+        this.replayCounter = Counter.builder("checkout.idempotency.replays")
+                .description("Checkouts answered with the recorded outcome of an earlier request with the same key")
+                .register(meterRegistry);
+        meterRegistry.gaugeMapSize("checkout.idempotency.cached", List.of(), recent);
+    }
+
+    /**
+     * Returns the recorded outcome for the key, or claims the key and runs the checkout. The checkout must create
+     * the sale with the claim it is given, so the response is recorded in the sale's transaction.
+     *
+     * @param idempotencyKey the key the client sent with the checkout
+     * @param requestDto     the checkout request; a later request with the same key must have the same body
+     * @param checkout       creates the sale under the claim; called at most once per key while its outcome is kept
+     * @throws IllegalArgumentException if the key is blank or longer than 100 characters
+     * @throws BusinessException        {@link ErrorCodes#INVALID_REQUEST} if the key was used for a different request,
+     *                                  {@link ErrorCodes#CHECKOUT_FAILED} if another attempt still holds the key
+     */
+    public SalesTransactionResponseDto execute(String idempotencyKey, SalesTransactionRequestDto requestDto,
+                                               Function<IdempotencyClaim, SalesTransactionResponseDto> checkout) {
+        requireValidKey(idempotencyKey);
+        String fingerprint = fingerprint(requestDto);
+        Optional<SalesTransactionResponseDto> cached = cachedResponse(idempotencyKey, fingerprint);
+        if (cached.isPresent()) {
+            replayCounter.increment();
+            return cached.get();
+        }
+
+        Attempt attempt = new Attempt(fingerprint, new CompletableFuture<>());
+        Attempt firstAttempt = inFlight.putIfAbsent(idempotencyKey, attempt);
+        if (firstAttempt != null) {
+            requireSameRequest(idempotencyKey, firstAttempt.fingerprint(), fingerprint);
+            replayCounter.increment();
+            return await(firstAttempt.outcome());
+        }
+
+        try {
+            SalesTransactionResponseDto responseDto = claimAndRun(idempotencyKey, fingerprint, checkout);
+            attempt.outcome().complete(responseDto);
+            return responseDto;
+        } catch (RuntimeException e) {
+            attempt.outcome().completeExceptionally(e);
+            throw e;
+        } finally {
+            // The outcome is cached before the key is released, so a later request finds one or the other
+            inFlight.remove(idempotencyKey, attempt);
+        }
+    }
+
+    /**
+     * Records the response of a claimed checkout. Runs in the transaction that creates the sale, so the sale and
+     * its record commit together or not at all.
+     *
+     * @throws BusinessException {@link ErrorCodes#CHECKOUT_FAILED} if the claim was released or taken over by another
+     *                           attempt, which rolls the sale back
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void complete(IdempotencyClaim claim, SalesTransactionResponseDto responseDto) {
+        if (idempotencyRecordRepository.complete(claim.idempotencyKey(), claim.attempt(), toJson(responseDto), Instant.now()) == 0) {
+            throw new BusinessException(ErrorCodes.CHECKOUT_FAILED,
+                    "Idempotency-Key " + claim.idempotencyKey() + " is no longer held by this checkout");
+        }
+    }
+
+    /**
+     * Bulk form of {@link #execute}. Sales whose key already has an outcome get it back, a key repeated within the
+     * list shares the outcome of its first occurrence, and all other sales are claimed and created by one call to
+     * {@code checkout}, which must record each sale's response under its claim in the transaction that creates it.
+     * A sale without a key is always created, and a sale whose key was used for a different request is rejected
+     * with {@link ErrorCodes#INVALID_REQUEST}.
+     *
+     * @param idempotencyKeys one key per sale, {@code null} for a sale without one
+     * @param requestDtos     the sales, in the same order as their keys
+     * @param checkout        creates the sales at the given positions under the given claims ({@code null} for a sale
+     *                        without a key) and returns one result per position, in order
+     * @return one result per sale, in the same order
+     * @throws IllegalArgumentException if a key is blank or longer than 100 characters
+     */
+    public List<CheckoutResult> executeAll(List<String> idempotencyKeys, List<SalesTransactionRequestDto> requestDtos,
+                                           BiFunction<List<Integer>, List<IdempotencyClaim>, List<CheckoutResult>> checkout) {
+        idempotencyKeys.stream().filter(Objects::nonNull).forEach(CheckoutIdempotencyService::requireValidKey);
+        List<String> fingerprints = requestDtos.stream().map(this::fingerprint).toList();
+
+        CheckoutResult[] results = new CheckoutResult[idempotencyKeys.size()];
+        IdempotencyClaim[] claims = new IdempotencyClaim[idempotencyKeys.size()];
+        Map<String, Integer> firstOccurrence = new HashMap<>();
+        Map<Integer, Integer> repeats = new HashMap<>();
+        Map<Integer, CompletableFuture<SalesTransactionResponseDto>> otherAttempts = new LinkedHashMap<>();
+        // Sorted, so overlapping resyncs on different nodes claim their keys in the same order and never deadlock
+        Map<String, Attempt> claimed = new TreeMap<>();
+        List<Integer> heldElsewhere = new ArrayList<>();
+        List<Integer> toCreate = new ArrayList<>();
+        for (int i = 0; i < idempotencyKeys.size(); i++) {
+            String idempotencyKey = idempotencyKeys.get(i);
+            if (idempotencyKey == null) {
+                toCreate.add(i);
+                continue;
+            }
+            Integer first = firstOccurrence.putIfAbsent(idempotencyKey, i);
+            if (first != null) {
+                repeats.put(i, first);
+                continue;
+            }
+            try {
+                Optional<SalesTransactionResponseDto> cached = cachedResponse(idempotencyKey, fingerprints.get(i));
+                if (cached.isPresent()) {
+                    replayCounter.increment();
+                    results[i] = CheckoutResult.accepted(cached.get());
+                    continue;
+                }
+                Attempt outcome = new Attempt(fingerprints.get(i), new CompletableFuture<>());
+                Attempt firstAttempt = inFlight.putIfAbsent(idempotencyKey, outcome);
+                if (firstAttempt != null) {
+                    requireSameRequest(idempotencyKey, firstAttempt.fingerprint(), fingerprints.get(i));
+                    otherAttempts.put(i, firstAttempt.outcome());
+                } else {
+                    claimed.put(idempotencyKey, outcome);
+                }
+            } catch (BusinessException e) {
+                results[i] = CheckoutResult.rejected(e);
+            }
+        }
+
+        try {
+            Map<String, IdempotencyRecord> holders = transactionTemplate.execute(status -> {
+                Map<String, IdempotencyRecord> found = new HashMap<>();
+                claimed.keySet().forEach(idempotencyKey -> {
+                    int index = firstOccurrence.get(idempotencyKey);
+                    IdempotencyClaim claim = new IdempotencyClaim(idempotencyKey, UUID.randomUUID().toString());
+                    claim(claim, fingerprints.get(index)).ifPresentOrElse(
+                            holder -> found.put(idempotencyKey, holder),
+                            () -> claims[index] = claim);
+                });
+                return found;
+            });
+            claimed.keySet().forEach(idempotencyKey -> {
+                int index = firstOccurrence.get(idempotencyKey);
+                IdempotencyRecord holder = holders.get(idempotencyKey);
+                if (holder == null) {
+                    toCreate.add(index);
+                } else if (!holder.getFingerprint().equals(fingerprints.get(index))) {
+                    results[index] = CheckoutResult.rejected(reusedKey(idempotencyKey));
+                } else if (holder.isPending()) {
+                    heldElsewhere.add(index);
+                } else {
+                    replayCounter.increment();
+                    results[index] = CheckoutResult.accepted(fromJson(holder.getResponse()));
+                }
+            });
+            Collections.sort(toCreate);
+
+            if (!toCreate.isEmpty()) {
+                List<CheckoutResult> created = checkout.apply(toCreate, toCreate.stream().map(index -> claims[index]).toList());
+                for (int i = 0; i < toCreate.size(); i++) {
+                    int index = toCreate.get(i);
+                    results[index] = created.get(i);
+                    if (claims[index] == null) {
+                        continue;
+                    }
+                    if (created.get(i).isAccepted()) {
+                        recent.put(idempotencyKeys.get(index), new CachedResponse(fingerprints.get(index),
+                                created.get(i).response(), System.currentTimeMillis()));
+                    } else {
+                        release(claims[index]);
+                    }
+                }
+            }
+
+            // Keys another node is still checking out are waited for only once this call's own sales are written
+            heldElsewhere.forEach(index -> {
+                try {
+                    results[index] = CheckoutResult.accepted(claimAndRun(idempotencyKeys.get(index), fingerprints.get(index),
+                            claim -> createOne(checkout, index, claim)));
+                } catch (BusinessException e) {
+                    results[index] = CheckoutResult.rejected(e);
+                }
+            });
+            claimed.forEach((idempotencyKey, outcome) -> {
+                CheckoutResult result = results[firstOccurrence.get(idempotencyKey)];
+                if (result.isAccepted()) {
+                    outcome.outcome().complete(result.response());
+                } else {
+                    outcome.outcome().completeExceptionally(result.error());
+                }
+            });
+        } catch (RuntimeException e) {
+            // Claims whose sales already committed are completed and stay in place
+            Arrays.stream(claims).filter(Objects::nonNull).forEach(this::release);
+            claimed.values().forEach(outcome -> outcome.outcome().completeExceptionally(e));
+            throw e;
+        } finally {
+            claimed.forEach(inFlight::remove);
+        }
+
+        // Waited for only once this call released its own keys, so two overlapping calls never wait on each other
+        otherAttempts.forEach((index, firstAttempt) -> {
+            try {
+                results[index] = CheckoutResult.accepted(await(firstAttempt));
+                replayCounter.increment();
+            } catch (BusinessException e) {
+                results[index] = CheckoutResult.rejected(e);
+            }
+        });
+        repeats.forEach((index, first) -> {
+            if (!fingerprints.get(index).equals(fingerprints.get(first))) {
+                results[index] = CheckoutResult.rejected(reusedKey(idempotencyKeys.get(index)));
+                return;
+            }
+            replayCounter.increment();
+            results[index] = results[first];
+        });
+        return Arrays.asList(results);
+    }
+
+    void evictExpired() {
+        long cutoffMillis = System.currentTimeMillis() - ttlMs;
+        synchronized (recent) {
+            recent.values().removeIf(cachedResponse -> cachedResponse.createdAtMillis() < cutoffMillis);
+        }
+        int expired = transactionTemplate.execute(status ->
+                idempotencyRecordRepository.deleteExpired(Instant.ofEpochMilli(cutoffMillis)));
+        if (expired > 0) {
+            LOG.debug("Deleted {} expired idempotency records", expired);
+        }
+    }
+
+    @Override
+    public void start() {
+        sweepExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "idempotency-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweepExecutor.scheduleWithFixedDelay(this::evictExpiredQuietly, sweepIntervalMs, sweepIntervalMs, TimeUnit.MILLISECONDS);
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        sweepExecutor.shutdownNow();
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private SalesTransactionResponseDto claimAndRun(String idempotencyKey, String fingerprint,
+                                                    Function<IdempotencyClaim, SalesTransactionResponseDto> checkout) {
+        long deadline = System.currentTimeMillis() + pendingTimeoutMs;
+        while (true) {
+            IdempotencyClaim claim = new IdempotencyClaim(idempotencyKey, UUID.randomUUID().toString());
+            Optional<IdempotencyRecord> holder = transactionTemplate.execute(status -> claim(claim, fingerprint));
+            if (holder.isEmpty()) {
+                return run(claim, fingerprint, checkout);
+            }
+            IdempotencyRecord record = holder.get();
+            requireSameRequest(idempotencyKey, record.getFingerprint(), fingerprint);
+            if (!record.isPending()) {
+                // A retry that reaches another node, or this one after a restart, is answered from the table
+                SalesTransactionResponseDto responseDto = fromJson(record.getResponse());
+                recent.put(idempotencyKey, new CachedResponse(fingerprint, responseDto, record.getCreatedAt().toEpochMilli()));
+                replayCounter.increment();
+                return responseDto;
+            }
+            if (System.currentTimeMillis() >= deadline) {
+                throw new BusinessException(ErrorCodes.CHECKOUT_FAILED,
+                        "A checkout with Idempotency-Key " + idempotencyKey + " is still in progress");
+            }
+            sleep(pollIntervalMs);
+        }
+    }
+
+    // Empty when the claim was taken, otherwise the record of the attempt holding the key
+    private Optional<IdempotencyRecord> claim(IdempotencyClaim claim, String fingerprint) {
+        Instant now = Instant.now();
+        Optional<IdempotencyRecord> holder = Optional.empty();
+        while (holder.isEmpty()) {
+            if (idempotencyRecordRepository.claim(claim.idempotencyKey(), fingerprint, claim.attempt(), now) == 1) {
+                return Optional.empty();
+            }
+            // Empty again if the holder released the key since the insert
+            holder = idempotencyRecordRepository.lockByIdempotencyKey(claim.idempotencyKey());
+        }
+        IdempotencyRecord record = holder.get();
+        Instant cutoff = now.minusMillis(record.isPending() ? pendingTimeoutMs : ttlMs);
+        if (record.getCreatedAt().isBefore(cutoff) && idempotencyRecordRepository.reclaim(
+                claim.idempotencyKey(), record.getAttempt(), fingerprint, claim.attempt(), now) == 1) {
+            return Optional.empty();
+        }
+        return holder;
+    }
+
+    private SalesTransactionResponseDto run(IdempotencyClaim claim, String fingerprint,
+                                            Function<IdempotencyClaim, SalesTransactionResponseDto> checkout) {
+        SalesTransactionResponseDto responseDto;
+        try {
+            responseDto = checkout.apply(claim);
+        } catch (RuntimeException e) {
+            release(claim);
+            throw e;
+        }
+        recent.put(claim.idempotencyKey(), new CachedResponse(fingerprint, responseDto, System.currentTimeMillis()));
+        return responseDto;
+    }
+
+    private void release(IdempotencyClaim claim) {
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                    idempotencyRecordRepository.release(claim.idempotencyKey(), claim.attempt()));
+        } catch (RuntimeException e) {
+            // The claim is taken over once it is older than the pending timeout
+            LOG.warn("Failed to release Idempotency-Key {} after a failed checkout", claim.idempotencyKey(), e);
+        }
+    }
+
+    private static SalesTransactionResponseDto createOne(
+            BiFunction<List<Integer>, List<IdempotencyClaim>, List<CheckoutResult>> checkout, int index, IdempotencyClaim claim) {
+        CheckoutResult result = checkout.apply(List.of(index), List.of(claim)).get(0);
+        if (!result.isAccepted()) {
+            throw result.error();
+        }
+        return result.response();
+    }
+
+    private Optional<SalesTransactionResponseDto> cachedResponse(String idempotencyKey, String fingerprint) {
+        CachedResponse cachedResponse = recent.get(idempotencyKey);
+        if (cachedResponse == null || cachedResponse.createdAtMillis() < System.currentTimeMillis() - ttlMs) {
+            return Optional.empty();
+        }
+        requireSameRequest(idempotencyKey, cachedResponse.fingerprint(), fingerprint);
+        return Optional.of(cachedResponse.responseDto());
+    }
+
+    private static void requireSameRequest(String idempotencyKey, String recordedFingerprint, String fingerprint) {
+        if (!recordedFingerprint.equals(fingerprint)) {
+            throw reusedKey(idempotencyKey);
+        }
+    }
+
+    private static BusinessException reusedKey(String idempotencyKey) {
+        return new BusinessException(ErrorCodes.INVALID_REQUEST,
+                "Idempotency-Key " + idempotencyKey + " was already used for a different request");
+    }
+
+    private String fingerprint(SalesTransactionRequestDto requestDto) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(objectMapper.writeValueAsBytes(requestDto));
+            return HexFormat.of().formatHex(digest);
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Failed to fingerprint checkout request", e);
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BusinessException(ErrorCodes.CHECKOUT_FAILED, "Interrupted while waiting for a checkout with the same idempotency key");
+        }
+    }
+
+    private static void requireValidKey(String idempotencyKey) {
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("Idempotency-Key must be 1 to " + MAX_KEY_LENGTH + " characters");
+        }
+    }
+
+    private SalesTransactionResponseDto await(CompletableFuture<SalesTransactionResponseDto> firstAttempt) {
+        try {
+            return firstAttempt.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a checkout with the same idempotency key", e);
+        }
+    }
+
+    private String toJson(SalesTransactionResponseDto responseDto) {
+        try {
+            return objectMapper.writeValueAsString(responseDto);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize checkout response", e);
+        }
+    }
+
+    private SalesTransactionResponseDto fromJson(String response) {
+        try {
+            return objectMapper.readValue(response, SalesTransactionResponseDto.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to read recorded checkout response", e);
+        }
+    }
+
+    private void evictExpiredQuietly() {
+        try {
+            evictExpired();
+        } catch (RuntimeException e) {
+            LOG.error("Failed to delete expired idempotency records", e);
+        }
+    }
+
+    private record CachedResponse(String fingerprint, SalesTransactionResponseDto responseDto, long createdAtMillis) {
+    }
+
+    private record Attempt(String fingerprint, CompletableFuture<SalesTransactionResponseDto> outcome) {
+    }
+}
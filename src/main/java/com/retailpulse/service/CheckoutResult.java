@@ -0,0 +1,22 @@
+package com.retailpulse.service;
+
+import com.retailpulse.controller.response.SalesTransactionResponseDto;
+import com.retailpulse.service.exception.BusinessException;
+
+/**
+ * Outcome of one checkout created as part of a group: either the created sale or the reason it was rejected.
+ */
+public record CheckoutResult(SalesTransactionResponseDto response, BusinessException error) {
+
+    public static CheckoutResult accepted(SalesTransactionResponseDto response) {
+        return new CheckoutResult(response, null);
+    }
+
+    public static CheckoutResult rejected(BusinessException error) {
+        return new CheckoutResult(null, error);
+    }
+
+    public boolean isAccepted() {
+        return error == null;
+    }
+}
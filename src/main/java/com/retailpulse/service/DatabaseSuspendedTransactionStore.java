@@ -0,0 +1,228 @@
+package com.retailpulse.service;
+
+import com.retailpulse.entity.SalesTransactionMemento;
+import com.retailpulse.entity.SuspendedTransaction;
+import com.retailpulse.exception.ErrorCodes;
+import com.retailpulse.repository.SequenceCounterRepository;
+import com.retailpulse.repository.SuspendedTransactionRepository;
+import com.retailpulse.service.exception.BusinessException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Suspended sales kept in the {@code suspended_transaction} table, so a sale suspended on one node can be restored
+ * on any other. Each node keeps a near-cache of every store's list for {@code suspended-transactions.near-cache-ttl-ms};
+ * within that window its own suspends and restores update the cached list instead of querying again, and
+ * suspends made on other nodes show up once the entry expires. Ids come from a counter row shared by all nodes.
+ * Restoring a sale that another node has already restored, or that expired, fails with {@link ErrorCodes#NOT_FOUND}.
+ */
+@Component
+@ConditionalOnProperty(name = "suspended-transactions.store", havingValue = "database")
+public class DatabaseSuspendedTransactionStore implements SuspendedTransactionStore, SmartLifecycle {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DatabaseSuspendedTransactionStore.class);
+
+    private static final String COUNTER_NAME = "suspended-transaction";
+
+    private final SuspendedTransactionRepository suspendedTransactionRepository;
+    private final SequenceCounterRepository counterRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Map<Long, CachedList> nearCache = new ConcurrentHashMap<>();
+    private final Counter nearCacheHits;
+    private final Counter nearCacheMisses;
+    private final Counter expiredCounter;
+    private final Counter rejectedCounter;
+
+    private ScheduledExecutorService sweepExecutor;
+    private volatile boolean running;
+
+    @Value("${suspended-transactions.max-per-store:50}")
+    private int maxPerStore = 50;
+
+    @Value("${suspended-transactions.max-total:10000}")
+    private int maxTotal = 10000;
+
+    @Value("${suspended-transactions.ttl-ms:43200000}")
+    private long ttlMs = 43200000;
+
+    @Value("${suspended-transactions.sweep-interval-ms:60000}")
+    private long sweepIntervalMs = 60000;
+
+    @Value("${suspended-transactions.near-cache-ttl-ms:2000}")
+    private long nearCacheTtlMs = 2000;
+
+    public DatabaseSuspendedTransactionStore(SuspendedTransactionRepository suspendedTransactionRepository,
+                                             SequenceCounterRepository counterRepository,
+                                             PlatformTransactionManager transactionManager,
+                                             MeterRegistry meterRegistry) {
+        this.suspendedTransactionRepository = suspendedTransactionRepository;
+        this.counterRepository = counterRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.nearCacheHits = Counter.builder("suspended.transactions.near_cache")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.nearCacheMisses = Counter.builder("suspended.transactions.near_cache")
+                .tag("result", "miss")
+                .register(meterRegistry);
+        this.expiredCounter = Counter.builder("suspended.transactions.expired")
+                .description("Suspended sales dropped after suspended-transactions.ttl-ms")
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("suspended.transactions.rejected")
+                .description("Suspends refused because a store or the whole system was at capacity")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public long nextTransactionId() {
+        return transactionTemplate.execute(status -> {
+            counterRepository.incrementAndStore(COUNTER_NAME);
+            return counterRepository.getLastInsertedId();
+        });
+    }
+
+    @Override
+    public Map<Long, SalesTransactionMemento> addTransaction(Long businessEntityId, SalesTransactionMemento salesTransactionMemento) {
+        Instant cutoff = cutoff();
+        // Counted before inserting, so nodes suspending at the same moment can each take the last place
+        if (suspendedTransactionRepository.countByBusinessEntityIdAndSuspendedAtAfter(businessEntityId, cutoff) >= maxPerStore
+                || suspendedTransactionRepository.countBySuspendedAtAfter(cutoff) >= maxTotal) {
+            rejectedCounter.increment();
+            throw new BusinessException(ErrorCodes.LIMIT_EXCEEDED,
+                    "Too many suspended transactions for business entity id: " + businessEntityId);
+        }
+        suspendedTransactionRepository.save(new SuspendedTransaction(salesTransactionMemento));
+
+        return updateNearCache(businessEntityId, list -> list.put(salesTransactionMemento.transactionId(), salesTransactionMemento));
+    }
+
+    @Override
+    public Map<Long, SalesTransactionMemento> deleteTransaction(Long businessEntityId, Long transactionId) {
+        int deleted = transactionTemplate.execute(status ->
+                suspendedTransactionRepository.deleteTransaction(businessEntityId, transactionId));
+        Map<Long, SalesTransactionMemento> transactions = updateNearCache(businessEntityId, list -> list.remove(transactionId));
+        // Only one till gets the sale back, even when several restore it at once on different nodes
+        if (deleted == 0) {
+            throw new BusinessException(ErrorCodes.NOT_FOUND, "Suspended transaction not found for id: " + transactionId);
+        }
+        return transactions;
+    }
+
+    @Override
+    public Map<Long, SalesTransactionMemento> listTransactions(Long businessEntityId) {
+        CachedList cached = nearCache.get(businessEntityId);
+        if (cached != null && cached.isFresh(nearCacheTtlMs)) {
+            nearCacheHits.increment();
+            return withoutExpired(cached.transactions());
+        }
+        nearCacheMisses.increment();
+        return load(businessEntityId);
+    }
+
+    void evictExpired() {
+        int expired = transactionTemplate.execute(status -> suspendedTransactionRepository.deleteExpired(cutoff()));
+        if (expired > 0) {
+            expiredCounter.increment(expired);
+        }
+    }
+
+    @Override
+    public void start() {
+        // A counter created on an existing table starts above the ids still in use
+        transactionTemplate.executeWithoutResult(status ->
+                counterRepository.createIfMissing(COUNTER_NAME, suspendedTransactionRepository.findMaxTransactionId()));
+        sweepExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "suspended-transaction-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweepExecutor.scheduleWithFixedDelay(this::evictExpiredQuietly, sweepIntervalMs, sweepIntervalMs, TimeUnit.MILLISECONDS);
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        sweepExecutor.shutdownNow();
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // A fresh cached list is patched with this node's own change; anything else is read again
+    private Map<Long, SalesTransactionMemento> updateNearCache(Long businessEntityId,
+                                                               Consumer<Map<Long, SalesTransactionMemento>> change) {
+        CachedList cached = nearCache.get(businessEntityId);
+        if (cached == null || !cached.isFresh(nearCacheTtlMs)) {
+            return load(businessEntityId);
+        }
+        Map<Long, SalesTransactionMemento> transactions = new TreeMap<>(cached.transactions());
+        change.accept(transactions);
+        Map<Long, SalesTransactionMemento> snapshot = Collections.unmodifiableMap(new LinkedHashMap<>(transactions));
+        // Only replace the entry read above, so a concurrent reload is not overwritten with an older list
+        nearCache.replace(businessEntityId, cached, new CachedList(snapshot, cached.loadedAtMillis()));
+        return withoutExpired(snapshot);
+    }
+
+    private Map<Long, SalesTransactionMemento> load(Long businessEntityId) {
+        Map<Long, SalesTransactionMemento> transactions = new LinkedHashMap<>();
+        suspendedTransactionRepository.findByBusinessEntityIdAndSuspendedAtAfterOrderByTransactionId(businessEntityId, cutoff())
+                .forEach(suspendedTransaction -> transactions.put(suspendedTransaction.getTransactionId(), suspendedTransaction.toMemento()));
+        Map<Long, SalesTransactionMemento> snapshot = Collections.unmodifiableMap(transactions);
+        nearCache.put(businessEntityId, new CachedList(snapshot, System.currentTimeMillis()));
+        return snapshot;
+    }
+
+    private Map<Long, SalesTransactionMemento> withoutExpired(Map<Long, SalesTransactionMemento> transactions) {
+        long cutoffMillis = cutoff().toEpochMilli();
+        if (transactions.values().stream().allMatch(memento -> memento.suspendedAtMillis() > cutoffMillis)) {
+            return transactions;
+        }
+        Map<Long, SalesTransactionMemento> live = new LinkedHashMap<>();
+        transactions.forEach((transactionId, memento) -> {
+            if (memento.suspendedAtMillis() > cutoffMillis) {
+                live.put(transactionId, memento);
+            }
+        });
+        return Collections.unmodifiableMap(live);
+    }
+
+    private Instant cutoff() {
+        return Instant.now().minusMillis(ttlMs);
+    }
+
+    private void evictExpiredQuietly() {
+        try {
+            evictExpired();
+        } catch (RuntimeException e) {
+            LOG.error("Failed to delete expired suspended transactions", e);
+        }
+    }
+
+    private record CachedList(Map<Long, SalesTransactionMemento> transactions, long loadedAtMillis) {
+
+        boolean isFresh(long ttlMs) {
+            return System.currentTimeMillis() - loadedAtMillis < ttlMs;
+        }
+    }
+}
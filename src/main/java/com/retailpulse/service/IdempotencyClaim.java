@@ -0,0 +1,8 @@
+package com.retailpulse.service;
+
+/**
+ * An {@code Idempotency-Key} claimed by one checkout attempt. The sale it creates records its response under the
+ * key only while the claim is still held by this attempt.
+ */
+public record IdempotencyClaim(String idempotencyKey, String attempt) {
+}
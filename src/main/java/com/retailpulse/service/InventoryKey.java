@@ -0,0 +1,7 @@
+package com.retailpulse.service;
+
+/**
+ * Identifies one inventory row: a product held by a business entity.
+ */
+public record InventoryKey(long productId, long businessEntityId) {
+}
@@ -0,0 +1,99 @@
+package com.retailpulse.service;
+
+import com.retailpulse.entity.Inventory;
+import com.retailpulse.repository.InventoryRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Acquires pessimistic write locks on inventory rows in the canonical (businessEntityId, productId) order,
+ * so two tills selling overlapping baskets wait on each other instead of deadlocking.
+ * Must be called inside a transaction; the locks are held until it ends.
+ * <p>
+ * While contention tracking is on, every lock wait or guarded write slower than {@code inventory.lock.slow-wait-ms}
+ * is counted against the rows involved, so the hottest rows can be found from real traffic.
+ */
+@Component
+public class InventoryLockManager {
+
+    private final InventoryRepository inventoryRepository;
+    private final Timer lockWaitTimer;
+    private final Map<InventoryKey, Long> slowWaits = new ConcurrentHashMap<>();
+    private volatile boolean trackingContention;
+
+    @Value("${inventory.lock.mode:CONDITIONAL}")
+    private InventoryLockMode lockMode = InventoryLockMode.CONDITIONAL;
+
+    @Value("${inventory.lock.slow-wait-ms:50}")
+    private long slowWaitMs = 50;
+
+    public InventoryLockManager(InventoryRepository inventoryRepository, MeterRegistry meterRegistry) {
+        this.inventoryRepository = inventoryRepository;
+        this.lockWaitTimer = Timer.builder("inventory.lock.wait")
+                .description("Time spent acquiring inventory row locks")
+                .register(meterRegistry);
+    }
+
+    public boolean isPessimistic() {
+        return lockMode == InventoryLockMode.PESSIMISTIC;
+    }
+
+    /**
+     * Locks one business entity's rows for the given products, e.g. every line of a basket.
+     */
+    public List<Inventory> lockBasketRows(long businessEntityId, Collection<Long> productIds) {
+        List<Long> orderedProductIds = List.copyOf(new TreeSet<>(productIds));
+        long started = System.nanoTime();
+        try {
+            return lockWaitTimer.record(() -> inventoryRepository.lockByBusinessEntityIdAndProductIdIn(businessEntityId, orderedProductIds));
+        } finally {
+            recordRowWrites(businessEntityId, orderedProductIds, System.nanoTime() - started);
+        }
+    }
+
+    /**
+     * Counts a write on one business entity's rows that may have waited on locks held by other checkouts,
+     * e.g. a batch of guarded updates, towards the contention of those rows.
+     */
+    public void recordRowWrites(long businessEntityId, Collection<Long> productIds, long elapsedNanos) {
+        recordWait(elapsedNanos, () -> productIds.stream().map(productId -> new InventoryKey(productId, businessEntityId)));
+    }
+
+    public void trackContention() {
+        trackingContention = true;
+    }
+
+    /**
+     * Returns the rows with at least {@code minSlowWaits} slow waits since the previous call and starts a new count.
+     */
+    public Set<InventoryKey> drainContendedKeys(long minSlowWaits) {
+        // Each count is taken out with its key in one step, so a wait recorded meanwhile starts the next count
+        Set<InventoryKey> contended = new HashSet<>();
+        for (InventoryKey key : slowWaits.keySet()) {
+            Long count = slowWaits.remove(key);
+            if (count != null && count >= minSlowWaits) {
+                contended.add(key);
+            }
+        }
+        return contended;
+    }
+
+    private void recordWait(long elapsedNanos, Supplier<Stream<InventoryKey>> keys) {
+        if (trackingContention && elapsedNanos >= TimeUnit.MILLISECONDS.toNanos(slowWaitMs)) {
+            keys.get().forEach(key -> slowWaits.merge(key, 1L, Long::sum));
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.retailpulse.service;
+
+/**
+ * How checkout serialises concurrent changes to the same inventory rows. Transfers change the rows with guarded
+ * updates in either mode.
+ */
+public enum InventoryLockMode {
+    /**
+     * Rows are changed with guarded {@code UPDATE ... WHERE quantity >= ?} statements and never read under a lock.
+     */
+    CONDITIONAL,
+    /**
+     * Rows are read with {@code SELECT ... FOR UPDATE} in (businessEntityId, productId) order before they are changed.
+     */
+    PESSIMISTIC
+}
@@ -5,38 +5,45 @@ import com.retailpulse.repository.InventoryRepository;
 import org.jetbrains.annotations.NotNull;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
-import java.util.List;
-import java.util.Optional;
+import java.util.*;
 import java.util.function.Consumer;
 
 @Service
 public class InventoryService {
     private final InventoryRepository inventoryRepository;
+    private final InventorySlotManager inventorySlotManager;
+    private final StockReservationEngine stockReservationEngine;
 
     @Autowired
-    public InventoryService(InventoryRepository inventoryRepository) {
+    public InventoryService(InventoryRepository inventoryRepository, InventorySlotManager inventorySlotManager,
+                            StockReservationEngine stockReservationEngine) {
         this.inventoryRepository = inventoryRepository;
+        this.inventorySlotManager = inventorySlotManager;
+        this.stockReservationEngine = stockReservationEngine;
     }
 
     public List<Inventory> getAllInventory() {
-        return inventoryRepository.findAll();
+        return withSlotQuantities(inventoryRepository.findAll(), null, null);
     }
 
     public Optional<Inventory> getInventoryById(Long id) {
-        return inventoryRepository.findById(id);
+        return inventoryRepository.findById(id)
+                .map(inventory -> withSlotQuantities(inventory, inventory.getProductId(), inventory.getBusinessEntityId()));
     }
 
     public List<Inventory> getInventoryByProductId(Long productId) {
-        return inventoryRepository.findByProductId(productId);
+        return withSlotQuantities(inventoryRepository.findByProductId(productId), productId, null);
     }
     
     public List<Inventory> getInventoryByBusinessEntityId(Long businessEntityId) {
-        return inventoryRepository.findByBusinessEntityId(businessEntityId);
+        return withSlotQuantities(inventoryRepository.findByBusinessEntityId(businessEntityId), null, businessEntityId);
     }
 
     public Optional<Inventory> getInventoryByProductIdAndBusinessEntityId(Long productId, Long businessEntityId) {
-        return inventoryRepository.findByProductIdAndBusinessEntityId(productId, businessEntityId);
+        return inventoryRepository.findByProductIdAndBusinessEntityId(productId, businessEntityId)
+                .map(inventory -> withSlotQuantities(inventory, productId, businessEntityId));
     }
 
     public boolean inventoryContainsProduct(Long productId) {
@@ -49,24 +56,83 @@ public class InventoryService {
     }
 
     // Not exposed in controller - Inventory should only be changed by Inventory Summary
+    @Transactional
     public Inventory updateInventory(Long id, @NotNull Inventory inventoryDetails) {
         Inventory inventory = inventoryRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Inventory not found with id: " + id));
+        InventoryKey originalKey = new InventoryKey(inventory.getProductId(), inventory.getBusinessEntityId());
 
         // Update fields from the incoming details if provided
         updateField(inventoryDetails.getProductId(), inventory::setProductId);
         updateField(inventoryDetails.getBusinessEntityId(), inventory::setBusinessEntityId);
+        InventoryKey key = new InventoryKey(inventory.getProductId(), inventory.getBusinessEntityId());
+        if (stockReservationEngine.isEnabled() && !key.equals(originalKey)) {
+            throw new IllegalArgumentException("Cannot move inventory with id " + id + " to another product or business entity"
+                    + " while stock reservations are enabled");
+        }
 
+        int quantityChange = 0;
         if (inventoryDetails.getQuantity() >= 0) {
-            updateField(inventoryDetails.getQuantity(), inventory::setQuantity);
+            // The quantity is a total; whatever the product's inventory slots hold stays there
+            int slotQuantity = slotQuantity(inventory.getProductId(), inventory.getBusinessEntityId());
+            quantityChange = inventoryDetails.getQuantity() - slotQuantity - inventory.getQuantity();
+            updateField(inventoryDetails.getQuantity() - slotQuantity, inventory::setQuantity);
         }
 
         if (inventoryDetails.getTotalCostPrice() >= 0) {
             updateField(inventoryDetails.getTotalCostPrice(), inventory::setTotalCostPrice);
         }
+        if (stockReservationEngine.isEnabled() && quantityChange != 0) {
+            // A lower quantity is admitted against the counters like any other deduction, so it cannot take stock
+            // the engine has already promised to a sale that is still to be flushed
+            List<Inventory> saved = new ArrayList<>(1);
+            stockReservationEngine.applyThrough(key.businessEntityId(), new TreeMap<>(Map.of(key.productId(), quantityChange)),
+                    () -> saved.add(inventoryRepository.saveAndFlush(inventory)));
+            return saved.get(0);
+        }
         return inventoryRepository.save(inventory);
     }
 
+    // Hot products keep part of their stock in inventory slots; callers see the row and its slots as one quantity
+    private List<Inventory> withSlotQuantities(List<Inventory> inventories, Long productId, Long businessEntityId) {
+        if (!inventorySlotManager.isEnabled()) {
+            return inventories;
+        }
+        Map<InventoryKey, Integer> slotQuantities = inventorySlotManager.slotQuantities(productId, businessEntityId);
+        if (slotQuantities.isEmpty()) {
+            return inventories;
+        }
+        return inventories.stream()
+                .map(inventory -> withSlotQuantity(inventory, slotQuantities.get(new InventoryKey(inventory.getProductId(), inventory.getBusinessEntityId()))))
+                .toList();
+    }
+
+    private Inventory withSlotQuantities(Inventory inventory, Long productId, Long businessEntityId) {
+        return withSlotQuantity(inventory, slotQuantity(productId, businessEntityId));
+    }
+
+    // Returns a detached copy so the summed quantity is never flushed back to the row
+    private Inventory withSlotQuantity(Inventory inventory, Integer slotQuantity) {
+        if (slotQuantity == null || slotQuantity == 0) {
+            return inventory;
+        }
+        Inventory total = new Inventory();
+        total.setId(inventory.getId());
+        total.setProductId(inventory.getProductId());
+        total.setBusinessEntityId(inventory.getBusinessEntityId());
+        total.setQuantity(inventory.getQuantity() + slotQuantity);
+        total.setTotalCostPrice(inventory.getTotalCostPrice());
+        return total;
+    }
+
+    private int slotQuantity(Long productId, Long businessEntityId) {
+        if (!inventorySlotManager.isEnabled()) {
+            return 0;
+        }
+        return inventorySlotManager.slotQuantities(productId, businessEntityId)
+                .getOrDefault(new InventoryKey(productId, businessEntityId), 0);
+    }
+
     // Generic helper method for updating fields
     private <T> void updateField(T newValue, Consumer<T> updater) {
         if(newValue == null) {
@@ -79,10 +145,16 @@ public class InventoryService {
     }
 
     // Not exposed in controller - Inventory should only be changed by Inventory Summary
+    @Transactional
     public Inventory deleteInventory(Long id) {
         Inventory inventory = inventoryRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Inventory not found with id: " + id));
 
+        if (stockReservationEngine.isEnabled() && inventory.getQuantity() != 0) {
+            stockReservationEngine.applyThrough(inventory.getBusinessEntityId(),
+                    new TreeMap<>(Map.of(inventory.getProductId(), -inventory.getQuantity())), () -> inventoryRepository.delete(inventory));
+            return inventory;
+        }
         inventoryRepository.delete(inventory);
         return inventory;
     }
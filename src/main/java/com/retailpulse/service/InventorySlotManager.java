@@ -0,0 +1,318 @@
+package com.retailpulse.service;
+
+import com.retailpulse.entity.Inventory;
+import com.retailpulse.entity.InventorySlot;
+import com.retailpulse.exception.ErrorCodes;
+import com.retailpulse.repository.InventoryRepository;
+import com.retailpulse.repository.InventorySlotRepository;
+import com.retailpulse.service.exception.BusinessException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Splits the stock of hot products across {@code inventory.slots.count} {@link InventorySlot} rows, so concurrent
+ * checkouts of the same product at the same store decrement different rows instead of queueing on one.
+ * The available quantity of a product is always its inventory row plus all of its slots.
+ * <p>
+ * Hot products are listed in {@code inventory.slots.hot-keys} as {@code businessEntityId:productId}, and with
+ * auto-detection on, rows that keep showing slow lock waits are promoted as well and demoted again once idle.
+ * A background task spreads each hot product's stock evenly over its slots.
+ */
+@Component
+public class InventorySlotManager implements SmartLifecycle {
+
+    private static final Logger LOG = LoggerFactory.getLogger(InventorySlotManager.class);
+
+    private final InventoryRepository inventoryRepository;
+    private final InventorySlotRepository inventorySlotRepository;
+    private final InventoryLockManager inventoryLockManager;
+    private final TransactionTemplate rebalanceTransactionTemplate;
+    private final Counter rebalanceCounter;
+
+    private final Set<InventoryKey> configuredKeys = ConcurrentHashMap.newKeySet();
+    // Auto-detected hot keys and when they were last seen contended
+    private final Map<InventoryKey, Long> detectedKeys = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService rebalanceExecutor;
+    private volatile boolean running;
+
+    @Value("${inventory.slots.enabled:false}")
+    private boolean enabled;
+
+    @Value("${inventory.slots.count:8}")
+    private int slotCount = 8;
+
+    @Value("${inventory.slots.hot-keys:}")
+    private List<String> hotKeys = List.of();
+
+    @Value("${inventory.slots.rebalance-interval-ms:5000}")
+    private long rebalanceIntervalMs = 5000;
+
+    @Value("${inventory.slots.auto-detect.enabled:false}")
+    private boolean autoDetect;
+
+    @Value("${inventory.slots.auto-detect.min-slow-waits:20}")
+    private long minSlowWaits = 20;
+
+    @Value("${inventory.slots.auto-detect.idle-ms:600000}")
+    private long idleMs = 600000;
+
+    public InventorySlotManager(InventoryRepository inventoryRepository,
+                                InventorySlotRepository inventorySlotRepository,
+                                InventoryLockManager inventoryLockManager,
+                                PlatformTransactionManager transactionManager,
+                                MeterRegistry meterRegistry) {
+        this.inventoryRepository = inventoryRepository;
+        this.inventorySlotRepository = inventorySlotRepository;
+        this.inventoryLockManager = inventoryLockManager;
+        this.rebalanceTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.rebalanceTransactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.rebalanceCounter = Counter.builder("inventory.slots.rebalances")
+                .description("Hot products whose stock was redistributed across their slots")
+                .register(meterRegistry);
+        meterRegistry.gauge("inventory.slots.hot.keys", detectedKeys, keys -> keys.size() + configuredKeys.size());
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public boolean isHot(InventoryKey key) {
+        return enabled && (configuredKeys.contains(key) || detectedKeys.containsKey(key));
+    }
+
+    /**
+     * Deducts a hot product's stock within the current transaction. One random slot is tried first, then the
+     * inventory row, and only when neither holds enough on its own are all the product's rows locked and drained.
+     * In {@link InventoryLockMode#PESSIMISTIC} lock mode the product's rows are always locked and checked first.
+     *
+     * @return false if the row and slots together hold less than {@code quantity}
+     */
+    public boolean deduct(long businessEntityId, long productId, int quantity) {
+        if (inventoryLockManager.isPessimistic()) {
+            return drain(businessEntityId, productId, quantity);
+        }
+        int slotIndex = ThreadLocalRandom.current().nextInt(slotCount);
+        if (inventorySlotRepository.deductFromSlot(businessEntityId, productId, slotIndex, quantity) == 1) {
+            return true;
+        }
+        if (inventoryRepository.deductQuantities(businessEntityId, Map.of(productId, quantity)).isEmpty()) {
+            return true;
+        }
+        return drain(businessEntityId, productId, quantity);
+    }
+
+    /**
+     * Returns stock of a hot product to one random slot within the current transaction, or to the inventory row
+     * while the product has no slots yet.
+     *
+     * @return false if the product has no inventory row at the business entity
+     */
+    public boolean add(long businessEntityId, long productId, int quantity) {
+        int slotIndex = ThreadLocalRandom.current().nextInt(slotCount);
+        if (inventorySlotRepository.addToSlot(businessEntityId, productId, slotIndex, quantity) == 1) {
+            return true;
+        }
+        return inventoryRepository.addQuantities(businessEntityId, Map.of(productId, quantity)).isEmpty();
+    }
+
+    /**
+     * Sums slot stock per inventory row. A null filter matches every value; rows without slots are absent.
+     */
+    public Map<InventoryKey, Integer> slotQuantities(Long productId, Long businessEntityId) {
+        return inventorySlotRepository.sumSlotQuantities(productId, businessEntityId).stream()
+                .collect(Collectors.toMap(
+                        total -> new InventoryKey(total.productId(), total.businessEntityId()),
+                        total -> Math.toIntExact(total.quantity())));
+    }
+
+    /**
+     * Promotes newly contended rows, demotes idle ones and spreads every hot product's stock over its slots.
+     */
+    public void rebalance() {
+        long now = System.currentTimeMillis();
+        if (autoDetect) {
+            inventoryLockManager.drainContendedKeys(minSlowWaits).stream()
+                    .filter(key -> !configuredKeys.contains(key))
+                    .forEach(key -> {
+                if (detectedKeys.put(key, now) == null) {
+                    LOG.info("Splitting stock of product {} at business entity {} across {} slots",
+                            key.productId(), key.businessEntityId(), slotCount);
+                }
+            });
+        }
+
+        List<InventoryKey> idleKeys = detectedKeys.entrySet().stream()
+                .filter(entry -> now - entry.getValue() > idleMs)
+                .map(Map.Entry::getKey)
+                .toList();
+        for (InventoryKey key : idleKeys) {
+            // Stop routing checkouts to the slots before folding them back into the row
+            detectedKeys.remove(key);
+            rebalanceTransactionTemplate.executeWithoutResult(status -> collapse(key));
+        }
+
+        Set<InventoryKey> keys = new HashSet<>(configuredKeys);
+        keys.addAll(detectedKeys.keySet());
+        for (InventoryKey key : keys) {
+            rebalanceTransactionTemplate.executeWithoutResult(status -> spread(key));
+        }
+    }
+
+    @Override
+    public void start() {
+        if (!enabled) {
+            // Fold back anything left behind by an earlier run with slots enabled
+            slotQuantities(null, null).keySet()
+                    .forEach(key -> rebalanceTransactionTemplate.executeWithoutResult(status -> collapse(key)));
+            return;
+        }
+
+        hotKeys.stream()
+                .filter(hotKey -> !hotKey.isBlank())
+                .map(InventorySlotManager::parseKey)
+                .forEach(configuredKeys::add);
+        // Products still holding slot stock from an earlier run stay hot until they go idle
+        long now = System.currentTimeMillis();
+        slotQuantities(null, null).keySet().stream()
+                .filter(key -> !configuredKeys.contains(key))
+                .forEach(key -> detectedKeys.put(key, now));
+        if (autoDetect) {
+            inventoryLockManager.trackContention();
+        }
+
+        rebalanceExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "inventory-slot-rebalance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        rebalanceExecutor.scheduleWithFixedDelay(this::rebalanceQuietly, rebalanceIntervalMs, rebalanceIntervalMs, TimeUnit.MILLISECONDS);
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        rebalanceExecutor.shutdownNow();
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void rebalanceQuietly() {
+        try {
+            rebalance();
+        } catch (RuntimeException e) {
+            LOG.error("Inventory slot rebalance failed", e);
+        }
+    }
+
+    // drain(), spread() and collapse() all lock the slots in slot order before the row. A checkout can reach drain()
+    // already holding the row or the slot it tried first, so two draining checkouts, or one and a rebalance, can
+    // still deadlock; the database rolls one back and its caller retries it through @RetryOnLockConflict
+    private boolean drain(long businessEntityId, long productId, int quantity) {
+        List<InventorySlot> slots = inventorySlotRepository.lockSlots(businessEntityId, productId);
+        Inventory inventory = lockRow(businessEntityId, productId);
+
+        int total = inventory.getQuantity() + slots.stream().mapToInt(InventorySlot::getQuantity).sum();
+        if (total < quantity) {
+            return false;
+        }
+
+        int remaining = quantity;
+        int fromRow = Math.min(Math.max(inventory.getQuantity(), 0), remaining);
+        inventory.setQuantity(inventory.getQuantity() - fromRow);
+        remaining -= fromRow;
+        for (InventorySlot slot : slots) {
+            int fromSlot = Math.min(Math.max(slot.getQuantity(), 0), remaining);
+            slot.setQuantity(slot.getQuantity() - fromSlot);
+            remaining -= fromSlot;
+        }
+        return true;
+    }
+
+    private void spread(InventoryKey key) {
+        List<InventorySlot> slots = inventorySlotRepository.lockSlots(key.businessEntityId(), key.productId());
+        Optional<Inventory> row = inventoryRepository.lockByBusinessEntityIdAndProductIdIn(key.businessEntityId(), List.of(key.productId()))
+                .stream().findFirst();
+        if (row.isEmpty()) {
+            return;
+        }
+        Inventory inventory = row.get();
+        int total = inventory.getQuantity() + slots.stream().mapToInt(InventorySlot::getQuantity).sum();
+        int share = Math.max(total, 0) / slotCount;
+        if (isBalanced(inventory, slots, share)) {
+            return;
+        }
+
+        Map<Integer, InventorySlot> slotsByIndex = slots.stream()
+                .collect(Collectors.toMap(InventorySlot::getSlotIndex, slot -> slot));
+        List<InventorySlot> balanced = new ArrayList<>();
+        for (int slotIndex = 0; slotIndex < slotCount; slotIndex++) {
+            InventorySlot slot = slotsByIndex.remove(slotIndex);
+            if (slot == null) {
+                slot = new InventorySlot(key.productId(), key.businessEntityId(), slotIndex);
+            }
+            slot.setQuantity(share);
+            balanced.add(slot);
+        }
+        // Slots past a reduced slot count are folded into the others
+        inventorySlotRepository.deleteAll(slotsByIndex.values());
+        inventorySlotRepository.saveAll(balanced);
+        inventory.setQuantity(total - share * slotCount);
+        rebalanceCounter.increment();
+    }
+
+    private void collapse(InventoryKey key) {
+        List<InventorySlot> slots = inventorySlotRepository.lockSlots(key.businessEntityId(), key.productId());
+        if (slots.isEmpty()) {
+            return;
+        }
+        Inventory inventory = lockRow(key.businessEntityId(), key.productId());
+        inventory.setQuantity(inventory.getQuantity() + slots.stream().mapToInt(InventorySlot::getQuantity).sum());
+        inventorySlotRepository.deleteAll(slots);
+    }
+
+    // Within one slot of an even split, with the row holding no more than the remainder
+    private boolean isBalanced(Inventory inventory, List<InventorySlot> slots, int share) {
+        return slots.size() == slotCount
+                && inventory.getQuantity() >= 0
+                && inventory.getQuantity() < slotCount * 2
+                && slots.stream().allMatch(slot -> Math.abs(slot.getQuantity() - share) <= 1);
+    }
+
+    private Inventory lockRow(long businessEntityId, long productId) {
+        return inventoryRepository.lockByBusinessEntityIdAndProductIdIn(businessEntityId, List.of(productId)).stream()
+                .findFirst()
+                .orElseThrow(() -> new BusinessException(ErrorCodes.NOT_FOUND, "Inventory not found for product id: " + productId));
+    }
+
+    private static InventoryKey parseKey(String hotKey) {
+        String[] parts = hotKey.trim().split(":");
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("inventory.slots.hot-keys entries must be businessEntityId:productId, got: " + hotKey);
+        }
+        return new InventoryKey(Long.parseLong(parts[1].trim()), Long.parseLong(parts[0].trim()));
+    }
+}
@@ -1,44 +1,68 @@
 package com.retailpulse.service;
 
+import com.retailpulse.DTO.InventoryDeltaDto;
 import com.retailpulse.DTO.InventoryTransactionProductDto;
+import com.retailpulse.config.RetryOnLockConflict;
 import com.retailpulse.entity.BusinessEntity;
-import com.retailpulse.entity.Inventory;
 import com.retailpulse.entity.InventoryTransaction;
 import com.retailpulse.entity.Product;
+import com.retailpulse.exception.ErrorCodes;
 import com.retailpulse.repository.BusinessEntityRepository;
+import com.retailpulse.repository.InventoryRepository;
 import com.retailpulse.repository.InventoryTransactionRepository;
+import com.retailpulse.service.exception.BusinessException;
 import org.jetbrains.annotations.NotNull;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
-import java.util.List;
-import java.util.Optional;
-import java.util.UUID;
+import java.util.*;
 import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 public class InventoryTransactionService {
 
     private final InventoryTransactionRepository inventoryTransactionRepository;
-    private final InventoryService inventoryService;
+    private final InventoryRepository inventoryRepository;
     private final ProductService productService;
     private final BusinessEntityRepository businessEntityRepository;
+    private final InventorySlotManager inventorySlotManager;
+    private final StockReservationEngine stockReservationEngine;
+
+    @Value("${inventory.transfer.batch.max-lines:10000}")
+    private int maxBatchLines = 10000;
     
     @Autowired
     public InventoryTransactionService(InventoryTransactionRepository inventoryTransactionRepository,
-                                        InventoryService inventoryService,
+                                        InventoryRepository inventoryRepository,
                                         ProductService productService,
-                                        BusinessEntityRepository businessEntityRepository) {
+                                        BusinessEntityRepository businessEntityRepository,
+                                        InventorySlotManager inventorySlotManager,
+                                        StockReservationEngine stockReservationEngine) {
         this.inventoryTransactionRepository = inventoryTransactionRepository;
-        this.inventoryService = inventoryService;
+        this.inventoryRepository = inventoryRepository;
         this.productService = productService;
         this.businessEntityRepository = businessEntityRepository;
+        this.inventorySlotManager = inventorySlotManager;
+        this.stockReservationEngine = stockReservationEngine;
     }
     
     public List<InventoryTransactionProductDto> getAllInventoryTransactionWithProduct() {
         return inventoryTransactionRepository.findAllWithProduct();
     }
 
+    /**
+     * Moves stock of one product from the source to the destination in one transaction. The source row is
+     * decremented by a guarded update that only applies while it holds enough stock, and the destination row is
+     * incremented by an upsert that creates it when missing, so neither side is read first. External business
+     * entities hold no inventory and are skipped. The product and business entities are checked against the
+     * second-level cache.
+     */
+    @RetryOnLockConflict
+    @Transactional
     public InventoryTransaction saveInventoryTransaction(@NotNull InventoryTransaction inventoryTransaction) {
         validateInventoryTransactionRequestBody(inventoryTransaction);
 
@@ -46,55 +70,89 @@ public class InventoryTransactionService {
         long sourceId = inventoryTransaction.getSource();
         long destinationId = inventoryTransaction.getDestination();
         int quantity = inventoryTransaction.getQuantity();
-        double costPricePerUnit = inventoryTransaction.getCostPricePerUnit();
+        double costPrice = inventoryTransaction.getCostPricePerUnit() * quantity;
 
         boolean isSourceExternal = this.isExternalBusinessEntity(sourceId);
-        // Source External: No need to validate/deduct source inventory
-        if (!isSourceExternal) {
-            // Validate source inventory
-            Optional<Inventory> sourceInventory = inventoryService.getInventoryByProductIdAndBusinessEntityId(productId, sourceId);
-            if (sourceInventory.isEmpty()) {
-                throw new IllegalArgumentException("Source inventory not found for product id: "
-                        + productId + " and source id: " + sourceId);
-            }
-            if (sourceInventory.get().getQuantity() < quantity) {
-                throw new IllegalArgumentException("Not enough quantity in source inventory for product id: "
-                        + productId + " and source id: " + sourceId + ". Available: "
-                        + sourceInventory.get().getQuantity() + ", required: " + quantity);
-            }
+        boolean isDestinationExternal = this.isExternalBusinessEntity(destinationId);
 
-            // Update source inventory: deduct the quantity
-            Inventory existingSourceInventory = sourceInventory.get();
-            existingSourceInventory.setQuantity(existingSourceInventory.getQuantity() - quantity);
-            existingSourceInventory.setTotalCostPrice(existingSourceInventory.getTotalCostPrice() - (costPricePerUnit * quantity));
-            inventoryService.updateInventory(existingSourceInventory.getId(), existingSourceInventory);
+        // Rows are written in business entity id order, so transfers in opposite directions cannot deadlock
+        SortedMap<Long, InventoryDeltaDto> deltasByBusinessEntity = new TreeMap<>();
+        if (!isSourceExternal) {
+            deltasByBusinessEntity.put(sourceId, new InventoryDeltaDto(-quantity, -costPrice));
         }
-
-        boolean isDestinationExternal = this.isExternalBusinessEntity(destinationId);
-        // Destination External: No need to deduct destination inventory
         if (!isDestinationExternal) {
-            // Update or create destination inventory
-            Optional<Inventory> destinationInventory = inventoryService.getInventoryByProductIdAndBusinessEntityId(productId, destinationId);
-            if (destinationInventory.isEmpty()) {
-                // Create new inventory for destination since it does not exist.
-                Inventory newDestinationInventory = new Inventory();
-                newDestinationInventory.setProductId(productId);
-                newDestinationInventory.setBusinessEntityId(destinationId);
-                newDestinationInventory.setQuantity(quantity);
-                newDestinationInventory.setTotalCostPrice(costPricePerUnit * quantity);
-                inventoryService.saveInventory(newDestinationInventory);
-            } else {
-                // Update existing destination inventory by adding the quantity.
-                Inventory existingDestinationInventory = destinationInventory.get();
-                existingDestinationInventory.setQuantity(existingDestinationInventory.getQuantity() + quantity);
-                existingDestinationInventory.setTotalCostPrice(existingDestinationInventory.getTotalCostPrice() + (costPricePerUnit * quantity));
-                inventoryService.updateInventory(existingDestinationInventory.getId(), existingDestinationInventory);
-            }
+            deltasByBusinessEntity.put(destinationId, new InventoryDeltaDto(quantity, costPrice));
         }
+        deltasByBusinessEntity.forEach((businessEntityId, delta) -> applyDeltas(businessEntityId,
+                new TreeMap<>(Map.of(productId, delta)),
+                shortProductIds -> insufficientSourceInventory(productId, sourceId, quantity)));
 
         // Proceed with saving the transaction
         return inventoryTransactionRepository.save(inventoryTransaction);
     }
+
+    /**
+     * Posts many transfers in one transaction, e.g. a store replenishment or a supplier delivery. Products and
+     * business entities are checked with one query each, and each line is checked against the stock left by the
+     * lines before it. The accepted lines are netted per product and business entity and applied as one batch of
+     * guarded updates and one batch of upserts per business entity, and their transactions are inserted in JDBC
+     * batches.
+     * <p>
+     * A rejected line only fails itself, unless {@code atomic} is set, in which case no line is applied. A deduction
+     * that still fails, e.g. because a checkout took the stock meanwhile, is thrown and rolls back the whole batch.
+     *
+     * @return one result per line, in the same order
+     */
+    @RetryOnLockConflict
+    @Transactional
+    public List<InventoryTransferResult> saveInventoryTransactions(List<InventoryTransaction> inventoryTransactions, boolean atomic) {
+        if (inventoryTransactions.size() > maxBatchLines) {
+            throw new BusinessException(ErrorCodes.LIMIT_EXCEEDED,
+                    "At most " + maxBatchLines + " lines can be sent at once, got " + inventoryTransactions.size());
+        }
+
+        Map<Long, Product> products = productService.getProductsByIds(collectIds(inventoryTransactions,
+                InventoryTransaction::getProductId)).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+        Map<Long, BusinessEntity> businessEntities = businessEntityRepository.findAllById(collectIds(inventoryTransactions,
+                InventoryTransaction::getSource, InventoryTransaction::getDestination)).stream()
+                .collect(Collectors.toMap(BusinessEntity::getId, Function.identity()));
+        Map<InventoryKey, Integer> remaining = availableAtSources(inventoryTransactions, products, businessEntities);
+
+        List<BusinessException> errors = new ArrayList<>(inventoryTransactions.size());
+        Map<Long, SortedMap<Long, InventoryDeltaDto>> deltas = new TreeMap<>();
+        for (InventoryTransaction line : inventoryTransactions) {
+            BusinessException error = validateLine(line, products, businessEntities);
+            if (error == null) {
+                error = admit(line, businessEntities, remaining, deltas);
+            }
+            errors.add(error);
+        }
+
+        boolean anyRejected = errors.stream().anyMatch(Objects::nonNull);
+        if (atomic && anyRejected) {
+            return errors.stream()
+                    .map(error -> InventoryTransferResult.rejected(error != null ? error : new BusinessException(
+                            ErrorCodes.BATCH_REJECTED, "Not applied because another line of the batch was rejected")))
+                    .toList();
+        }
+
+        deltas.forEach((businessEntityId, deltasByProductId) -> applyDeltas(businessEntityId, deltasByProductId,
+                shortProductIds -> new BusinessException(ErrorCodes.INSUFFICIENT_INVENTORY, "Insufficient stock for product id: "
+                        + joinIds(shortProductIds) + " at business entity id: " + businessEntityId)));
+
+        List<InventoryTransaction> accepted = new ArrayList<>();
+        for (int i = 0; i < inventoryTransactions.size(); i++) {
+            if (errors.get(i) == null) {
+                accepted.add(inventoryTransactions.get(i));
+            }
+        }
+        Iterator<InventoryTransaction> saved = inventoryTransactionRepository.saveAll(accepted).iterator();
+        return errors.stream()
+                .map(error -> error == null ? InventoryTransferResult.accepted(saved.next()) : InventoryTransferResult.rejected(error))
+                .toList();
+    }
+
     /* Some of the things to consider when creating Update/Delete method
     * Update -
     * If Product can be updated
@@ -122,6 +180,144 @@ public class InventoryTransactionService {
     * * * 2.1.2 If updatedQuantity
     */
 
+    /**
+     * Applies net stock changes to one business entity's rows: deductions as one batch of guarded updates and
+     * additions as one batch of upserts. Hot products go through their inventory slots, which hold quantity only,
+     * so their cost price is still added to the row. With the reservation engine enabled, its counters follow.
+     */
+    private void applyDeltas(long businessEntityId, SortedMap<Long, InventoryDeltaDto> deltasByProductId,
+                             Function<List<Long>, RuntimeException> insufficientStock) {
+        SortedMap<Long, Integer> quantityDeltas = new TreeMap<>();
+        deltasByProductId.forEach((productId, delta) -> quantityDeltas.put(productId, delta.quantity()));
+
+        applyThroughReservations(businessEntityId, quantityDeltas, () -> {
+            SortedMap<Long, InventoryDeltaDto> deductions = new TreeMap<>();
+            SortedMap<Long, InventoryDeltaDto> additions = new TreeMap<>();
+            List<Long> shortProductIds = new ArrayList<>();
+            deltasByProductId.forEach((productId, delta) -> {
+                boolean hot = inventorySlotManager.isHot(new InventoryKey(productId, businessEntityId));
+                if (delta.quantity() < 0) {
+                    if (!hot) {
+                        deductions.put(productId, new InventoryDeltaDto(-delta.quantity(), -delta.costPrice()));
+                    } else if (inventorySlotManager.deduct(businessEntityId, productId, -delta.quantity())) {
+                        additions.put(productId, new InventoryDeltaDto(0, delta.costPrice()));
+                    } else {
+                        shortProductIds.add(productId);
+                    }
+                } else if (hot && delta.quantity() > 0 && inventorySlotManager.add(businessEntityId, productId, delta.quantity())) {
+                    additions.put(productId, new InventoryDeltaDto(0, delta.costPrice()));
+                } else {
+                    additions.put(productId, delta);
+                }
+            });
+
+            if (!deductions.isEmpty()) {
+                // A product this node does not treat as hot may still hold stock in slots that another node split
+                inventoryRepository.deductStock(businessEntityId, deductions).forEach(productId -> {
+                    InventoryDeltaDto deduction = deductions.get(productId);
+                    if (inventorySlotManager.isEnabled() && inventorySlotManager.deduct(businessEntityId, productId, deduction.quantity())) {
+                        additions.put(productId, new InventoryDeltaDto(0, -deduction.costPrice()));
+                    } else {
+                        shortProductIds.add(productId);
+                    }
+                });
+            }
+            if (!shortProductIds.isEmpty()) {
+                throw insufficientStock.apply(shortProductIds);
+            }
+            if (!additions.isEmpty()) {
+                inventoryRepository.addStock(businessEntityId, additions);
+            }
+        });
+    }
+
+    // Keeps the reservation engine's counters in line with stock moved outside of checkout
+    private void applyThroughReservations(long businessEntityId, SortedMap<Long, Integer> deltas, Runnable databaseWrite) {
+        if (stockReservationEngine.isEnabled()) {
+            stockReservationEngine.applyThrough(businessEntityId, deltas, databaseWrite);
+        } else {
+            databaseWrite.run();
+        }
+    }
+
+    // Quantities available at every internal source of a valid line, read with one query per source
+    private Map<InventoryKey, Integer> availableAtSources(List<InventoryTransaction> inventoryTransactions,
+                                                         Map<Long, Product> products,
+                                                         Map<Long, BusinessEntity> businessEntities) {
+        Map<Long, Set<Long>> productIdsBySource = new TreeMap<>();
+        for (InventoryTransaction line : inventoryTransactions) {
+            BusinessEntity source = line.getSource() == null ? null : businessEntities.get(line.getSource());
+            if (source != null && !source.isExternal() && line.getProductId() != null && products.containsKey(line.getProductId())) {
+                productIdsBySource.computeIfAbsent(source.getId(), id -> new HashSet<>()).add(line.getProductId());
+            }
+        }
+
+        Map<InventoryKey, Integer> available = new HashMap<>();
+        productIdsBySource.forEach((sourceId, productIds) ->
+                availableQuantities(sourceId, productIds).forEach((productId, quantity) ->
+                        available.put(new InventoryKey(productId, sourceId), quantity)));
+        return available;
+    }
+
+    // Checks a line against the stock left by the lines before it and adds it to the net deltas if it fits
+    private BusinessException admit(InventoryTransaction line, Map<Long, BusinessEntity> businessEntities,
+                                    Map<InventoryKey, Integer> remaining, Map<Long, SortedMap<Long, InventoryDeltaDto>> deltas) {
+        long productId = line.getProductId();
+        long sourceId = line.getSource();
+        long destinationId = line.getDestination();
+        int quantity = line.getQuantity();
+        double costPrice = line.getCostPricePerUnit() * quantity;
+        boolean isSourceExternal = businessEntities.get(sourceId).isExternal();
+        boolean isDestinationExternal = businessEntities.get(destinationId).isExternal();
+
+        InventoryKey sourceKey = new InventoryKey(productId, sourceId);
+        if (!isSourceExternal) {
+            Integer available = remaining.get(sourceKey);
+            if (available == null) {
+                return new BusinessException(ErrorCodes.NOT_FOUND, "Source inventory not found for product id: "
+                        + productId + " and source id: " + sourceId);
+            }
+            if (available < quantity) {
+                return new BusinessException(ErrorCodes.INSUFFICIENT_INVENTORY, "Not enough quantity in source inventory for product id: "
+                        + productId + " and source id: " + sourceId + ". Available: " + available + ", required: " + quantity);
+            }
+            remaining.put(sourceKey, available - quantity);
+            addDelta(deltas, sourceId, productId, -quantity, -costPrice);
+        }
+        if (!isDestinationExternal) {
+            // Stock received by a store that later lines send on is available to them, even where the store had none
+            remaining.merge(new InventoryKey(productId, destinationId), quantity, Integer::sum);
+            addDelta(deltas, destinationId, productId, quantity, costPrice);
+        }
+        return null;
+    }
+
+    private void addDelta(Map<Long, SortedMap<Long, InventoryDeltaDto>> deltas, long businessEntityId, long productId,
+                          int quantity, double costPrice) {
+        deltas.computeIfAbsent(businessEntityId, id -> new TreeMap<>())
+                .merge(productId, new InventoryDeltaDto(quantity, costPrice),
+                        (a, b) -> new InventoryDeltaDto(a.quantity() + b.quantity(), a.costPrice() + b.costPrice()));
+    }
+
+    // Slot stock is only counted while slots are enabled; otherwise a plain keyed read of the rows does
+    private Map<Long, Integer> availableQuantities(long businessEntityId, Collection<Long> productIds) {
+        return inventorySlotManager.isEnabled()
+                ? inventoryRepository.findQuantitiesByProductId(businessEntityId, productIds)
+                : inventoryRepository.findRowQuantitiesByProductId(businessEntityId, productIds);
+    }
+
+    // Only read once the guarded update has failed, to say why
+    private IllegalArgumentException insufficientSourceInventory(long productId, long sourceId, int quantity) {
+        Integer available = inventoryRepository.findQuantitiesByProductId(sourceId, List.of(productId)).get(productId);
+        if (available == null) {
+            return new IllegalArgumentException("Source inventory not found for product id: "
+                    + productId + " and source id: " + sourceId);
+        }
+        return new IllegalArgumentException("Not enough quantity in source inventory for product id: "
+                + productId + " and source id: " + sourceId + ". Available: "
+                + available + ", required: " + quantity);
+    }
+
     private boolean isExternalBusinessEntity(Long id) {
         BusinessEntity businessEntity = businessEntityRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Business Entity not found with id: " + id));
@@ -180,4 +376,51 @@ public class InventoryTransactionService {
             throw new IllegalArgumentException("Cost price per unit cannot be negative");
         }
     }
-}
\ No newline at end of file
+
+    private BusinessException validateLine(InventoryTransaction line, Map<Long, Product> products,
+                                           Map<Long, BusinessEntity> businessEntities) {
+        if (line.getProductId() == null || line.getSource() == null || line.getDestination() == null) {
+            return new BusinessException(ErrorCodes.INVALID_REQUEST, "Product id, source and destination are required");
+        }
+        Product product = products.get(line.getProductId());
+        if (product == null) {
+            return new BusinessException(ErrorCodes.NOT_FOUND, "Product not found for product id: " + line.getProductId());
+        }
+        if (!product.isActive()) {
+            return new BusinessException(ErrorCodes.INVALID_REQUEST, "Product deleted for product id: " + line.getProductId());
+        }
+        if (line.getSource().equals(line.getDestination())) {
+            return new BusinessException(ErrorCodes.INVALID_REQUEST, "Source and Destination cannot be the same");
+        }
+        if (line.getQuantity() <= 0) {
+            return new BusinessException(ErrorCodes.INVALID_REQUEST, "Quantity cannot be negative or zero");
+        }
+        if (line.getCostPricePerUnit() < 0) {
+            return new BusinessException(ErrorCodes.INVALID_REQUEST, "Cost price per unit cannot be negative");
+        }
+        for (Long businessEntityId : List.of(line.getSource(), line.getDestination())) {
+            if (!businessEntities.containsKey(businessEntityId)) {
+                return new BusinessException(ErrorCodes.NOT_FOUND, "Business Entity not found with id: " + businessEntityId);
+            }
+        }
+        return null;
+    }
+
+    @SafeVarargs
+    private static Set<Long> collectIds(List<InventoryTransaction> inventoryTransactions, Function<InventoryTransaction, Long>... idGetters) {
+        Set<Long> ids = new HashSet<>();
+        for (InventoryTransaction line : inventoryTransactions) {
+            for (Function<InventoryTransaction, Long> idGetter : idGetters) {
+                Long id = idGetter.apply(line);
+                if (id != null) {
+                    ids.add(id);
+                }
+            }
+        }
+        return ids;
+    }
+
+    private static String joinIds(List<Long> ids) {
+        return ids.stream().map(String::valueOf).collect(Collectors.joining(", "));
+    }
+}
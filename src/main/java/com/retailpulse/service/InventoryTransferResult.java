@@ -0,0 +1,22 @@
+package com.retailpulse.service;
+
+import com.retailpulse.entity.InventoryTransaction;
+import com.retailpulse.service.exception.BusinessException;
+
+/**
+ * Outcome of one line of a batch of inventory transfers: either the saved transaction or the reason it was rejected.
+ */
+public record InventoryTransferResult(InventoryTransaction transaction, BusinessException error) {
+
+    public static InventoryTransferResult accepted(InventoryTransaction transaction) {
+        return new InventoryTransferResult(transaction, null);
+    }
+
+    public static InventoryTransferResult rejected(BusinessException error) {
+        return new InventoryTransferResult(null, error);
+    }
+
+    public boolean isAccepted() {
+        return error == null;
+    }
+}
@@ -0,0 +1,103 @@
+package com.retailpulse.service;
+
+import com.retailpulse.controller.request.OfflineSaleDto;
+import com.retailpulse.controller.request.SalesTransactionRequestDto;
+import com.retailpulse.exception.ErrorCodes;
+import com.retailpulse.service.exception.BusinessException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Resync of the sales a POS queued while offline. Sales are written in chunks of {@code checkout.bulk.chunk-size}
+ * by {@link SalesTransactionService#createSalesTransactions}, so each chunk deducts stock once per product and
+ * store and commits once. Every sale carries the terminal's idempotency key, claimed before the chunks are written
+ * and recorded in the transaction of the chunk that creates the sale. Replaying a resync that was cut off part way,
+ * on any node, therefore only creates the sales that are still missing.
+ * <p>
+ * A sale rejected for stock only fails itself. If a chunk fails as a whole, its sales are written one at a time,
+ * and a sale that still fails is reported as {@link ErrorCodes#CHECKOUT_FAILED}.
+ */
+@Service
+public class OfflineSalesService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(OfflineSalesService.class);
+
+    private final SalesTransactionService salesTransactionService;
+    private final CheckoutIdempotencyService checkoutIdempotencyService;
+    private final Counter fallbackCounter;
+
+    @Value("${checkout.bulk.max-sales:10000}")
+    private int maxSales = 10000;
+
+    @Value("${checkout.bulk.chunk-size:500}")
+    private int chunkSize = 500;
+
+    public OfflineSalesService(SalesTransactionService salesTransactionService,
+                               CheckoutIdempotencyService checkoutIdempotencyService,
+                               MeterRegistry meterRegistry) {
+        this.salesTransactionService = salesTransactionService;
+        this.checkoutIdempotencyService = checkoutIdempotencyService;
+        this.fallbackCounter = Counter.builder("checkout.bulk.fallbacks")
+                .description("Offline sale chunks that failed and were retried one sale at a time")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Creates the offline sales that have not been created yet.
+     *
+     * @param offlineSales the queued sales, in the order they were made
+     * @return one result per sale, in the same order
+     */
+    public List<CheckoutResult> createOfflineSales(List<OfflineSaleDto> offlineSales) {
+        if (offlineSales.size() > maxSales) {
+            throw new BusinessException(ErrorCodes.LIMIT_EXCEEDED,
+                    "At most " + maxSales + " sales can be sent at once, got " + offlineSales.size());
+        }
+        List<String> idempotencyKeys = offlineSales.stream().map(OfflineSaleDto::idempotencyKey).toList();
+        List<SalesTransactionRequestDto> sales = offlineSales.stream().map(OfflineSaleDto::sale).toList();
+
+        return checkoutIdempotencyService.executeAll(idempotencyKeys, sales, (positions, claims) -> {
+            List<CheckoutResult> results = new ArrayList<>(positions.size());
+            for (int from = 0; from < positions.size(); from += chunkSize) {
+                int to = Math.min(from + chunkSize, positions.size());
+                List<SalesTransactionRequestDto> chunk = positions.subList(from, to).stream()
+                        .map(sales::get)
+                        .toList();
+                results.addAll(write(chunk, claims.subList(from, to)));
+            }
+            return results;
+        });
+    }
+
+    private List<CheckoutResult> write(List<SalesTransactionRequestDto> chunk, List<IdempotencyClaim> claims) {
+        try {
+            return salesTransactionService.createSalesTransactions(chunk, claims);
+        } catch (RuntimeException e) {
+            LOG.warn("Offline sale chunk of {} sales failed, retrying them one at a time", chunk.size(), e);
+            fallbackCounter.increment();
+            List<CheckoutResult> results = new ArrayList<>(chunk.size());
+            for (int i = 0; i < chunk.size(); i++) {
+                results.add(writeAlone(chunk.get(i), claims.get(i)));
+            }
+            return results;
+        }
+    }
+
+    private CheckoutResult writeAlone(SalesTransactionRequestDto requestDto, IdempotencyClaim claim) {
+        try {
+            return salesTransactionService.createSalesTransactions(List.of(requestDto), Collections.singletonList(claim)).get(0);
+        } catch (BusinessException e) {
+            return CheckoutResult.rejected(e);
+        } catch (RuntimeException e) {
+            return CheckoutResult.rejected(new BusinessException(ErrorCodes.CHECKOUT_FAILED, e.getMessage()));
+        }
+    }
+}
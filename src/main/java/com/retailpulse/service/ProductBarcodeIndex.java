@@ -0,0 +1,149 @@
+package com.retailpulse.service;
+
+import com.retailpulse.entity.Product;
+import com.retailpulse.repository.ProductRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+
+/**
+ * Resolves a scanned barcode to its active product from memory, so a scan at the POS costs no query. The index is
+ * an immutable map built from the {@code product} table at startup; each product change replaces it with an updated
+ * copy once the change commits, and readers always see either the old or the new map in full.
+ * <p>
+ * A barcode missing from the index is looked up in the database and added if found there, which also picks up
+ * products created through another node. Changes made on another node to a product already indexed here reach it
+ * through {@link CacheInvalidationPoller}.
+ */
+@Component
+public class ProductBarcodeIndex implements SmartLifecycle {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ProductBarcodeIndex.class);
+
+    private final ProductRepository productRepository;
+    private final Counter misses;
+
+    private volatile Map<String, Product> products = Map.of();
+    // Bumped on every change, so a database lookup that raced with a change does not put back a stale product
+    private long version;
+    private volatile boolean running;
+
+    public ProductBarcodeIndex(ProductRepository productRepository, MeterRegistry meterRegistry) {
+        this.productRepository = productRepository;
+        this.misses = meterRegistry.counter("product.barcode.index.misses");
+        meterRegistry.gauge("product.barcode.index.size", this, index -> index.products.size());
+    }
+
+    /**
+     * Returns a copy of the active product with the given barcode.
+     */
+    public Optional<Product> find(String barcode) {
+        Product product = products.get(barcode);
+        if (product != null) {
+            return Optional.of(product.copy());
+        }
+
+        misses.increment();
+        long versionBeforeLookup = currentVersion();
+        Optional<Product> found = productRepository.findFirstByBarcodeAndActiveTrue(barcode);
+        found.ifPresent(fromDatabase -> {
+            synchronized (this) {
+                if (version == versionBeforeLookup) {
+                    replace(List.of(fromDatabase.copy()));
+                }
+            }
+        });
+        return found.map(Product::copy);
+    }
+
+    /**
+     * Brings the index in line with products just saved: a product is indexed under its current barcode while it
+     * is active, and dropped otherwise. Inside a transaction this happens only once it commits.
+     */
+    public void refresh(Collection<Product> changed) {
+        if (changed.isEmpty()) {
+            return;
+        }
+        List<Product> snapshot = changed.stream().map(Product::copy).toList();
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            update(snapshot);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                update(snapshot);
+            }
+        });
+    }
+
+    public void refresh(Product changed) {
+        refresh(List.of(changed));
+    }
+
+    /**
+     * Rebuilds the index from every active product with a barcode.
+     */
+    public synchronized void rebuild() {
+        Map<String, Product> rebuilt = new HashMap<>();
+        for (Product product : productRepository.findByActiveTrueAndBarcodeIsNotNull()) {
+            // Barcodes are not unique in the table; the first product stays indexed, as with the database lookup
+            rebuilt.putIfAbsent(product.getBarcode(), product.copy());
+        }
+        products = Map.copyOf(rebuilt);
+        version++;
+        LOG.info("Indexed {} product barcodes", rebuilt.size());
+    }
+
+    @Override
+    public void start() {
+        rebuild();
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // Load before the web server (MAX_VALUE - 2048) starts taking scans
+    @Override
+    public int getPhase() {
+        return Integer.MAX_VALUE - 4096;
+    }
+
+    private synchronized void update(List<Product> changed) {
+        replace(changed);
+        version++;
+    }
+
+    private synchronized long currentVersion() {
+        return version;
+    }
+
+    // Swaps in a copy of the index without the changed products' old entries and with their current ones
+    private void replace(List<Product> changed) {
+        Set<Long> changedIds = new HashSet<>();
+        changed.forEach(product -> changedIds.add(product.getId()));
+        Map<String, Product> updated = new HashMap<>(products);
+        updated.values().removeIf(product -> changedIds.contains(product.getId()));
+        for (Product product : changed) {
+            if (product.isActive() && product.getBarcode() != null && !product.getBarcode().isEmpty()) {
+                updated.putIfAbsent(product.getBarcode(), product);
+            }
+        }
+        products = Map.copyOf(updated);
+    }
+}
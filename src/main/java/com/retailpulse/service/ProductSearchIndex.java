@@ -0,0 +1,269 @@
+package com.retailpulse.service;
+
+import com.retailpulse.controller.response.ProductSearchResultDto;
+import com.retailpulse.entity.Product;
+import com.retailpulse.repository.ProductRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Searches active products by description, brand, category, subcategory, SKU and barcode from memory. Each field is
+ * split into lower-case words, and an inverted index maps every word to the products containing it. The words are
+ * kept sorted, so each query word also matches the words it is a prefix of, which serves autocomplete as the user
+ * types.
+ * <p>
+ * A product matches when every query word matches one of its words. Matches are ranked by the sum, over the query
+ * words, of the weight of the field the word was found in, doubled for a whole-word match; ties are ordered by
+ * description. Like {@link ProductBarcodeIndex}, the index is built at startup and updated as products change
+ * once the change commits.
+ */
+@Component
+public class ProductSearchIndex implements SmartLifecycle {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ProductSearchIndex.class);
+
+    private static final int SKU_WEIGHT = 8;
+    private static final int BARCODE_WEIGHT = 8;
+    private static final int DESCRIPTION_WEIGHT = 4;
+    private static final int BRAND_WEIGHT = 3;
+    private static final int CATEGORY_WEIGHT = 2;
+
+    private static final Comparator<Product> BY_DESCRIPTION = Comparator
+            .comparing((Product product) -> product.getDescription() == null ? "" : product.getDescription(),
+                    String.CASE_INSENSITIVE_ORDER)
+            .thenComparing(Product::getId);
+
+    private final ProductRepository productRepository;
+    private final Timer searchTimer;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Guarded by lock
+    private Map<Long, IndexedProduct> products = new HashMap<>();
+    private NavigableMap<String, Map<Long, Integer>> postings = new TreeMap<>();
+    private volatile boolean running;
+
+    @Value("${product.search.max-page-size:100}")
+    private int maxPageSize = 100;
+
+    public ProductSearchIndex(ProductRepository productRepository, MeterRegistry meterRegistry) {
+        this.productRepository = productRepository;
+        this.searchTimer = Timer.builder("product.search")
+                .description("Time spent answering product searches")
+                .register(meterRegistry);
+        meterRegistry.gauge("product.search.indexed", this, ProductSearchIndex::size);
+    }
+
+    /**
+     * Returns one page of the active products matching every word of the query, best match first.
+     *
+     * @throws IllegalArgumentException if the page is negative or the size is outside 1 to
+     *                                  {@code product.search.max-page-size}
+     */
+    public ProductSearchResultDto search(String query, int page, int size) {
+        if (page < 0) {
+            throw new IllegalArgumentException("Page cannot be negative");
+        }
+        if (size < 1 || size > maxPageSize) {
+            throw new IllegalArgumentException("Page size must be between 1 and " + maxPageSize);
+        }
+        return searchTimer.record(() -> {
+            List<Product> ranked = rank(words(query));
+            int from = (int) Math.min((long) page * size, ranked.size());
+            int to = Math.min(from + size, ranked.size());
+            List<Product> pageOfProducts = ranked.subList(from, to).stream().map(Product::copy).toList();
+            return new ProductSearchResultDto(query, page, size, ranked.size(), pageOfProducts);
+        });
+    }
+
+    /**
+     * Brings the index in line with products just saved: an active product is indexed under its current fields,
+     * and an inactive one is dropped. Inside a transaction this happens only once it commits.
+     */
+    public void refresh(Collection<Product> changed) {
+        if (changed.isEmpty()) {
+            return;
+        }
+        List<Product> snapshot = changed.stream().map(Product::copy).toList();
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            update(snapshot);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                update(snapshot);
+            }
+        });
+    }
+
+    public void refresh(Product changed) {
+        refresh(List.of(changed));
+    }
+
+    /**
+     * Rebuilds the index from every active product.
+     */
+    public void rebuild() {
+        Map<Long, IndexedProduct> rebuiltProducts = new HashMap<>();
+        NavigableMap<String, Map<Long, Integer>> rebuiltPostings = new TreeMap<>();
+        for (Product product : productRepository.findByActiveTrue()) {
+            add(product.copy(), rebuiltProducts, rebuiltPostings);
+        }
+        lock.writeLock().lock();
+        try {
+            products = rebuiltProducts;
+            postings = rebuiltPostings;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        LOG.info("Indexed {} products for search", rebuiltProducts.size());
+    }
+
+    @Override
+    public void start() {
+        rebuild();
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // Load before the web server (MAX_VALUE - 2048) starts taking searches
+    @Override
+    public int getPhase() {
+        return Integer.MAX_VALUE - 4096;
+    }
+
+    private int size() {
+        lock.readLock().lock();
+        try {
+            return products.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private List<Product> rank(List<String> queryWords) {
+        if (queryWords.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, Integer> scores = null;
+        List<Product> matches = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (String queryWord : queryWords) {
+                Map<Long, Integer> wordScores = score(queryWord);
+                if (scores == null) {
+                    scores = wordScores;
+                } else {
+                    scores.keySet().retainAll(wordScores.keySet());
+                    scores.replaceAll((productId, score) -> score + wordScores.get(productId));
+                }
+                if (scores.isEmpty()) {
+                    return List.of();
+                }
+            }
+            scores.keySet().forEach(productId -> matches.add(products.get(productId).product()));
+        } finally {
+            lock.readLock().unlock();
+        }
+        Map<Long, Integer> finalScores = scores;
+        matches.sort(Comparator.comparing((Product product) -> finalScores.get(product.getId())).reversed()
+                .thenComparing(BY_DESCRIPTION));
+        return matches;
+    }
+
+    // Best score of each product for one query word: the whole word counts double, a longer word it starts counts once
+    private Map<Long, Integer> score(String queryWord) {
+        Map<Long, Integer> scores = new HashMap<>();
+        Map<Long, Integer> exact = postings.get(queryWord);
+        if (exact != null) {
+            exact.forEach((productId, weight) -> scores.merge(productId, weight * 2, Math::max));
+        }
+        for (Map<Long, Integer> prefixed : postings.subMap(queryWord, false, queryWord + Character.MAX_VALUE, false).values()) {
+            prefixed.forEach((productId, weight) -> scores.merge(productId, weight, Math::max));
+        }
+        return scores;
+    }
+
+    private void update(List<Product> changed) {
+        lock.writeLock().lock();
+        try {
+            for (Product product : changed) {
+                remove(product.getId());
+                if (product.isActive()) {
+                    add(product, products, postings);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void remove(Long productId) {
+        IndexedProduct indexed = products.remove(productId);
+        if (indexed == null) {
+            return;
+        }
+        for (String word : indexed.words().keySet()) {
+            Map<Long, Integer> postingList = postings.get(word);
+            postingList.remove(productId);
+            if (postingList.isEmpty()) {
+                postings.remove(word);
+            }
+        }
+    }
+
+    private static void add(Product product, Map<Long, IndexedProduct> products, NavigableMap<String, Map<Long, Integer>> postings) {
+        Map<String, Integer> words = new HashMap<>();
+        addWords(words, product.getDescription(), DESCRIPTION_WEIGHT);
+        addWords(words, product.getBrand(), BRAND_WEIGHT);
+        addWords(words, product.getCategory(), CATEGORY_WEIGHT);
+        addWords(words, product.getSubcategory(), CATEGORY_WEIGHT);
+        addWords(words, product.getSku(), SKU_WEIGHT);
+        addWords(words, product.getBarcode(), BARCODE_WEIGHT);
+        products.put(product.getId(), new IndexedProduct(product, words));
+        words.forEach((word, weight) -> postings.computeIfAbsent(word, key -> new HashMap<>()).put(product.getId(), weight));
+    }
+
+    private static void addWords(Map<String, Integer> words, String field, int weight) {
+        for (String word : words(field)) {
+            words.merge(word, weight, Math::max);
+        }
+    }
+
+    // Lower-case runs of letters and digits, so "Coffee (Dark-Roast)" gives "coffee", "dark" and "roast"
+    private static List<String> words(String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+        List<String> words = new ArrayList<>();
+        for (String word : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+    private record IndexedProduct(Product product, Map<String, Integer> words) {
+    }
+}
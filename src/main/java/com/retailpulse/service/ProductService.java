@@ -1,12 +1,17 @@
 package com.retailpulse.service;
 
+import com.retailpulse.controller.response.ProductSearchResultDto;
+import com.retailpulse.entity.CacheRegions;
 import com.retailpulse.entity.Product;
 import com.retailpulse.repository.ProductRepository;
 import org.jetbrains.annotations.NotNull;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.function.Consumer;
@@ -19,12 +24,22 @@ public class ProductService {
     private final SKUGeneratorService skuGeneratorService;
     private final ProductRepository productRepository;
     private final InventoryService inventoryService;
+    private final ProductBarcodeIndex productBarcodeIndex;
+    private final ProductSearchIndex productSearchIndex;
+    private final CacheInvalidationLog cacheInvalidationLog;
+    private final TransactionTemplate transactionTemplate;
 
     @Autowired
-    public ProductService(SKUGeneratorService skuGeneratorService, ProductRepository productRepository, InventoryService inventoryService) {
+    public ProductService(SKUGeneratorService skuGeneratorService, ProductRepository productRepository, InventoryService inventoryService,
+                          ProductBarcodeIndex productBarcodeIndex, ProductSearchIndex productSearchIndex,
+                          CacheInvalidationLog cacheInvalidationLog, PlatformTransactionManager transactionManager) {
         this.skuGeneratorService = skuGeneratorService;
         this.productRepository = productRepository;
         this.inventoryService = inventoryService;
+        this.productBarcodeIndex = productBarcodeIndex;
+        this.productSearchIndex = productSearchIndex;
+        this.cacheInvalidationLog = cacheInvalidationLog;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
     
     public List<Product> getAllProducts() {
@@ -35,11 +50,26 @@ public class ProductService {
         return productRepository.findById(id);
     }
 
+    public List<Product> getProductsByIds(Collection<Long> ids) {
+        return productRepository.findAllById(ids);
+    }
+
     public Optional<Product> getProductBySKU(String sku) {
         return productRepository.findBySku(sku);
     }
 
-    @Transactional
+    // Served from memory: scanning is the most frequent action at the POS
+    public Optional<Product> getProductByBarcode(String barcode) {
+        return productBarcodeIndex.find(barcode);
+    }
+
+    public ProductSearchResultDto searchProducts(String query, int page, int size) {
+        return productSearchIndex.search(query, page, size);
+    }
+
+    // The SKU is generated before the transaction opens, as it may need a counter transaction of its own that must
+    // not wait for a second connection while this one holds the first; the product and its invalidation entry are
+    // then written together
     public Product saveProduct(@NotNull Product product) {
         if (product.getRrp() < 0) {
             throw new IllegalArgumentException("Recommended retail price cannot be negative");
@@ -47,9 +77,10 @@ public class ProductService {
         // Generate SKU before saving
         String generatedSKU = skuGeneratorService.generateSKU(); 
         product.setSku(generatedSKU);
-        return productRepository.save(product);
+        return transactionTemplate.execute(status -> indexed(productRepository.save(product)));
     }
 
+    @Transactional
     public Product updateProduct(Long id, Product productDetails) {
         Product product = productRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException(PRODUCT_NOT_FOUND_DESC + id));
@@ -73,7 +104,7 @@ public class ProductService {
         // Do not update isActive field, this is used for soft delete
         // product.setIsActive(productDetails.isActive());
 
-        return productRepository.save(product);
+        return indexed(productRepository.save(product));
     }
 
     // Generic helper method for updating fields
@@ -87,6 +118,7 @@ public class ProductService {
         updater.accept(newValue);
     }
 
+    @Transactional
     public Product softDeleteProduct(Long id) {
         Product product = productRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException(PRODUCT_NOT_FOUND_DESC + id));
@@ -99,16 +131,25 @@ public class ProductService {
             throw new IllegalStateException("Cannot delete product with id " + id + " because it exists in inventory.");
         }
         product.setActive(false);
-        return productRepository.save(product);
+        return indexed(productRepository.save(product));
     }
 
+    @Transactional
     public Product reverseSoftDelete(Long id) {
         Product product = productRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException(PRODUCT_NOT_FOUND_DESC + id));
 
         updateField(true, product::setActive);
 
-        return productRepository.save(product);
+        return indexed(productRepository.save(product));
+    }
+
+    // Updates this node's indexes, and tells the other nodes, once the change commits
+    private Product indexed(Product saved) {
+        productBarcodeIndex.refresh(saved);
+        productSearchIndex.refresh(saved);
+        cacheInvalidationLog.append(CacheRegions.PRODUCT, saved.getId());
+        return saved;
     }
 
 }
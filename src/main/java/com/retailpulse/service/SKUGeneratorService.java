@@ -3,35 +3,134 @@ package com.retailpulse.service;
 import com.retailpulse.entity.SKUCounter;
 import com.retailpulse.repository.SKUCounterRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands out SKUs "RP1", "RP2", ... from the shared {@code skucounter} row. With {@code sku.block-size} above 1,
+ * each node reserves that many SKUs with one counter update and hands them out from memory, so nodes only meet
+ * on the counter row once per block. SKUs of a block not used up before a restart are skipped, leaving gaps.
+ * <p>
+ * Blocks and ranges are reserved in a transaction of their own, which needs a connection of its own. Call
+ * {@link #generateSKUs} and, with blocks on, {@link #generateSKU} before opening a transaction, so a caller never
+ * holds one connection while waiting for a second.
+ */
 @Service
 public class SKUGeneratorService {
     private static final String COUNTER_NAME = "product";
+    private static final String SKU_PREFIX = "RP";
     private final SKUCounterRepository skuCounterRepository;
+    private final TransactionTemplate counterTransaction;
+    private final TransactionTemplate blockTransaction;
+    // Blocks reserved by threads that found the current block exhausted at the same time as another thread
+    private final Queue<SkuBlock> spareBlocks = new ConcurrentLinkedQueue<>();
+
+    // The block being handed out; replaced under the monitor once its cursor has run past the end
+    private volatile SkuBlock block = new SkuBlock(1, 0);
+
+    @Value("${sku.block-size:1}")
+    private int blockSize = 1;
 
     @Autowired
-    public SKUGeneratorService(SKUCounterRepository skuCounterRepository) {
+    public SKUGeneratorService(SKUCounterRepository skuCounterRepository, PlatformTransactionManager transactionManager) {
         this.skuCounterRepository = skuCounterRepository;
+        this.counterTransaction = new TransactionTemplate(transactionManager);
+        // A block is committed on its own: if the caller rolls back, the SKUs it already handed out stay reserved
+        this.blockTransaction = new TransactionTemplate(transactionManager);
+        this.blockTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
     }
 
-    @Transactional
     public String generateSKU() {
-        // Find or create a SKU counter
-        SKUCounter skuCounter = skuCounterRepository.findByName(COUNTER_NAME)
-                .orElseGet(() -> {
-                    SKUCounter newCounter = new SKUCounter(COUNTER_NAME, 0L);
-                    return skuCounterRepository.save(newCounter);
-                });
+        if (blockSize > 1) {
+            return SKU_PREFIX + nextFromBlock();
+        }
+
+        // One SKU at a time joins the caller's transaction, if there is one
+        return counterTransaction.execute(status -> {
+            // Find or create a SKU counter
+            SKUCounter skuCounter = skuCounterRepository.findByName(COUNTER_NAME)
+                    .orElseGet(() -> {
+                        SKUCounter newCounter = new SKUCounter(COUNTER_NAME, 0L);
+                        return skuCounterRepository.save(newCounter);
+                    });
 
-        // Atomically increment
-        skuCounterRepository.incrementAndStore(COUNTER_NAME);
+            // Atomically increment
+            skuCounterRepository.incrementAndStore(COUNTER_NAME);
+
+            // Get the new incremented value
+            Long newCounter = skuCounterRepository.getLastInsertedId();
+
+            // Return the SKU in the format "RP1", "RP2", "RP3", etc.
+            return SKU_PREFIX + newCounter;
+        });
+    }
+
+    /**
+     * Reserves {@code count} consecutive SKUs with a single counter update, e.g. for a catalogue import.
+     */
+    public List<String> generateSKUs(int count) {
+        if (count <= 0) {
+            return List.of();
+        }
+        long last = reserve(count);
+        List<String> skus = new ArrayList<>(count);
+        for (long counter = last - count + 1; counter <= last; counter++) {
+            skus.add(SKU_PREFIX + counter);
+        }
+        return skus;
+    }
+
+    private long nextFromBlock() {
+        while (true) {
+            SkuBlock current = block;
+            long counter = current.next.getAndIncrement();
+            if (counter <= current.last) {
+                return counter;
+            }
+            // Reserved without holding the monitor, so other threads keep handing out SKUs meanwhile
+            SkuBlock fresh = spareBlocks.poll();
+            if (fresh == null) {
+                long last = reserve(blockSize);
+                fresh = new SkuBlock(last - blockSize + 1, last);
+            }
+            synchronized (this) {
+                if (block == current) {
+                    block = fresh;
+                    continue;
+                }
+            }
+            // Another thread replaced the exhausted block first; this one is used when that one runs out
+            spareBlocks.offer(fresh);
+        }
+    }
+
+    // Moves the counter on by count and returns the last counter value reserved
+    private long reserve(int count) {
+        return blockTransaction.execute(status -> {
+            if (skuCounterRepository.findByName(COUNTER_NAME).isEmpty()) {
+                skuCounterRepository.save(new SKUCounter(COUNTER_NAME, 0L));
+            }
+            skuCounterRepository.incrementAndStoreBy(COUNTER_NAME, count);
+            return skuCounterRepository.getLastInsertedId();
+        });
+    }
 
-        // Get the new incremented value
-        Long newCounter = skuCounterRepository.getLastInsertedId();
+    private static final class SkuBlock {
+        private final AtomicLong next;
+        private final long last;
 
-        // Return the SKU in the format "RP1", "RP2", "RP3", etc.
-        return "RP" + newCounter;
+        private SkuBlock(long first, long last) {
+            this.next = new AtomicLong(first);
+            this.last = last;
+        }
     }
 }
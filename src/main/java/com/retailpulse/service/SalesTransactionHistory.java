@@ -1,36 +1,252 @@
 package com.retailpulse.service;
 
 import com.retailpulse.entity.SalesTransactionMemento;
+import com.retailpulse.exception.ErrorCodes;
+import com.retailpulse.service.exception.BusinessException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
 import org.springframework.stereotype.Component;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Suspended sales per store, held in memory. A store may hold at most
+ * {@code suspended-transactions.max-per-store} and all stores together {@code max-total}; a suspended sale not
+ * restored within {@code ttl-ms} is dropped. Callers always get an immutable snapshot, ordered by suspend time.
+ * With the {@link SuspendedTransactionJournal} enabled, suspends and restores are journaled and survive restarts.
+ * <p>
+ * Suspended sales and their ids are local to this node, and ids from two nodes can collide, so this store is for
+ * single-node deployments; several nodes share suspended sales through {@link DatabaseSuspendedTransactionStore}.
+ */
 @Component
-public class SalesTransactionHistory {
+@ConditionalOnProperty(name = "suspended-transactions.store", havingValue = "memory", matchIfMissing = true)
+public class SalesTransactionHistory implements SuspendedTransactionStore, SmartLifecycle {
 
-    private final Map<Long, Map<Long, SalesTransactionMemento>> suspendedTransactions = new ConcurrentHashMap<>();
+    private static final Logger LOG = LoggerFactory.getLogger(SalesTransactionHistory.class);
 
+    private final SuspendedTransactionJournal journal;
+    private final Map<Long, StoreHistory> suspendedTransactions = new ConcurrentHashMap<>();
+    private final AtomicInteger totalCount = new AtomicInteger();
+    // Seeded from the clock so ids keep increasing across restarts
+    private final AtomicLong nextTransactionId = new AtomicLong(System.currentTimeMillis());
+    private final Counter expiredCounter;
+    private final Counter rejectedCounter;
+
+    private ScheduledExecutorService sweepExecutor;
+    private volatile boolean running;
+
+    @Value("${suspended-transactions.max-per-store:50}")
+    private int maxPerStore = 50;
+
+    @Value("${suspended-transactions.max-total:10000}")
+    private int maxTotal = 10000;
+
+    @Value("${suspended-transactions.ttl-ms:43200000}")
+    private long ttlMs = 43200000;
+
+    @Value("${suspended-transactions.sweep-interval-ms:60000}")
+    private long sweepIntervalMs = 60000;
+
+    public SalesTransactionHistory(MeterRegistry meterRegistry, SuspendedTransactionJournal journal) {
+        this.journal = journal;
+        meterRegistry.gauge("suspended.transactions", totalCount);
+        this.expiredCounter = Counter.builder("suspended.transactions.expired")
+                .description("Suspended sales dropped after suspended-transactions.ttl-ms")
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("suspended.transactions.rejected")
+                .description("Suspends refused because a store or the whole system was at capacity")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public long nextTransactionId() {
+        return nextTransactionId.incrementAndGet();
+    }
+
+    @Override
     public Map<Long, SalesTransactionMemento> addTransaction(Long businessEntityId, SalesTransactionMemento salesTransactionMemento) {
-        if (!suspendedTransactions.containsKey(businessEntityId)) {
-            Map<Long, SalesTransactionMemento> suspendedTransaction = new HashMap<>();
-            suspendedTransaction.put(salesTransactionMemento.transactionId(), salesTransactionMemento);
-            suspendedTransactions.put(businessEntityId, suspendedTransaction);
-        } else {
-            suspendedTransactions.get(businessEntityId).put(salesTransactionMemento.transactionId(), salesTransactionMemento);
+        StoreHistory storeHistory = reserve(businessEntityId);
+        if (storeHistory == null) {
+            evictExpired();
+            storeHistory = reserve(businessEntityId);
+            if (storeHistory == null) {
+                rejectedCounter.increment();
+                throw new BusinessException(ErrorCodes.LIMIT_EXCEEDED,
+                        "Too many suspended transactions for business entity id: " + businessEntityId);
+            }
+        }
+        storeHistory.transactions.put(salesTransactionMemento.transactionId(), salesTransactionMemento);
+        if (journal.isEnabled()) {
+            try {
+                journal.recordAdd(salesTransactionMemento);
+            } catch (RuntimeException e) {
+                // Not durable, so not suspended
+                storeHistory.transactions.remove(salesTransactionMemento.transactionId());
+                release(businessEntityId, storeHistory);
+                throw e;
+            }
         }
 
-        return suspendedTransactions.get(businessEntityId);
+        return snapshot(storeHistory);
     }
 
+    @Override
     public Map<Long, SalesTransactionMemento> deleteTransaction(Long businessEntityId, Long transactionId) {
-        if (suspendedTransactions.containsKey(businessEntityId)) {
-            Map<Long, SalesTransactionMemento> suspendedTransactionMap = suspendedTransactions.get(businessEntityId);
-            suspendedTransactionMap.remove(transactionId);
+        StoreHistory storeHistory = suspendedTransactions.get(businessEntityId);
+        if (storeHistory == null) {
+            return Map.of();
+        }
+        if (storeHistory.transactions.remove(transactionId) != null) {
+            release(businessEntityId, storeHistory);
+            if (journal.isEnabled()) {
+                journal.recordDelete(businessEntityId, transactionId);
+            }
         }
 
-        return suspendedTransactions.get(businessEntityId);
+        return snapshot(storeHistory);
     }
 
+    @Override
+    public Map<Long, SalesTransactionMemento> listTransactions(Long businessEntityId) {
+        StoreHistory storeHistory = suspendedTransactions.get(businessEntityId);
+        return storeHistory == null ? Map.of() : snapshot(storeHistory);
+    }
+
+    void evictExpired() {
+        long cutoff = System.currentTimeMillis() - ttlMs;
+        for (Map.Entry<Long, StoreHistory> store : suspendedTransactions.entrySet()) {
+            StoreHistory storeHistory = store.getValue();
+            for (Map.Entry<Long, SalesTransactionMemento> entry : storeHistory.transactions.entrySet()) {
+                // remove(key, value) so a sale restored meanwhile is not released twice
+                if (entry.getValue().suspendedAtMillis() < cutoff
+                        && storeHistory.transactions.remove(entry.getKey(), entry.getValue())) {
+                    release(store.getKey(), storeHistory);
+                    expiredCounter.increment();
+                    // Journaled like a restore, so a replay does not bring the sale back before the next compaction
+                    if (journal.isEnabled()) {
+                        journal.recordDelete(store.getKey(), entry.getKey());
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public void start() {
+        if (journal.isEnabled()) {
+            // Recovered sales are kept even if they exceed the current limits
+            for (SalesTransactionMemento memento : journal.open(this::liveMementos)) {
+                StoreHistory storeHistory = suspendedTransactions.computeIfAbsent(memento.businessEntityId(), id -> new StoreHistory());
+                storeHistory.transactions.put(memento.transactionId(), memento);
+                storeHistory.count.incrementAndGet();
+                totalCount.incrementAndGet();
+                nextTransactionId.accumulateAndGet(memento.transactionId(), Math::max);
+            }
+        }
+        sweepExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "suspended-transaction-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweepExecutor.scheduleWithFixedDelay(this::evictExpiredQuietly, sweepIntervalMs, sweepIntervalMs, TimeUnit.MILLISECONDS);
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        sweepExecutor.shutdownNow();
+        if (journal.isEnabled()) {
+            journal.close();
+        }
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // Recover before the web server (MAX_VALUE - 2048) takes requests, and close the journal only after it stopped
+    @Override
+    public int getPhase() {
+        return Integer.MAX_VALUE - 4096;
+    }
+
+    private void evictExpiredQuietly() {
+        try {
+            evictExpired();
+        } catch (RuntimeException e) {
+            LOG.error("Suspended transaction sweep failed", e);
+        }
+    }
+
+    private Collection<SalesTransactionMemento> liveMementos() {
+        List<SalesTransactionMemento> live = new ArrayList<>(totalCount.get());
+        suspendedTransactions.values().forEach(storeHistory -> live.addAll(storeHistory.transactions.values()));
+        return live;
+    }
+
+    // Reserves inside compute(), so a store whose last sale is being released cannot be dropped under a new one
+    private StoreHistory reserve(Long businessEntityId) {
+        StoreHistory[] reserved = new StoreHistory[1];
+        suspendedTransactions.compute(businessEntityId, (id, storeHistory) -> {
+            StoreHistory history = storeHistory == null ? new StoreHistory() : storeHistory;
+            if (reserve(history)) {
+                reserved[0] = history;
+            }
+            return history.count.get() == 0 ? null : history;
+        });
+        return reserved[0];
+    }
+
+    // Takes a place in the store and in the global count, or neither
+    private boolean reserve(StoreHistory storeHistory) {
+        if (storeHistory.count.incrementAndGet() > maxPerStore) {
+            storeHistory.count.decrementAndGet();
+            return false;
+        }
+        if (totalCount.incrementAndGet() > maxTotal) {
+            totalCount.decrementAndGet();
+            storeHistory.count.decrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    // Drops the store's entry once it holds no sale, so stores that stop suspending do not stay in memory
+    private void release(Long businessEntityId, StoreHistory storeHistory) {
+        totalCount.decrementAndGet();
+        if (storeHistory.count.decrementAndGet() == 0) {
+            suspendedTransactions.computeIfPresent(businessEntityId,
+                    (id, current) -> current == storeHistory && current.count.get() == 0 ? null : current);
+        }
+    }
+
+    private Map<Long, SalesTransactionMemento> snapshot(StoreHistory storeHistory) {
+        long cutoff = System.currentTimeMillis() - ttlMs;
+        Map<Long, SalesTransactionMemento> snapshot = new LinkedHashMap<>();
+        storeHistory.transactions.forEach((transactionId, memento) -> {
+            if (memento.suspendedAtMillis() >= cutoff) {
+                snapshot.put(transactionId, memento);
+            }
+        });
+        return Collections.unmodifiableMap(snapshot);
+    }
+
+    private static final class StoreHistory {
+        // Ids only increase, so key order is suspend order
+        private final ConcurrentNavigableMap<Long, SalesTransactionMemento> transactions = new ConcurrentSkipListMap<>();
+        private final AtomicInteger count = new AtomicInteger();
+    }
 }
@@ -1,5 +1,6 @@
 package com.retailpulse.service;
 
+import com.retailpulse.config.RetryOnLockConflict;
 import com.retailpulse.controller.request.SalesDetailsDto;
 import com.retailpulse.controller.request.SalesTransactionRequestDto;
 import com.retailpulse.controller.request.SuspendedTransactionDto;
@@ -8,7 +9,6 @@ import com.retailpulse.controller.response.TaxResultDto;
 import com.retailpulse.controller.response.TransientSalesTransactionDto;
 import com.retailpulse.entity.*;
 import com.retailpulse.exception.ErrorCodes;
-import com.retailpulse.repository.SalesTaxRepository;
 import com.retailpulse.repository.SalesTransactionRepository;
 import com.retailpulse.service.exception.BusinessException;
 import com.retailpulse.util.DateUtil;
@@ -19,37 +19,40 @@ import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.util.List;
 import java.util.Map;
+import java.util.SortedMap;
 
 @Service
 public class SalesTransactionService {
 
     private final SalesTransactionRepository salesTransactionRepository;
-    private final SalesTaxRepository salesTaxRepository;
-    private final SalesTransactionHistory salesTransactionHistory;
+    private final TaxRuleEngine taxRuleEngine;
+    private final SuspendedTransactionStore suspendedTransactionStore;
     private final StockUpdateService stockUpdateService;
+    private final CheckoutIdempotencyService checkoutIdempotencyService;
 
     public SalesTransactionService(SalesTransactionRepository salesTransactionRepository,
-                                   SalesTaxRepository salesTaxRepository,
-                                   SalesTransactionHistory salesTransactionHistory,
-                                   StockUpdateService stockUpdateService) {
+                                   TaxRuleEngine taxRuleEngine,
+                                   SuspendedTransactionStore suspendedTransactionStore,
+                                   StockUpdateService stockUpdateService,
+                                   CheckoutIdempotencyService checkoutIdempotencyService) {
         this.salesTransactionRepository = salesTransactionRepository;
-        this.salesTaxRepository = salesTaxRepository;
-        this.salesTransactionHistory = salesTransactionHistory;
+        this.taxRuleEngine = taxRuleEngine;
+        this.suspendedTransactionStore = suspendedTransactionStore;
         this.stockUpdateService = stockUpdateService;
+        this.checkoutIdempotencyService = checkoutIdempotencyService;
     }
 
 
-    public TaxResultDto calculateSalesTax(List<SalesDetailsDto> salesDetailsDtos) {
+    /**
+     * Calculates the tax of a basket with the rate in effect at the store, or the default rate when no store is given.
+     */
+    public TaxResultDto calculateSalesTax(List<SalesDetailsDto> salesDetailsDtos, Long businessEntityId) {
         BigDecimal subtotal = salesDetailsDtos.stream()
                 .map(salesDetailsDto -> new BigDecimal(salesDetailsDto.salesPricePerUnit()).multiply(new BigDecimal(salesDetailsDto.quantity())))
                 .reduce(BigDecimal.ZERO, BigDecimal::add)
                 .setScale(2, RoundingMode.HALF_UP);
 
-        SalesTax salesTax = salesTaxRepository.findSalesTaxByTaxType(TaxType.GST)
-                .orElseGet(() -> {
-                    SalesTax newSalesTax = new SalesTax(TaxType.GST, new BigDecimal("0.09"));
-                    return salesTaxRepository.save(newSalesTax);
-                });
+        SalesTax salesTax = gstRate(businessEntityId);
 
         BigDecimal taxAmount = subtotal.multiply(salesTax.getTaxRate()).setScale(2, RoundingMode.HALF_UP);
 
@@ -67,36 +70,89 @@ public class SalesTransactionService {
      * @param requestDto the SalesTransactionRequestDto containing the details of the transaction
      * @return the created SalesTransactionResponseDto
      */
+    @RetryOnLockConflict
     @Transactional
     public SalesTransactionResponseDto createSalesTransaction(SalesTransactionRequestDto requestDto) {
 
-        SalesTax salesTax = salesTaxRepository.findSalesTaxByTaxType(TaxType.GST)
-                .orElseGet(() -> {
-                    SalesTax newSalesTax = new SalesTax(TaxType.GST, new BigDecimal("0.09"));
-                    return salesTaxRepository.save(newSalesTax);
-                });
-
-        // Create a sales transaction with the provided businessEntityId and computed subtotal
-        SalesTransaction transaction = new SalesTransaction(requestDto.businessEntityId(), salesTax);
-
-        // map salesDetailsDto to salesDetails
-        List<SalesDetails> salesDetailEntities = requestDto.salesDetails().stream()
-                .map(salesDetailsDto -> new SalesDetails(salesDetailsDto.productId(), salesDetailsDto.quantity(), new BigDecimal(salesDetailsDto.salesPricePerUnit())))
-                .toList();
-
-        // Add each SalesDetails to the transaction
-        salesDetailEntities.forEach(transaction::addSalesDetails);
+        SalesTransaction transaction = newSalesTransaction(requestDto);
 
         // For each SalesDetails entry, deduct inventory
         stockUpdateService.deductStock(transaction);
 
-        transaction = salesTransactionRepository.save(transaction);
+        // Ids come from id blocks, so nothing is inserted before the flush, which also sets the transaction date
+        transaction = salesTransactionRepository.saveAndFlush(transaction);
 
         // map salesTransaction to salesTransactionResponseDto
         return mapToResponseDto(transaction);
 
     }
 
+    /**
+     * Creates a new SalesTransaction for a checkout holding an idempotency claim, and records its response under the
+     * claimed key in the same database transaction.
+     *
+     * @param requestDto the SalesTransactionRequestDto containing the details of the transaction
+     * @param claim      the claim on the checkout's Idempotency-Key, or {@code null} if it has none
+     * @return the created SalesTransactionResponseDto
+     */
+    @RetryOnLockConflict
+    @Transactional
+    public SalesTransactionResponseDto createSalesTransaction(SalesTransactionRequestDto requestDto, IdempotencyClaim claim) {
+        SalesTransactionResponseDto responseDto = createSalesTransaction(requestDto);
+        if (claim != null) {
+            checkoutIdempotencyService.complete(claim, responseDto);
+        }
+        return responseDto;
+    }
+
+    /**
+     * Creates a group of SalesTransactions in one database transaction, e.g. checkouts collected by the
+     * {@link CheckoutBatcher}. A sale without enough stock is rejected on its own; the others are still created.
+     *
+     * @param requestDtos the checkouts to create, in arrival order
+     * @return one result per request, in the same order
+     */
+    @RetryOnLockConflict
+    @Transactional
+    public List<CheckoutResult> createSalesTransactions(List<SalesTransactionRequestDto> requestDtos) {
+        List<SalesTransaction> transactions = requestDtos.stream()
+                .map(this::newSalesTransaction)
+                .toList();
+
+        Map<SalesTransaction, BusinessException> rejected = stockUpdateService.deductStockForGroup(transactions);
+
+        salesTransactionRepository.saveAll(transactions.stream()
+                .filter(transaction -> !rejected.containsKey(transaction))
+                .toList());
+        salesTransactionRepository.flush();
+
+        return transactions.stream()
+                .map(transaction -> rejected.containsKey(transaction)
+                        ? CheckoutResult.rejected(rejected.get(transaction))
+                        : CheckoutResult.accepted(mapToResponseDto(transaction)))
+                .toList();
+    }
+
+    /**
+     * Creates a group of SalesTransactions as {@link #createSalesTransactions(List)} does, and records the response
+     * of every created sale that holds an idempotency claim in the same database transaction.
+     *
+     * @param requestDtos the checkouts to create, in arrival order
+     * @param claims      one claim per request, {@code null} for a request without an Idempotency-Key
+     * @return one result per request, in the same order
+     */
+    @RetryOnLockConflict
+    @Transactional
+    public List<CheckoutResult> createSalesTransactions(List<SalesTransactionRequestDto> requestDtos, List<IdempotencyClaim> claims) {
+        List<CheckoutResult> results = createSalesTransactions(requestDtos);
+        for (int i = 0; i < results.size(); i++) {
+            if (claims.get(i) != null && results.get(i).isAccepted()) {
+                checkoutIdempotencyService.complete(claims.get(i), results.get(i).response());
+            }
+        }
+        return results;
+    }
+
     /**
      * Updates an existing SalesTransaction with new sales details.
      *
@@ -104,23 +160,22 @@ public class SalesTransactionService {
      * @param newSalesDetailsDtos the new sales details to update
      * @return the updated SalesTransactionResponseDto
      */
+    @RetryOnLockConflict
     @Transactional
     public SalesTransactionResponseDto updateSalesTransaction(Long transactionId, List<SalesDetailsDto> newSalesDetailsDtos) {
         // Retrieve the existing transaction
         SalesTransaction existingTransaction = salesTransactionRepository.findById(transactionId)
                 .orElseThrow(() -> new BusinessException(ErrorCodes.NOT_FOUND, "Sales transaction not found for id: " + transactionId));
 
-        // Reverse inventory deduction for each old sales detail
-        stockUpdateService.addStock(existingTransaction);
-
         // Map new sales details DTOs to SalesDetails entities
         List<SalesDetails> newSalesDetailEntities = newSalesDetailsDtos.stream()
                 .map(salesDetailsDto -> new SalesDetails(salesDetailsDto.productId(), salesDetailsDto.quantity(), new BigDecimal(salesDetailsDto.salesPricePerUnit())))
                 .toList();
 
-        existingTransaction.updateSalesDetails(newSalesDetailEntities);
+        // Amend, add and remove only the lines that changed, then move stock for the products whose quantity changed
+        SortedMap<Long, Integer> quantityChanges = existingTransaction.updateSalesDetails(newSalesDetailEntities);
 
-        stockUpdateService.deductStock(existingTransaction);
+        stockUpdateService.applyQuantityChanges(existingTransaction, quantityChanges);
 
         salesTransactionRepository.saveAndFlush(existingTransaction);
 
@@ -134,11 +189,7 @@ public class SalesTransactionService {
      * @param suspendedTransactionDto the DTO containing the details of the suspended transaction
      */
     public List<TransientSalesTransactionDto> suspendTransaction(SuspendedTransactionDto suspendedTransactionDto) {
-        SalesTax salesTax = salesTaxRepository.findSalesTaxByTaxType(TaxType.GST)
-                .orElseGet(() -> {
-                    SalesTax newSalesTax = new SalesTax(TaxType.GST, new BigDecimal("0.09"));
-                    return salesTaxRepository.save(newSalesTax);
-                });
+        SalesTax salesTax = gstRate(suspendedTransactionDto.businessEntityId());
 
         SalesTransaction salesTransaction = new SalesTransaction(suspendedTransactionDto.businessEntityId(), salesTax);
 
@@ -146,35 +197,46 @@ public class SalesTransactionService {
                 .map(salesDetailsDto -> new SalesDetails(salesDetailsDto.productId(), salesDetailsDto.quantity(), new BigDecimal(salesDetailsDto.salesPricePerUnit())))
                 .toList();
 
-        salesDetails.forEach(salesTransaction::addSalesDetails);
+        salesTransaction.addSalesDetails(salesDetails);
 
-        SalesTransactionMemento salesTransactionMemento = salesTransaction.saveToMemento();
+        SalesTransactionMemento salesTransactionMemento = salesTransaction.saveToMemento(suspendedTransactionStore.nextTransactionId());
 
-        Map<Long, SalesTransactionMemento> suspendedTransactions = salesTransactionHistory.addTransaction(suspendedTransactionDto.businessEntityId(), salesTransactionMemento);
+        Map<Long, SalesTransactionMemento> suspendedTransactions = suspendedTransactionStore.addTransaction(suspendedTransactionDto.businessEntityId(), salesTransactionMemento);
 
-        // Map the suspended transactions to DTOs
-        return suspendedTransactions.entrySet().stream()
-                .map(entry -> {
-                    SalesTransactionMemento memento = entry.getValue();
+        return mapToTransientDtos(suspendedTransactions);
+    }
 
-                    SalesTransaction transaction = new SalesTransaction(memento.businessEntityId(), salesTax);
-                    transaction.restoreFromMemento(memento);
+    public List<TransientSalesTransactionDto> restoreTransaction(Long businessEntityId, Long transactionId) {
+        Map<Long, SalesTransactionMemento> suspendedTransactions = suspendedTransactionStore.deleteTransaction(businessEntityId, transactionId);
 
-                    return mapToTransientDto(transaction);
-                })
-                .toList();
+        return mapToTransientDtos(suspendedTransactions);
+    }
 
+    /**
+     * Lists the suspended transactions of a business entity, oldest first.
+     */
+    public List<TransientSalesTransactionDto> getSuspendedTransactions(Long businessEntityId) {
+        return mapToTransientDtos(suspendedTransactionStore.listTransactions(businessEntityId));
     }
 
-    public List<TransientSalesTransactionDto> restoreTransaction(Long businessEntityId, Long transactionId) {
-        Map<Long, SalesTransactionMemento> suspendedTransactions = salesTransactionHistory.deleteTransaction(businessEntityId, transactionId);
+    private SalesTax gstRate(Long businessEntityId) {
+        return taxRuleEngine.currentRule(businessEntityId, TaxType.GST);
+    }
 
-        // Map the suspended transactions to DTOs
-        return suspendedTransactions.entrySet().stream()
-                .map(entry -> {
-                    SalesTransactionMemento memento = entry.getValue();
+    // Create a sales transaction with the provided businessEntityId and map each salesDetailsDto to salesDetails
+    private SalesTransaction newSalesTransaction(SalesTransactionRequestDto requestDto) {
+        SalesTransaction transaction = new SalesTransaction(requestDto.businessEntityId(), gstRate(requestDto.businessEntityId()));
+        transaction.addSalesDetails(requestDto.salesDetails().stream()
+                .map(salesDetailsDto -> new SalesDetails(salesDetailsDto.productId(), salesDetailsDto.quantity(), new BigDecimal(salesDetailsDto.salesPricePerUnit())))
+                .toList());
+        return transaction;
+    }
 
-                    SalesTransaction transaction = new SalesTransaction(memento.businessEntityId(), new SalesTax(TaxType.valueOf(memento.taxType()), new BigDecimal(memento.taxRate())));
+    // Map the suspended transactions to DTOs
+    private List<TransientSalesTransactionDto> mapToTransientDtos(Map<Long, SalesTransactionMemento> suspendedTransactions) {
+        return suspendedTransactions.values().stream()
+                .map(memento -> {
+                    SalesTransaction transaction = new SalesTransaction(memento.businessEntityId(), memento.salesTax());
                     transaction.restoreFromMemento(memento);
 
                     return mapToTransientDto(transaction);
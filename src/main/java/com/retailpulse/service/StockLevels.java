@@ -0,0 +1,60 @@
+package com.retailpulse.service;
+
+import java.util.Arrays;
+
+/**
+ * A business entity's stock keyed by product id, held in sorted primitive arrays. Tens of thousands of products take
+ * a few hundred kilobytes and are looked up by binary search, without a boxed key or value per product.
+ */
+final class StockLevels {
+
+    private long[] productIds = new long[1024];
+    private int[] quantities = new int[1024];
+    private double[] totalCostPrices = new double[1024];
+    private int size;
+
+    /**
+     * Appends a product; products must be added in ascending product id order.
+     */
+    void add(long productId, int quantity, double totalCostPrice) {
+        if (size > 0 && productId <= productIds[size - 1]) {
+            throw new IllegalStateException("Stock levels must be added in ascending product id order, got "
+                    + productId + " after " + productIds[size - 1]);
+        }
+        if (size == productIds.length) {
+            int capacity = size * 2;
+            productIds = Arrays.copyOf(productIds, capacity);
+            quantities = Arrays.copyOf(quantities, capacity);
+            totalCostPrices = Arrays.copyOf(totalCostPrices, capacity);
+        }
+        productIds[size] = productId;
+        quantities[size] = quantity;
+        totalCostPrices[size] = totalCostPrice;
+        size++;
+    }
+
+    /**
+     * @return the position of the product, or -1 if the business entity has no inventory row for it
+     */
+    int indexOf(long productId) {
+        int index = Arrays.binarySearch(productIds, 0, size, productId);
+        return index >= 0 ? index : -1;
+    }
+
+    int size() {
+        return size;
+    }
+
+    long productId(int index) {
+        return productIds[index];
+    }
+
+    int quantity(int index) {
+        return quantities[index];
+    }
+
+    // Average cost of the stock held; nothing to average over once the stock is gone
+    double costPricePerUnit(int index) {
+        return quantities[index] > 0 ? totalCostPrices[index] / quantities[index] : 0.0;
+    }
+}
@@ -0,0 +1,483 @@
+package com.retailpulse.service;
+
+import com.retailpulse.DTO.PendingStockDto;
+import com.retailpulse.entity.SalesTransaction;
+import com.retailpulse.exception.ErrorCodes;
+import com.retailpulse.repository.InventoryRepository;
+import com.retailpulse.repository.SalesTransactionRepository;
+import com.retailpulse.service.exception.BusinessException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Optional in-memory stock engine for flash-sale traffic. Sales are admitted against per-(productId,
+ * businessEntityId) counters guarded by striped locks, and the net deltas are written to the inventory
+ * table in periodic batches instead of inside every checkout transaction.
+ * <p>
+ * A sale admitted here is saved with {@code stockPending = true}; the flush that writes its delta clears
+ * the flag in the same database transaction. On startup any sale still flagged is applied to inventory,
+ * so a crash between checkout and flush loses nothing. A pending sale that is amended or reversed is first
+ * {@linkplain #settle settled} in the caller's transaction.
+ * <p>
+ * The flush writes its deltas without a quantity guard, which is only safe while the counters know of every
+ * deduction. Every other path that changes stock, e.g. transfers or a corrected quantity, must therefore go
+ * through {@link #applyThrough}, which admits its deductions against the counters first. The resync that follows
+ * every flush only corrects drift; it does not stop a write that bypassed the counters from overselling.
+ * <p>
+ * The counters are node-local: enable the engine only where a single node serves the stores involved.
+ */
+@Component
+public class StockReservationEngine implements SmartLifecycle {
+
+    private static final Logger LOG = LoggerFactory.getLogger(StockReservationEngine.class);
+    private static final int STRIPES = 64;
+    private static final int CLEAR_BATCH_SIZE = 1000;
+
+    private final InventoryRepository inventoryRepository;
+    private final SalesTransactionRepository salesTransactionRepository;
+    private final TransactionTemplate flushTransactionTemplate;
+    private final Timer flushTimer;
+
+    private final Map<InventoryKey, StockCounter> counters = new ConcurrentHashMap<>();
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+    // Commits take the read lock, a flush takes the write lock, so a flush never sees a sale's delta without its id
+    private final ReentrantReadWriteLock commitLock = new ReentrantReadWriteLock();
+    // Committed sales whose delta is still waiting for a flush, with the quantities they took
+    private final Map<Long, Map<InventoryKey, Integer>> committedSales = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService flushExecutor;
+    private volatile boolean running;
+
+    @Value("${inventory.reservation.enabled:false}")
+    private boolean enabled;
+
+    @Value("${inventory.reservation.flush-interval-ms:200}")
+    private long flushIntervalMs = 200;
+
+    public StockReservationEngine(InventoryRepository inventoryRepository,
+                                  SalesTransactionRepository salesTransactionRepository,
+                                  PlatformTransactionManager transactionManager,
+                                  MeterRegistry meterRegistry) {
+        this.inventoryRepository = inventoryRepository;
+        this.salesTransactionRepository = salesTransactionRepository;
+        this.flushTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.flushTransactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.flushTimer = Timer.builder("inventory.reservation.flush")
+                .description("Time spent writing reserved stock deltas to the inventory table")
+                .register(meterRegistry);
+        meterRegistry.gauge("inventory.reservation.pending.sales", committedSales, Map::size);
+        meterRegistry.gauge("inventory.reservation.counters", counters, Map::size);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Admits a new sale against the in-memory counters. Its stock is written to inventory by a later flush
+     * once the surrounding transaction commits, and released again if it rolls back.
+     */
+    public void reserve(SalesTransaction salesTransaction, SortedMap<Long, Integer> quantities) {
+        requireActiveTransaction();
+        Map<InventoryKey, Integer> reservation = admit(salesTransaction.getBusinessEntityId(), quantities);
+        salesTransaction.markStockPending();
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    commitWriteBehind(salesTransaction.getId(), reservation);
+                } else {
+                    release(reservation);
+                }
+            }
+        });
+    }
+
+    /**
+     * Runs a stock change that writes the inventory table directly within the current transaction, while
+     * keeping the counters authoritative: deductions (negative deltas) are admitted first, and the counters
+     * follow the table once the transaction commits.
+     */
+    public void applyThrough(long businessEntityId, SortedMap<Long, Integer> deltas, Runnable databaseWrite) {
+        requireActiveTransaction();
+        SortedMap<Long, Integer> deductions = new TreeMap<>();
+        deltas.forEach((productId, delta) -> {
+            if (delta < 0) {
+                deductions.put(productId, -delta);
+            }
+        });
+        Map<InventoryKey, Integer> reservation = deductions.isEmpty() ? Map.of() : admit(businessEntityId, deductions);
+
+        try {
+            databaseWrite.run();
+        } catch (RuntimeException e) {
+            release(reservation);
+            throw e;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                release(reservation);
+                if (status == STATUS_COMMITTED) {
+                    deltas.forEach((productId, delta) -> adjustBase(new InventoryKey(productId, businessEntityId), delta));
+                }
+            }
+        });
+    }
+
+    /**
+     * Writes the delta of a committed sale that is still waiting for a flush to the inventory table within the
+     * current transaction, and takes it out of the next flush. Called before a pending sale is amended or reversed,
+     * so the table holds the sale's stock by the time the change and the cleared pending flag commit together.
+     * Unlike a flush it needs no connection of its own and takes no locks outside the caller's transaction.
+     * A sale already taken by a running flush is left to that flush.
+     */
+    public void settle(SalesTransaction salesTransaction) {
+        requireActiveTransaction();
+        Long saleId = salesTransaction.getId();
+        Map<InventoryKey, Integer> reservation;
+        commitLock.writeLock().lock();
+        try {
+            reservation = committedSales.remove(saleId);
+            if (reservation == null) {
+                return;
+            }
+            // Moved from pending to flushing, as a flush does, so it is neither written twice nor counted twice
+            reservation.forEach((key, quantity) -> withCounter(key, counter -> {
+                counter.pending += quantity;
+                counter.flushing -= quantity;
+            }));
+        } finally {
+            commitLock.writeLock().unlock();
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    reservation.forEach((key, quantity) -> withCounter(key, counter -> {
+                        counter.flushing += quantity;
+                        counter.base -= quantity;
+                        counter.version++;
+                    }));
+                } else {
+                    Map<InventoryKey, Integer> deltas = new HashMap<>();
+                    reservation.forEach((key, quantity) -> deltas.put(key, -quantity));
+                    restore(deltas, Map.of(saleId, reservation));
+                }
+            }
+        });
+
+        SortedMap<Long, Integer> deltas = new TreeMap<>();
+        reservation.forEach((key, quantity) -> deltas.put(key.productId(), -quantity));
+        inventoryRepository.addQuantities(salesTransaction.getBusinessEntityId(), deltas);
+    }
+
+    /**
+     * Writes every committed delta to the inventory table and clears the pending flag of the sales it
+     * came from, in one transaction. Safe to call from any thread; flushes never overlap.
+     */
+    public synchronized void flush() {
+        Map<InventoryKey, Integer> deltas = new HashMap<>();
+        Map<Long, Map<InventoryKey, Integer>> sales;
+
+        commitLock.writeLock().lock();
+        try {
+            counters.forEach((key, counter) -> {
+                ReentrantLock stripe = stripeFor(key);
+                stripe.lock();
+                try {
+                    if (counter.pending != 0) {
+                        deltas.put(key, counter.pending);
+                        counter.flushing += counter.pending;
+                        counter.pending = 0;
+                    }
+                } finally {
+                    stripe.unlock();
+                }
+            });
+            sales = new HashMap<>(committedSales);
+            committedSales.clear();
+        } finally {
+            commitLock.writeLock().unlock();
+        }
+
+        if (!deltas.isEmpty() || !sales.isEmpty()) {
+            List<Long> saleIds = new ArrayList<>(sales.keySet());
+            try {
+                flushTimer.record(() -> flushTransactionTemplate.executeWithoutResult(status -> writeDeltas(deltas, saleIds)));
+            } catch (RuntimeException e) {
+                LOG.error("Failed to flush {} reserved stock deltas, retrying on the next flush", deltas.size(), e);
+                restore(deltas, sales);
+                return;
+            }
+            deltas.forEach((key, delta) -> withCounter(key, counter -> {
+                counter.flushing -= delta;
+                counter.base += delta;
+                counter.version++;
+            }));
+        }
+        resync();
+    }
+
+    /**
+     * Applies the stock of every sale still flagged as pending, e.g. after a crash between checkout and flush.
+     */
+    void recoverPendingSales() {
+        flushTransactionTemplate.executeWithoutResult(status -> {
+            List<PendingStockDto> pendingStock = salesTransactionRepository.sumPendingStock();
+            Map<Long, SortedMap<Long, Integer>> deltasByBusinessEntity = new HashMap<>();
+            for (PendingStockDto pending : pendingStock) {
+                deltasByBusinessEntity.computeIfAbsent(pending.businessEntityId(), id -> new TreeMap<>())
+                        .put(pending.productId(), -Math.toIntExact(pending.quantity()));
+            }
+            deltasByBusinessEntity.forEach(inventoryRepository::addQuantities);
+            int recovered = salesTransactionRepository.clearAllStockPending();
+            if (recovered > 0) {
+                LOG.info("Recovered reserved stock of {} sales across {} inventory rows", recovered, pendingStock.size());
+            }
+        });
+    }
+
+    @Override
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        recoverPendingSales();
+        flushExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "stock-reservation-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flushExecutor.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        flushExecutor.shutdown();
+        try {
+            flushExecutor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Drain whatever the last scheduled flush did not pick up
+        flush();
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // Start before the web server (MAX_VALUE - 2048) and the checkout batcher accept checkouts, stop after both have drained
+    @Override
+    public int getPhase() {
+        return Integer.MAX_VALUE - 8192;
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            LOG.error("Stock reservation flush failed", e);
+        }
+    }
+
+    private Map<InventoryKey, Integer> admit(long businessEntityId, SortedMap<Long, Integer> quantities) {
+        loadMissingCounters(businessEntityId, quantities.keySet());
+
+        Map<InventoryKey, Integer> reservation = new LinkedHashMap<>();
+        quantities.forEach((productId, quantity) -> reservation.put(new InventoryKey(productId, businessEntityId), quantity));
+
+        // Take every stripe the basket needs in index order so the check and the reservation are atomic
+        List<ReentrantLock> basketStripes = reservation.keySet().stream()
+                .map(this::stripeIndex)
+                .distinct()
+                .sorted()
+                .map(index -> stripes[index])
+                .toList();
+        basketStripes.forEach(ReentrantLock::lock);
+        try {
+            List<Long> shortProductIds = reservation.entrySet().stream()
+                    .filter(entry -> counters.get(entry.getKey()).available() < entry.getValue())
+                    .map(entry -> entry.getKey().productId())
+                    .toList();
+            if (!shortProductIds.isEmpty()) {
+                throw new BusinessException(ErrorCodes.INSUFFICIENT_INVENTORY, "Insufficient stock for product id: " + joinIds(shortProductIds));
+            }
+            reservation.forEach((key, quantity) -> counters.get(key).inFlight += quantity);
+        } finally {
+            basketStripes.reversed().forEach(ReentrantLock::unlock);
+        }
+        return reservation;
+    }
+
+    private void loadMissingCounters(long businessEntityId, Set<Long> productIds) {
+        List<Long> missing = productIds.stream()
+                .filter(productId -> !counters.containsKey(new InventoryKey(productId, businessEntityId)))
+                .toList();
+        if (missing.isEmpty()) {
+            return;
+        }
+
+        Map<Long, Integer> quantities = inventoryRepository.findQuantitiesByProductId(businessEntityId, missing);
+        List<Long> notFound = missing.stream().filter(productId -> !quantities.containsKey(productId)).toList();
+        if (!notFound.isEmpty()) {
+            throw new BusinessException(ErrorCodes.NOT_FOUND, "Inventory not found for product id: " + joinIds(notFound));
+        }
+        quantities.forEach((productId, quantity) -> counters.putIfAbsent(new InventoryKey(productId, businessEntityId), new StockCounter(quantity)));
+    }
+
+    private void commitWriteBehind(Long saleId, Map<InventoryKey, Integer> reservation) {
+        commitLock.readLock().lock();
+        try {
+            reservation.forEach((key, quantity) -> withCounter(key, counter -> {
+                counter.inFlight -= quantity;
+                counter.pending -= quantity;
+            }));
+            committedSales.put(saleId, reservation);
+        } finally {
+            commitLock.readLock().unlock();
+        }
+    }
+
+    private void release(Map<InventoryKey, Integer> reservation) {
+        reservation.forEach((key, quantity) -> withCounter(key, counter -> counter.inFlight -= quantity));
+    }
+
+    private void adjustBase(InventoryKey key, int delta) {
+        withCounter(key, counter -> {
+            counter.base += delta;
+            counter.version++;
+        });
+    }
+
+    private void writeDeltas(Map<InventoryKey, Integer> deltas, List<Long> saleIds) {
+        Map<Long, SortedMap<Long, Integer>> deltasByBusinessEntity = new TreeMap<>();
+        deltas.forEach((key, delta) -> deltasByBusinessEntity
+                .computeIfAbsent(key.businessEntityId(), id -> new TreeMap<>())
+                .put(key.productId(), delta));
+        deltasByBusinessEntity.forEach(inventoryRepository::addQuantities);
+
+        for (int from = 0; from < saleIds.size(); from += CLEAR_BATCH_SIZE) {
+            salesTransactionRepository.clearStockPending(saleIds.subList(from, Math.min(from + CLEAR_BATCH_SIZE, saleIds.size())));
+        }
+    }
+
+    private void restore(Map<InventoryKey, Integer> deltas, Map<Long, Map<InventoryKey, Integer>> sales) {
+        commitLock.writeLock().lock();
+        try {
+            deltas.forEach((key, delta) -> withCounter(key, counter -> {
+                counter.flushing -= delta;
+                counter.pending += delta;
+            }));
+            committedSales.putAll(sales);
+        } finally {
+            commitLock.writeLock().unlock();
+        }
+    }
+
+    // Re-reads the table to correct any drift between it and the counters
+    private void resync() {
+        Map<Long, List<InventoryKey>> keysByBusinessEntity = counters.keySet().stream()
+                .collect(Collectors.groupingBy(InventoryKey::businessEntityId));
+
+        keysByBusinessEntity.forEach((businessEntityId, keys) -> {
+            Map<InventoryKey, Long> versions = new HashMap<>();
+            keys.forEach(key -> withCounter(key, counter -> versions.put(key, counter.version)));
+
+            Map<Long, Integer> quantities = inventoryRepository.findQuantitiesByProductId(
+                    businessEntityId, keys.stream().map(InventoryKey::productId).toList());
+
+            keys.forEach(key -> withCounter(key, counter -> {
+                Integer quantity = quantities.get(key.productId());
+                // Skip counters changed since the read; the next resync will catch them
+                if (quantity != null && counter.version == versions.get(key)) {
+                    counter.base = quantity;
+                }
+            }));
+        });
+    }
+
+    private void withCounter(InventoryKey key, Consumer<StockCounter> action) {
+        StockCounter counter = counters.get(key);
+        if (counter == null) {
+            return;
+        }
+        ReentrantLock stripe = stripeFor(key);
+        stripe.lock();
+        try {
+            action.accept(counter);
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    private ReentrantLock stripeFor(InventoryKey key) {
+        return stripes[stripeIndex(key)];
+    }
+
+    private int stripeIndex(InventoryKey key) {
+        return Math.floorMod(key.hashCode(), STRIPES);
+    }
+
+    private void requireActiveTransaction() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Stock reservations must be made inside a transaction");
+        }
+    }
+
+    private String joinIds(List<Long> productIds) {
+        return productIds.stream().map(String::valueOf).collect(Collectors.joining(", "));
+    }
+
+    /**
+     * Stock of one inventory row as seen by the engine. All fields are guarded by the key's stripe lock.
+     */
+    private static final class StockCounter {
+        private int base;       // quantity last read from or written to the inventory table
+        private int flushing;   // committed deltas being written by the running flush
+        private int pending;    // committed deltas not yet flushed
+        private int inFlight;   // reserved by transactions that have not completed yet
+        private long version;   // bumped whenever base changes, so a resync never overwrites a newer value
+
+        private StockCounter(int base) {
+            this.base = base;
+        }
+
+        private int available() {
+            return base + flushing + pending - inFlight;
+        }
+    }
+}
@@ -0,0 +1,413 @@
+package com.retailpulse.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.retailpulse.DTO.InventoryDeltaDto;
+import com.retailpulse.controller.response.StockTakeErrorDto;
+import com.retailpulse.controller.response.StockTakeSummaryDto;
+import com.retailpulse.controller.response.StockTakeVarianceDto;
+import com.retailpulse.entity.BusinessEntity;
+import com.retailpulse.entity.InventoryTransaction;
+import com.retailpulse.entity.Product;
+import com.retailpulse.exception.ErrorCodes;
+import com.retailpulse.repository.BusinessEntityRepository;
+import com.retailpulse.repository.InventoryRepository;
+import com.retailpulse.repository.InventoryTransactionRepository;
+import com.retailpulse.service.exception.BusinessException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Reconciles a store's stock with a physical count. The count is a JSON array of {@code {"productId", "quantity"}}
+ * lines, read token by token so a count of the whole store never sits in memory as objects; a product counted on
+ * several lines, say on different shelves, is counted as their sum.
+ * <p>
+ * The expected stock is read once without locks into {@link StockLevels}, the counts are kept in arrays aligned with
+ * it, and the two are compared in parallel. Each difference is then posted in chunks of
+ * {@code inventory.stock-take.chunk-size}, each in its own short transaction: the inventory row moves by the
+ * difference rather than being set to the count, so sales made while the count was read are kept, and an
+ * {@link InventoryTransaction} records the adjustment against the external business entity
+ * {@code inventory.stock-take.adjustment-business-entity-id}. Posting the same count again after a failure only
+ * adjusts what is still off.
+ * <p>
+ * In a full count a product the store holds but that was not counted is taken as counted zero; a partial count only
+ * adjusts the products it lists. The expected stock includes a hot product's {@link InventorySlotManager} slots, so
+ * a shortfall the row cannot cover is taken from the slots; a product that no longer holds the shortfall is rejected
+ * and should be counted again. Adjustments go through {@link StockReservationEngine#applyThrough} while the engine
+ * is enabled.
+ */
+@Service
+public class StockTakeService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(StockTakeService.class);
+
+    // Largest adjustments by cost first; uncosted ones (new rows) by units
+    private static final Comparator<StockTakeVarianceDto> BY_SIZE = Comparator
+            .comparingDouble((StockTakeVarianceDto variance) -> Math.abs(variance.variance() * variance.costPricePerUnit()))
+            .thenComparingInt(variance -> Math.abs(variance.variance()))
+            .reversed()
+            .thenComparing(StockTakeVarianceDto::productId);
+
+    private final InventoryRepository inventoryRepository;
+    private final InventoryTransactionRepository inventoryTransactionRepository;
+    private final BusinessEntityRepository businessEntityRepository;
+    private final ProductService productService;
+    private final InventorySlotManager inventorySlotManager;
+    private final StockReservationEngine stockReservationEngine;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${inventory.stock-take.adjustment-business-entity-id:#{null}}")
+    private Long adjustmentBusinessEntityId;
+
+    @Value("${inventory.stock-take.chunk-size:500}")
+    private int chunkSize = 500;
+
+    @Value("${inventory.stock-take.max-reported-variances:100}")
+    private int maxReportedVariances = 100;
+
+    @Value("${inventory.stock-take.max-reported-errors:1000}")
+    private int maxReportedErrors = 1000;
+
+    public StockTakeService(InventoryRepository inventoryRepository,
+                            InventoryTransactionRepository inventoryTransactionRepository,
+                            BusinessEntityRepository businessEntityRepository,
+                            ProductService productService,
+                            InventorySlotManager inventorySlotManager,
+                            StockReservationEngine stockReservationEngine,
+                            ObjectMapper objectMapper,
+                            PlatformTransactionManager transactionManager) {
+        this.inventoryRepository = inventoryRepository;
+        this.inventoryTransactionRepository = inventoryTransactionRepository;
+        this.businessEntityRepository = businessEntityRepository;
+        this.productService = productService;
+        this.inventorySlotManager = inventorySlotManager;
+        this.stockReservationEngine = stockReservationEngine;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Applies a stock-take of a store.
+     *
+     * @param businessEntityId the counted store
+     * @param content          the JSON array of counted lines
+     * @param partial          whether only the listed products were counted
+     * @return the adjustments made, with the reason for each rejected line
+     * @throws BusinessException        if the store or the adjustment business entity is missing or of the wrong kind
+     * @throws IllegalArgumentException if the content is not a JSON array of objects
+     */
+    public StockTakeSummaryDto applyStockTake(long businessEntityId, InputStream content, boolean partial) {
+        validateBusinessEntities(businessEntityId);
+
+        StockLevels stockLevels = new StockLevels();
+        inventoryRepository.readStockLevels(businessEntityId, stockLevels::add);
+
+        StockTake stockTake = new StockTake(businessEntityId, stockLevels);
+        stockTake.read(content);
+        List<StockTakeVarianceDto> variances = stockTake.diff(partial);
+        stockTake.post(variances);
+        StockTakeSummaryDto summary = stockTake.summary();
+
+        LOG.info("Stock-take of business entity {}: {} lines, {} products counted, {} adjusted, {} rejected lines",
+                businessEntityId, summary.linesRead(), summary.productsCounted(), summary.productsAdjusted(),
+                summary.linesRejected());
+        return summary;
+    }
+
+    private void validateBusinessEntities(long businessEntityId) {
+        BusinessEntity store = businessEntityRepository.findById(businessEntityId)
+                .orElseThrow(() -> new BusinessException(ErrorCodes.NOT_FOUND, "Business entity not found with id: " + businessEntityId));
+        if (store.isExternal()) {
+            throw new BusinessException(ErrorCodes.INVALID_REQUEST,
+                    "Cannot take stock of external business entity with id: " + businessEntityId);
+        }
+        if (adjustmentBusinessEntityId == null) {
+            throw new BusinessException(ErrorCodes.INVALID_REQUEST,
+                    "No business entity configured for stock-take adjustments (inventory.stock-take.adjustment-business-entity-id)");
+        }
+        BusinessEntity adjustments = businessEntityRepository.findById(adjustmentBusinessEntityId)
+                .orElseThrow(() -> new BusinessException(ErrorCodes.NOT_FOUND,
+                        "Stock-take adjustment business entity not found with id: " + adjustmentBusinessEntityId));
+        if (!adjustments.isExternal()) {
+            throw new BusinessException(ErrorCodes.INVALID_REQUEST,
+                    "Stock-take adjustment business entity must be external: " + adjustmentBusinessEntityId);
+        }
+    }
+
+    /**
+     * State of one stock-take: the counts aligned with the expected stock, the counts of products the store does not
+     * hold yet, and the running totals.
+     */
+    private final class StockTake {
+
+        private final long businessEntityId;
+        private final StockLevels stockLevels;
+        // -1 while not counted
+        private final int[] counted;
+        // Line each stocked product was first counted on, for reporting a failed adjustment
+        private final int[] firstLines;
+        private final Map<Long, UnstockedCount> unstocked = new TreeMap<>();
+        private final List<StockTakeErrorDto> errors = new ArrayList<>();
+        private final List<StockTakeVarianceDto> posted = new ArrayList<>();
+        private int linesRead;
+        private int rejected;
+        private int productsCounted;
+
+        StockTake(long businessEntityId, StockLevels stockLevels) {
+            this.businessEntityId = businessEntityId;
+            this.stockLevels = stockLevels;
+            this.counted = new int[stockLevels.size()];
+            this.firstLines = new int[stockLevels.size()];
+            Arrays.fill(counted, -1);
+        }
+
+        void read(InputStream content) {
+            try (JsonParser parser = objectMapper.getFactory().createParser(content)) {
+                if (parser.nextToken() != JsonToken.START_ARRAY) {
+                    throw new IllegalArgumentException("Stock-take must be a JSON array of counted lines");
+                }
+                JsonToken token;
+                while ((token = parser.nextToken()) == JsonToken.START_OBJECT) {
+                    readLine(parser, ++linesRead);
+                }
+                if (token != JsonToken.END_ARRAY) {
+                    throw new IllegalArgumentException("Stock-take line " + (linesRead + 1) + " is not a JSON object");
+                }
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Cannot read stock-take: " + e.getMessage(), e);
+            }
+            checkUnstockedProducts();
+        }
+
+        List<StockTakeVarianceDto> diff(boolean partial) {
+            List<StockTakeVarianceDto> variances = new ArrayList<>(IntStream.range(0, stockLevels.size()).parallel()
+                    .filter(index -> counted[index] >= 0 || !partial)
+                    .filter(index -> Math.max(counted[index], 0) != stockLevels.quantity(index))
+                    .mapToObj(index -> {
+                        int count = Math.max(counted[index], 0);
+                        int expected = stockLevels.quantity(index);
+                        return new StockTakeVarianceDto(stockLevels.productId(index), expected, count, count - expected,
+                                stockLevels.costPricePerUnit(index));
+                    })
+                    .toList());
+            unstocked.forEach((productId, count) -> {
+                if (count.quantity > 0) {
+                    // No stock to take a cost from; the adjustment carries none
+                    variances.add(new StockTakeVarianceDto(productId, 0, count.quantity, count.quantity, 0.0));
+                }
+            });
+            productsCounted += (int) Arrays.stream(counted).filter(count -> count >= 0).count();
+            return variances;
+        }
+
+        void post(List<StockTakeVarianceDto> variances) {
+            for (int from = 0; from < variances.size(); from += chunkSize) {
+                List<StockTakeVarianceDto> chunk = variances.subList(from, Math.min(from + chunkSize, variances.size()));
+                try {
+                    save(chunk);
+                } catch (RuntimeException e) {
+                    // One product that cannot be adjusted rolls back the whole chunk, so its products are retried alone
+                    LOG.warn("Failed to post stock-take adjustments of business entity {} for products {} to {}, retrying them one at a time",
+                            businessEntityId, chunk.get(0).productId(), chunk.get(chunk.size() - 1).productId(), e);
+                    chunk.forEach(this::saveAlone);
+                }
+            }
+        }
+
+        private void save(List<StockTakeVarianceDto> variances) {
+            transactionTemplate.executeWithoutResult(status -> write(variances));
+            posted.addAll(variances);
+        }
+
+        private void saveAlone(StockTakeVarianceDto variance) {
+            try {
+                save(List.of(variance));
+            } catch (RuntimeException e) {
+                LOG.warn("Failed to post the stock-take adjustment of business entity {} for product {}", businessEntityId,
+                        variance.productId(), e);
+                reject(lineOf(variance.productId()), "Could not be adjusted: " + e.getMessage());
+            }
+        }
+
+        StockTakeSummaryDto summary() {
+            long unitsOver = 0;
+            long unitsShort = 0;
+            double costOver = 0;
+            double costShort = 0;
+            for (StockTakeVarianceDto variance : posted) {
+                double cost = Math.abs(variance.variance()) * variance.costPricePerUnit();
+                if (variance.variance() > 0) {
+                    unitsOver += variance.variance();
+                    costOver += cost;
+                } else {
+                    unitsShort -= variance.variance();
+                    costShort += cost;
+                }
+            }
+            List<StockTakeVarianceDto> largest = posted.stream().sorted(BY_SIZE).limit(maxReportedVariances).toList();
+            return new StockTakeSummaryDto(businessEntityId, linesRead, rejected, productsCounted, posted.size(),
+                    unitsOver, unitsShort, costOver, costShort, largest, List.copyOf(errors));
+        }
+
+        private void readLine(JsonParser parser, int line) throws IOException {
+            Long productId = null;
+            Integer quantity = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("productId".equals(field) && value == JsonToken.VALUE_NUMBER_INT) {
+                    productId = parser.getLongValue();
+                } else if ("quantity".equals(field) && value == JsonToken.VALUE_NUMBER_INT) {
+                    quantity = parser.getIntValue();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            if (productId == null) {
+                reject(line, "productId is required and must be a whole number");
+            } else if (quantity == null || quantity < 0) {
+                reject(line, "quantity is required and must be a whole number of zero or more");
+            } else {
+                count(line, productId, quantity);
+            }
+        }
+
+        private void count(int line, long productId, int quantity) {
+            int index = stockLevels.indexOf(productId);
+            try {
+                if (index < 0) {
+                    UnstockedCount count = unstocked.computeIfAbsent(productId, id -> new UnstockedCount(line));
+                    count.quantity = Math.addExact(count.quantity, quantity);
+                } else if (counted[index] < 0) {
+                    counted[index] = quantity;
+                    firstLines[index] = line;
+                } else {
+                    counted[index] = Math.addExact(counted[index], quantity);
+                }
+            } catch (ArithmeticException e) {
+                reject(line, "Total quantity counted for product id: " + productId + " exceeds " + Integer.MAX_VALUE);
+            }
+        }
+
+        // Counts of products without an inventory row create one, so the products must exist and be in use
+        private void checkUnstockedProducts() {
+            List<Long> productIds = new ArrayList<>(unstocked.keySet());
+            for (int from = 0; from < productIds.size(); from += chunkSize) {
+                List<Long> chunk = productIds.subList(from, Math.min(from + chunkSize, productIds.size()));
+                Map<Long, Product> products = productService.getProductsByIds(chunk).stream()
+                        .collect(Collectors.toMap(Product::getId, Function.identity()));
+                for (Long productId : chunk) {
+                    Product product = products.get(productId);
+                    if (product == null) {
+                        reject(unstocked.remove(productId).line, "Product not found with id: " + productId);
+                    } else if (!product.isActive()) {
+                        reject(unstocked.remove(productId).line, "Cannot count deleted product with id: " + productId);
+                    }
+                }
+            }
+            productsCounted += unstocked.size();
+        }
+
+        private void write(List<StockTakeVarianceDto> variances) {
+            SortedMap<Long, Integer> quantities = new TreeMap<>();
+            List<InventoryTransaction> adjustments = new ArrayList<>(variances.size());
+            for (StockTakeVarianceDto variance : variances) {
+                quantities.put(variance.productId(), variance.variance());
+                adjustments.add(adjustment(variance));
+            }
+            if (stockReservationEngine.isEnabled()) {
+                stockReservationEngine.applyThrough(businessEntityId, quantities, () -> adjustStock(variances));
+            } else {
+                adjustStock(variances);
+            }
+            inventoryTransactionRepository.saveAll(adjustments);
+        }
+
+        private void adjustStock(List<StockTakeVarianceDto> variances) {
+            SortedMap<Long, InventoryDeltaDto> deductions = new TreeMap<>();
+            SortedMap<Long, InventoryDeltaDto> additions = new TreeMap<>();
+            for (StockTakeVarianceDto variance : variances) {
+                InventoryDeltaDto delta = new InventoryDeltaDto(Math.abs(variance.variance()),
+                        Math.abs(variance.variance()) * variance.costPricePerUnit());
+                (variance.variance() < 0 ? deductions : additions).put(variance.productId(), delta);
+            }
+
+            if (!deductions.isEmpty()) {
+                // The expected stock counts slot stock too, so a shortfall the row cannot cover comes out of the slots
+                List<Long> shortProductIds = new ArrayList<>();
+                inventoryRepository.deductStock(businessEntityId, deductions).forEach(productId -> {
+                    InventoryDeltaDto deduction = deductions.get(productId);
+                    if (inventorySlotManager.isEnabled() && inventorySlotManager.deduct(businessEntityId, productId, deduction.quantity())) {
+                        additions.put(productId, new InventoryDeltaDto(0, -deduction.costPrice()));
+                    } else {
+                        shortProductIds.add(productId);
+                    }
+                });
+                if (!shortProductIds.isEmpty()) {
+                    throw new BusinessException(ErrorCodes.INSUFFICIENT_INVENTORY, "Stock of product id: "
+                            + shortProductIds.stream().map(String::valueOf).collect(Collectors.joining(", "))
+                            + " has fallen below the shortfall counted; count it again");
+                }
+            }
+            if (!additions.isEmpty()) {
+                inventoryRepository.addStock(businessEntityId, additions);
+            }
+        }
+
+        // Stock found comes in from the adjustment entity; stock missing goes out to it
+        private InventoryTransaction adjustment(StockTakeVarianceDto variance) {
+            InventoryTransaction transaction = new InventoryTransaction();
+            transaction.setProductId(variance.productId());
+            transaction.setQuantity(Math.abs(variance.variance()));
+            transaction.setCostPricePerUnit(variance.costPricePerUnit());
+            if (variance.variance() > 0) {
+                transaction.setSource(adjustmentBusinessEntityId);
+                transaction.setDestination(businessEntityId);
+            } else {
+                transaction.setSource(businessEntityId);
+                transaction.setDestination(adjustmentBusinessEntityId);
+            }
+            return transaction;
+        }
+
+        // An uncounted product of a full count has no line of its own
+        private int lineOf(long productId) {
+            int index = stockLevels.indexOf(productId);
+            if (index >= 0) {
+                return firstLines[index];
+            }
+            UnstockedCount count = unstocked.get(productId);
+            return count == null ? 0 : count.line;
+        }
+
+        private void reject(int line, String message) {
+            rejected++;
+            if (errors.size() < maxReportedErrors) {
+                errors.add(new StockTakeErrorDto(line, message));
+            }
+        }
+    }
+
+    private static final class UnstockedCount {
+
+        private final int line;
+        private int quantity;
+
+        UnstockedCount(int line) {
+            this.line = line;
+        }
+    }
+}
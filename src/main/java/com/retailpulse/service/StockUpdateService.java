@@ -7,39 +7,408 @@ import com.retailpulse.exception.ErrorCodes;
 import com.retailpulse.repository.InventoryRepository;
 import com.retailpulse.service.exception.BusinessException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 public class StockUpdateService {
 
     private final InventoryRepository inventoryRepository;
+    private final InventoryLockManager inventoryLockManager;
+    private final StockReservationEngine stockReservationEngine;
+    private final InventorySlotManager inventorySlotManager;
 
-    public StockUpdateService(InventoryRepository inventoryRepository) {
+    public StockUpdateService(InventoryRepository inventoryRepository,
+                              InventoryLockManager inventoryLockManager,
+                              StockReservationEngine stockReservationEngine,
+                              InventorySlotManager inventorySlotManager) {
         this.inventoryRepository = inventoryRepository;
+        this.inventoryLockManager = inventoryLockManager;
+        this.stockReservationEngine = stockReservationEngine;
+        this.inventorySlotManager = inventorySlotManager;
     }
 
+    /**
+     * Returns the stock of every line in the transaction to the business entity's inventory
+     * with a single batched update.
+     */
+    @Transactional
     public void addStock(SalesTransaction salesTransaction) {
-        for (SalesDetails salesDetails : salesTransaction.getSalesDetailEntities()) {
-            Inventory inventory = inventoryRepository.findByProductIdAndBusinessEntityId(salesDetails.getProductId(), salesTransaction.getBusinessEntityId())
-                    .orElseThrow(() -> new BusinessException(ErrorCodes.NOT_FOUND, "Inventory not found for product id: " + salesDetails.getProductId()));
+        SortedMap<Long, Integer> quantities = mergeQuantitiesByProduct(salesTransaction.getSalesDetailEntities());
+        if (quantities.isEmpty()) {
+            return;
+        }
+        long businessEntityId = salesTransaction.getBusinessEntityId();
 
-            inventory.setQuantity(inventory.getQuantity() + salesDetails.getQuantity());
-            inventoryRepository.save(inventory);
+        if (stockReservationEngine.isEnabled()) {
+            if (salesTransaction.isStockPending()) {
+                // The sale's own deduction has to reach the table before it is reversed there; it is written in this
+                // transaction, so the flag is cleared in the same commit
+                stockReservationEngine.settle(salesTransaction);
+                salesTransaction.clearStockPending();
+            }
+            stockReservationEngine.applyThrough(businessEntityId, quantities, () -> addToInventory(businessEntityId, quantities));
+            return;
         }
+        addToInventory(businessEntityId, quantities);
     }
 
+    /**
+     * Deducts the stock of every line in the transaction from the business entity's inventory.
+     * Duplicate product lines are merged, the affected rows are read in one keyed query and the
+     * decrements are applied as one batch of conditional updates. Every short product is reported
+     * in a single {@link ErrorCodes#INSUFFICIENT_INVENTORY} error.
+     * <p>
+     * With the reservation engine enabled, a new sale is admitted against its in-memory counters instead.
+     * Products whose stock is split across inventory slots are deducted one slot at a time.
+     */
+    @Transactional
     public void deductStock(SalesTransaction salesTransaction) {
-        for (SalesDetails salesDetails : salesTransaction.getSalesDetailEntities()) {
-            Inventory inventory = inventoryRepository.findByProductIdAndBusinessEntityId(salesDetails.getProductId(), salesTransaction.getBusinessEntityId())
-                    .orElseThrow(() -> new BusinessException(ErrorCodes.NOT_FOUND, "Inventory not found for product id: " + salesDetails.getProductId()));
+        SortedMap<Long, Integer> quantities = mergeQuantitiesByProduct(salesTransaction.getSalesDetailEntities());
+        if (quantities.isEmpty()) {
+            return;
+        }
+        long businessEntityId = salesTransaction.getBusinessEntityId();
 
-            if (inventory.getQuantity() < salesDetails.getQuantity()) {
-                throw new BusinessException(ErrorCodes.INSUFFICIENT_INVENTORY, "Insufficient stock for product id: " + salesDetails.getProductId());
+        if (stockReservationEngine.isEnabled()) {
+            if (salesTransaction.getId() == null) {
+                // New sale: admit in memory and let the engine write the inventory table behind
+                stockReservationEngine.reserve(salesTransaction, quantities);
+                return;
             }
+            SortedMap<Long, Integer> deltas = new TreeMap<>();
+            quantities.forEach((productId, quantity) -> deltas.put(productId, -quantity));
+            stockReservationEngine.applyThrough(businessEntityId, deltas, () -> deductFromInventory(businessEntityId, quantities, false));
+            return;
+        }
+        deductFromInventory(businessEntityId, quantities, false);
+    }
 
-            inventory.setQuantity(inventory.getQuantity() - salesDetails.getQuantity());
-            inventoryRepository.save(inventory);
+    /**
+     * Applies an amendment of an existing sale: stock is deducted for products sold in greater quantity and
+     * returned for products sold in smaller quantity, leaving every other inventory row untouched.
+     *
+     * @param quantityChanges the change in quantity sold per product, as returned by
+     *                        {@link SalesTransaction#updateSalesDetails}
+     */
+    @Transactional
+    public void applyQuantityChanges(SalesTransaction salesTransaction, SortedMap<Long, Integer> quantityChanges) {
+        if (quantityChanges.isEmpty()) {
+            return;
+        }
+        long businessEntityId = salesTransaction.getBusinessEntityId();
+        // A product sold in smaller quantity is returned (positive delta), one sold in greater quantity deducted
+        SortedMap<Long, Integer> deltas = new TreeMap<>();
+        quantityChanges.forEach((productId, change) -> {
+            if (change != 0) {
+                deltas.put(productId, -change);
+            }
+        });
 
+        if (stockReservationEngine.isEnabled()) {
+            if (salesTransaction.isStockPending()) {
+                stockReservationEngine.settle(salesTransaction);
+                salesTransaction.clearStockPending();
+            }
+            stockReservationEngine.applyThrough(businessEntityId, deltas, () -> applyReturnsAndDeductions(businessEntityId, deltas));
+            return;
         }
+        applyReturnsAndDeductions(businessEntityId, deltas);
+    }
+
+    /**
+     * Deducts the stock of a group of new sales written in one transaction. Each sale is checked against the
+     * stock left by the sales before it, and the accepted lines are applied as one deduction per business entity.
+     * Rejected sales are returned with their error rather than thrown, so they do not roll back the others.
+     * A deduction that still fails, e.g. because a checkout outside the group took the stock meanwhile, is thrown.
+     */
+    @Transactional
+    public Map<SalesTransaction, BusinessException> deductStockForGroup(List<SalesTransaction> salesTransactions) {
+        Map<SalesTransaction, BusinessException> rejected = new HashMap<>();
+        if (stockReservationEngine.isEnabled()) {
+            // The engine admits each sale atomically and leaves no trace of a rejected one
+            for (SalesTransaction salesTransaction : salesTransactions) {
+                try {
+                    deductStock(salesTransaction);
+                } catch (BusinessException e) {
+                    rejected.put(salesTransaction, e);
+                }
+            }
+            return rejected;
+        }
+
+        Map<Long, List<SalesTransaction>> salesByBusinessEntity = salesTransactions.stream()
+                .collect(Collectors.groupingBy(SalesTransaction::getBusinessEntityId, TreeMap::new, Collectors.toList()));
+        salesByBusinessEntity.forEach((businessEntityId, sales) -> {
+            Map<SalesTransaction, SortedMap<Long, Integer>> baskets = new LinkedHashMap<>();
+            sales.forEach(sale -> baskets.put(sale, mergeQuantitiesByProduct(sale.getSalesDetailEntities())));
+            Set<Long> productIds = baskets.values().stream()
+                    .flatMap(basket -> basket.keySet().stream())
+                    .collect(Collectors.toSet());
+
+            Map<Long, Integer> remaining = new HashMap<>(availableQuantities(businessEntityId, productIds));
+            SortedMap<Long, Integer> accepted = new TreeMap<>();
+            baskets.forEach((sale, basket) -> {
+                try {
+                    requireSufficientStock(basket, remaining, Function.identity());
+                } catch (BusinessException e) {
+                    rejected.put(sale, e);
+                    return;
+                }
+                basket.forEach((productId, quantity) -> {
+                    remaining.merge(productId, -quantity, Integer::sum);
+                    accepted.merge(productId, quantity, Integer::sum);
+                });
+            });
+
+            if (!accepted.isEmpty()) {
+                deductFromInventory(businessEntityId, accepted, true);
+            }
+        });
+        return rejected;
+    }
+
+    // Returns and deductions go out together in product id order, so an amendment locks rows in the same order as checkouts
+    private void applyReturnsAndDeductions(long businessEntityId, SortedMap<Long, Integer> deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        SortedMap<Long, Integer> rowDeltas = new TreeMap<>(deltas);
+        SortedMap<Long, Integer> slotDeltas = splitHotProducts(businessEntityId, rowDeltas);
+
+        if (!rowDeltas.isEmpty()) {
+            applyToRows(businessEntityId, rowDeltas);
+        }
+        List<Long> missingProductIds = new ArrayList<>();
+        List<Long> shortProductIds = new ArrayList<>();
+        slotDeltas.forEach((productId, delta) -> {
+            if (delta > 0 && !inventorySlotManager.add(businessEntityId, productId, delta)) {
+                missingProductIds.add(productId);
+            } else if (delta < 0 && !inventorySlotManager.deduct(businessEntityId, productId, -delta)) {
+                shortProductIds.add(productId);
+            }
+        });
+        if (!missingProductIds.isEmpty()) {
+            throw notFound(missingProductIds);
+        }
+        if (!shortProductIds.isEmpty()) {
+            throw insufficientStock(shortProductIds);
+        }
+    }
+
+    private void applyToRows(long businessEntityId, SortedMap<Long, Integer> deltas) {
+        SortedMap<Long, Integer> deductions = new TreeMap<>();
+        deltas.forEach((productId, delta) -> {
+            if (delta < 0) {
+                deductions.put(productId, -delta);
+            }
+        });
+
+        if (inventoryLockManager.isPessimistic()) {
+            Map<Long, Inventory> lockedRows = lockRows(businessEntityId, deltas);
+            SortedMap<Long, Integer> shortRows = new TreeMap<>();
+            deductions.forEach((productId, quantity) -> {
+                if (lockedRows.get(productId).getQuantity() < quantity) {
+                    shortRows.put(productId, quantity);
+                }
+            });
+            deductFromSlots(businessEntityId, shortRows);
+            deltas.forEach((productId, delta) -> {
+                if (!shortRows.containsKey(productId)) {
+                    Inventory inventory = lockedRows.get(productId);
+                    inventory.setQuantity(inventory.getQuantity() + delta);
+                }
+            });
+            return;
+        }
+
+        if (!deductions.isEmpty()) {
+            requireSufficientStock(deductions, availableQuantities(businessEntityId, deductions.keySet()), Function.identity());
+        }
+        long started = System.nanoTime();
+        List<Long> unmatchedProductIds = inventoryRepository.applyQuantityDeltas(businessEntityId, deltas);
+        inventoryLockManager.recordRowWrites(businessEntityId, deltas.keySet(), System.nanoTime() - started);
+
+        // A return only misses a row that does not exist; a deduction also misses one that no longer holds enough
+        List<Long> missingProductIds = unmatchedProductIds.stream().filter(productId -> deltas.get(productId) > 0).toList();
+        if (!missingProductIds.isEmpty()) {
+            throw notFound(missingProductIds);
+        }
+        SortedMap<Long, Integer> shortRows = new TreeMap<>();
+        unmatchedProductIds.forEach(productId -> shortRows.put(productId, deductions.get(productId)));
+        deductFromSlots(businessEntityId, shortRows);
+    }
+
+    private void addToInventory(long businessEntityId, SortedMap<Long, Integer> quantities) {
+        SortedMap<Long, Integer> rowQuantities = new TreeMap<>(quantities);
+        SortedMap<Long, Integer> slotQuantities = splitHotProducts(businessEntityId, rowQuantities);
+
+        if (!rowQuantities.isEmpty()) {
+            addToRows(businessEntityId, rowQuantities);
+        }
+        List<Long> missingProductIds = slotQuantities.entrySet().stream()
+                .filter(line -> !inventorySlotManager.add(businessEntityId, line.getKey(), line.getValue()))
+                .map(Map.Entry::getKey)
+                .toList();
+        if (!missingProductIds.isEmpty()) {
+            throw notFound(missingProductIds);
+        }
+    }
+
+    // stockChecked: the caller has just read the available quantities itself, so the guarded updates need no second read
+    private void deductFromInventory(long businessEntityId, SortedMap<Long, Integer> quantities, boolean stockChecked) {
+        SortedMap<Long, Integer> rowQuantities = new TreeMap<>(quantities);
+        SortedMap<Long, Integer> slotQuantities = splitHotProducts(businessEntityId, rowQuantities);
+
+        if (!rowQuantities.isEmpty()) {
+            deductFromRows(businessEntityId, rowQuantities, stockChecked);
+        }
+        List<Long> shortProductIds = slotQuantities.entrySet().stream()
+                .filter(line -> !inventorySlotManager.deduct(businessEntityId, line.getKey(), line.getValue()))
+                .map(Map.Entry::getKey)
+                .toList();
+        if (!shortProductIds.isEmpty()) {
+            throw insufficientStock(shortProductIds);
+        }
+    }
+
+    // Moves the lines of products whose stock is split across inventory slots out of quantities
+    private SortedMap<Long, Integer> splitHotProducts(long businessEntityId, SortedMap<Long, Integer> quantities) {
+        SortedMap<Long, Integer> hotQuantities = new TreeMap<>();
+        if (inventorySlotManager.isEnabled()) {
+            quantities.forEach((productId, quantity) -> {
+                if (inventorySlotManager.isHot(new InventoryKey(productId, businessEntityId))) {
+                    hotQuantities.put(productId, quantity);
+                }
+            });
+            quantities.keySet().removeAll(hotQuantities.keySet());
+        }
+        return hotQuantities;
+    }
+
+    private void addToRows(long businessEntityId, SortedMap<Long, Integer> quantities) {
+        if (inventoryLockManager.isPessimistic()) {
+            Map<Long, Inventory> lockedRows = lockRows(businessEntityId, quantities);
+            quantities.forEach((productId, quantity) -> {
+                Inventory inventory = lockedRows.get(productId);
+                inventory.setQuantity(inventory.getQuantity() + quantity);
+            });
+            return;
+        }
+
+        List<Long> missingProductIds = inventoryRepository.addQuantities(businessEntityId, quantities);
+        if (!missingProductIds.isEmpty()) {
+            throw notFound(missingProductIds);
+        }
+    }
+
+    private void deductFromRows(long businessEntityId, SortedMap<Long, Integer> quantities, boolean stockChecked) {
+        if (inventoryLockManager.isPessimistic()) {
+            // Rows stay locked until commit, so the check below cannot race another checkout
+            Map<Long, Inventory> lockedRows = lockRows(businessEntityId, quantities);
+            SortedMap<Long, Integer> shortRows = new TreeMap<>();
+            quantities.forEach((productId, quantity) -> {
+                if (lockedRows.get(productId).getQuantity() < quantity) {
+                    shortRows.put(productId, quantity);
+                }
+            });
+            deductFromSlots(businessEntityId, shortRows);
+            quantities.forEach((productId, quantity) -> {
+                if (!shortRows.containsKey(productId)) {
+                    Inventory inventory = lockedRows.get(productId);
+                    inventory.setQuantity(inventory.getQuantity() - quantity);
+                }
+            });
+            return;
+        }
+
+        if (!stockChecked) {
+            Map<Long, Integer> available = availableQuantities(businessEntityId, quantities.keySet());
+            requireSufficientStock(quantities, available, Function.identity());
+        }
+
+        // The quantity guard catches stock sold by a concurrent checkout since the read above;
+        // throwing rolls back the rows of this batch that were already decremented.
+        long started = System.nanoTime();
+        List<Long> racedProductIds = inventoryRepository.deductQuantities(businessEntityId, quantities);
+        inventoryLockManager.recordRowWrites(businessEntityId, quantities.keySet(), System.nanoTime() - started);
+        SortedMap<Long, Integer> shortRows = new TreeMap<>();
+        racedProductIds.forEach(productId -> shortRows.put(productId, quantities.get(productId)));
+        deductFromSlots(businessEntityId, shortRows);
+    }
+
+    // A product this node does not treat as hot may still hold stock in inventory slots, because another node or an
+    // earlier rebalance split it, so a row that is short on its own is only reported once its slots are drained too
+    private void deductFromSlots(long businessEntityId, SortedMap<Long, Integer> shortRows) {
+        List<Long> shortProductIds = shortRows.entrySet().stream()
+                .filter(line -> !inventorySlotManager.isEnabled()
+                        || !inventorySlotManager.deduct(businessEntityId, line.getKey(), line.getValue()))
+                .map(Map.Entry::getKey)
+                .toList();
+        if (!shortProductIds.isEmpty()) {
+            throw insufficientStock(shortProductIds);
+        }
+    }
+
+    // Slot stock is only counted while slots are enabled; otherwise a plain keyed read of the rows does
+    private Map<Long, Integer> availableQuantities(long businessEntityId, Collection<Long> productIds) {
+        return inventorySlotManager.isEnabled()
+                ? inventoryRepository.findQuantitiesByProductId(businessEntityId, productIds)
+                : inventoryRepository.findRowQuantitiesByProductId(businessEntityId, productIds);
+    }
+
+    private Map<Long, Inventory> lockRows(long businessEntityId, SortedMap<Long, Integer> quantities) {
+        Map<Long, Inventory> lockedRows = inventoryLockManager.lockBasketRows(businessEntityId, quantities.keySet()).stream()
+                .collect(Collectors.toMap(Inventory::getProductId, Function.identity()));
+
+        List<Long> missingProductIds = quantities.keySet().stream()
+                .filter(productId -> !lockedRows.containsKey(productId))
+                .toList();
+        if (!missingProductIds.isEmpty()) {
+            throw notFound(missingProductIds);
+        }
+        return lockedRows;
+    }
+
+    private <T> void requireSufficientStock(SortedMap<Long, Integer> quantities, Map<Long, T> rows, Function<T, Integer> quantityOf) {
+        List<Long> missingProductIds = quantities.keySet().stream()
+                .filter(productId -> !rows.containsKey(productId))
+                .toList();
+        if (!missingProductIds.isEmpty()) {
+            throw notFound(missingProductIds);
+        }
+
+        List<Long> shortProductIds = quantities.entrySet().stream()
+                .filter(entry -> quantityOf.apply(rows.get(entry.getKey())) < entry.getValue())
+                .map(Map.Entry::getKey)
+                .toList();
+        if (!shortProductIds.isEmpty()) {
+            throw insufficientStock(shortProductIds);
+        }
+    }
+
+    // Sorted by product id so concurrent baskets touch rows in the same order
+    private SortedMap<Long, Integer> mergeQuantitiesByProduct(List<SalesDetails> salesDetails) {
+        SortedMap<Long, Integer> quantities = new TreeMap<>();
+        for (SalesDetails detail : salesDetails) {
+            quantities.merge(detail.getProductId(), detail.getQuantity(), Integer::sum);
+        }
+        return quantities;
+    }
+
+    private BusinessException notFound(List<Long> productIds) {
+        return new BusinessException(ErrorCodes.NOT_FOUND, "Inventory not found for product id: " + joinIds(productIds));
+    }
+
+    private BusinessException insufficientStock(List<Long> productIds) {
+        return new BusinessException(ErrorCodes.INSUFFICIENT_INVENTORY, "Insufficient stock for product id: " + joinIds(productIds));
+    }
+
+    private String joinIds(List<Long> productIds) {
+        return productIds.stream().map(String::valueOf).collect(Collectors.joining(", "));
     }
 
 }
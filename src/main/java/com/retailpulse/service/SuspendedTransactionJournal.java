@@ -0,0 +1,264 @@
+package com.retailpulse.service;
+
+import com.retailpulse.entity.SalesTransactionMemento;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+/**
+ * Write-ahead journal that keeps suspended sales across restarts. Suspends and restores are appended to a
+ * memory-mapped file and forced to disk together every {@code suspended-transactions.journal.fsync-interval-ms},
+ * so the request path only copies bytes into memory. On startup the last snapshot and the journal after it are
+ * replayed; every {@code compact-interval-ms}, or when the journal is full, the live sales are written to a new
+ * snapshot and the journal starts over.
+ * <p>
+ * Each record carries the generation of the snapshot it follows and a CRC, so a torn write at the tail or records
+ * left over from before the last snapshot are never replayed.
+ */
+@Component
+public class SuspendedTransactionJournal {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SuspendedTransactionJournal.class);
+
+    private static final int SNAPSHOT_MAGIC = 0x53545331;
+    private static final byte ADD = 1;
+    private static final byte DELETE = 2;
+    // payload length + generation + type before the payload, CRC after it
+    private static final int RECORD_HEADER_BYTES = 4 + 8 + 1;
+    private static final int RECORD_OVERHEAD_BYTES = RECORD_HEADER_BYTES + 4;
+
+    private FileChannel journalChannel;
+    private MappedByteBuffer journal;
+    private long generation;
+    private boolean dirty;
+    private Supplier<Collection<SalesTransactionMemento>> liveMementos;
+    private ScheduledExecutorService executor;
+
+    @Value("${suspended-transactions.journal.enabled:false}")
+    private boolean enabled;
+
+    @Value("${suspended-transactions.journal.directory:data/suspended-transactions}")
+    private String directory = "data/suspended-transactions";
+
+    @Value("${suspended-transactions.journal.size-bytes:67108864}")
+    private int sizeBytes = 67108864;
+
+    @Value("${suspended-transactions.journal.fsync-interval-ms:20}")
+    private long fsyncIntervalMs = 20;
+
+    @Value("${suspended-transactions.journal.compact-interval-ms:300000}")
+    private long compactIntervalMs = 300000;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Replays the snapshot and journal, writes them into a fresh snapshot and starts the background fsync and
+     * compaction.
+     *
+     * @param liveMementos supplies every suspended sale currently held, for compaction
+     * @return the suspended sales recovered from disk
+     */
+    public synchronized Collection<SalesTransactionMemento> open(Supplier<Collection<SalesTransactionMemento>> liveMementos) {
+        this.liveMementos = liveMementos;
+        Map<Long, SalesTransactionMemento> recovered = new LinkedHashMap<>();
+        try {
+            Files.createDirectories(Path.of(directory));
+            generation = readSnapshot(recovered);
+            journalChannel = FileChannel.open(journalPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            journal = journalChannel.map(FileChannel.MapMode.READ_WRITE, 0, sizeBytes);
+            int replayed = replay(recovered);
+            LOG.info("Recovered {} suspended transactions ({} journal records)", recovered.size(), replayed);
+
+            writeSnapshot(recovered.values());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open suspended transaction journal in " + directory, e);
+        }
+
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "suspended-transaction-journal");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::forceQuietly, fsyncIntervalMs, fsyncIntervalMs, TimeUnit.MILLISECONDS);
+        executor.scheduleWithFixedDelay(this::compactQuietly, compactIntervalMs, compactIntervalMs, TimeUnit.MILLISECONDS);
+        return recovered.values();
+    }
+
+    public void recordAdd(SalesTransactionMemento memento) {
+        ByteBuffer payload = ByteBuffer.allocate(memento.encodedSize());
+        memento.encode(payload);
+        append(ADD, payload.flip());
+    }
+
+    public void recordDelete(Long businessEntityId, Long transactionId) {
+        append(DELETE, ByteBuffer.allocate(16).putLong(businessEntityId).putLong(transactionId).flip());
+    }
+
+    /**
+     * Writes the live suspended sales to a new snapshot and starts the journal over.
+     */
+    public synchronized void compact() {
+        try {
+            writeSnapshot(liveMementos.get());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to compact suspended transaction journal", e);
+        }
+    }
+
+    public synchronized void close() {
+        if (executor == null) {
+            return;
+        }
+        executor.shutdownNow();
+        executor = null;
+        force();
+        try {
+            journalChannel.close();
+        } catch (IOException e) {
+            LOG.warn("Failed to close suspended transaction journal", e);
+        }
+    }
+
+    private synchronized void append(byte type, ByteBuffer payload) {
+        int recordBytes = RECORD_OVERHEAD_BYTES + payload.remaining();
+        if (journal.position() + recordBytes > journal.capacity()) {
+            compact();
+            if (recordBytes > journal.capacity()) {
+                throw new IllegalStateException("Suspended transaction of " + recordBytes + " bytes does not fit the journal");
+            }
+        }
+        int start = journal.position();
+        journal.putInt(payload.remaining());
+        journal.putLong(generation);
+        journal.put(type);
+        journal.put(payload);
+        journal.putInt(crc(start, journal.position()));
+        dirty = true;
+    }
+
+    private int replay(Map<Long, SalesTransactionMemento> recovered) {
+        int records = 0;
+        while (journal.remaining() >= RECORD_OVERHEAD_BYTES) {
+            int start = journal.position();
+            int payloadBytes = journal.getInt();
+            if (payloadBytes <= 0 || payloadBytes > journal.capacity() - start - RECORD_OVERHEAD_BYTES
+                    || journal.getLong() != generation) {
+                break;
+            }
+            byte type = journal.get();
+            ByteBuffer payload = journal.slice(journal.position(), payloadBytes);
+            journal.position(journal.position() + payloadBytes);
+            if (journal.getInt() != crc(start, start + RECORD_HEADER_BYTES + payloadBytes)) {
+                LOG.warn("Ignoring torn suspended transaction journal record at offset {}", start);
+                break;
+            }
+            if (type == ADD) {
+                SalesTransactionMemento memento = SalesTransactionMemento.decode(payload);
+                recovered.put(memento.transactionId(), memento);
+            } else if (type == DELETE) {
+                payload.getLong();
+                recovered.remove(payload.getLong());
+            }
+            records++;
+        }
+        return records;
+    }
+
+    private int crc(int from, int to) {
+        CRC32 crc = new CRC32();
+        crc.update(journal.slice(from, to - from));
+        return (int) crc.getValue();
+    }
+
+    private long readSnapshot(Map<Long, SalesTransactionMemento> recovered) throws IOException {
+        Path snapshotPath = snapshotPath();
+        if (!Files.exists(snapshotPath)) {
+            return 0;
+        }
+        ByteBuffer snapshot = ByteBuffer.wrap(Files.readAllBytes(snapshotPath));
+        if (snapshot.getInt() != SNAPSHOT_MAGIC) {
+            throw new IOException("Not a suspended transaction snapshot: " + snapshotPath);
+        }
+        long snapshotGeneration = snapshot.getLong();
+        int count = snapshot.getInt();
+        for (int i = 0; i < count; i++) {
+            SalesTransactionMemento memento = SalesTransactionMemento.decode(snapshot);
+            recovered.put(memento.transactionId(), memento);
+        }
+        return snapshotGeneration;
+    }
+
+    // The snapshot is renamed into place only once it is on disk, so a crash leaves either the old or the new one
+    private void writeSnapshot(Collection<SalesTransactionMemento> mementos) throws IOException {
+        List<SalesTransactionMemento> live = new ArrayList<>(mementos);
+        long nextGeneration = generation + 1;
+        int bytes = 4 + 8 + 4 + live.stream().mapToInt(SalesTransactionMemento::encodedSize).sum();
+        ByteBuffer snapshot = ByteBuffer.allocate(bytes).putInt(SNAPSHOT_MAGIC).putLong(nextGeneration).putInt(live.size());
+        live.forEach(memento -> memento.encode(snapshot));
+        snapshot.flip();
+
+        Path temporaryPath = Path.of(directory, "snapshot.tmp");
+        try (FileChannel channel = FileChannel.open(temporaryPath, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (snapshot.hasRemaining()) {
+                channel.write(snapshot);
+            }
+            channel.force(true);
+        }
+        Files.move(temporaryPath, snapshotPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+        // Records still in the journal belong to the previous generation and are skipped from now on
+        generation = nextGeneration;
+        journal.position(0);
+    }
+
+    private synchronized void force() {
+        if (dirty) {
+            journal.force();
+            dirty = false;
+        }
+    }
+
+    private void forceQuietly() {
+        try {
+            force();
+        } catch (RuntimeException e) {
+            LOG.error("Failed to sync suspended transaction journal", e);
+        }
+    }
+
+    private void compactQuietly() {
+        try {
+            compact();
+        } catch (RuntimeException e) {
+            LOG.error("Failed to compact suspended transaction journal", e);
+        }
+    }
+
+    private Path journalPath() {
+        return Path.of(directory, "journal.bin");
+    }
+
+    private Path snapshotPath() {
+        return Path.of(directory, "snapshot.bin");
+    }
+}
@@ -0,0 +1,25 @@
+package com.retailpulse.service;
+
+import com.retailpulse.entity.SalesTransactionMemento;
+
+import java.util.Map;
+
+/**
+ * Where suspended sales are kept. {@code suspended-transactions.store} selects the backend: {@code memory}
+ * ({@link SalesTransactionHistory}, one node) or {@code database} ({@link DatabaseSuspendedTransactionStore},
+ * shared by every node). Every method returns an immutable snapshot of the store's suspended sales, ordered by
+ * suspend time.
+ */
+public interface SuspendedTransactionStore {
+
+    /**
+     * Returns an id no other suspended sale has or will have.
+     */
+    long nextTransactionId();
+
+    Map<Long, SalesTransactionMemento> addTransaction(Long businessEntityId, SalesTransactionMemento salesTransactionMemento);
+
+    Map<Long, SalesTransactionMemento> deleteTransaction(Long businessEntityId, Long transactionId);
+
+    Map<Long, SalesTransactionMemento> listTransactions(Long businessEntityId);
+}
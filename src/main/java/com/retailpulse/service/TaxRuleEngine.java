@@ -0,0 +1,118 @@
+package com.retailpulse.service;
+
+import com.retailpulse.entity.CacheRegions;
+import com.retailpulse.entity.SalesTax;
+import com.retailpulse.entity.TaxType;
+import com.retailpulse.exception.ErrorCodes;
+import com.retailpulse.repository.SalesTaxRepository;
+import com.retailpulse.service.exception.BusinessException;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolves the tax rule that applies to a sale from an in-memory {@link TaxRuleTable}, so tax calculation never
+ * touches the database. Rules can be per store and carry effective dates; the table is rebuilt from the
+ * {@code sales_tax} table every {@code tax.rules.refresh-interval-ms} and swapped in atomically, so readers
+ * always see either the old or the new set of rules in full.
+ */
+@Component
+public class TaxRuleEngine implements SmartLifecycle {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TaxRuleEngine.class);
+
+    private final SalesTaxRepository salesTaxRepository;
+    private final CacheInvalidationLog cacheInvalidationLog;
+
+    private volatile TaxRuleTable rules = TaxRuleTable.EMPTY;
+    private volatile boolean loaded;
+    private ScheduledExecutorService refreshExecutor;
+    private volatile boolean running;
+
+    @Value("${tax.rules.refresh-interval-ms:60000}")
+    private long refreshIntervalMs = 60000;
+
+    public TaxRuleEngine(SalesTaxRepository salesTaxRepository, CacheInvalidationLog cacheInvalidationLog, MeterRegistry meterRegistry) {
+        this.salesTaxRepository = salesTaxRepository;
+        this.cacheInvalidationLog = cacheInvalidationLog;
+        meterRegistry.gauge("tax.rules", this, engine -> engine.rules.size());
+    }
+
+    /**
+     * Returns the rule of the given type in effect now at a store, or the default rule when the store has none.
+     */
+    public SalesTax currentRule(Long businessEntityId, TaxType taxType) {
+        if (!loaded) {
+            reload();
+        }
+        return rules.find(businessEntityId, taxType, Instant.now())
+                .orElseThrow(() -> new BusinessException(ErrorCodes.NOT_FOUND,
+                        "No " + taxType + " rate in effect for business entity id: " + businessEntityId));
+    }
+
+    /**
+     * Rebuilds the rule table from the database and swaps it in. A GST rate of 9% is created first if there is
+     * no GST rule at all.
+     */
+    public synchronized void reload() {
+        List<SalesTax> salesTaxes = salesTaxRepository.findAll();
+        if (salesTaxes.stream().noneMatch(salesTax -> salesTax.getTaxType() == TaxType.GST)) {
+            SalesTax gst = salesTaxRepository.save(new SalesTax(TaxType.GST, new BigDecimal("0.09")));
+            cacheInvalidationLog.append(CacheRegions.SALES_TAX, gst.getId());
+            salesTaxes = salesTaxRepository.findAll();
+        }
+        rules = TaxRuleTable.of(salesTaxes);
+        loaded = true;
+    }
+
+    @Override
+    public void start() {
+        reload();
+        refreshExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "tax-rule-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refreshExecutor.scheduleWithFixedDelay(this::reloadQuietly, refreshIntervalMs, refreshIntervalMs, TimeUnit.MILLISECONDS);
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        refreshExecutor.shutdownNow();
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // Load before the web server (MAX_VALUE - 2048) starts taking requests
+    @Override
+    public int getPhase() {
+        return Integer.MAX_VALUE - 4096;
+    }
+
+    private void reloadQuietly() {
+        try {
+            reload();
+        } catch (RuntimeException e) {
+            // Keep serving the previous rules until the database is reachable again
+            LOG.error("Failed to reload tax rules", e);
+        }
+    }
+}
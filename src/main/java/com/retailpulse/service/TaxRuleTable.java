@@ -0,0 +1,78 @@
+package com.retailpulse.service;
+
+import com.retailpulse.entity.SalesTax;
+import com.retailpulse.entity.TaxType;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Immutable snapshot of every tax rule, indexed by store and tax type. Within each list the rule that took
+ * effect most recently comes first, so the first rule in effect is the one that applies.
+ */
+final class TaxRuleTable {
+
+    static final TaxRuleTable EMPTY = new TaxRuleTable(Map.of(), Map.of(), 0);
+
+    private static final Comparator<SalesTax> LATEST_FIRST = Comparator.comparing(SalesTax::getEffectiveFrom,
+            Comparator.nullsLast(Comparator.reverseOrder()));
+
+    private final Map<TaxType, List<SalesTax>> defaultRules;
+    private final Map<Long, Map<TaxType, List<SalesTax>>> storeRules;
+    private final int size;
+
+    private TaxRuleTable(Map<TaxType, List<SalesTax>> defaultRules, Map<Long, Map<TaxType, List<SalesTax>>> storeRules, int size) {
+        this.defaultRules = defaultRules;
+        this.storeRules = storeRules;
+        this.size = size;
+    }
+
+    static TaxRuleTable of(Collection<SalesTax> rules) {
+        Map<TaxType, List<SalesTax>> defaultRules = index(rules.stream().filter(rule -> rule.getBusinessEntityId() == null).toList());
+        Map<Long, List<SalesTax>> rulesByStore = rules.stream()
+                .filter(rule -> rule.getBusinessEntityId() != null)
+                .collect(Collectors.groupingBy(SalesTax::getBusinessEntityId));
+        Map<Long, Map<TaxType, List<SalesTax>>> storeRules = new HashMap<>();
+        rulesByStore.forEach((businessEntityId, storeRuleList) -> storeRules.put(businessEntityId, index(storeRuleList)));
+        return new TaxRuleTable(defaultRules, Map.copyOf(storeRules), rules.size());
+    }
+
+    /**
+     * Finds the rule of the given type in effect at a store, falling back to the default rules when the store
+     * has none in effect. A null business entity id only consults the default rules.
+     */
+    Optional<SalesTax> find(Long businessEntityId, TaxType taxType, Instant at) {
+        if (businessEntityId != null) {
+            Optional<SalesTax> storeRule = firstInEffect(storeRules.getOrDefault(businessEntityId, Map.of()).get(taxType), at);
+            if (storeRule.isPresent()) {
+                return storeRule;
+            }
+        }
+        return firstInEffect(defaultRules.get(taxType), at);
+    }
+
+    int size() {
+        return size;
+    }
+
+    private static Optional<SalesTax> firstInEffect(List<SalesTax> rules, Instant at) {
+        if (rules == null) {
+            return Optional.empty();
+        }
+        for (SalesTax rule : rules) {
+            if (rule.isEffectiveAt(at)) {
+                return Optional.of(rule);
+            }
+        }
+        return Optional.empty();
+    }
+
+    private static Map<TaxType, List<SalesTax>> index(List<SalesTax> rules) {
+        Map<TaxType, List<SalesTax>> byType = new EnumMap<>(TaxType.class);
+        rules.stream()
+                .collect(Collectors.groupingBy(SalesTax::getTaxType))
+                .forEach((taxType, typeRules) -> byType.put(taxType, typeRules.stream().sorted(LATEST_FIRST).toList()));
+        return Collections.unmodifiableMap(byType);
+    }
+}
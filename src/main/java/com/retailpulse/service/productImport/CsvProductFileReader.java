@@ -0,0 +1,85 @@
+package com.retailpulse.service.productImport;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads comma separated values as written by Excel: fields may be quoted, and a quoted field may contain commas,
+ * line breaks and doubled quotes. A UTF-8 byte order mark at the start is skipped.
+ */
+class CsvProductFileReader implements ProductFileReader {
+
+    private static final char BYTE_ORDER_MARK = '\uFEFF';
+
+    @Override
+    public void read(Path file, RowConsumer rowConsumer) throws IOException {
+        try (Reader reader = new BufferedReader(Files.newBufferedReader(file, StandardCharsets.UTF_8))) {
+            read(reader, rowConsumer);
+        }
+    }
+
+    void read(Reader reader, RowConsumer rowConsumer) throws IOException {
+        List<String> cells = new ArrayList<>();
+        StringBuilder cell = new StringBuilder();
+        boolean quoted = false;
+        boolean rowStarted = false;
+        int rowNumber = 1;
+        int next = reader.read();
+        if (next == BYTE_ORDER_MARK) {
+            next = reader.read();
+        }
+        while (next != -1) {
+            char c = (char) next;
+            next = reader.read();
+            if (quoted) {
+                if (c != '"') {
+                    cell.append(c);
+                } else if (next == '"') {
+                    cell.append('"');
+                    next = reader.read();
+                } else {
+                    quoted = false;
+                }
+                continue;
+            }
+            switch (c) {
+                case '"' -> {
+                    quoted = true;
+                    rowStarted = true;
+                }
+                case ',' -> {
+                    cells.add(cell.toString());
+                    cell.setLength(0);
+                    rowStarted = true;
+                }
+                case '\r' -> {
+                    // Part of a \r\n line break, handled at the \n
+                }
+                case '\n' -> {
+                    if (rowStarted || !cell.isEmpty()) {
+                        cells.add(cell.toString());
+                        rowConsumer.accept(rowNumber, cells);
+                    }
+                    cells = new ArrayList<>();
+                    cell.setLength(0);
+                    rowStarted = false;
+                    rowNumber++;
+                }
+                default -> {
+                    cell.append(c);
+                    rowStarted = true;
+                }
+            }
+        }
+        if (rowStarted || !cell.isEmpty()) {
+            cells.add(cell.toString());
+            rowConsumer.accept(rowNumber, cells);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.retailpulse.service.productImport;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Streams the rows of an uploaded product file, one row at a time, without loading the file into memory.
+ */
+interface ProductFileReader {
+
+    /**
+     * @param file        the uploaded file
+     * @param rowConsumer called for every row, in file order
+     * @throws IOException if the file cannot be read or is not in the expected format
+     */
+    void read(Path file, RowConsumer rowConsumer) throws IOException;
+
+    @FunctionalInterface
+    interface RowConsumer {
+        /**
+         * @param rowNumber the 1-based row number as shown in a spreadsheet
+         * @param cells     the cell values of the row; a missing cell is an empty string
+         */
+        void accept(int rowNumber, List<String> cells);
+    }
+}
@@ -0,0 +1,18 @@
+package com.retailpulse.service.productImport;
+
+/**
+ * One validated row of a product file. A {@code null} field was left empty and keeps the product's current value.
+ */
+record ProductImportRow(
+        int rowNumber,
+        String description,
+        String category,
+        String subcategory,
+        String brand,
+        String origin,
+        String uom,
+        String vendorCode,
+        String barcode,
+        Double rrp
+) {
+}
@@ -0,0 +1,382 @@
+package com.retailpulse.service.productImport;
+
+import com.retailpulse.controller.response.ProductImportErrorDto;
+import com.retailpulse.controller.response.ProductImportReportDto;
+import com.retailpulse.entity.CacheRegions;
+import com.retailpulse.entity.Product;
+import com.retailpulse.repository.ProductRepository;
+import com.retailpulse.service.CacheInvalidationLog;
+import com.retailpulse.service.ProductBarcodeIndex;
+import com.retailpulse.service.ProductSearchIndex;
+import com.retailpulse.service.SKUGeneratorService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Bulk catalogue import from a CSV or XLSX price list. The file is streamed row by row and written in chunks of
+ * {@code product.import.chunk-size}, each in its own transaction with one lookup query per key and batched inserts,
+ * so memory stays bounded however long the file is.
+ * <p>
+ * The first row names the columns: description, category, subcategory, brand, origin, uom, vendorCode, barcode and
+ * rrp, in any order and case. A row updates the product with the same barcode, or with the same vendor code when the
+ * row has no barcode; otherwise it creates a product with a newly reserved SKU. Empty cells keep the current value.
+ * Invalid rows, and rows repeating a barcode seen earlier in the file, are reported and skipped.
+ */
+@Service
+public class ProductImportService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ProductImportService.class);
+
+    private static final List<String> COLUMNS = List.of(
+            "description", "category", "subcategory", "brand", "origin", "uom", "vendorcode", "barcode", "rrp");
+
+    private final ProductRepository productRepository;
+    private final SKUGeneratorService skuGeneratorService;
+    private final ProductBarcodeIndex productBarcodeIndex;
+    private final ProductSearchIndex productSearchIndex;
+    private final CacheInvalidationLog cacheInvalidationLog;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${product.import.chunk-size:1000}")
+    private int chunkSize = 1000;
+
+    @Value("${product.import.max-reported-errors:1000}")
+    private int maxReportedErrors = 1000;
+
+    public ProductImportService(ProductRepository productRepository,
+                                SKUGeneratorService skuGeneratorService,
+                                ProductBarcodeIndex productBarcodeIndex,
+                                ProductSearchIndex productSearchIndex,
+                                CacheInvalidationLog cacheInvalidationLog,
+                                PlatformTransactionManager transactionManager) {
+        this.productRepository = productRepository;
+        this.skuGeneratorService = skuGeneratorService;
+        this.productBarcodeIndex = productBarcodeIndex;
+        this.productSearchIndex = productSearchIndex;
+        this.cacheInvalidationLog = cacheInvalidationLog;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Imports a product file.
+     *
+     * @param filename the name of the uploaded file; its extension selects CSV or XLSX
+     * @param content  the file content
+     * @return counts of created, updated and rejected rows, with the reason for each rejected row
+     * @throws IllegalArgumentException if the file is neither CSV nor XLSX, or cannot be read as such
+     */
+    public ProductImportReportDto importProducts(String filename, InputStream content) {
+        ProductFileReader fileReader = readerFor(filename);
+        Path file = null;
+        try {
+            // POI reads an XLSX package from a file without buffering it whole, so spool the upload to disk first
+            file = Files.createTempFile("product-import-", ".upload");
+            Files.copy(content, file, StandardCopyOption.REPLACE_EXISTING);
+
+            Import productImport = new Import();
+            fileReader.read(file, productImport::accept);
+            productImport.flush();
+            return productImport.report();
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Cannot read product file " + filename + ": " + e.getMessage(), e);
+        } finally {
+            deleteQuietly(file);
+        }
+    }
+
+    private ProductFileReader readerFor(String filename) {
+        String name = filename == null ? "" : filename.toLowerCase(Locale.ROOT);
+        if (name.endsWith(".csv")) {
+            return new CsvProductFileReader();
+        }
+        if (name.endsWith(".xlsx")) {
+            return new XlsxProductFileReader();
+        }
+        throw new IllegalArgumentException("Product file must be .csv or .xlsx: " + filename);
+    }
+
+    private void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            LOG.warn("Failed to delete uploaded product file {}", file, e);
+        }
+    }
+
+    /**
+     * State of one import: the header, the barcodes seen so far, the pending chunk and the running counts.
+     */
+    private final class Import {
+
+        private final Set<String> seenBarcodes = new HashSet<>();
+        private final List<ProductImportRow> chunk = new ArrayList<>();
+        private final List<ProductImportErrorDto> errors = new ArrayList<>();
+        private int[] columnIndexes;
+        private int rowsRead;
+        private int created;
+        private int updated;
+        private int rejected;
+
+        void accept(int rowNumber, List<String> cells) {
+            if (columnIndexes == null) {
+                readHeader(cells);
+                return;
+            }
+            if (cells.stream().allMatch(String::isBlank)) {
+                return;
+            }
+            rowsRead++;
+            ProductImportRow row;
+            try {
+                row = parse(rowNumber, cells);
+            } catch (IllegalArgumentException e) {
+                reject(rowNumber, e.getMessage());
+                return;
+            }
+            if (row.barcode() != null && !seenBarcodes.add(row.barcode())) {
+                reject(rowNumber, "Barcode " + row.barcode() + " appears more than once in the file");
+                return;
+            }
+            chunk.add(row);
+            if (chunk.size() >= chunkSize) {
+                flush();
+            }
+        }
+
+        void flush() {
+            if (chunk.isEmpty()) {
+                return;
+            }
+            try {
+                save(chunk);
+            } catch (RuntimeException e) {
+                // One bad row rolls back the whole chunk, so the rows are retried alone to reject only the bad ones
+                LOG.warn("Failed to save product import rows {} to {}, retrying them one at a time",
+                        chunk.get(0).rowNumber(), chunk.get(chunk.size() - 1).rowNumber(), e);
+                chunk.forEach(this::saveAlone);
+            }
+            chunk.clear();
+        }
+
+        private void save(List<ProductImportRow> rows) {
+            // Reserved before the transaction opens, as reserving takes a connection of its own
+            List<String> skus = skuGeneratorService.generateSKUs(newProductCount(rows));
+            transactionTemplate.executeWithoutResult(status -> write(rows, skus));
+        }
+
+        private void saveAlone(ProductImportRow row) {
+            try {
+                save(List.of(row));
+            } catch (RuntimeException e) {
+                LOG.warn("Failed to save product import row {}", row.rowNumber(), e);
+                reject(row.rowNumber(), "Could not be saved: " + e.getMessage());
+            }
+        }
+
+        ProductImportReportDto report() {
+            if (columnIndexes == null) {
+                throw new IllegalArgumentException("Product file is empty");
+            }
+            return new ProductImportReportDto(rowsRead, created, updated, rejected, List.copyOf(errors));
+        }
+
+        private void readHeader(List<String> cells) {
+            columnIndexes = new int[COLUMNS.size()];
+            Arrays.fill(columnIndexes, -1);
+            for (int i = 0; i < cells.size(); i++) {
+                int column = COLUMNS.indexOf(cells.get(i).trim().toLowerCase(Locale.ROOT));
+                if (column >= 0) {
+                    columnIndexes[column] = i;
+                }
+            }
+            if (Arrays.stream(columnIndexes).allMatch(index -> index < 0)) {
+                throw new IllegalArgumentException("Product file header names none of the columns " + COLUMNS);
+            }
+        }
+
+        private ProductImportRow parse(int rowNumber, List<String> cells) {
+            String rrpValue = cell(cells, 8);
+            Double rrp = null;
+            if (rrpValue != null) {
+                try {
+                    rrp = Double.parseDouble(rrpValue);
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Recommended retail price is not a number: " + rrpValue);
+                }
+                if (rrp < 0 || rrp.isNaN() || rrp.isInfinite()) {
+                    throw new IllegalArgumentException("Recommended retail price cannot be negative");
+                }
+            }
+            return new ProductImportRow(rowNumber, cell(cells, 0), cell(cells, 1), cell(cells, 2), cell(cells, 3),
+                    cell(cells, 4), cell(cells, 5), cell(cells, 6), cell(cells, 7), rrp);
+        }
+
+        private String cell(List<String> cells, int column) {
+            int index = columnIndexes[column];
+            if (index < 0 || index >= cells.size() || cells.get(index).isBlank()) {
+                return null;
+            }
+            return cells.get(index).trim();
+        }
+
+        // Rows that will create a product, counted from a lookup outside the chunk's transaction
+        private int newProductCount(List<ProductImportRow> rows) {
+            ExistingProducts existing = new ExistingProducts(rows);
+            int count = 0;
+            for (ProductImportRow row : rows) {
+                if (row.description() != null && existing.matches(row).isEmpty()) {
+                    Product product = new Product();
+                    product.setVendorCode(row.vendorCode());
+                    existing.add(product);
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        private void write(List<ProductImportRow> rows, List<String> skus) {
+            ExistingProducts existing = new ExistingProducts(rows);
+
+            List<Product> toSave = new ArrayList<>(rows.size());
+            List<Product> newProducts = new ArrayList<>();
+            int updates = 0;
+            List<ProductImportErrorDto> chunkErrors = new ArrayList<>();
+            for (ProductImportRow row : rows) {
+                Product product;
+                if (row.barcode() != null) {
+                    product = existing.byBarcode.get(row.barcode());
+                } else {
+                    List<Product> matches = existing.matches(row);
+                    if (matches.size() > 1) {
+                        chunkErrors.add(new ProductImportErrorDto(row.rowNumber(),
+                                "Vendor code " + row.vendorCode() + " matches " + matches.size() + " products; add a barcode"));
+                        continue;
+                    }
+                    product = matches.isEmpty() ? null : matches.get(0);
+                }
+
+                if (product == null) {
+                    if (row.description() == null) {
+                        chunkErrors.add(new ProductImportErrorDto(row.rowNumber(), "Description is required for a new product"));
+                        continue;
+                    }
+                    product = new Product();
+                    apply(row, product);
+                    existing.add(product);
+                    newProducts.add(product);
+                    toSave.add(product);
+                    continue;
+                }
+                if (!product.isActive()) {
+                    chunkErrors.add(new ProductImportErrorDto(row.rowNumber(),
+                            "Cannot update a deleted product with sku: " + product.getSku()));
+                    continue;
+                }
+                apply(row, product);
+                updates++;
+                if (!isNew(product, newProducts)) {
+                    toSave.add(product);
+                }
+            }
+
+            if (newProducts.size() > skus.size()) {
+                // Products matching these rows were removed since the SKUs were counted; the chunk is retried
+                throw new IllegalStateException(newProducts.size() + " new products but " + skus.size() + " SKUs reserved");
+            }
+            for (int i = 0; i < newProducts.size(); i++) {
+                newProducts.get(i).setSku(skus.get(i));
+            }
+            productRepository.saveAll(toSave);
+            productBarcodeIndex.refresh(toSave);
+            productSearchIndex.refresh(toSave);
+            cacheInvalidationLog.append(CacheRegions.PRODUCT, toSave.stream().map(Product::getId).toList());
+
+            // Counted only once the chunk is written, so a failed chunk is reported as rejected rows alone
+            created += newProducts.size();
+            updated += updates;
+            chunkErrors.forEach(error -> reject(error.row(), error.message()));
+        }
+
+        // By identity, as products compare by value and a new product has no id yet
+        private boolean isNew(Product product, List<Product> newProducts) {
+            return newProducts.stream().anyMatch(created -> created == product);
+        }
+
+        /**
+         * Products that rows of a chunk may update, by barcode and, for rows without one, by vendor code: those
+         * already in the table and those created by earlier rows of the chunk.
+         */
+        private final class ExistingProducts {
+
+            private final Map<String, Product> byBarcode;
+            private final Map<String, List<Product>> byVendorCode;
+
+            ExistingProducts(List<ProductImportRow> rows) {
+                byBarcode = productRepository.findByBarcodeIn(rows.stream()
+                                .map(ProductImportRow::barcode).filter(Objects::nonNull).toList()).stream()
+                        .collect(Collectors.toMap(Product::getBarcode, Function.identity(), (first, second) -> first));
+                byVendorCode = productRepository.findByVendorCodeIn(rows.stream()
+                                .filter(row -> row.barcode() == null)
+                                .map(ProductImportRow::vendorCode).filter(Objects::nonNull).toList()).stream()
+                        .collect(Collectors.groupingBy(Product::getVendorCode, Collectors.toCollection(ArrayList::new)));
+            }
+
+            // A later row without a barcode then updates the new product rather than creating a duplicate
+            void add(Product created) {
+                if (created.getVendorCode() != null) {
+                    byVendorCode.computeIfAbsent(created.getVendorCode(), vendorCode -> new ArrayList<>()).add(created);
+                }
+            }
+
+            List<Product> matches(ProductImportRow row) {
+                if (row.barcode() != null) {
+                    Product product = byBarcode.get(row.barcode());
+                    return product == null ? List.of() : List.of(product);
+                }
+                return byVendorCode.getOrDefault(row.vendorCode(), List.of());
+            }
+        }
+
+        private void apply(ProductImportRow row, Product product) {
+            setIfPresent(row.description(), product::setDescription);
+            setIfPresent(row.category(), product::setCategory);
+            setIfPresent(row.subcategory(), product::setSubcategory);
+            setIfPresent(row.brand(), product::setBrand);
+            setIfPresent(row.origin(), product::setOrigin);
+            setIfPresent(row.uom(), product::setUom);
+            setIfPresent(row.vendorCode(), product::setVendorCode);
+            setIfPresent(row.barcode(), product::setBarcode);
+            setIfPresent(row.rrp(), product::setRrp);
+        }
+
+        private <T> void setIfPresent(T value, Consumer<T> setter) {
+            if (value != null) {
+                setter.accept(value);
+            }
+        }
+
+        private void reject(int rowNumber, String message) {
+            rejected++;
+            if (errors.size() < maxReportedErrors) {
+                errors.add(new ProductImportErrorDto(rowNumber, message));
+            }
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.retailpulse.benchmark;
+
+import com.retailpulse.entity.SalesDetails;
+import com.retailpulse.entity.SalesTax;
+import com.retailpulse.entity.SalesTransaction;
+import com.retailpulse.entity.TaxType;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of building an n-line sales transaction. {@code bigDecimalPerLine} repeats the former BigDecimal
+ * re-sum after every line as the baseline. Not run by the test suite; start it with {@link #main} after
+ * {@code mvn test-compile}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SalesTransactionTotalsBenchmark {
+
+    @Param({"10", "100", "1000"})
+    private int lineCount;
+
+    private final SalesTax salesTax = new SalesTax(TaxType.GST, new BigDecimal("0.09"));
+    private long[] productIds;
+    private int[] quantities;
+    private BigDecimal[] prices;
+
+    @Setup
+    public void setUp() {
+        productIds = new long[lineCount];
+        quantities = new int[lineCount];
+        prices = new BigDecimal[lineCount];
+        for (int i = 0; i < lineCount; i++) {
+            productIds[i] = i + 1;
+            quantities[i] = i % 5 + 1;
+            prices[i] = BigDecimal.valueOf(199 + i * 37L % 10_000, 2);
+        }
+    }
+
+    @Benchmark
+    public BigDecimal bigDecimalPerLine() {
+        List<SalesDetails> lines = new ArrayList<>(lineCount);
+        BigDecimal total = BigDecimal.ZERO;
+        for (SalesDetails line : newLines()) {
+            lines.add(line);
+            BigDecimal subtotal = lines.stream()
+                    .map(SalesDetails::getSubTotal)
+                    .reduce(BigDecimal.ZERO, BigDecimal::add)
+                    .setScale(2, RoundingMode.HALF_UP);
+            BigDecimal salesTaxAmount = salesTax.calculateTax(subtotal);
+            total = subtotal.add(salesTaxAmount).setScale(2, RoundingMode.HALF_UP);
+        }
+        return total;
+    }
+
+    @Benchmark
+    public BigDecimal fixedPointPerLine() {
+        SalesTransaction salesTransaction = new SalesTransaction(1L, salesTax);
+        newLines().forEach(salesTransaction::addSalesDetails);
+        return salesTransaction.getTotal();
+    }
+
+    @Benchmark
+    public BigDecimal fixedPointBatch() {
+        SalesTransaction salesTransaction = new SalesTransaction(1L, salesTax);
+        salesTransaction.addSalesDetails(newLines());
+        return salesTransaction.getTotal();
+    }
+
+    private List<SalesDetails> newLines() {
+        List<SalesDetails> lines = new ArrayList<>(lineCount);
+        for (int i = 0; i < lineCount; i++) {
+            lines.add(new SalesDetails(productIds[i], quantities[i], prices[i]));
+        }
+        return lines;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(SalesTransactionTotalsBenchmark.class.getSimpleName()).build()).run();
+    }
+}
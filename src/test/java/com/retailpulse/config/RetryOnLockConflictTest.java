@@ -0,0 +1,119 @@
+package com.retailpulse.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class RetryOnLockConflictTest {
+
+    private AnnotationConfigApplicationContext context;
+
+    @BeforeEach
+    public void setUp() {
+        context = new AnnotationConfigApplicationContext();
+        context.setEnvironment(new MockEnvironment()
+                .withProperty("inventory.lock.max-attempts", "3")
+                .withProperty("inventory.lock.backoff-delay-ms", "1")
+                .withProperty("inventory.lock.backoff-max-delay-ms", "2"));
+        context.register(TestConfig.class);
+        context.refresh();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        context.close();
+    }
+
+    @Test
+    public void testRetriesUntilLockIsAcquired() {
+        LockingOperation operation = context.getBean(LockingOperation.class);
+        operation.failWithLockConflicts(2);
+
+        assertEquals("done", operation.run());
+
+        assertEquals(3, operation.attempts());
+        MeterRegistry meterRegistry = context.getBean(MeterRegistry.class);
+        assertEquals(2.0, meterRegistry.get("inventory.lock.retries").counter().count());
+        assertEquals(0.0, meterRegistry.get("inventory.lock.retries.exhausted").counter().count());
+    }
+
+    @Test
+    public void testGivesUpAfterMaxAttempts() {
+        LockingOperation operation = context.getBean(LockingOperation.class);
+        operation.failWithLockConflicts(5);
+
+        assertThrows(CannotAcquireLockException.class, operation::run);
+
+        assertEquals(3, operation.attempts());
+        MeterRegistry meterRegistry = context.getBean(MeterRegistry.class);
+        assertEquals(2.0, meterRegistry.get("inventory.lock.retries").counter().count());
+        assertEquals(1.0, meterRegistry.get("inventory.lock.retries.exhausted").counter().count());
+    }
+
+    @Test
+    public void testDoesNotRetryOtherFailures() {
+        LockingOperation operation = context.getBean(LockingOperation.class);
+        operation.failWith(new IllegalStateException("not a lock conflict"));
+
+        assertThrows(IllegalStateException.class, operation::run);
+
+        assertEquals(1, operation.attempts());
+    }
+
+    @Configuration
+    @Import(RetryConfig.class)
+    static class TestConfig {
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+
+        @Bean
+        LockingOperation lockingOperation() {
+            return new LockingOperation();
+        }
+    }
+
+    static class LockingOperation {
+        private final AtomicInteger attempts = new AtomicInteger();
+        private int failuresBeforeSuccess;
+        private RuntimeException failWith;
+
+        public void failWithLockConflicts(int failuresBeforeSuccess) {
+            this.failuresBeforeSuccess = failuresBeforeSuccess;
+        }
+
+        public void failWith(RuntimeException failWith) {
+            this.failWith = failWith;
+        }
+
+        public int attempts() {
+            return attempts.get();
+        }
+
+        @RetryOnLockConflict
+        public String run() {
+            int attempt = attempts.incrementAndGet();
+            if (failWith != null) {
+                throw failWith;
+            }
+            if (attempt <= failuresBeforeSuccess) {
+                throw new CannotAcquireLockException("Lock wait timeout exceeded");
+            }
+            return "done";
+        }
+    }
+}
@@ -1,7 +1,10 @@
 package com.retailpulse.controller;
 
+import com.retailpulse.controller.response.StockTakeSummaryDto;
+import com.retailpulse.controller.response.StockTakeVarianceDto;
 import com.retailpulse.entity.Inventory;
 import com.retailpulse.service.InventoryService;
+import com.retailpulse.service.StockTakeService;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -11,13 +14,17 @@ import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
+import java.io.InputStream;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 class InventoryControllerTest {
@@ -25,10 +32,11 @@ class InventoryControllerTest {
     private MockMvc mockMvc;
 
     private final InventoryService mockInventoryService = Mockito.mock(InventoryService.class); // Mocked service
+    private final StockTakeService mockStockTakeService = Mockito.mock(StockTakeService.class);
 
     @BeforeEach
     void setUp() {
-        InventoryController inventoryController = new InventoryController(mockInventoryService);
+        InventoryController inventoryController = new InventoryController(mockInventoryService, mockStockTakeService);
         MockitoAnnotations.openMocks(this);
         mockMvc = MockMvcBuilders.standaloneSetup(inventoryController).build();
     }
@@ -213,4 +221,23 @@ class InventoryControllerTest {
         verify(mockInventoryService, times(1)).getInventoryByProductIdAndBusinessEntityId(productId, businessEntityId);
         verifyNoMoreInteractions(mockInventoryService);
     }
-}
\ No newline at end of file
+
+    @Test
+    void testApplyStockTake() throws Exception {
+        StockTakeSummaryDto summary = new StockTakeSummaryDto(201L, 2, 0, 2, 1, 0, 3, 0.0, 6.0,
+                List.of(new StockTakeVarianceDto(101L, 10, 7, -3, 2.0)), List.of());
+        when(mockStockTakeService.applyStockTake(eq(201L), any(InputStream.class), eq(true))).thenReturn(summary);
+
+        mockMvc.perform(post("/api/inventory/stockTake/{businessEntityId}", 201L)
+                        .param("partial", "true")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"productId\":101,\"quantity\":7},{\"productId\":102,\"quantity\":4}]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.productsAdjusted").value(1))
+                .andExpect(jsonPath("$.unitsShort").value(3))
+                .andExpect(jsonPath("$.largestVariances[0].productId").value(101L))
+                .andExpect(jsonPath("$.largestVariances[0].variance").value(-3));
+
+        verify(mockStockTakeService).applyStockTake(eq(201L), any(InputStream.class), eq(true));
+    }
+}
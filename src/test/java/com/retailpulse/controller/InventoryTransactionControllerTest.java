@@ -3,7 +3,10 @@ package com.retailpulse.controller;
 import com.retailpulse.DTO.InventoryTransactionProductDto;
 import com.retailpulse.entity.InventoryTransaction;
 import com.retailpulse.entity.Product;
+import com.retailpulse.exception.ErrorCodes;
 import com.retailpulse.service.InventoryTransactionService;
+import com.retailpulse.service.InventoryTransferResult;
+import com.retailpulse.service.exception.BusinessException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
@@ -17,7 +20,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
 
-import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -121,4 +124,40 @@ class InventoryTransactionControllerTest {
                 .saveInventoryTransaction(any(InventoryTransaction.class));
         verifyNoMoreInteractions(mockInventoryTransactionService);
     }
-}
\ No newline at end of file
+
+    @Test
+    void testCreateInventoryTransactions_ReportsEachLine() throws Exception {
+        // Arrange
+        InventoryTransaction savedTransaction = new InventoryTransaction();
+        savedTransaction.setId(UUID.randomUUID());
+        savedTransaction.setProductId(1L);
+        savedTransaction.setQuantity(10);
+
+        when(mockInventoryTransactionService.saveInventoryTransactions(anyList(), eq(true))).thenReturn(List.of(
+                InventoryTransferResult.accepted(savedTransaction),
+                InventoryTransferResult.rejected(new BusinessException(ErrorCodes.NOT_FOUND, "Product not found for product id: 9"))));
+
+        // Act & Assert
+        mockMvc.perform(post("/api/inventoryTransaction/batch")
+                        .param("atomic", "true")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                [
+                                    {"productId": 1, "source": 101, "destination": 201, "quantity": 10, "costPricePerUnit": 5.0},
+                                    {"productId": 9, "source": 101, "destination": 201, "quantity": 1, "costPricePerUnit": 5.0}
+                                ]
+                                """))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.size()").value(2))
+                .andExpect(jsonPath("$[0].line").value(0))
+                .andExpect(jsonPath("$[0].accepted").value(true))
+                .andExpect(jsonPath("$[0].transaction.productId").value(1))
+                .andExpect(jsonPath("$[1].line").value(1))
+                .andExpect(jsonPath("$[1].accepted").value(false))
+                .andExpect(jsonPath("$[1].errorCode").value(ErrorCodes.NOT_FOUND))
+                .andExpect(jsonPath("$[1].errorMessage").value("Product not found for product id: 9"));
+
+        verify(mockInventoryTransactionService, times(1))
+                .saveInventoryTransactions(argThat(lines -> lines.size() == 2), eq(true));
+    }
+}
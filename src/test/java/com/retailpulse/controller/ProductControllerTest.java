@@ -1,21 +1,28 @@
 package com.retailpulse.controller;
 
+import com.retailpulse.controller.response.ProductImportErrorDto;
+import com.retailpulse.controller.response.ProductImportReportDto;
+import com.retailpulse.controller.response.ProductSearchResultDto;
 import com.retailpulse.entity.Product;
 import com.retailpulse.exception.GlobalExceptionHandler;
 import com.retailpulse.service.ProductService;
+import com.retailpulse.service.productImport.ProductImportService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
+import java.util.List;
 import java.util.Optional;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
@@ -26,6 +33,9 @@ public class ProductControllerTest {
     @Mock
     private ProductService productService;
 
+    @Mock
+    private ProductImportService productImportService;
+
     @InjectMocks
     private ProductController productController;
 
@@ -77,6 +87,29 @@ public class ProductControllerTest {
                 .andExpect(jsonPath("$.sku").value("sku123"));
     }
 
+    @Test
+    void testGetProductByBarcode() throws Exception {
+        Product product = new Product();
+        product.setBarcode("888001");
+        when(productService.getProductByBarcode("888001")).thenReturn(Optional.of(product));
+
+        mockMvc.perform(get("/api/products/barcode/888001"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.barcode").value("888001"));
+    }
+
+    @Test
+    void testSearchProducts() throws Exception {
+        Product product = new Product();
+        product.setDescription("Green Tea");
+        when(productService.searchProducts("tea", 1, 10)).thenReturn(new ProductSearchResultDto("tea", 1, 10, 11, List.of(product)));
+
+        mockMvc.perform(get("/api/products/search").param("q", "tea").param("page", "1").param("size", "10"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalMatches").value(11))
+                .andExpect(jsonPath("$.products[0].description").value("Green Tea"));
+    }
+
     @Test
     void testGetProductBySKUNotFound() throws Exception {
         when(productService.getProductBySKU("unknown")).thenReturn(Optional.empty());
@@ -133,7 +166,26 @@ public class ProductControllerTest {
                 .andExpect(jsonPath("$.id").value(1L))
                 .andExpect(jsonPath("$.sku").value("skuRevived"));
     }
-}
 
+    @Test
+    void testImportProducts() throws Exception {
+        when(productImportService.importProducts(eq("prices.csv"), any()))
+                .thenReturn(new ProductImportReportDto(3, 1, 1, 1, List.of(new ProductImportErrorDto(4, "Description is required for a new product"))));
 
+        mockMvc.perform(multipart("/api/products/import")
+                        .file(new MockMultipartFile("file", "prices.csv", "text/csv", "description,barcode\n".getBytes())))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.created").value(1))
+                .andExpect(jsonPath("$.errors[0].row").value(4));
+    }
 
+    @Test
+    void testImportProductsOfUnsupportedType() throws Exception {
+        when(productImportService.importProducts(eq("prices.pdf"), any()))
+                .thenThrow(new IllegalArgumentException("Product file must be .csv or .xlsx: prices.pdf"));
+
+        mockMvc.perform(multipart("/api/products/import")
+                        .file(new MockMultipartFile("file", "prices.pdf", "application/pdf", new byte[]{1})))
+                .andExpect(status().isBadRequest());
+    }
+}
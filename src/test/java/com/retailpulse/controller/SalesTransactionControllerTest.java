@@ -1,12 +1,19 @@
 package com.retailpulse.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.retailpulse.controller.request.OfflineSaleDto;
 import com.retailpulse.controller.request.SalesDetailsDto;
 import com.retailpulse.controller.request.SalesTransactionRequestDto;
 import com.retailpulse.controller.response.SalesTransactionResponseDto;
 import com.retailpulse.controller.response.TaxResultDto;
 import com.retailpulse.entity.TaxType;
+import com.retailpulse.exception.ErrorCodes;
+import com.retailpulse.service.CheckoutBatcher;
+import com.retailpulse.service.CheckoutIdempotencyService;
+import com.retailpulse.service.CheckoutResult;
+import com.retailpulse.service.OfflineSalesService;
 import com.retailpulse.service.SalesTransactionService;
+import com.retailpulse.service.exception.BusinessException;
 import com.retailpulse.util.DateUtil;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -22,9 +29,11 @@ import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import java.time.Instant;
 import java.util.List;
 
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @ExtendWith(MockitoExtension.class)
@@ -35,6 +44,15 @@ public class SalesTransactionControllerTest {
     @Mock
     private SalesTransactionService salesTransactionService;
 
+    @Mock
+    private CheckoutBatcher checkoutBatcher;
+
+    @Mock
+    private CheckoutIdempotencyService checkoutIdempotencyService;
+
+    @Mock
+    private OfflineSalesService offlineSalesService;
+
     @InjectMocks
     private SalesTransactionController salesTransactionController;
 
@@ -63,7 +81,7 @@ public class SalesTransactionControllerTest {
                 "0.09",
                 "108.00",
                 "1308.00", salesTransactionRequestDto.salesDetails());
-        when(salesTransactionService.calculateSalesTax(ArgumentMatchers.anyList())).thenReturn(taxResultDto);
+        when(salesTransactionService.calculateSalesTax(ArgumentMatchers.anyList(), ArgumentMatchers.isNull())).thenReturn(taxResultDto);
 
         // When & Then
         mockMvc.perform(post("/api/sales/calculateSalesTax")
@@ -86,14 +104,72 @@ public class SalesTransactionControllerTest {
                 salesTransactionRequestDto.salesDetails(),
                 DateUtil.convertInstantToString(Instant.now(), DateUtil.DATE_TIME_FORMAT)
         );
-        when(salesTransactionService.createSalesTransaction(ArgumentMatchers.any()))
+        when(salesTransactionService.createSalesTransaction(ArgumentMatchers.any(), ArgumentMatchers.isNull()))
+                .thenReturn(responseDto);
+
+        // When & Then
+        mockMvc.perform(post("/api/sales/createTransaction")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(salesTransactionRequestDto)))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    public void testCreateSalesTransactionWithIdempotencyKey() throws Exception {
+        // Given
+        SalesTransactionResponseDto responseDto = new SalesTransactionResponseDto(
+                1L,
+                1L,
+                "1200.00",
+                TaxType.GST.name(),
+                "0.09",
+                "108.00",
+                "1308.00",
+                salesTransactionRequestDto.salesDetails(),
+                DateUtil.convertInstantToString(Instant.now(), DateUtil.DATE_TIME_FORMAT)
+        );
+        when(checkoutIdempotencyService.execute(ArgumentMatchers.eq("till-3-0001"), ArgumentMatchers.any(), ArgumentMatchers.any()))
                 .thenReturn(responseDto);
 
         // When & Then
         mockMvc.perform(post("/api/sales/createTransaction")
+                        .header("Idempotency-Key", "till-3-0001")
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(salesTransactionRequestDto)))
                 .andExpect(status().isOk());
+        verifyNoInteractions(salesTransactionService);
+    }
+
+    @Test
+    public void testCreateOfflineSalesTransactions() throws Exception {
+        // Given
+        SalesTransactionResponseDto responseDto = new SalesTransactionResponseDto(
+                1L,
+                1L,
+                "1200.00",
+                TaxType.GST.name(),
+                "0.09",
+                "108.00",
+                "1308.00",
+                salesTransactionRequestDto.salesDetails(),
+                DateUtil.convertInstantToString(Instant.now(), DateUtil.DATE_TIME_FORMAT)
+        );
+        List<OfflineSaleDto> offlineSales = List.of(
+                new OfflineSaleDto("till-3-0001", salesTransactionRequestDto),
+                new OfflineSaleDto("till-3-0002", salesTransactionRequestDto));
+        when(offlineSalesService.createOfflineSales(offlineSales)).thenReturn(List.of(
+                CheckoutResult.accepted(responseDto),
+                CheckoutResult.rejected(new BusinessException(ErrorCodes.INSUFFICIENT_INVENTORY, "Not enough stock"))));
+
+        // When & Then
+        mockMvc.perform(post("/api/sales/createTransactions")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(offlineSales)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].accepted").value(true))
+                .andExpect(jsonPath("$[0].transaction.salesTransactionId").value(1))
+                .andExpect(jsonPath("$[1].idempotencyKey").value("till-3-0002"))
+                .andExpect(jsonPath("$[1].errorCode").value(ErrorCodes.INSUFFICIENT_INVENTORY));
     }
 
     @Test
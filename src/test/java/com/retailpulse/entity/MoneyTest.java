@@ -0,0 +1,66 @@
+package com.retailpulse.entity;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class MoneyTest {
+
+    @Test
+    public void roundHalfUpMatchesBigDecimal() {
+        for (String amount : List.of("0.005", "0.004", "-0.005", "-0.004", "1.995", "-1.995", "12.3450", "7", "1E+2")) {
+            assertThat(Money.of(new BigDecimal(amount)).roundHalfUp(2).toBigDecimal())
+                    .isEqualTo(new BigDecimal(amount).setScale(2, RoundingMode.HALF_UP));
+        }
+    }
+
+    @Test
+    public void overflowThrows() {
+        Money large = new Money(Long.MAX_VALUE / 2, 2);
+
+        assertThatThrownBy(() -> large.times(3)).isInstanceOf(ArithmeticException.class);
+        assertThatThrownBy(() -> large.plus(new Money(1, 3))).isInstanceOf(ArithmeticException.class);
+    }
+
+    @Test
+    public void salesTransactionTotalsMatchBigDecimal() {
+        Random random = new Random(42);
+        for (int run = 0; run < 200; run++) {
+            SalesTax salesTax = new SalesTax(TaxType.GST, BigDecimal.valueOf(random.nextInt(2500), random.nextInt(3) + 2));
+            List<SalesDetails> lines = new ArrayList<>();
+            for (int i = 0; i < random.nextInt(20) + 1; i++) {
+                lines.add(new SalesDetails((long) i, random.nextInt(50) + 1,
+                        BigDecimal.valueOf(random.nextInt(1_000_000), random.nextInt(4))));
+            }
+
+            SalesTransaction salesTransaction = new SalesTransaction(1L, salesTax);
+            salesTransaction.addSalesDetails(lines);
+
+            BigDecimal expectedSubtotal = lines.stream()
+                    .map(SalesDetails::getSubTotal)
+                    .reduce(BigDecimal.ZERO, BigDecimal::add)
+                    .setScale(2, RoundingMode.HALF_UP);
+            BigDecimal expectedTax = expectedSubtotal.multiply(salesTax.getTaxRate()).setScale(2, RoundingMode.HALF_UP);
+            assertThat(salesTransaction.getSubtotal()).isEqualTo(expectedSubtotal);
+            assertThat(salesTransaction.getSalesTaxAmount()).isEqualTo(expectedTax);
+            assertThat(salesTransaction.getTotal()).isEqualTo(expectedSubtotal.add(expectedTax).setScale(2, RoundingMode.HALF_UP));
+        }
+    }
+
+    @Test
+    public void salesTransactionFallsBackToBigDecimalBeyondLongRange() {
+        SalesTransaction salesTransaction = new SalesTransaction(1L, new SalesTax(TaxType.GST, new BigDecimal("0.09")));
+
+        salesTransaction.addSalesDetails(new SalesDetails(1L, 1000, new BigDecimal("92233720368547758.07")));
+
+        assertThat(salesTransaction.getSubtotal()).isEqualTo(new BigDecimal("92233720368547758070.00"));
+        assertThat(salesTransaction.getSalesTaxAmount()).isEqualTo(new BigDecimal("8301034833169298226.30"));
+    }
+}
@@ -0,0 +1,61 @@
+package com.retailpulse.repository;
+
+import com.retailpulse.entity.IdempotencyRecord;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the idempotency claim statements against H2 in MySQL mode, which accepts {@code INSERT IGNORE}.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:idempotency;MODE=MySQL;DATABASE_TO_LOWER=TRUE",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.show-sql=false"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+public class IdempotencyRecordRepositoryTest {
+
+    @Autowired
+    private IdempotencyRecordRepository idempotencyRecordRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Test
+    public void testKeyIsClaimedOnce() {
+        Instant now = Instant.now();
+
+        assertEquals(1, idempotencyRecordRepository.claim("till-3-0001", "f1", "attempt-1", now));
+        assertEquals(0, idempotencyRecordRepository.claim("till-3-0001", "f1", "attempt-2", now));
+
+        IdempotencyRecord record = idempotencyRecordRepository.lockByIdempotencyKey("till-3-0001").orElseThrow();
+        assertEquals("attempt-1", record.getAttempt());
+        assertTrue(record.isPending());
+    }
+
+    @Test
+    public void testOnlyTheAttemptHoldingTheClaimCompletesIt() {
+        Instant now = Instant.now();
+        idempotencyRecordRepository.claim("till-3-0001", "f1", "attempt-1", now);
+
+        assertEquals(1, idempotencyRecordRepository.reclaim("till-3-0001", "attempt-1", "f1", "attempt-2", now));
+        assertEquals(0, idempotencyRecordRepository.complete("till-3-0001", "attempt-1", "{}", now));
+        assertEquals(0, idempotencyRecordRepository.release("till-3-0001", "attempt-1"));
+        assertEquals(1, idempotencyRecordRepository.complete("till-3-0001", "attempt-2", "{}", now));
+        // A completed record is no longer released by its own attempt
+        assertEquals(0, idempotencyRecordRepository.release("till-3-0001", "attempt-2"));
+
+        entityManager.clear();
+        assertFalse(idempotencyRecordRepository.findById("till-3-0001").orElseThrow().isPending());
+    }
+}
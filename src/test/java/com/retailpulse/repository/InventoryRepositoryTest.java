@@ -0,0 +1,132 @@
+package com.retailpulse.repository;
+
+import com.retailpulse.DTO.InventoryDeltaDto;
+import com.retailpulse.entity.Inventory;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.dao.IncorrectUpdateSemanticsDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.spy;
+
+/**
+ * Runs the JDBC stock updates of a transfer against H2 in MySQL mode, which accepts the MySQL upsert syntax.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:inventory;MODE=MySQL;DATABASE_TO_LOWER=TRUE",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.show-sql=false"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+public class InventoryRepositoryTest {
+
+    @Autowired
+    private InventoryRepository inventoryRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    public void testDeductStockOnlyWhileEnoughIsLeft() {
+        inventoryRepository.saveAndFlush(inventory(1L, 7L, 20, 100.0));
+
+        assertEquals(List.of(), inventoryRepository.deductStock(1L, Map.of(7L, new InventoryDeltaDto(15, 75.0))));
+        assertEquals(List.of(7L), inventoryRepository.deductStock(1L, Map.of(7L, new InventoryDeltaDto(6, 30.0))));
+        assertEquals(List.of(7L), inventoryRepository.deductStock(2L, Map.of(7L, new InventoryDeltaDto(1, 5.0))));
+        // The updates bypass the persistence context, which still holds the row as saved
+        entityManager.clear();
+
+        Inventory inventory = inventoryRepository.findByProductIdAndBusinessEntityId(7L, 1L).orElseThrow();
+        assertEquals(5, inventory.getQuantity());
+        assertEquals(25.0, inventory.getTotalCostPrice(), 0.001);
+    }
+
+    @Test
+    public void testApplyQuantityDeltasGuardsOnlyDeductions() {
+        inventoryRepository.saveAndFlush(inventory(4L, 1L, 5, 0.0));
+        inventoryRepository.saveAndFlush(inventory(4L, 2L, -1, 0.0));
+
+        assertEquals(List.of(), inventoryRepository.applyQuantityDeltas(4L, new TreeMap<>(Map.of(1L, -5, 2L, 3))));
+        assertEquals(List.of(1L, 9L), inventoryRepository.applyQuantityDeltas(4L, new TreeMap<>(Map.of(1L, -1, 2L, -2, 9L, 1))));
+        entityManager.clear();
+
+        assertEquals(0, inventoryRepository.findByProductIdAndBusinessEntityId(1L, 4L).orElseThrow().getQuantity());
+        assertEquals(0, inventoryRepository.findByProductIdAndBusinessEntityId(2L, 4L).orElseThrow().getQuantity());
+    }
+
+    @Test
+    public void testAddStockCreatesThenIncrementsRow() {
+        inventoryRepository.addStock(3L, new TreeMap<>(Map.of(7L, new InventoryDeltaDto(10, 50.0), 8L, new InventoryDeltaDto(2, 4.0))));
+        inventoryRepository.addStock(3L, Map.of(7L, new InventoryDeltaDto(4, 20.0)));
+
+        Inventory inventory = inventoryRepository.findByProductIdAndBusinessEntityId(7L, 3L).orElseThrow();
+        assertEquals(14, inventory.getQuantity());
+        assertEquals(70.0, inventory.getTotalCostPrice(), 0.001);
+        assertEquals(1, inventoryRepository.findByProductId(7L).size());
+        assertEquals(2, inventoryRepository.findByProductIdAndBusinessEntityId(8L, 3L).orElseThrow().getQuantity());
+    }
+
+    @Test
+    public void testUnreportedUpdateCountsAreReadBack() {
+        inventoryRepository.saveAndFlush(inventory(6L, 1L, 10, 0.0));
+        inventoryRepository.saveAndFlush(inventory(6L, 2L, 10, 0.0));
+        inventoryRepository.saveAndFlush(inventory(6L, 3L, 1, 0.0));
+        // Answers every batch the way drivers that rewrite batches do
+        JdbcTemplate noCounts = spy(jdbcTemplate);
+        doAnswer(invocation -> {
+            int[] updateCounts = (int[]) invocation.callRealMethod();
+            Arrays.fill(updateCounts, Statement.SUCCESS_NO_INFO);
+            return updateCounts;
+        }).when(noCounts).batchUpdate(anyString(), anyList());
+        InventoryRepositoryCustomImpl repository = new InventoryRepositoryCustomImpl(noCounts);
+
+        // Nothing to check the first batch against, so it is failed rather than taken as matched
+        assertThrows(IncorrectUpdateSemanticsDataAccessException.class,
+                () -> repository.deductQuantities(6L, new TreeMap<>(Map.of(1L, 4))));
+
+        assertEquals(List.of(3L, 4L), repository.deductQuantities(6L, new TreeMap<>(Map.of(2L, 4, 3L, 5, 4L, 1))));
+        assertEquals(List.of(4L), repository.addQuantities(6L, new TreeMap<>(Map.of(3L, 1, 4L, 1))));
+    }
+
+    @Test
+    public void testReadStockLevelsInProductIdOrder() {
+        inventoryRepository.saveAndFlush(inventory(4L, 9L, 3, 6.0));
+        inventoryRepository.saveAndFlush(inventory(4L, 2L, 5, 10.0));
+        inventoryRepository.saveAndFlush(inventory(5L, 1L, 1, 1.0));
+
+        List<String> levels = new ArrayList<>();
+        inventoryRepository.readStockLevels(4L, (productId, quantity, totalCostPrice) ->
+                levels.add(productId + ":" + quantity + ":" + totalCostPrice));
+
+        assertEquals(List.of("2:5:10.0", "9:3:6.0"), levels);
+    }
+
+    private static Inventory inventory(long businessEntityId, long productId, int quantity, double totalCostPrice) {
+        Inventory inventory = new Inventory();
+        inventory.setBusinessEntityId(businessEntityId);
+        inventory.setProductId(productId);
+        inventory.setQuantity(quantity);
+        inventory.setTotalCostPrice(totalCostPrice);
+        return inventory;
+    }
+}
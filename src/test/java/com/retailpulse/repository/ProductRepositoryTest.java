@@ -0,0 +1,126 @@
+package com.retailpulse.repository;
+
+import com.retailpulse.config.SecondLevelCacheMetrics;
+import com.retailpulse.entity.BusinessEntity;
+import com.retailpulse.entity.CacheRegions;
+import com.retailpulse.entity.Product;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that reference entities and SKU lookups are served from the second-level cache across transactions, and
+ * that writes through the repositories keep it current. Each step commits, as the cache is only filled on commit.
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.show-sql=false"
+})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class ProductRepositoryTest {
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private BusinessEntityRepository businessEntityRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+    private Statistics statistics;
+    private Product product;
+
+    @BeforeEach
+    public void setUp() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        product = transactionTemplate.execute(status -> productRepository.save(product("RP-" + UUID.randomUUID())));
+        statistics.clear();
+    }
+
+    @Test
+    public void testProductIsReadFromCache() {
+        Product found = transactionTemplate.execute(status -> productRepository.findById(product.getId()).orElseThrow());
+
+        assertEquals(product.getSku(), found.getSku());
+        assertEquals(1, statistics.getSecondLevelCacheHitCount());
+        assertEquals(0, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    public void testSkuLookupIsReadFromQueryCache() {
+        transactionTemplate.execute(status -> productRepository.findBySku(product.getSku()));
+        long statementsAfterFirstLookup = statistics.getPrepareStatementCount();
+
+        Product found = transactionTemplate.execute(status -> productRepository.findBySku(product.getSku()).orElseThrow());
+
+        assertEquals(product.getId(), found.getId());
+        assertEquals(1, statistics.getQueryCacheHitCount());
+        assertEquals(statementsAfterFirstLookup, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    public void testUpdateIsSeenThroughCache() {
+        transactionTemplate.execute(status -> productRepository.findBySku(product.getSku()));
+
+        transactionTemplate.executeWithoutResult(status -> {
+            Product toUpdate = productRepository.findById(product.getId()).orElseThrow();
+            toUpdate.setDescription("Jasmine Tea");
+            productRepository.save(toUpdate);
+        });
+
+        assertEquals("Jasmine Tea", transactionTemplate.execute(status ->
+                productRepository.findBySku(product.getSku()).orElseThrow().getDescription()));
+        assertEquals("Jasmine Tea", transactionTemplate.execute(status ->
+                productRepository.findById(product.getId()).orElseThrow().getDescription()));
+    }
+
+    @Test
+    public void testBusinessEntityIsReadFromCache() {
+        BusinessEntity store = transactionTemplate.execute(status ->
+                businessEntityRepository.save(new BusinessEntity("Store", "Downtown", "SHOP", false)));
+        statistics.clear();
+
+        transactionTemplate.execute(status -> businessEntityRepository.findById(store.getId()));
+
+        assertEquals(1, statistics.getDomainDataRegionStatistics(CacheRegions.BUSINESS_ENTITY).getHitCount());
+        assertEquals(0, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    public void testHitRatioIsPublishedPerRegion() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        new SecondLevelCacheMetrics(entityManagerFactory).bindTo(meterRegistry);
+
+        transactionTemplate.execute(status -> productRepository.findById(product.getId()));
+
+        assertEquals(1.0, meterRegistry.get("hibernate.cache.hit.ratio").tag("region", CacheRegions.PRODUCT).gauge().value());
+    }
+
+    private static Product product(String sku) {
+        Product product = new Product();
+        product.setSku(sku);
+        product.setDescription("Green Tea");
+        product.setBarcode("888001");
+        product.setRrp(4.5);
+        return product;
+    }
+}
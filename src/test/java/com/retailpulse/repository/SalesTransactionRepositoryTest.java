@@ -0,0 +1,72 @@
+package com.retailpulse.repository;
+
+import com.retailpulse.entity.SalesDetails;
+import com.retailpulse.entity.SalesTax;
+import com.retailpulse.entity.SalesTransaction;
+import com.retailpulse.entity.TaxType;
+import com.retailpulse.service.SalesTransactionServiceBatchingTest;
+import jakarta.persistence.EntityManager;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+
+import java.math.BigDecimal;
+import java.util.Objects;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that sales and their lines get their ids from pooled blocks rather than from their inserts; the batched
+ * writes of the checkout paths are covered by {@link SalesTransactionServiceBatchingTest}.
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+public class SalesTransactionRepositoryTest {
+
+    @Autowired
+    private SalesTransactionRepository salesTransactionRepository;
+
+    @Autowired
+    private SalesTaxRepository salesTaxRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private SalesTax salesTax;
+    private Statistics statistics;
+
+    @BeforeEach
+    public void setUp() {
+        salesTax = salesTaxRepository.saveAndFlush(new SalesTax(TaxType.GST, new BigDecimal("0.09")));
+        statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        // Allocate the first id blocks up front, so only the writes of the sales themselves are counted
+        salesTransactionRepository.saveAndFlush(sale(1));
+        statistics.clear();
+    }
+
+    @Test
+    public void testIdsAreAssignedBeforeInsert() {
+        SalesTransaction salesTransaction = sale(3);
+
+        salesTransactionRepository.save(salesTransaction);
+
+        assertNotNull(salesTransaction.getId());
+        assertEquals(0, statistics.getEntityInsertCount());
+        assertTrue(salesTransaction.getSalesDetailEntities().stream().map(SalesDetails::getId).allMatch(Objects::nonNull));
+    }
+
+    private SalesTransaction sale(int lines) {
+        SalesTransaction salesTransaction = new SalesTransaction(1L, salesTax);
+        salesTransaction.addSalesDetails(IntStream.rangeClosed(1, lines)
+                .mapToObj(productId -> new SalesDetails((long) productId, 2, new BigDecimal("19.95")))
+                .toList());
+        return salesTransaction;
+    }
+}
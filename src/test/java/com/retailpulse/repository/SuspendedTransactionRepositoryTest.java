@@ -0,0 +1,66 @@
+package com.retailpulse.repository;
+
+import com.retailpulse.entity.SalesDetails;
+import com.retailpulse.entity.SalesTax;
+import com.retailpulse.entity.SalesTransaction;
+import com.retailpulse.entity.SuspendedTransaction;
+import com.retailpulse.entity.SuspendedTransactionKey;
+import com.retailpulse.entity.TaxType;
+import jakarta.persistence.EntityManager;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that suspending a sale inserts its row without first selecting it, although its key is assigned up front.
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+public class SuspendedTransactionRepositoryTest {
+
+    @Autowired
+    private SuspendedTransactionRepository suspendedTransactionRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Test
+    public void testNewSuspendedTransactionIsInsertedWithoutASelect() {
+        Statistics statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        suspendedTransactionRepository.save(suspendedTransaction(7L));
+        entityManager.flush();
+
+        assertEquals(1, statistics.getEntityInsertCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    public void testLoadedSuspendedTransactionIsNotNew() {
+        suspendedTransactionRepository.saveAndFlush(suspendedTransaction(8L));
+        entityManager.clear();
+
+        SuspendedTransaction loaded = suspendedTransactionRepository.findById(new SuspendedTransactionKey(1L, 8L)).orElseThrow();
+
+        assertFalse(loaded.isNew());
+        assertEquals(8L, loaded.toMemento().transactionId());
+    }
+
+    private static SuspendedTransaction suspendedTransaction(long transactionId) {
+        SalesTransaction salesTransaction = new SalesTransaction(1L, new SalesTax(TaxType.GST, new BigDecimal("0.09")));
+        salesTransaction.addSalesDetails(List.of(new SalesDetails(1L, 2, new BigDecimal("19.95"))));
+        return new SuspendedTransaction(salesTransaction.saveToMemento(transactionId));
+    }
+}
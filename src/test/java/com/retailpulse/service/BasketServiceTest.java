@@ -0,0 +1,207 @@
+package com.retailpulse.service;
+
+import com.retailpulse.controller.request.SalesDetailsDto;
+import com.retailpulse.controller.request.SalesTransactionRequestDto;
+import com.retailpulse.controller.request.SuspendedTransactionDto;
+import com.retailpulse.controller.response.BasketResponseDto;
+import com.retailpulse.controller.response.TaxResultDto;
+import com.retailpulse.entity.SalesTax;
+import com.retailpulse.entity.TaxType;
+import com.retailpulse.exception.ErrorCodes;
+import com.retailpulse.service.exception.BusinessException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class BasketServiceTest {
+
+    @Mock
+    private SalesTransactionService salesTransactionService;
+
+    @Mock
+    private CheckoutBatcher checkoutBatcher;
+
+    @Mock
+    private TaxRuleEngine taxRuleEngine;
+
+    private BasketService basketService;
+
+    @BeforeEach
+    public void setUp() {
+        basketService = new BasketService(salesTransactionService, checkoutBatcher, taxRuleEngine, new SimpleMeterRegistry());
+        when(taxRuleEngine.currentRule(1L, TaxType.GST)).thenReturn(new SalesTax(TaxType.GST, new BigDecimal("0.09")));
+    }
+
+    @Test
+    public void testRunningTotalsMatchCalculateSalesTax() {
+        String basketId = basketService.openBasket(1L).basketId();
+
+        basketService.addLine(basketId, new SalesDetailsDto(1L, 2, "50.0"));
+        basketService.addLine(basketId, new SalesDetailsDto(2L, 3, "100.0"));
+        basketService.addLine(basketId, new SalesDetailsDto(3L, 4, "200.0"));
+        BasketResponseDto totals = basketService.addLine(basketId, new SalesDetailsDto(1L, 1, "50.0"));
+
+        assertEquals(3, totals.lineCount());
+        assertEquals("1250.00", totals.subTotalAmount());
+        assertEquals("112.50", totals.taxAmount());
+        assertEquals("1362.50", totals.totalAmount());
+
+        totals = basketService.changeQuantity(basketId, 2L, 1);
+        assertEquals("1050.00", totals.subTotalAmount());
+
+        totals = basketService.removeLine(basketId, 3L);
+        assertEquals(2, totals.lineCount());
+        assertEquals("250.00", totals.subTotalAmount());
+        assertEquals("22.50", totals.taxAmount());
+        assertEquals("272.50", totals.totalAmount());
+
+        TaxResultDto basket = basketService.getBasket(basketId);
+        assertEquals(List.of(new SalesDetailsDto(1L, 3, "50.0"), new SalesDetailsDto(2L, 1, "100.0")), basket.salesDetails());
+    }
+
+    @Test
+    public void testInvalidQuantity() {
+        String basketId = basketService.openBasket(1L).basketId();
+
+        assertThrows(IllegalArgumentException.class, () -> basketService.addLine(basketId, new SalesDetailsDto(1L, 0, "50.0")));
+        assertThrows(IllegalArgumentException.class, () -> basketService.changeQuantity(basketId, 1L, 2));
+    }
+
+    @Test
+    public void testCheckoutClosesBasket() {
+        String basketId = basketService.openBasket(1L).basketId();
+        basketService.addLine(basketId, new SalesDetailsDto(1L, 2, "50.0"));
+
+        basketService.checkout(basketId);
+
+        verify(salesTransactionService).createSalesTransaction(
+                new SalesTransactionRequestDto(1L, "9.00", "109.00", List.of(new SalesDetailsDto(1L, 2, "50.0"))));
+        BusinessException exception = assertThrows(BusinessException.class, () -> basketService.getBasket(basketId));
+        assertEquals(ErrorCodes.NOT_FOUND, exception.getErrorCode());
+    }
+
+    @Test
+    public void testRejectedCheckoutKeepsBasket() {
+        String basketId = basketService.openBasket(1L).basketId();
+        basketService.addLine(basketId, new SalesDetailsDto(1L, 2, "50.0"));
+        when(salesTransactionService.createSalesTransaction(any()))
+                .thenThrow(new BusinessException(ErrorCodes.INSUFFICIENT_INVENTORY, "Insufficient stock for product id: 1"));
+
+        assertThrows(BusinessException.class, () -> basketService.checkout(basketId));
+
+        assertEquals("100.00", basketService.getBasket(basketId).subTotalAmount());
+    }
+
+    @Test
+    public void testCheckoutWithUnknownOutcomeKeepsBasketClosed() {
+        String basketId = basketService.openBasket(1L).basketId();
+        basketService.addLine(basketId, new SalesDetailsDto(1L, 2, "50.0"));
+        when(checkoutBatcher.isEnabled()).thenReturn(true);
+        when(checkoutBatcher.createSalesTransaction(any())).thenThrow(new BusinessException(ErrorCodes.CHECKOUT_FAILED,
+                "Checkout still being written after 10000 ms; its outcome is not known yet"));
+
+        BusinessException exception = assertThrows(BusinessException.class, () -> basketService.checkout(basketId));
+
+        assertEquals(ErrorCodes.CHECKOUT_FAILED, exception.getErrorCode());
+        assertEquals(ErrorCodes.NOT_FOUND,
+                assertThrows(BusinessException.class, () -> basketService.getBasket(basketId)).getErrorCode());
+    }
+
+    @Test
+    public void testCheckoutFailingOutsideTheSaleKeepsBasketClosed() {
+        String basketId = basketService.openBasket(1L).basketId();
+        basketService.addLine(basketId, new SalesDetailsDto(1L, 2, "50.0"));
+        when(salesTransactionService.createSalesTransaction(any()))
+                .thenThrow(new IllegalStateException("Connection reset during commit"));
+
+        BusinessException exception = assertThrows(BusinessException.class, () -> basketService.checkout(basketId));
+
+        assertEquals(ErrorCodes.CHECKOUT_FAILED, exception.getErrorCode());
+        assertThrows(BusinessException.class, () -> basketService.getBasket(basketId));
+    }
+
+    @Test
+    public void testScanIsRejectedOnceCheckoutHasTakenBasket() {
+        String basketId = basketService.openBasket(1L).basketId();
+        @SuppressWarnings("unchecked")
+        Map<String, Basket> baskets = (Map<String, Basket>) ReflectionTestUtils.getField(basketService, "baskets");
+        Basket basket = baskets.get(basketId);
+        // A scan that found the basket just before a checkout took it and got its lock just after
+        when(salesTransactionService.createSalesTransaction(any())).thenAnswer(invocation -> {
+            baskets.put(basketId, basket);
+            BusinessException exception = assertThrows(BusinessException.class,
+                    () -> basketService.addLine(basketId, new SalesDetailsDto(2L, 1, "10.0")));
+            assertEquals(ErrorCodes.NOT_FOUND, exception.getErrorCode());
+            baskets.remove(basketId);
+            return null;
+        });
+
+        basketService.checkout(basketId);
+
+        assertEquals(0, basket.getLineCount());
+    }
+
+    @Test
+    public void testSuspendClosesBasket() {
+        String basketId = basketService.openBasket(1L).basketId();
+        basketService.addLine(basketId, new SalesDetailsDto(1L, 2, "50.0"));
+
+        basketService.suspend(basketId);
+
+        verify(salesTransactionService).suspendTransaction(
+                new SuspendedTransactionDto(1L, List.of(new SalesDetailsDto(1L, 2, "50.0"))));
+        assertThrows(BusinessException.class, () -> basketService.getBasket(basketId));
+    }
+
+    @Test
+    public void testSuspendIntoFullStoreKeepsBasket() {
+        String basketId = basketService.openBasket(1L).basketId();
+        basketService.addLine(basketId, new SalesDetailsDto(1L, 2, "50.0"));
+        when(salesTransactionService.suspendTransaction(any()))
+                .thenThrow(new BusinessException(ErrorCodes.LIMIT_EXCEEDED, "Business entity 1 already has 50 suspended transactions"));
+
+        BusinessException exception = assertThrows(BusinessException.class, () -> basketService.suspend(basketId));
+
+        assertEquals(ErrorCodes.LIMIT_EXCEEDED, exception.getErrorCode());
+        assertEquals("100.00", basketService.getBasket(basketId).subTotalAmount());
+        basketService.addLine(basketId, new SalesDetailsDto(2L, 1, "10.0"));
+    }
+
+    @Test
+    public void testFullStoreEvictsLeastRecentlyUsedBasket() {
+        ReflectionTestUtils.setField(basketService, "maxBaskets", 2);
+        String first = basketService.openBasket(1L).basketId();
+        String second = basketService.openBasket(1L).basketId();
+        @SuppressWarnings("unchecked")
+        Map<String, Basket> baskets = (Map<String, Basket>) ReflectionTestUtils.getField(basketService, "baskets");
+        ReflectionTestUtils.setField(baskets.get(first), "lastAccessMillis", System.currentTimeMillis() - 1000);
+
+        basketService.openBasket(1L);
+
+        assertThrows(BusinessException.class, () -> basketService.getBasket(first));
+        assertDoesNotThrow(() -> basketService.getBasket(second));
+    }
+
+    @Test
+    public void testExpiredBasketIsDropped() {
+        String basketId = basketService.openBasket(1L).basketId();
+        ReflectionTestUtils.setField(basketService, "ttlMs", -1L);
+
+        basketService.evictExpired();
+
+        assertThrows(BusinessException.class, () -> basketService.getBasket(basketId));
+    }
+}
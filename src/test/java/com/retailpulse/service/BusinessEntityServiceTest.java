@@ -28,6 +28,9 @@ public class BusinessEntityServiceTest {
     @Mock
     private InventoryRepository inventoryRepository;
 
+    @Mock
+    private CacheInvalidationLog cacheInvalidationLog;
+
     @InjectMocks
     private BusinessEntityService businessEntityService;
 
@@ -90,6 +93,7 @@ public class BusinessEntityServiceTest {
         BusinessEntityResponseDto result = businessEntityService.saveBusinessEntity(businessEntityRequestDto);
         assertEquals(1L, result.id());
         verify(businessEntityRepository, times(1)).save(any(BusinessEntity.class));
+        verify(cacheInvalidationLog).append("business_entity", 1L);
     }
 
     @Test
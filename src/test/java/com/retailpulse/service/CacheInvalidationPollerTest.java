@@ -0,0 +1,191 @@
+package com.retailpulse.service;
+
+import com.retailpulse.entity.BusinessEntity;
+import com.retailpulse.entity.CacheInvalidation;
+import com.retailpulse.entity.CacheRegions;
+import com.retailpulse.entity.Product;
+import com.retailpulse.entity.SalesTax;
+import com.retailpulse.repository.CacheInvalidationRepository;
+import com.retailpulse.repository.ProductRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.Cache;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class CacheInvalidationPollerTest {
+
+    private static final String THIS_NODE = "this-node";
+    private static final String OTHER_NODE = "other-node";
+
+    @Mock
+    private CacheInvalidationRepository cacheInvalidationRepository;
+
+    @Mock
+    private CacheInvalidationLog cacheInvalidationLog;
+
+    @Mock
+    private EntityManagerFactory entityManagerFactory;
+
+    @Mock
+    private Cache cache;
+
+    @Mock
+    private SessionFactory sessionFactory;
+
+    @Mock
+    private org.hibernate.Cache hibernateCache;
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private ProductBarcodeIndex productBarcodeIndex;
+
+    @Mock
+    private ProductSearchIndex productSearchIndex;
+
+    @Mock
+    private TaxRuleEngine taxRuleEngine;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private SimpleMeterRegistry meterRegistry;
+    private CacheInvalidationPoller cacheInvalidationPoller;
+
+    @BeforeEach
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        cacheInvalidationPoller = new CacheInvalidationPoller(cacheInvalidationRepository, cacheInvalidationLog, entityManagerFactory,
+                productRepository, productBarcodeIndex, productSearchIndex, taxRuleEngine, transactionManager, meterRegistry);
+        lenient().when(cacheInvalidationLog.origin()).thenReturn(THIS_NODE);
+        lenient().when(entityManagerFactory.getCache()).thenReturn(cache);
+    }
+
+    @Test
+    public void testProductChangedOnAnotherNodeIsEvictedAndReindexed() {
+        Product product = new Product();
+        product.setId(7L);
+        when(cacheInvalidationRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), any(Limit.class)))
+                .thenReturn(List.of(entry(1L, CacheRegions.PRODUCT, 7L, OTHER_NODE)));
+        when(entityManagerFactory.unwrap(SessionFactory.class)).thenReturn(sessionFactory);
+        when(sessionFactory.getCache()).thenReturn(hibernateCache);
+        when(productRepository.findAllById(Set.of(7L))).thenReturn(List.of(product));
+
+        cacheInvalidationPoller.poll();
+
+        verify(cache).evict(Product.class, 7L);
+        verify(hibernateCache).evictQueryRegion(CacheRegions.PRODUCT_BY_SKU);
+        verify(productBarcodeIndex).refresh(List.of(product));
+        verify(productSearchIndex).refresh(List.of(product));
+        assertEquals(1, meterRegistry.get("cache.invalidation.lag").timer().count());
+    }
+
+    @Test
+    public void testBusinessEntityAndTaxChangesAreEvicted() {
+        when(cacheInvalidationRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), any(Limit.class))).thenReturn(List.of(
+                entry(1L, CacheRegions.BUSINESS_ENTITY, 3L, OTHER_NODE),
+                entry(2L, CacheRegions.SALES_TAX, 4L, OTHER_NODE)));
+
+        cacheInvalidationPoller.poll();
+
+        verify(cache).evict(BusinessEntity.class, 3L);
+        verify(cache).evict(SalesTax.class, 4L);
+        verify(taxRuleEngine).reload();
+    }
+
+    @Test
+    public void testOwnChangesAreSkipped() {
+        when(cacheInvalidationRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), any(Limit.class)))
+                .thenReturn(List.of(entry(1L, CacheRegions.BUSINESS_ENTITY, 3L, THIS_NODE)));
+
+        cacheInvalidationPoller.poll();
+
+        verifyNoInteractions(cache);
+        assertEquals(0.0, meterRegistry.get("cache.invalidation.applied").counter().count());
+    }
+
+    @Test
+    public void testNextPollReadsOnFromLastEntry() {
+        when(cacheInvalidationRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), any(Limit.class)))
+                .thenReturn(List.of(entry(1L, CacheRegions.BUSINESS_ENTITY, 3L, OTHER_NODE)));
+
+        cacheInvalidationPoller.poll();
+        cacheInvalidationPoller.poll();
+
+        verify(cacheInvalidationRepository).findByIdGreaterThanOrderByIdAsc(eq(1L), any(Limit.class));
+        verify(cache, times(1)).evict(BusinessEntity.class, 3L);
+    }
+
+    @Test
+    public void testSkippedIdCommittedLaterIsApplied() {
+        when(cacheInvalidationRepository.findByIdGreaterThanOrderByIdAsc(anyLong(), any(Limit.class)))
+                .thenReturn(List.of(entry(3L, CacheRegions.BUSINESS_ENTITY, 30L, OTHER_NODE)))
+                .thenReturn(List.of());
+        when(cacheInvalidationRepository.findByIdIn(Set.of(1L, 2L)))
+                .thenReturn(List.of(entry(2L, CacheRegions.BUSINESS_ENTITY, 20L, OTHER_NODE)));
+
+        cacheInvalidationPoller.poll();
+        cacheInvalidationPoller.poll();
+        cacheInvalidationPoller.poll();
+
+        verify(cache).evict(BusinessEntity.class, 30L);
+        verify(cache).evict(BusinessEntity.class, 20L);
+        // Id 1 is still missing, so it is looked for again
+        verify(cacheInvalidationRepository).findByIdIn(Set.of(1L));
+    }
+
+    @Test
+    public void testEverythingIsEvictedAfterPollingFailedForLongerThanRetention() {
+        ReflectionTestUtils.setField(cacheInvalidationPoller, "lastPollMillis", System.currentTimeMillis() - 3_600_001L);
+        when(cacheInvalidationRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), any(Limit.class))).thenReturn(List.of());
+
+        cacheInvalidationPoller.poll();
+
+        verify(cache).evictAll();
+        verify(productBarcodeIndex).rebuild();
+        verify(productSearchIndex).rebuild();
+        verify(taxRuleEngine).reload();
+    }
+
+    @Test
+    public void testStartTakesCursorFromLatestEntry() {
+        ReflectionTestUtils.setField(cacheInvalidationPoller, "pollIntervalMs", 60_000L);
+        when(cacheInvalidationRepository.findMaxId()).thenReturn(java.util.Optional.of(41L));
+        when(cacheInvalidationRepository.findByIdGreaterThanOrderByIdAsc(eq(41L), any(Limit.class))).thenReturn(List.of());
+
+        cacheInvalidationPoller.start();
+        try {
+            cacheInvalidationPoller.poll();
+        } finally {
+            cacheInvalidationPoller.stop();
+        }
+
+        verify(cacheInvalidationRepository).findByIdGreaterThanOrderByIdAsc(eq(41L), any(Limit.class));
+    }
+
+    private static CacheInvalidation entry(Long id, String entityType, Long entityId, String origin) {
+        CacheInvalidation entry = new CacheInvalidation(entityType, entityId, origin, Instant.now().minusMillis(100));
+        ReflectionTestUtils.setField(entry, "id", id);
+        return entry;
+    }
+}
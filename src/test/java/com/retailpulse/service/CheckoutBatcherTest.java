@@ -0,0 +1,141 @@
+package com.retailpulse.service;
+
+import com.retailpulse.controller.request.SalesDetailsDto;
+import com.retailpulse.controller.request.SalesTransactionRequestDto;
+import com.retailpulse.controller.response.SalesTransactionResponseDto;
+import com.retailpulse.exception.ErrorCodes;
+import com.retailpulse.service.exception.BusinessException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class CheckoutBatcherTest {
+
+    @Mock
+    private SalesTransactionService salesTransactionService;
+
+    private SimpleMeterRegistry meterRegistry;
+    private CheckoutBatcher checkoutBatcher;
+
+    private final SalesTransactionRequestDto firstRequest = request(1L);
+    private final SalesTransactionRequestDto secondRequest = request(2L);
+
+    @BeforeEach
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        checkoutBatcher = new CheckoutBatcher(salesTransactionService, meterRegistry);
+    }
+
+    @Test
+    public void testWriteCompletesEachCheckoutWithItsOwnResult() {
+        BusinessException shortStock = new BusinessException(ErrorCodes.INSUFFICIENT_INVENTORY, "Insufficient stock for product id: 2");
+        when(salesTransactionService.createSalesTransactions(List.of(firstRequest, secondRequest), Arrays.asList(null, null)))
+                .thenReturn(List.of(CheckoutResult.accepted(response(1L)), CheckoutResult.rejected(shortStock)));
+        CheckoutBatcher.PendingCheckout first = pending(firstRequest);
+        CheckoutBatcher.PendingCheckout second = pending(secondRequest);
+
+        checkoutBatcher.write(List.of(first, second));
+
+        assertEquals(1L, first.result().join().salesTransactionId());
+        CompletionException exception = assertThrows(CompletionException.class, () -> second.result().join());
+        assertSame(shortStock, exception.getCause());
+        assertEquals(2, meterRegistry.get("checkout.batch.size").summary().totalAmount());
+    }
+
+    @Test
+    public void testFailedGroupIsRetriedOneCheckoutAtATime() {
+        when(salesTransactionService.createSalesTransactions(anyList(), anyList())).thenThrow(new CannotAcquireLockException("deadlock"));
+        when(salesTransactionService.createSalesTransaction(firstRequest, null)).thenReturn(response(1L));
+        when(salesTransactionService.createSalesTransaction(secondRequest, null))
+                .thenThrow(new BusinessException(ErrorCodes.NOT_FOUND, "Inventory not found for product id: 2"));
+        CheckoutBatcher.PendingCheckout first = pending(firstRequest);
+        CheckoutBatcher.PendingCheckout second = pending(secondRequest);
+
+        checkoutBatcher.write(List.of(first, second));
+
+        assertEquals(1L, first.result().join().salesTransactionId());
+        assertTrue(second.result().isCompletedExceptionally());
+        assertEquals(1, meterRegistry.get("checkout.batch.fallbacks").counter().count());
+    }
+
+    @Test
+    public void testCreateSalesTransactionThroughRunningBatcher() {
+        ReflectionTestUtils.setField(checkoutBatcher, "enabled", true);
+        when(salesTransactionService.createSalesTransactions(List.of(firstRequest), Collections.singletonList(null)))
+                .thenReturn(List.of(CheckoutResult.accepted(response(1L))));
+
+        checkoutBatcher.start();
+        try {
+            assertEquals(1L, checkoutBatcher.createSalesTransaction(firstRequest).salesTransactionId());
+        } finally {
+            checkoutBatcher.stop();
+        }
+        verify(salesTransactionService, never()).createSalesTransaction(firstRequest, null);
+    }
+
+    @Test
+    public void testCreateSalesTransactionRethrowsRejection() {
+        ReflectionTestUtils.setField(checkoutBatcher, "enabled", true);
+        BusinessException shortStock = new BusinessException(ErrorCodes.INSUFFICIENT_INVENTORY, "Insufficient stock for product id: 1");
+        when(salesTransactionService.createSalesTransactions(List.of(firstRequest), Collections.singletonList(null)))
+                .thenReturn(List.of(CheckoutResult.rejected(shortStock)));
+
+        checkoutBatcher.start();
+        try {
+            BusinessException exception = assertThrows(BusinessException.class, () -> checkoutBatcher.createSalesTransaction(firstRequest));
+            assertSame(shortStock, exception);
+        } finally {
+            checkoutBatcher.stop();
+        }
+    }
+
+    @Test
+    public void testCreateSalesTransactionWhenStopped() {
+        when(salesTransactionService.createSalesTransaction(firstRequest, null)).thenReturn(response(1L));
+
+        assertEquals(1L, checkoutBatcher.createSalesTransaction(firstRequest).salesTransactionId());
+        verify(salesTransactionService, never()).createSalesTransactions(anyList(), anyList());
+    }
+
+    @Test
+    public void testCheckoutNotTakenFromQueueInTimeIsWrittenAlone() {
+        // Running, but with no worker polling the queue
+        ReflectionTestUtils.setField(checkoutBatcher, "queue", new LinkedBlockingQueue<>());
+        ReflectionTestUtils.setField(checkoutBatcher, "running", true);
+        ReflectionTestUtils.setField(checkoutBatcher, "resultTimeoutMs", 10L);
+        when(salesTransactionService.createSalesTransaction(firstRequest, null)).thenReturn(response(1L));
+
+        assertEquals(1L, checkoutBatcher.createSalesTransaction(firstRequest).salesTransactionId());
+        assertTrue(((BlockingQueue<?>) ReflectionTestUtils.getField(checkoutBatcher, "queue")).isEmpty());
+    }
+
+    private CheckoutBatcher.PendingCheckout pending(SalesTransactionRequestDto request) {
+        return new CheckoutBatcher.PendingCheckout(request, null, new CompletableFuture<>());
+    }
+
+    private SalesTransactionRequestDto request(Long productId) {
+        return new SalesTransactionRequestDto(1L, "9.00", "109.00", List.of(new SalesDetailsDto(productId, 2, "50.0")));
+    }
+
+    private SalesTransactionResponseDto response(Long transactionId) {
+        return new SalesTransactionResponseDto(transactionId, 1L, "100.00", "GST", "0.09", "9.00", "109.00", List.of(), "2025-01-01 10:00:00");
+    }
+}
@@ -0,0 +1,290 @@
+package com.retailpulse.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.retailpulse.controller.request.SalesDetailsDto;
+import com.retailpulse.controller.request.SalesTransactionRequestDto;
+import com.retailpulse.controller.response.SalesTransactionResponseDto;
+import com.retailpulse.entity.IdempotencyRecord;
+import com.retailpulse.exception.ErrorCodes;
+import com.retailpulse.repository.IdempotencyRecordRepository;
+import com.retailpulse.service.exception.BusinessException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class CheckoutIdempotencyServiceTest {
+
+    @Mock
+    private IdempotencyRecordRepository idempotencyRecordRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private SimpleMeterRegistry meterRegistry;
+    private CheckoutIdempotencyService checkoutIdempotencyService;
+
+    @BeforeEach
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        checkoutIdempotencyService = new CheckoutIdempotencyService(idempotencyRecordRepository, objectMapper, transactionManager, meterRegistry);
+    }
+
+    @Test
+    public void testRetryIsAnsweredWithoutRunningCheckoutAgain() {
+        when(idempotencyRecordRepository.claim(eq("key-1"), any(), any(), any())).thenReturn(1);
+        AtomicInteger checkouts = new AtomicInteger();
+
+        SalesTransactionResponseDto first = checkoutIdempotencyService.execute("key-1", request(1L), claim -> response(checkouts.incrementAndGet()));
+        SalesTransactionResponseDto retry = checkoutIdempotencyService.execute("key-1", request(1L), claim -> response(checkouts.incrementAndGet()));
+
+        assertEquals(1, checkouts.get());
+        assertEquals(first, retry);
+        verify(idempotencyRecordRepository).claim(eq("key-1"), eq(fingerprint(request(1L))), any(), any());
+        assertEquals(1.0, meterRegistry.get("checkout.idempotency.replays").counter().count());
+    }
+
+    @Test
+    public void testRecordedOutcomeIsReplayedFromTable() throws Exception {
+        SalesTransactionResponseDto recorded = response(7L);
+        when(idempotencyRecordRepository.lockByIdempotencyKey("key-1"))
+                .thenReturn(Optional.of(new IdempotencyRecord("key-1", fingerprint(request(1L)), "attempt-1",
+                        objectMapper.writeValueAsString(recorded), Instant.now())));
+
+        SalesTransactionResponseDto replayed = checkoutIdempotencyService.execute("key-1", request(1L), claim -> fail("Checkout must not run again"));
+
+        assertEquals(recorded, replayed);
+    }
+
+    @Test
+    public void testKeyReusedForDifferentRequestIsRejected() throws Exception {
+        when(idempotencyRecordRepository.lockByIdempotencyKey("key-1"))
+                .thenReturn(Optional.of(new IdempotencyRecord("key-1", fingerprint(request(1L)), "attempt-1",
+                        objectMapper.writeValueAsString(response(7L)), Instant.now())));
+
+        BusinessException exception = assertThrows(BusinessException.class,
+                () -> checkoutIdempotencyService.execute("key-1", request(2L), claim -> fail("Checkout must not run")));
+
+        assertEquals(ErrorCodes.INVALID_REQUEST, exception.getErrorCode());
+    }
+
+    @Test
+    public void testDuplicateWaitsForAttemptOnAnotherNode() throws Exception {
+        ReflectionTestUtils.setField(checkoutIdempotencyService, "pollIntervalMs", 1L);
+        String fingerprint = fingerprint(request(1L));
+        when(idempotencyRecordRepository.lockByIdempotencyKey("key-1"))
+                .thenReturn(Optional.of(new IdempotencyRecord("key-1", fingerprint, "attempt-1", null, Instant.now())))
+                .thenReturn(Optional.of(new IdempotencyRecord("key-1", fingerprint, "attempt-1",
+                        objectMapper.writeValueAsString(response(7L)), Instant.now())));
+
+        SalesTransactionResponseDto replayed = checkoutIdempotencyService.execute("key-1", request(1L), claim -> fail("Checkout must not run again"));
+
+        assertEquals(7L, replayed.salesTransactionId());
+    }
+
+    @Test
+    public void testDuplicateFailsWhileOtherAttemptIsStillRunning() {
+        ReflectionTestUtils.setField(checkoutIdempotencyService, "pollIntervalMs", 1L);
+        ReflectionTestUtils.setField(checkoutIdempotencyService, "pendingTimeoutMs", 20L);
+        when(idempotencyRecordRepository.lockByIdempotencyKey("key-1"))
+                .thenReturn(Optional.of(new IdempotencyRecord("key-1", fingerprint(request(1L)), "attempt-1", null, Instant.now())));
+
+        BusinessException exception = assertThrows(BusinessException.class,
+                () -> checkoutIdempotencyService.execute("key-1", request(1L), claim -> fail("Checkout must not run")));
+
+        assertEquals(ErrorCodes.CHECKOUT_FAILED, exception.getErrorCode());
+    }
+
+    @Test
+    public void testAbandonedClaimIsTakenOver() {
+        when(idempotencyRecordRepository.lockByIdempotencyKey("key-1"))
+                .thenReturn(Optional.of(new IdempotencyRecord("key-1", fingerprint(request(1L)), "attempt-1", null,
+                        Instant.now().minusSeconds(60))));
+        when(idempotencyRecordRepository.reclaim(eq("key-1"), eq("attempt-1"), any(), any(), any())).thenReturn(1);
+        List<IdempotencyClaim> claims = new ArrayList<>();
+
+        SalesTransactionResponseDto responseDto = checkoutIdempotencyService.execute("key-1", request(1L), claim -> {
+            claims.add(claim);
+            return response(8L);
+        });
+
+        assertEquals(8L, responseDto.salesTransactionId());
+        verify(idempotencyRecordRepository).reclaim(eq("key-1"), eq("attempt-1"), eq(fingerprint(request(1L))), eq(claims.get(0).attempt()), any());
+    }
+
+    @Test
+    public void testFailedCheckoutReleasesClaim() {
+        when(idempotencyRecordRepository.claim(eq("key-1"), any(), any(), any())).thenReturn(1);
+        List<IdempotencyClaim> claims = new ArrayList<>();
+
+        assertThrows(BusinessException.class, () -> checkoutIdempotencyService.execute("key-1", request(1L), claim -> {
+            claims.add(claim);
+            throw new BusinessException(ErrorCodes.INSUFFICIENT_INVENTORY, "Not enough stock");
+        }));
+        SalesTransactionResponseDto retried = checkoutIdempotencyService.execute("key-1", request(1L), claim -> response(8L));
+
+        verify(idempotencyRecordRepository).release("key-1", claims.get(0).attempt());
+        assertEquals(8L, retried.salesTransactionId());
+    }
+
+    @Test
+    public void testCompleteFailsOnceClaimIsLost() {
+        BusinessException exception = assertThrows(BusinessException.class,
+                () -> checkoutIdempotencyService.complete(new IdempotencyClaim("key-1", "attempt-1"), response(7L)));
+
+        assertEquals(ErrorCodes.CHECKOUT_FAILED, exception.getErrorCode());
+    }
+
+    @Test
+    public void testConcurrentDuplicateWaitsForFirstAttempt() throws Exception {
+        when(idempotencyRecordRepository.claim(eq("key-1"), any(), any(), any())).thenReturn(1);
+        CountDownLatch checkoutStarted = new CountDownLatch(1);
+        CountDownLatch releaseCheckout = new CountDownLatch(1);
+        AtomicInteger checkouts = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<SalesTransactionResponseDto> first = executor.submit(() -> checkoutIdempotencyService.execute("key-1", request(1L), claim -> {
+                checkoutStarted.countDown();
+                awaitQuietly(releaseCheckout);
+                return response(checkouts.incrementAndGet());
+            }));
+            assertTrue(checkoutStarted.await(5, TimeUnit.SECONDS));
+            Future<SalesTransactionResponseDto> duplicate = executor.submit(() ->
+                    checkoutIdempotencyService.execute("key-1", request(1L), claim -> response(checkouts.incrementAndGet())));
+
+            releaseCheckout.countDown();
+
+            assertEquals(first.get(5, TimeUnit.SECONDS), duplicate.get(5, TimeUnit.SECONDS));
+            assertEquals(1, checkouts.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testExecuteAllCreatesOnlyMissingSales() throws Exception {
+        when(idempotencyRecordRepository.claim(eq("key-1"), any(), any(), any())).thenReturn(0);
+        when(idempotencyRecordRepository.claim(eq("key-2"), any(), any(), any())).thenReturn(1);
+        when(idempotencyRecordRepository.lockByIdempotencyKey("key-1"))
+                .thenReturn(Optional.of(new IdempotencyRecord("key-1", fingerprint(request(0L)), "attempt-1",
+                        objectMapper.writeValueAsString(response(7L)), Instant.now())));
+        List<List<Integer>> created = new ArrayList<>();
+        List<List<IdempotencyClaim>> claims = new ArrayList<>();
+
+        List<CheckoutResult> results = checkoutIdempotencyService.executeAll(Arrays.asList("key-1", "key-2", null, "key-2"),
+                List.of(request(0L), request(1L), request(2L), request(1L)), (positions, positionClaims) -> {
+                    created.add(positions);
+                    claims.add(positionClaims);
+                    return positions.stream().map(position -> CheckoutResult.accepted(response(100L + position))).toList();
+                });
+
+        assertEquals(List.of(List.of(1, 2)), created);
+        // key-2 is claimed once and handed to the checkout; the sale without a key has no claim
+        assertEquals("key-2", claims.get(0).get(0).idempotencyKey());
+        assertNull(claims.get(0).get(1));
+        assertEquals(List.of(7L, 101L, 102L, 101L), results.stream().map(result -> result.response().salesTransactionId()).toList());
+        assertEquals(2.0, meterRegistry.get("checkout.idempotency.replays").counter().count());
+    }
+
+    @Test
+    public void testExecuteAllWaitsForKeyHeldOnAnotherNode() throws Exception {
+        ReflectionTestUtils.setField(checkoutIdempotencyService, "pollIntervalMs", 1L);
+        String fingerprint = fingerprint(request(0L));
+        when(idempotencyRecordRepository.lockByIdempotencyKey("key-1"))
+                .thenReturn(Optional.of(new IdempotencyRecord("key-1", fingerprint, "attempt-1", null, Instant.now())))
+                .thenReturn(Optional.of(new IdempotencyRecord("key-1", fingerprint, "attempt-1",
+                        objectMapper.writeValueAsString(response(7L)), Instant.now())));
+
+        List<CheckoutResult> results = checkoutIdempotencyService.executeAll(List.of("key-1"), List.of(request(0L)),
+                (positions, claims) -> fail("Sale held by another node must not be created again"));
+
+        assertEquals(7L, results.get(0).response().salesTransactionId());
+    }
+
+    @Test
+    public void testExecuteAllRejectsKeyRepeatedWithDifferentSale() {
+        when(idempotencyRecordRepository.claim(eq("key-1"), any(), any(), any())).thenReturn(1);
+
+        List<CheckoutResult> results = checkoutIdempotencyService.executeAll(List.of("key-1", "key-1"),
+                List.of(request(0L), request(1L)), (positions, claims) -> positions.stream()
+                        .map(position -> CheckoutResult.accepted(response(100L + position))).toList());
+
+        assertTrue(results.get(0).isAccepted());
+        assertEquals(ErrorCodes.INVALID_REQUEST, results.get(1).error().getErrorCode());
+    }
+
+    @Test
+    public void testExecuteAllReleasesClaimsOfRejectedSales() {
+        when(idempotencyRecordRepository.claim(eq("key-1"), any(), any(), any())).thenReturn(1);
+        BusinessException outOfStock = new BusinessException(ErrorCodes.INSUFFICIENT_INVENTORY, "Not enough stock");
+        List<IdempotencyClaim> claims = new ArrayList<>();
+
+        List<CheckoutResult> results = checkoutIdempotencyService.executeAll(List.of("key-1"), List.of(request(1L)),
+                (positions, positionClaims) -> {
+                    claims.addAll(positionClaims);
+                    return List.of(CheckoutResult.rejected(outOfStock));
+                });
+        SalesTransactionResponseDto retried = checkoutIdempotencyService.execute("key-1", request(1L), claim -> response(9L));
+
+        assertSame(outOfStock, results.get(0).error());
+        verify(idempotencyRecordRepository).release("key-1", claims.get(0).attempt());
+        assertEquals(9L, retried.salesTransactionId());
+    }
+
+    @Test
+    public void testOverlongKeyIsRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> checkoutIdempotencyService.execute("k".repeat(101), request(1L), claim -> response(1L)));
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private String fingerprint(SalesTransactionRequestDto requestDto) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(objectMapper.writeValueAsBytes(requestDto)));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static SalesTransactionRequestDto request(long productId) {
+        return new SalesTransactionRequestDto(1L, "9.00", "109.00", List.of(new SalesDetailsDto(productId, 2, "50.00")));
+    }
+
+    private SalesTransactionResponseDto response(long salesTransactionId) {
+        return new SalesTransactionResponseDto(salesTransactionId, 1L, "100.00", "GST", "0.09", "9.00", "109.00",
+                List.of(new SalesDetailsDto(1L, 2, "50.00")), "2026-10-18 10:00:00");
+    }
+}
@@ -0,0 +1,142 @@
+package com.retailpulse.service;
+
+import com.retailpulse.entity.SalesDetails;
+import com.retailpulse.entity.SalesTax;
+import com.retailpulse.entity.SalesTransactionMemento;
+import com.retailpulse.entity.SuspendedTransaction;
+import com.retailpulse.entity.TaxType;
+import com.retailpulse.exception.ErrorCodes;
+import com.retailpulse.repository.SequenceCounterRepository;
+import com.retailpulse.repository.SuspendedTransactionRepository;
+import com.retailpulse.service.exception.BusinessException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class DatabaseSuspendedTransactionStoreTest {
+
+    @Mock
+    private SuspendedTransactionRepository suspendedTransactionRepository;
+
+    @Mock
+    private SequenceCounterRepository counterRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private SimpleMeterRegistry meterRegistry;
+    private DatabaseSuspendedTransactionStore store;
+
+    @BeforeEach
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        store = new DatabaseSuspendedTransactionStore(suspendedTransactionRepository, counterRepository, transactionManager, meterRegistry);
+    }
+
+    @Test
+    public void testNextTransactionIdUsesSharedCounter() {
+        when(counterRepository.getLastInsertedId()).thenReturn(42L);
+
+        assertEquals(42L, store.nextTransactionId());
+        verify(counterRepository).incrementAndStore("suspended-transaction");
+        verify(counterRepository, never()).findById(any());
+    }
+
+    @Test
+    public void testStartSeedsCounterAboveExistingIds() {
+        when(suspendedTransactionRepository.findMaxTransactionId()).thenReturn(41L);
+
+        store.start();
+        try {
+            verify(counterRepository).createIfMissing("suspended-transaction", 41L);
+        } finally {
+            store.stop();
+        }
+    }
+
+    @Test
+    public void testListIsServedFromNearCacheUntilItExpires() {
+        when(suspendedTransactionRepository.findByBusinessEntityIdAndSuspendedAtAfterOrderByTransactionId(eq(1L), any()))
+                .thenReturn(List.of(new SuspendedTransaction(memento(7L))));
+
+        assertEquals(List.of(7L), List.copyOf(store.listTransactions(1L).keySet()));
+        assertEquals(List.of(7L), List.copyOf(store.listTransactions(1L).keySet()));
+        verify(suspendedTransactionRepository, times(1)).findByBusinessEntityIdAndSuspendedAtAfterOrderByTransactionId(eq(1L), any());
+        assertEquals(1.0, meterRegistry.get("suspended.transactions.near_cache").tag("result", "hit").counter().count());
+
+        ReflectionTestUtils.setField(store, "nearCacheTtlMs", 0L);
+        store.listTransactions(1L);
+        verify(suspendedTransactionRepository, times(2)).findByBusinessEntityIdAndSuspendedAtAfterOrderByTransactionId(eq(1L), any());
+    }
+
+    @Test
+    public void testOwnSuspendsAndRestoresPatchTheNearCache() {
+        when(suspendedTransactionRepository.findByBusinessEntityIdAndSuspendedAtAfterOrderByTransactionId(eq(1L), any()))
+                .thenReturn(List.of(new SuspendedTransaction(memento(7L))));
+        when(suspendedTransactionRepository.deleteTransaction(1L, 7L)).thenReturn(1);
+        store.listTransactions(1L);
+
+        assertEquals(List.of(7L, 8L), List.copyOf(store.addTransaction(1L, memento(8L)).keySet()));
+        assertEquals(List.of(8L), List.copyOf(store.deleteTransaction(1L, 7L).keySet()));
+        assertEquals(List.of(8L), List.copyOf(store.listTransactions(1L).keySet()));
+
+        verify(suspendedTransactionRepository).save(any(SuspendedTransaction.class));
+        verify(suspendedTransactionRepository).deleteTransaction(1L, 7L);
+        verify(suspendedTransactionRepository, times(1)).findByBusinessEntityIdAndSuspendedAtAfterOrderByTransactionId(eq(1L), any());
+    }
+
+    @Test
+    public void testRestoringAnAlreadyRestoredSaleFails() {
+        when(suspendedTransactionRepository.findByBusinessEntityIdAndSuspendedAtAfterOrderByTransactionId(eq(1L), any()))
+                .thenReturn(List.of(new SuspendedTransaction(memento(7L))));
+        store.listTransactions(1L);
+        when(suspendedTransactionRepository.deleteTransaction(1L, 7L)).thenReturn(0);
+
+        BusinessException exception = assertThrows(BusinessException.class, () -> store.deleteTransaction(1L, 7L));
+
+        assertEquals(ErrorCodes.NOT_FOUND, exception.getErrorCode());
+        // The other node's restore is reflected in this node's cached list too
+        assertTrue(store.listTransactions(1L).isEmpty());
+    }
+
+    @Test
+    public void testSuspendBeyondStoreLimitIsRejected() {
+        ReflectionTestUtils.setField(store, "maxPerStore", 1);
+        when(suspendedTransactionRepository.countByBusinessEntityIdAndSuspendedAtAfter(eq(1L), any())).thenReturn(1L);
+
+        BusinessException exception = assertThrows(BusinessException.class, () -> store.addTransaction(1L, memento(8L)));
+
+        assertEquals(ErrorCodes.LIMIT_EXCEEDED, exception.getErrorCode());
+        verify(suspendedTransactionRepository, never()).save(any());
+        assertEquals(1.0, meterRegistry.get("suspended.transactions.rejected").counter().count());
+    }
+
+    @Test
+    public void testEvictExpiredCountsDeletedRows() {
+        when(suspendedTransactionRepository.deleteExpired(any(Instant.class))).thenReturn(3);
+
+        store.evictExpired();
+
+        assertEquals(3.0, meterRegistry.get("suspended.transactions.expired").counter().count());
+    }
+
+    private SalesTransactionMemento memento(long transactionId) {
+        return new SalesTransactionMemento(transactionId, 1L, new SalesTax(TaxType.GST, new BigDecimal("0.09")),
+                List.of(new SalesDetails(1L, 2, new BigDecimal("19.95"))), Instant.now());
+    }
+}
@@ -0,0 +1,67 @@
+package com.retailpulse.service;
+
+import com.retailpulse.entity.Inventory;
+import com.retailpulse.repository.InventoryRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class InventoryLockManagerTest {
+
+    @Mock
+    private InventoryRepository inventoryRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+    private InventoryLockManager inventoryLockManager;
+
+    @BeforeEach
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        inventoryLockManager = new InventoryLockManager(inventoryRepository, meterRegistry);
+    }
+
+    @Test
+    public void testDefaultsToConditionalMode() {
+        assertFalse(inventoryLockManager.isPessimistic());
+
+        ReflectionTestUtils.setField(inventoryLockManager, "lockMode", InventoryLockMode.PESSIMISTIC);
+
+        assertTrue(inventoryLockManager.isPessimistic());
+    }
+
+    @Test
+    public void testLockBasketRowsInProductIdOrder() {
+        Inventory inventory = new Inventory();
+        when(inventoryRepository.lockByBusinessEntityIdAndProductIdIn(1L, List.of(2L, 5L, 9L))).thenReturn(List.of(inventory));
+
+        List<Inventory> locked = inventoryLockManager.lockBasketRows(1L, Set.of(9L, 2L, 5L));
+
+        assertEquals(List.of(inventory), locked);
+        assertEquals(1, meterRegistry.get("inventory.lock.wait").timer().count());
+    }
+
+    @Test
+    public void testDrainContendedKeys() {
+        ReflectionTestUtils.setField(inventoryLockManager, "slowWaitMs", 0L);
+        inventoryLockManager.recordRowWrites(1L, List.of(2L), 1);
+        assertTrue(inventoryLockManager.drainContendedKeys(1).isEmpty(), "Nothing is counted until tracking is on");
+
+        inventoryLockManager.trackContention();
+        inventoryLockManager.recordRowWrites(1L, List.of(2L, 3L), 1);
+        inventoryLockManager.recordRowWrites(1L, List.of(2L), 1);
+
+        assertEquals(Set.of(new InventoryKey(2L, 1L)), inventoryLockManager.drainContendedKeys(2));
+        assertTrue(inventoryLockManager.drainContendedKeys(1).isEmpty(), "Draining starts a new count");
+    }
+}
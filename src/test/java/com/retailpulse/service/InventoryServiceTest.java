@@ -11,7 +11,9 @@ import org.mockito.MockitoAnnotations;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.TreeMap;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -21,6 +23,12 @@ class InventoryServiceTest {
     @Mock
     private InventoryRepository inventoryRepository; // Mocked dependency
 
+    @Mock
+    private InventorySlotManager inventorySlotManager;
+
+    @Mock
+    private StockReservationEngine stockReservationEngine;
+
     @InjectMocks
     private InventoryService inventoryService; // Service under test
 
@@ -176,6 +184,26 @@ class InventoryServiceTest {
         verifyNoMoreInteractions(inventoryRepository);
     }
 
+    @Test
+    void testGetInventoryByProductIdAndBusinessEntityIdIncludesSlotStock() {
+        Inventory mockInventory = new Inventory();
+        mockInventory.setId(1L);
+        mockInventory.setProductId(101L);
+        mockInventory.setBusinessEntityId(201L);
+        mockInventory.setQuantity(2);
+
+        when(inventoryRepository.findByProductIdAndBusinessEntityId(101L, 201L)).thenReturn(Optional.of(mockInventory));
+        when(inventorySlotManager.isEnabled()).thenReturn(true);
+        when(inventorySlotManager.slotQuantities(101L, 201L)).thenReturn(Map.of(new InventoryKey(101L, 201L), 48));
+
+        Optional<Inventory> result = inventoryService.getInventoryByProductIdAndBusinessEntityId(101L, 201L);
+
+        assertTrue(result.isPresent());
+        assertEquals(50, result.get().getQuantity());
+        // The managed row itself is left untouched
+        assertEquals(2, mockInventory.getQuantity());
+    }
+
     @Test
     public void testInventoryContainsProduct_ReturnsTrueWhenProductExists() {
         Long productId = 1L;
@@ -266,6 +294,73 @@ class InventoryServiceTest {
         verifyNoMoreInteractions(inventoryRepository);
     }
 
+    @Test
+    void testUpdateInventoryKeepsSlotStock() {
+        Inventory existingInventory = new Inventory();
+        existingInventory.setId(1L);
+        existingInventory.setProductId(101L);
+        existingInventory.setBusinessEntityId(201L);
+        existingInventory.setQuantity(2);
+
+        Inventory updatedDetails = new Inventory();
+        updatedDetails.setQuantity(40);
+
+        when(inventoryRepository.findById(1L)).thenReturn(Optional.of(existingInventory));
+        when(inventoryRepository.save(existingInventory)).thenReturn(existingInventory);
+        when(inventorySlotManager.isEnabled()).thenReturn(true);
+        when(inventorySlotManager.slotQuantities(101L, 201L)).thenReturn(Map.of(new InventoryKey(101L, 201L), 48));
+
+        inventoryService.updateInventory(1L, updatedDetails);
+
+        // A total of 40 with 48 held in slots leaves the row at -8 until the next rebalance
+        assertEquals(-8, existingInventory.getQuantity());
+    }
+
+    @Test
+    void testUpdateInventoryGoesThroughReservationCounters() {
+        Inventory existingInventory = new Inventory();
+        existingInventory.setId(1L);
+        existingInventory.setProductId(101L);
+        existingInventory.setBusinessEntityId(201L);
+        existingInventory.setQuantity(50);
+
+        Inventory updatedDetails = new Inventory();
+        updatedDetails.setQuantity(45);
+
+        when(inventoryRepository.findById(1L)).thenReturn(Optional.of(existingInventory));
+        when(inventoryRepository.saveAndFlush(existingInventory)).thenReturn(existingInventory);
+        when(stockReservationEngine.isEnabled()).thenReturn(true);
+        doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(2).run();
+            return null;
+        }).when(stockReservationEngine).applyThrough(eq(201L), any(), any());
+
+        Inventory result = inventoryService.updateInventory(1L, updatedDetails);
+
+        assertSame(existingInventory, result);
+        assertEquals(45, existingInventory.getQuantity());
+        verify(stockReservationEngine).applyThrough(eq(201L), eq(new TreeMap<>(Map.of(101L, -5))), any());
+    }
+
+    @Test
+    void testUpdateInventoryCannotMoveStockWhileReservationsAreEnabled() {
+        Inventory existingInventory = new Inventory();
+        existingInventory.setId(1L);
+        existingInventory.setProductId(101L);
+        existingInventory.setBusinessEntityId(201L);
+        existingInventory.setQuantity(50);
+
+        Inventory updatedDetails = new Inventory();
+        updatedDetails.setBusinessEntityId(202L);
+        updatedDetails.setQuantity(50);
+
+        when(inventoryRepository.findById(1L)).thenReturn(Optional.of(existingInventory));
+        when(stockReservationEngine.isEnabled()).thenReturn(true);
+
+        assertThrows(IllegalArgumentException.class, () -> inventoryService.updateInventory(1L, updatedDetails));
+        verify(inventoryRepository, never()).save(any());
+    }
+
     @Test
     void testDeleteInventory() {
         // Arrange
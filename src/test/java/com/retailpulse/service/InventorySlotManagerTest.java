@@ -0,0 +1,163 @@
+package com.retailpulse.service;
+
+import com.retailpulse.entity.Inventory;
+import com.retailpulse.entity.InventorySlot;
+import com.retailpulse.repository.InventoryRepository;
+import com.retailpulse.repository.InventorySlotRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class InventorySlotManagerTest {
+
+    @Mock
+    private InventoryRepository inventoryRepository;
+
+    @Mock
+    private InventorySlotRepository inventorySlotRepository;
+
+    @Mock
+    private InventoryLockManager inventoryLockManager;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private InventorySlotManager inventorySlotManager;
+
+    @BeforeEach
+    public void setUp() {
+        inventorySlotManager = new InventorySlotManager(inventoryRepository, inventorySlotRepository,
+                inventoryLockManager, transactionManager, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(inventorySlotManager, "enabled", true);
+        ReflectionTestUtils.setField(inventorySlotManager, "slotCount", 4);
+    }
+
+    @Test
+    public void testDeductFromRandomSlot() {
+        when(inventorySlotRepository.deductFromSlot(eq(1L), eq(2L), anyInt(), eq(3))).thenReturn(1);
+
+        assertTrue(inventorySlotManager.deduct(1L, 2L, 3));
+
+        verifyNoInteractions(inventoryRepository);
+    }
+
+    @Test
+    public void testDeductFallsBackToInventoryRow() {
+        when(inventorySlotRepository.deductFromSlot(eq(1L), eq(2L), anyInt(), eq(3))).thenReturn(0);
+        when(inventoryRepository.deductQuantities(1L, Map.of(2L, 3))).thenReturn(List.of());
+
+        assertTrue(inventorySlotManager.deduct(1L, 2L, 3));
+
+        verify(inventorySlotRepository, never()).lockSlots(anyLong(), anyLong());
+    }
+
+    @Test
+    public void testDeductDrainsRowAndSlotsWhenNoneHoldsEnoughAlone() {
+        Inventory inventory = inventory(1);
+        List<InventorySlot> slots = List.of(slot(0, 2), slot(1, 2), slot(2, 2), slot(3, 2));
+        when(inventorySlotRepository.deductFromSlot(eq(1L), eq(2L), anyInt(), eq(6))).thenReturn(0);
+        when(inventoryRepository.deductQuantities(1L, Map.of(2L, 6))).thenReturn(List.of(2L));
+        when(inventorySlotRepository.lockSlots(1L, 2L)).thenReturn(slots);
+        when(inventoryRepository.lockByBusinessEntityIdAndProductIdIn(1L, List.of(2L))).thenReturn(List.of(inventory));
+
+        assertTrue(inventorySlotManager.deduct(1L, 2L, 6));
+
+        assertEquals(0, inventory.getQuantity());
+        assertEquals(List.of(0, 0, 1, 2), slots.stream().map(InventorySlot::getQuantity).toList());
+    }
+
+    @Test
+    public void testDeductReportsShortStock() {
+        when(inventorySlotRepository.deductFromSlot(eq(1L), eq(2L), anyInt(), eq(10))).thenReturn(0);
+        when(inventoryRepository.deductQuantities(1L, Map.of(2L, 10))).thenReturn(List.of(2L));
+        when(inventorySlotRepository.lockSlots(1L, 2L)).thenReturn(List.of(slot(0, 4)));
+        when(inventoryRepository.lockByBusinessEntityIdAndProductIdIn(1L, List.of(2L))).thenReturn(List.of(inventory(5)));
+
+        assertFalse(inventorySlotManager.deduct(1L, 2L, 10));
+    }
+
+    @Test
+    public void testPessimisticDeductLocksAllRowsFirst() {
+        Inventory inventory = inventory(5);
+        when(inventoryLockManager.isPessimistic()).thenReturn(true);
+        when(inventorySlotRepository.lockSlots(1L, 2L)).thenReturn(List.of(slot(0, 4)));
+        when(inventoryRepository.lockByBusinessEntityIdAndProductIdIn(1L, List.of(2L))).thenReturn(List.of(inventory));
+
+        assertTrue(inventorySlotManager.deduct(1L, 2L, 3));
+
+        assertEquals(2, inventory.getQuantity());
+        verify(inventorySlotRepository, never()).deductFromSlot(anyLong(), anyLong(), anyInt(), anyInt());
+    }
+
+    @Test
+    public void testRebalanceSpreadsDetectedHotProductAcrossSlots() {
+        ReflectionTestUtils.setField(inventorySlotManager, "autoDetect", true);
+        InventoryKey key = new InventoryKey(2L, 1L);
+        Inventory inventory = inventory(42);
+        List<InventorySlot> existingSlots = new ArrayList<>(List.of(slot(0, 0)));
+        when(inventoryLockManager.drainContendedKeys(20)).thenReturn(Set.of(key));
+        when(inventorySlotRepository.lockSlots(1L, 2L)).thenReturn(existingSlots);
+        when(inventoryRepository.lockByBusinessEntityIdAndProductIdIn(1L, List.of(2L))).thenReturn(List.of(inventory));
+
+        inventorySlotManager.rebalance();
+
+        assertTrue(inventorySlotManager.isHot(key));
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<InventorySlot>> saved = ArgumentCaptor.forClass(List.class);
+        verify(inventorySlotRepository).saveAll(saved.capture());
+        assertEquals(List.of(0, 1, 2, 3), saved.getValue().stream().map(InventorySlot::getSlotIndex).toList());
+        assertTrue(saved.getValue().stream().allMatch(slot -> slot.getQuantity() == 10));
+        assertEquals(2, inventory.getQuantity());
+    }
+
+    @Test
+    public void testRebalanceFoldsIdleProductBackIntoRow() {
+        ReflectionTestUtils.setField(inventorySlotManager, "idleMs", -1L);
+        InventoryKey key = new InventoryKey(2L, 1L);
+        @SuppressWarnings("unchecked")
+        Map<InventoryKey, Long> detectedKeys = (Map<InventoryKey, Long>) ReflectionTestUtils.getField(inventorySlotManager, "detectedKeys");
+        detectedKeys.put(key, System.currentTimeMillis());
+        Inventory inventory = inventory(1);
+        List<InventorySlot> slots = List.of(slot(0, 3), slot(1, 4));
+        when(inventorySlotRepository.lockSlots(1L, 2L)).thenReturn(slots);
+        when(inventoryRepository.lockByBusinessEntityIdAndProductIdIn(1L, List.of(2L))).thenReturn(List.of(inventory));
+
+        inventorySlotManager.rebalance();
+
+        assertFalse(inventorySlotManager.isHot(key));
+        assertEquals(8, inventory.getQuantity());
+        verify(inventorySlotRepository).deleteAll(slots);
+    }
+
+    private Inventory inventory(int quantity) {
+        Inventory inventory = new Inventory();
+        inventory.setProductId(2L);
+        inventory.setBusinessEntityId(1L);
+        inventory.setQuantity(quantity);
+        return inventory;
+    }
+
+    private InventorySlot slot(int slotIndex, int quantity) {
+        InventorySlot slot = new InventorySlot(2L, 1L, slotIndex);
+        slot.setQuantity(quantity);
+        return slot;
+    }
+}
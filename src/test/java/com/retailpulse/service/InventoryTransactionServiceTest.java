@@ -1,23 +1,32 @@
 package com.retailpulse.service;
 
+import com.retailpulse.DTO.InventoryDeltaDto;
 import com.retailpulse.DTO.InventoryTransactionProductDto;
 import com.retailpulse.entity.BusinessEntity;
-import com.retailpulse.entity.Inventory;
 import com.retailpulse.entity.InventoryTransaction;
 import com.retailpulse.entity.Product;
+import com.retailpulse.exception.ErrorCodes;
 import com.retailpulse.repository.BusinessEntityRepository;
+import com.retailpulse.repository.InventoryRepository;
 import com.retailpulse.repository.InventoryTransactionRepository;
+import com.retailpulse.service.exception.BusinessException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
 class InventoryTransactionServiceTest {
@@ -26,7 +35,7 @@ class InventoryTransactionServiceTest {
     private InventoryTransactionRepository mockInventoryTransactionRepository;
 
     @Mock
-    private InventoryService mockInventoryService;
+    private InventoryRepository mockInventoryRepository;
 
     @Mock
     private ProductService mockProductService;
@@ -34,6 +43,12 @@ class InventoryTransactionServiceTest {
     @Mock
     private BusinessEntityRepository mockBusinessEntityRepository;
 
+    @Mock
+    private InventorySlotManager mockInventorySlotManager;
+
+    @Mock
+    private StockReservationEngine mockStockReservationEngine;
+
     @InjectMocks
     private InventoryTransactionService inventoryTransactionService;
 
@@ -73,54 +88,13 @@ class InventoryTransactionServiceTest {
     @Test
     void testSaveInventoryTransaction_Successful() {
         // Arrange
-        InventoryTransaction transaction = new InventoryTransaction();
-        transaction.setProductId(1L);
-        transaction.setSource(101L);
-        transaction.setDestination(201L);
-        transaction.setQuantity(10);
-        transaction.setCostPricePerUnit(5.0);
-
-        Product product = new Product();
-        product.setId(1L);
-        product.setActive(true);
-
-        Inventory sourceInventory = new Inventory();
-        sourceInventory.setId(1L);
-        sourceInventory.setProductId(1L);
-        sourceInventory.setBusinessEntityId(101L);
-        sourceInventory.setQuantity(20);
-        sourceInventory.setTotalCostPrice(100.0);
-
-        Inventory updatedSourceInventory = new Inventory();
-        updatedSourceInventory.setId(1L);
-        updatedSourceInventory.setProductId(1L);
-        updatedSourceInventory.setBusinessEntityId(101L);
-        updatedSourceInventory.setQuantity(10);
-        updatedSourceInventory.setTotalCostPrice(50.0);
-
-        Inventory destinationInventory = new Inventory();
-        destinationInventory.setId(2L);
-        destinationInventory.setProductId(1L);
-        destinationInventory.setBusinessEntityId(201L);
-        destinationInventory.setQuantity(30);
-        destinationInventory.setTotalCostPrice(150.0);
-
-        Inventory updatedDestinationInventory = new Inventory();
-        updatedDestinationInventory.setId(2L);
-        updatedDestinationInventory.setProductId(1L);
-        updatedDestinationInventory.setBusinessEntityId(201L);
-        updatedDestinationInventory.setQuantity(40);
-        updatedDestinationInventory.setTotalCostPrice(200.0);
-
+        InventoryTransaction transaction = transfer(10);
         BusinessEntity businessEntity = new BusinessEntity("name", "location", "type", false);
 
-        when(mockProductService.getProductById(1L)).thenReturn(Optional.of(product));
+        when(mockProductService.getProductById(1L)).thenReturn(Optional.of(activeProduct()));
         when(mockBusinessEntityRepository.findById(101L)).thenReturn(Optional.of(businessEntity));
         when(mockBusinessEntityRepository.findById(201L)).thenReturn(Optional.of(businessEntity));
-        when(mockInventoryService.getInventoryByProductIdAndBusinessEntityId(1L, 101L)).thenReturn(Optional.of(sourceInventory));
-        when(mockInventoryService.getInventoryByProductIdAndBusinessEntityId(1L, 201L)).thenReturn(Optional.of(destinationInventory));
-        when(mockInventoryService.updateInventory(1L, updatedSourceInventory)).thenReturn(updatedSourceInventory);
-        when(mockInventoryService.updateInventory(2L, updatedDestinationInventory)).thenReturn(updatedDestinationInventory);
+        when(mockInventoryRepository.deductStock(101L, Map.of(1L, new InventoryDeltaDto(10, 50.0)))).thenReturn(List.of());
         when(mockInventoryTransactionRepository.save(transaction)).thenReturn(transaction);
 
         // Act
@@ -134,41 +108,47 @@ class InventoryTransactionServiceTest {
         assertEquals(10, result.getQuantity());
         assertEquals(5.0, result.getCostPricePerUnit(), 0.01);
 
+        InOrder inOrder = inOrder(mockInventoryRepository, mockInventoryTransactionRepository);
+        inOrder.verify(mockInventoryRepository, times(1)).deductStock(101L, Map.of(1L, new InventoryDeltaDto(10, 50.0)));
+        inOrder.verify(mockInventoryRepository, times(1)).addStock(201L, Map.of(1L, new InventoryDeltaDto(10, 50.0)));
+        inOrder.verify(mockInventoryTransactionRepository, times(1)).save(transaction);
         verify(mockProductService, times(1)).getProductById(1L);
-        verify(mockInventoryService, times(1)).getInventoryByProductIdAndBusinessEntityId(1L, 101L);
-        verify(mockInventoryService, times(1)).getInventoryByProductIdAndBusinessEntityId(1L, 201L);
-        verify(mockInventoryService, times(1)).updateInventory(1L, updatedSourceInventory);
-        verify(mockInventoryService, times(1)).updateInventory(2L, updatedDestinationInventory);
-        verify(mockInventoryTransactionRepository, times(1)).save(transaction);
-        verifyNoMoreInteractions(mockProductService, mockInventoryService, mockInventoryTransactionRepository);
+        verifyNoMoreInteractions(mockProductService, mockInventoryRepository, mockInventoryTransactionRepository);
     }
 
     @Test
-    void testSaveInventoryTransaction_InsufficientSourceQuantity() {
+    void testSaveInventoryTransaction_WritesRowsInBusinessEntityIdOrder() {
         // Arrange
-        InventoryTransaction transaction = new InventoryTransaction();
-        transaction.setProductId(1L);
-        transaction.setSource(101L);
-        transaction.setDestination(201L);
-        transaction.setQuantity(30);
-        transaction.setCostPricePerUnit(5.0);
+        InventoryTransaction transaction = transfer(10);
+        transaction.setSource(301L);
+        BusinessEntity businessEntity = new BusinessEntity("name", "location", "type", false);
 
-        Product product = new Product();
-        product.setId(1L);
-        product.setActive(true);
+        when(mockProductService.getProductById(1L)).thenReturn(Optional.of(activeProduct()));
+        when(mockBusinessEntityRepository.findById(301L)).thenReturn(Optional.of(businessEntity));
+        when(mockBusinessEntityRepository.findById(201L)).thenReturn(Optional.of(businessEntity));
+        when(mockInventoryRepository.deductStock(301L, Map.of(1L, new InventoryDeltaDto(10, 50.0)))).thenReturn(List.of());
+        when(mockInventoryTransactionRepository.save(transaction)).thenReturn(transaction);
 
-        Inventory sourceInventory = new Inventory();
-        sourceInventory.setId(1L);
-        sourceInventory.setProductId(1L);
-        sourceInventory.setBusinessEntityId(101L);
-        sourceInventory.setQuantity(20);
-        sourceInventory.setTotalCostPrice(100.0);
+        // Act
+        inventoryTransactionService.saveInventoryTransaction(transaction);
 
+        // Assert: the destination has the lower id, so it is written first
+        InOrder inOrder = inOrder(mockInventoryRepository);
+        inOrder.verify(mockInventoryRepository).addStock(201L, Map.of(1L, new InventoryDeltaDto(10, 50.0)));
+        inOrder.verify(mockInventoryRepository).deductStock(301L, Map.of(1L, new InventoryDeltaDto(10, 50.0)));
+    }
+
+    @Test
+    void testSaveInventoryTransaction_InsufficientSourceQuantity() {
+        // Arrange
+        InventoryTransaction transaction = transfer(30);
         BusinessEntity businessEntity = new BusinessEntity("name", "location", "type", false);
 
-        when(mockProductService.getProductById(1L)).thenReturn(Optional.of(product));
+        when(mockProductService.getProductById(1L)).thenReturn(Optional.of(activeProduct()));
         when(mockBusinessEntityRepository.findById(101L)).thenReturn(Optional.of(businessEntity));
-        when(mockInventoryService.getInventoryByProductIdAndBusinessEntityId(1L, 101L)).thenReturn(Optional.of(sourceInventory));
+        when(mockBusinessEntityRepository.findById(201L)).thenReturn(Optional.of(businessEntity));
+        when(mockInventoryRepository.deductStock(101L, Map.of(1L, new InventoryDeltaDto(30, 150.0)))).thenReturn(List.of(1L));
+        when(mockInventoryRepository.findQuantitiesByProductId(101L, List.of(1L))).thenReturn(Map.of(1L, 20));
 
         // Act & Assert
         IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> {
@@ -181,8 +161,31 @@ class InventoryTransactionServiceTest {
         );
 
         verify(mockProductService, times(1)).getProductById(1L);
-        verify(mockInventoryService, times(1)).getInventoryByProductIdAndBusinessEntityId(1L, 101L);
-        verifyNoMoreInteractions(mockProductService, mockInventoryService);
+        verify(mockInventoryRepository, times(1)).deductStock(101L, Map.of(1L, new InventoryDeltaDto(30, 150.0)));
+        verify(mockInventoryRepository, times(1)).findQuantitiesByProductId(101L, List.of(1L));
+        verifyNoMoreInteractions(mockProductService, mockInventoryRepository);
+        verifyNoInteractions(mockInventoryTransactionRepository);
+    }
+
+    @Test
+    void testSaveInventoryTransaction_SourceInventoryNotFound() {
+        // Arrange
+        InventoryTransaction transaction = transfer(10);
+        BusinessEntity businessEntity = new BusinessEntity("name", "location", "type", false);
+
+        when(mockProductService.getProductById(1L)).thenReturn(Optional.of(activeProduct()));
+        when(mockBusinessEntityRepository.findById(101L)).thenReturn(Optional.of(businessEntity));
+        when(mockBusinessEntityRepository.findById(201L)).thenReturn(Optional.of(businessEntity));
+        when(mockInventoryRepository.deductStock(101L, Map.of(1L, new InventoryDeltaDto(10, 50.0)))).thenReturn(List.of(1L));
+        when(mockInventoryRepository.findQuantitiesByProductId(101L, List.of(1L))).thenReturn(Map.of());
+
+        // Act & Assert
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> {
+            inventoryTransactionService.saveInventoryTransaction(transaction);
+        });
+
+        assertEquals("Source inventory not found for product id: 1 and source id: 101", exception.getMessage());
+        verify(mockInventoryRepository, never()).addStock(anyLong(), anyMap());
     }
 
     @Test
@@ -265,42 +268,15 @@ class InventoryTransactionServiceTest {
     @Test
     void testSaveInventoryTransaction_SourceExternal() {
         // Arrange
-        InventoryTransaction transaction = new InventoryTransaction();
-        transaction.setProductId(1L);
-        transaction.setSource(101L);
-        transaction.setDestination(201L);
-        transaction.setQuantity(10);
-        transaction.setCostPricePerUnit(5.0);
-
-        Product product = new Product();
-        product.setId(1L);
-        product.setActive(true);
-
-        Inventory destinationInventory = new Inventory();
-        destinationInventory.setId(2L);
-        destinationInventory.setProductId(1L);
-        destinationInventory.setBusinessEntityId(201L);
-        destinationInventory.setQuantity(30);
-        destinationInventory.setTotalCostPrice(150.0);
-
-        Inventory updatedDestinationInventory = new Inventory();
-        updatedDestinationInventory.setId(2L);
-        updatedDestinationInventory.setProductId(1L);
-        updatedDestinationInventory.setBusinessEntityId(201L);
-        updatedDestinationInventory.setQuantity(destinationInventory.getQuantity() + 10);
-        updatedDestinationInventory.setTotalCostPrice(destinationInventory.getTotalCostPrice() + (5.0 * 10));
-
+        InventoryTransaction transaction = transfer(10);
         BusinessEntity businessEntityFalse = new BusinessEntity("name", "location", "type", false);
         BusinessEntity businessEntityTrue = new BusinessEntity("name", "location", "type", true);
 
-        when(mockProductService.getProductById(1L)).thenReturn(Optional.of(product));
+        when(mockProductService.getProductById(1L)).thenReturn(Optional.of(activeProduct()));
         // Source is external: skip source inventory validation/update.
         when(mockBusinessEntityRepository.findById(101L)).thenReturn(Optional.of(businessEntityTrue));
         // Destination is not external.
         when(mockBusinessEntityRepository.findById(201L)).thenReturn(Optional.of(businessEntityFalse));
-        when(mockInventoryService.getInventoryByProductIdAndBusinessEntityId(1L, 201L))
-                .thenReturn(Optional.of(destinationInventory));
-        when(mockInventoryService.updateInventory(2L, updatedDestinationInventory)).thenReturn(updatedDestinationInventory);
         when(mockInventoryTransactionRepository.save(transaction)).thenReturn(transaction);
 
         // Act
@@ -308,58 +284,29 @@ class InventoryTransactionServiceTest {
 
         // Assert
         assertNotNull(result);
-        assertEquals(1L, result.getProductId());
-        assertEquals(101L, result.getSource());
-        assertEquals(201L, result.getDestination());
         assertEquals(10, result.getQuantity());
-        assertEquals(5.0, result.getCostPricePerUnit(), 0.01);
 
         verify(mockProductService, times(1)).getProductById(1L);
         // Destination inventory update
-        verify(mockInventoryService, times(1)).getInventoryByProductIdAndBusinessEntityId(1L, 201L);
-        verify(mockInventoryService, times(1)).updateInventory(2L, updatedDestinationInventory);
-        // Source inventory should not be fetched/updated since it is external
+        verify(mockInventoryRepository, times(1)).addStock(201L, Map.of(1L, new InventoryDeltaDto(10, 50.0)));
+        // Source inventory should not be touched since it is external
+        verifyNoMoreInteractions(mockInventoryRepository);
         verify(mockInventoryTransactionRepository, times(1)).save(transaction);
     }
 
     @Test
     void testSaveInventoryTransaction_DestinationExternal() {
         // Arrange
-        InventoryTransaction transaction = new InventoryTransaction();
-        transaction.setProductId(1L);
-        transaction.setSource(101L);
-        transaction.setDestination(201L);
-        transaction.setQuantity(10);
-        transaction.setCostPricePerUnit(5.0);
-
-        Product product = new Product();
-        product.setId(1L);
-        product.setActive(true);
-
-        Inventory sourceInventory = new Inventory();
-        sourceInventory.setId(1L);
-        sourceInventory.setProductId(1L);
-        sourceInventory.setBusinessEntityId(101L);
-        sourceInventory.setQuantity(20);
-        sourceInventory.setTotalCostPrice(100.0);
-
-        Inventory updatedSourceInventory = new Inventory();
-        updatedSourceInventory.setId(1L);
-        updatedSourceInventory.setProductId(1L);
-        updatedSourceInventory.setBusinessEntityId(101L);
-        updatedSourceInventory.setQuantity(sourceInventory.getQuantity() - 10);
-        updatedSourceInventory.setTotalCostPrice(sourceInventory.getTotalCostPrice() - (5.0 * 10));
-
+        InventoryTransaction transaction = transfer(10);
         BusinessEntity businessEntityFalse = new BusinessEntity("name", "location", "type", false);
         BusinessEntity businessEntityTrue = new BusinessEntity("name", "location", "type", true);
 
-        when(mockProductService.getProductById(1L)).thenReturn(Optional.of(product));
+        when(mockProductService.getProductById(1L)).thenReturn(Optional.of(activeProduct()));
         // Source is not external.
         when(mockBusinessEntityRepository.findById(101L)).thenReturn(Optional.of(businessEntityFalse));
         // Destination is external: skip destination inventory update.
         when(mockBusinessEntityRepository.findById(201L)).thenReturn(Optional.of(businessEntityTrue));
-        when(mockInventoryService.getInventoryByProductIdAndBusinessEntityId(1L, 101L)).thenReturn(Optional.of(sourceInventory));
-        when(mockInventoryService.updateInventory(1L, updatedSourceInventory)).thenReturn(updatedSourceInventory);
+        when(mockInventoryRepository.deductStock(101L, Map.of(1L, new InventoryDeltaDto(10, 50.0)))).thenReturn(List.of());
         when(mockInventoryTransactionRepository.save(transaction)).thenReturn(transaction);
 
         // Act
@@ -367,36 +314,22 @@ class InventoryTransactionServiceTest {
 
         // Assert
         assertNotNull(result);
-        assertEquals(1L, result.getProductId());
-        assertEquals(101L, result.getSource());
-        assertEquals(201L, result.getDestination());
         assertEquals(10, result.getQuantity());
-        assertEquals(5.0, result.getCostPricePerUnit(), 0.01);
 
         verify(mockProductService, times(1)).getProductById(1L);
-        verify(mockInventoryService, times(1)).getInventoryByProductIdAndBusinessEntityId(1L, 101L);
-        verify(mockInventoryService, times(1)).updateInventory(1L, updatedSourceInventory);
+        verify(mockInventoryRepository, times(1)).deductStock(101L, Map.of(1L, new InventoryDeltaDto(10, 50.0)));
         // Destination inventory calls should not be made.
+        verifyNoMoreInteractions(mockInventoryRepository);
         verify(mockInventoryTransactionRepository, times(1)).save(transaction);
     }
 
     @Test
     void testSaveInventoryTransaction_BothExternal() {
         // Arrange
-        InventoryTransaction transaction = new InventoryTransaction();
-        transaction.setProductId(1L);
-        transaction.setSource(101L);
-        transaction.setDestination(201L);
-        transaction.setQuantity(10);
-        transaction.setCostPricePerUnit(5.0);
-
-        Product product = new Product();
-        product.setId(1L);
-        product.setActive(true);
-
+        InventoryTransaction transaction = transfer(10);
         BusinessEntity businessEntityTrue = new BusinessEntity("name", "location", "type", true);
 
-        when(mockProductService.getProductById(1L)).thenReturn(Optional.of(product));
+        when(mockProductService.getProductById(1L)).thenReturn(Optional.of(activeProduct()));
         // Both source and destination are external; skip inventory modifications.
         when(mockBusinessEntityRepository.findById(101L)).thenReturn(Optional.of(businessEntityTrue));
         when(mockBusinessEntityRepository.findById(201L)).thenReturn(Optional.of(businessEntityTrue));
@@ -407,87 +340,244 @@ class InventoryTransactionServiceTest {
 
         // Assert
         assertNotNull(result);
-        assertEquals(1L, result.getProductId());
-        assertEquals(101L, result.getSource());
-        assertEquals(201L, result.getDestination());
-        assertEquals(10, result.getQuantity());
-        assertEquals(5.0, result.getCostPricePerUnit(), 0.01);
-
         verify(mockProductService, times(1)).getProductById(1L);
-        // No inventory service calls for inventory updates expected.
+        // No inventory updates expected.
+        verifyNoInteractions(mockInventoryRepository);
         verify(mockInventoryTransactionRepository, times(1)).save(transaction);
     }
 
     @Test
-    void testSaveInventoryTransaction_NewDestinationInventory() {
+    void testSaveInventoryTransaction_HotProductMovesThroughSlots() {
         // Arrange
-        InventoryTransaction transaction = new InventoryTransaction();
-        transaction.setProductId(1L);
-        transaction.setSource(101L);
-        transaction.setDestination(201L);
-        transaction.setQuantity(10);
-        transaction.setCostPricePerUnit(5.0);
+        InventoryTransaction transaction = transfer(10);
+        BusinessEntity businessEntity = new BusinessEntity("name", "location", "type", false);
 
-        Product product = new Product();
-        product.setId(1L);
-        product.setActive(true);
+        when(mockProductService.getProductById(1L)).thenReturn(Optional.of(activeProduct()));
+        when(mockBusinessEntityRepository.findById(101L)).thenReturn(Optional.of(businessEntity));
+        when(mockBusinessEntityRepository.findById(201L)).thenReturn(Optional.of(businessEntity));
+        when(mockInventorySlotManager.isHot(new InventoryKey(1L, 101L))).thenReturn(true);
+        when(mockInventorySlotManager.deduct(101L, 1L, 10)).thenReturn(true);
+        when(mockInventoryTransactionRepository.save(transaction)).thenReturn(transaction);
 
-        Inventory sourceInventory = new Inventory();
-        sourceInventory.setId(1L);
-        sourceInventory.setProductId(1L);
-        sourceInventory.setBusinessEntityId(101L);
-        sourceInventory.setQuantity(20);
-        sourceInventory.setTotalCostPrice(100.0);
+        // Act
+        inventoryTransactionService.saveInventoryTransaction(transaction);
 
-        Inventory updatedSourceInventory = new Inventory();
-        updatedSourceInventory.setId(1L);
-        updatedSourceInventory.setProductId(1L);
-        updatedSourceInventory.setBusinessEntityId(101L);
-        updatedSourceInventory.setQuantity(sourceInventory.getQuantity() - 10);
-        updatedSourceInventory.setTotalCostPrice(sourceInventory.getTotalCostPrice() - (5.0 * 10));
+        // Assert: the slots give up the quantity and the row keeps track of the cost price
+        verify(mockInventorySlotManager, times(1)).deduct(101L, 1L, 10);
+        verify(mockInventoryRepository, times(1)).addStock(101L, Map.of(1L, new InventoryDeltaDto(0, -50.0)));
+        verify(mockInventoryRepository, times(1)).addStock(201L, Map.of(1L, new InventoryDeltaDto(10, 50.0)));
+        verifyNoMoreInteractions(mockInventoryRepository);
+    }
 
-        BusinessEntity businessEntityFalse = new BusinessEntity("name", "location", "type", false);
+    @Test
+    void testSaveInventoryTransaction_ShortRowFallsBackToSlots() {
+        // Arrange
+        InventoryTransaction transaction = transfer(10);
+        BusinessEntity businessEntity = new BusinessEntity("name", "location", "type", false);
 
-        when(mockProductService.getProductById(1L)).thenReturn(Optional.of(product));
-        when(mockBusinessEntityRepository.findById(101L)).thenReturn(Optional.of(businessEntityFalse));
-        when(mockBusinessEntityRepository.findById(201L)).thenReturn(Optional.of(businessEntityFalse));
-        when(mockInventoryService.getInventoryByProductIdAndBusinessEntityId(1L, 101L))
-                .thenReturn(Optional.of(sourceInventory));
-        // Destination inventory does not exist.
-        when(mockInventoryService.getInventoryByProductIdAndBusinessEntityId(1L, 201L))
-                .thenReturn(Optional.empty());
-        // Stub saveInventory to return the passed inventory
-        when(mockInventoryService.saveInventory(any(Inventory.class)))
-                .thenAnswer(invocation -> invocation.getArgument(0));
-
-        when(mockInventoryService.updateInventory(1L, updatedSourceInventory))
-                .thenReturn(updatedSourceInventory);
+        when(mockProductService.getProductById(1L)).thenReturn(Optional.of(activeProduct()));
+        when(mockBusinessEntityRepository.findById(101L)).thenReturn(Optional.of(businessEntity));
+        when(mockBusinessEntityRepository.findById(201L)).thenReturn(Optional.of(businessEntity));
+        when(mockInventoryRepository.deductStock(101L, Map.of(1L, new InventoryDeltaDto(10, 50.0)))).thenReturn(List.of(1L));
+        when(mockInventorySlotManager.isEnabled()).thenReturn(true);
+        when(mockInventorySlotManager.deduct(101L, 1L, 10)).thenReturn(true);
         when(mockInventoryTransactionRepository.save(transaction)).thenReturn(transaction);
 
         // Act
-        InventoryTransaction result = inventoryTransactionService.saveInventoryTransaction(transaction);
+        inventoryTransactionService.saveInventoryTransaction(transaction);
+
+        // Assert: another node split the product, so its slots give up the quantity this node's row lacked
+        verify(mockInventorySlotManager, times(1)).deduct(101L, 1L, 10);
+        verify(mockInventoryRepository, times(1)).addStock(101L, Map.of(1L, new InventoryDeltaDto(0, -50.0)));
+        verify(mockInventoryRepository, times(1)).addStock(201L, Map.of(1L, new InventoryDeltaDto(10, 50.0)));
+    }
+
+    @Test
+    void testSaveInventoryTransaction_GoesThroughReservationEngine() {
+        // Arrange
+        InventoryTransaction transaction = transfer(10);
+        BusinessEntity businessEntity = new BusinessEntity("name", "location", "type", false);
+
+        when(mockProductService.getProductById(1L)).thenReturn(Optional.of(activeProduct()));
+        when(mockBusinessEntityRepository.findById(101L)).thenReturn(Optional.of(businessEntity));
+        when(mockBusinessEntityRepository.findById(201L)).thenReturn(Optional.of(businessEntity));
+        when(mockStockReservationEngine.isEnabled()).thenReturn(true);
+        doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(2).run();
+            return null;
+        }).when(mockStockReservationEngine).applyThrough(anyLong(), any(), any(Runnable.class));
+        when(mockInventoryRepository.deductStock(101L, Map.of(1L, new InventoryDeltaDto(10, 50.0)))).thenReturn(List.of());
+        when(mockInventoryTransactionRepository.save(transaction)).thenReturn(transaction);
+
+        // Act
+        inventoryTransactionService.saveInventoryTransaction(transaction);
 
         // Assert
-        assertNotNull(result);
-        assertEquals(1L, result.getProductId());
-        assertEquals(101L, result.getSource());
-        assertEquals(201L, result.getDestination());
-        assertEquals(10, result.getQuantity());
-        assertEquals(5.0, result.getCostPricePerUnit(), 0.01);
+        verify(mockStockReservationEngine).applyThrough(eq(101L), eq(new TreeMap<>(Map.of(1L, -10))), any(Runnable.class));
+        verify(mockStockReservationEngine).applyThrough(eq(201L), eq(new TreeMap<>(Map.of(1L, 10))), any(Runnable.class));
+        verify(mockInventoryRepository, times(1)).deductStock(101L, Map.of(1L, new InventoryDeltaDto(10, 50.0)));
+        verify(mockInventoryRepository, times(1)).addStock(201L, Map.of(1L, new InventoryDeltaDto(10, 50.0)));
+    }
 
-        verify(mockProductService, times(1)).getProductById(1L);
-        verify(mockInventoryService, times(1))
-                .getInventoryByProductIdAndBusinessEntityId(1L, 101L);
-        verify(mockInventoryService, times(1))
-                .updateInventory(1L, updatedSourceInventory);
-        verify(mockInventoryService, times(1))
-                .getInventoryByProductIdAndBusinessEntityId(1L, 201L);
-        verify(mockInventoryService, times(1))
-                .saveInventory(argThat(inv ->
-                        inv.getProductId() == 1L &&
-                        inv.getBusinessEntityId() == 201L &&
-                        inv.getQuantity() == 10 &&
-                        inv.getTotalCostPrice() == 5.0 * 10));
-        verify(mockInventoryTransactionRepository, times(1)).save(transaction);
+    @Test
+    void testSaveInventoryTransactions_NetsLinesPerProductAndBusinessEntity() {
+        // Arrange
+        List<InventoryTransaction> lines = List.of(line(1L, 1L, 2L, 10), line(1L, 1L, 3L, 5), line(1L, 1L, 2L, 5));
+
+        when(mockProductService.getProductsByIds(Set.of(1L))).thenReturn(List.of(activeProduct()));
+        when(mockBusinessEntityRepository.findAllById(Set.of(1L, 2L, 3L)))
+                .thenReturn(List.of(businessEntity(1L, false), businessEntity(2L, false), businessEntity(3L, false)));
+        when(mockInventoryRepository.findRowQuantitiesByProductId(1L, Set.of(1L))).thenReturn(Map.of(1L, 100));
+        when(mockInventoryTransactionRepository.saveAll(lines)).thenReturn(lines);
+
+        // Act
+        List<InventoryTransferResult> results = inventoryTransactionService.saveInventoryTransactions(lines, false);
+
+        // Assert
+        assertTrue(results.stream().allMatch(InventoryTransferResult::isAccepted));
+        InOrder inOrder = inOrder(mockInventoryRepository, mockInventoryTransactionRepository);
+        inOrder.verify(mockInventoryRepository).deductStock(1L, Map.of(1L, new InventoryDeltaDto(20, 100.0)));
+        inOrder.verify(mockInventoryRepository).addStock(2L, Map.of(1L, new InventoryDeltaDto(15, 75.0)));
+        inOrder.verify(mockInventoryRepository).addStock(3L, Map.of(1L, new InventoryDeltaDto(5, 25.0)));
+        inOrder.verify(mockInventoryTransactionRepository).saveAll(lines);
+        verify(mockProductService, never()).getProductById(anyLong());
+        verify(mockBusinessEntityRepository, never()).findById(anyLong());
+    }
+
+    @Test
+    void testSaveInventoryTransactions_StockReceivedByANewStoreCanBeSentOn() {
+        // Arrange
+        InventoryTransaction received = line(1L, 4L, 2L, 10);
+        InventoryTransaction sentOn = line(1L, 2L, 3L, 6);
+        List<InventoryTransaction> lines = List.of(received, sentOn);
+
+        when(mockProductService.getProductsByIds(Set.of(1L))).thenReturn(List.of(activeProduct()));
+        when(mockBusinessEntityRepository.findAllById(Set.of(2L, 3L, 4L))).thenReturn(List.of(
+                businessEntity(2L, false), businessEntity(3L, false), businessEntity(4L, true)));
+        when(mockInventoryRepository.findRowQuantitiesByProductId(2L, Set.of(1L))).thenReturn(Map.of());
+        when(mockInventoryTransactionRepository.saveAll(lines)).thenReturn(lines);
+
+        // Act
+        List<InventoryTransferResult> results = inventoryTransactionService.saveInventoryTransactions(lines, false);
+
+        // Assert
+        assertTrue(results.stream().allMatch(InventoryTransferResult::isAccepted));
+        verify(mockInventoryRepository).addStock(2L, Map.of(1L, new InventoryDeltaDto(4, 20.0)));
+        verify(mockInventoryRepository).addStock(3L, Map.of(1L, new InventoryDeltaDto(6, 30.0)));
+        verify(mockInventoryRepository, never()).deductStock(anyLong(), anyMap());
+    }
+
+    @Test
+    void testSaveInventoryTransactions_RejectsOnlyFailingLines() {
+        // Arrange
+        InventoryTransaction fits = line(1L, 1L, 2L, 8);
+        InventoryTransaction tooMany = line(1L, 1L, 3L, 5);
+        InventoryTransaction unknownProduct = line(9L, 1L, 2L, 1);
+        InventoryTransaction fromSupplier = line(1L, 4L, 3L, 50);
+        List<InventoryTransaction> lines = List.of(fits, tooMany, unknownProduct, fromSupplier);
+
+        when(mockProductService.getProductsByIds(Set.of(1L, 9L))).thenReturn(List.of(activeProduct()));
+        when(mockBusinessEntityRepository.findAllById(Set.of(1L, 2L, 3L, 4L))).thenReturn(List.of(
+                businessEntity(1L, false), businessEntity(2L, false), businessEntity(3L, false), businessEntity(4L, true)));
+        when(mockInventoryRepository.findRowQuantitiesByProductId(1L, Set.of(1L))).thenReturn(Map.of(1L, 10));
+        when(mockInventoryTransactionRepository.saveAll(List.of(fits, fromSupplier))).thenReturn(List.of(fits, fromSupplier));
+
+        // Act
+        List<InventoryTransferResult> results = inventoryTransactionService.saveInventoryTransactions(lines, false);
+
+        // Assert
+        assertSame(fits, results.get(0).transaction());
+        assertEquals(ErrorCodes.INSUFFICIENT_INVENTORY, results.get(1).error().getErrorCode());
+        assertEquals("Not enough quantity in source inventory for product id: 1 and source id: 1. Available: 2, required: 5",
+                results.get(1).error().getMessage());
+        assertEquals(ErrorCodes.NOT_FOUND, results.get(2).error().getErrorCode());
+        assertSame(fromSupplier, results.get(3).transaction());
+        verify(mockInventoryRepository).deductStock(1L, Map.of(1L, new InventoryDeltaDto(8, 40.0)));
+        verify(mockInventoryRepository).addStock(2L, Map.of(1L, new InventoryDeltaDto(8, 40.0)));
+        verify(mockInventoryRepository).addStock(3L, Map.of(1L, new InventoryDeltaDto(50, 250.0)));
+    }
+
+    @Test
+    void testSaveInventoryTransactions_AtomicBatchAppliesNothingWhenALineIsRejected() {
+        // Arrange
+        List<InventoryTransaction> lines = List.of(line(1L, 1L, 2L, 8), line(1L, 1L, 2L, 0));
+
+        when(mockProductService.getProductsByIds(Set.of(1L))).thenReturn(List.of(activeProduct()));
+        when(mockBusinessEntityRepository.findAllById(Set.of(1L, 2L)))
+                .thenReturn(List.of(businessEntity(1L, false), businessEntity(2L, false)));
+        when(mockInventoryRepository.findRowQuantitiesByProductId(1L, Set.of(1L))).thenReturn(Map.of(1L, 10));
+
+        // Act
+        List<InventoryTransferResult> results = inventoryTransactionService.saveInventoryTransactions(lines, true);
+
+        // Assert
+        assertEquals(ErrorCodes.BATCH_REJECTED, results.get(0).error().getErrorCode());
+        assertEquals(ErrorCodes.INVALID_REQUEST, results.get(1).error().getErrorCode());
+        assertEquals("Quantity cannot be negative or zero", results.get(1).error().getMessage());
+        verify(mockInventoryRepository, never()).deductStock(anyLong(), anyMap());
+        verify(mockInventoryRepository, never()).addStock(anyLong(), anyMap());
+        verifyNoInteractions(mockInventoryTransactionRepository);
+    }
+
+    @Test
+    void testSaveInventoryTransactions_StockTakenMeanwhileFailsTheBatch() {
+        // Arrange
+        List<InventoryTransaction> lines = List.of(line(1L, 1L, 2L, 8));
+
+        when(mockProductService.getProductsByIds(Set.of(1L))).thenReturn(List.of(activeProduct()));
+        when(mockBusinessEntityRepository.findAllById(Set.of(1L, 2L)))
+                .thenReturn(List.of(businessEntity(1L, false), businessEntity(2L, false)));
+        when(mockInventoryRepository.findRowQuantitiesByProductId(1L, Set.of(1L))).thenReturn(Map.of(1L, 10));
+        when(mockInventoryRepository.deductStock(1L, Map.of(1L, new InventoryDeltaDto(8, 40.0)))).thenReturn(List.of(1L));
+
+        // Act & Assert
+        BusinessException exception = assertThrows(BusinessException.class,
+                () -> inventoryTransactionService.saveInventoryTransactions(lines, false));
+
+        assertEquals(ErrorCodes.INSUFFICIENT_INVENTORY, exception.getErrorCode());
+        verify(mockInventoryRepository, never()).addStock(anyLong(), anyMap());
+        verifyNoInteractions(mockInventoryTransactionRepository);
+    }
+
+    @Test
+    void testSaveInventoryTransactions_TooManyLines() {
+        ReflectionTestUtils.setField(inventoryTransactionService, "maxBatchLines", 1);
+
+        BusinessException exception = assertThrows(BusinessException.class, () -> inventoryTransactionService
+                .saveInventoryTransactions(List.of(line(1L, 1L, 2L, 1), line(1L, 1L, 2L, 1)), false));
+
+        assertEquals(ErrorCodes.LIMIT_EXCEEDED, exception.getErrorCode());
+        verifyNoInteractions(mockInventoryRepository, mockInventoryTransactionRepository);
+    }
+
+    private static InventoryTransaction line(long productId, long source, long destination, int quantity) {
+        InventoryTransaction transaction = transfer(quantity);
+        transaction.setProductId(productId);
+        transaction.setSource(source);
+        transaction.setDestination(destination);
+        return transaction;
+    }
+
+    private static BusinessEntity businessEntity(long id, boolean external) {
+        BusinessEntity businessEntity = new BusinessEntity("name", "location", "type", external);
+        ReflectionTestUtils.setField(businessEntity, "id", id);
+        return businessEntity;
+    }
+
+    private static InventoryTransaction transfer(int quantity) {
+        InventoryTransaction transaction = new InventoryTransaction();
+        transaction.setProductId(1L);
+        transaction.setSource(101L);
+        transaction.setDestination(201L);
+        transaction.setQuantity(quantity);
+        transaction.setCostPricePerUnit(5.0);
+        return transaction;
+    }
+
+    private static Product activeProduct() {
+        Product product = new Product();
+        product.setId(1L);
+        product.setActive(true);
+        return product;
     }
 }
\ No newline at end of file
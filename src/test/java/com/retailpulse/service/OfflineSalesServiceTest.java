@@ -0,0 +1,110 @@
+package com.retailpulse.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.retailpulse.controller.request.OfflineSaleDto;
+import com.retailpulse.controller.request.SalesDetailsDto;
+import com.retailpulse.controller.request.SalesTransactionRequestDto;
+import com.retailpulse.controller.response.SalesTransactionResponseDto;
+import com.retailpulse.exception.ErrorCodes;
+import com.retailpulse.repository.IdempotencyRecordRepository;
+import com.retailpulse.service.exception.BusinessException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class OfflineSalesServiceTest {
+
+    @Mock
+    private SalesTransactionService salesTransactionService;
+
+    @Mock
+    private IdempotencyRecordRepository idempotencyRecordRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private OfflineSalesService offlineSalesService;
+
+    @BeforeEach
+    public void setUp() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        CheckoutIdempotencyService checkoutIdempotencyService = new CheckoutIdempotencyService(
+                idempotencyRecordRepository, new ObjectMapper(), transactionManager, meterRegistry);
+        offlineSalesService = new OfflineSalesService(salesTransactionService, checkoutIdempotencyService, meterRegistry);
+        ReflectionTestUtils.setField(offlineSalesService, "chunkSize", 2);
+        lenient().when(idempotencyRecordRepository.claim(any(), any(), any(), any())).thenReturn(1);
+    }
+
+    @Test
+    public void testSalesAreWrittenInChunks() {
+        List<List<String>> claimedKeys = new ArrayList<>();
+        when(salesTransactionService.createSalesTransactions(anyList(), anyList())).thenAnswer(invocation -> {
+            List<SalesTransactionRequestDto> chunk = invocation.getArgument(0);
+            List<IdempotencyClaim> claims = invocation.getArgument(1);
+            claimedKeys.add(claims.stream().map(IdempotencyClaim::idempotencyKey).toList());
+            return chunk.stream().map(sale -> CheckoutResult.accepted(response(sale.businessEntityId()))).toList();
+        });
+
+        List<CheckoutResult> results = offlineSalesService.createOfflineSales(offlineSales(5));
+
+        verify(salesTransactionService, times(3)).createSalesTransactions(anyList(), anyList());
+        // Each chunk records the keys of its own sales in its transaction
+        assertEquals(List.of(List.of("till-1-0", "till-1-1"), List.of("till-1-2", "till-1-3"), List.of("till-1-4")), claimedKeys);
+        assertEquals(List.of(0L, 1L, 2L, 3L, 4L), results.stream().map(result -> result.response().businessEntityId()).toList());
+    }
+
+    @Test
+    public void testFailedChunkIsRetriedOneSaleAtATime() {
+        List<OfflineSaleDto> offlineSales = offlineSales(2);
+        when(salesTransactionService.createSalesTransactions(anyList(), anyList()))
+                .thenThrow(new QueryTimeoutException("Lock wait timeout"))
+                .thenReturn(List.of(CheckoutResult.accepted(response(0L))))
+                .thenThrow(new NumberFormatException("Character x is neither a decimal digit number"));
+
+        List<CheckoutResult> results = offlineSalesService.createOfflineSales(offlineSales);
+
+        assertTrue(results.get(0).isAccepted());
+        assertFalse(results.get(1).isAccepted());
+        assertEquals(ErrorCodes.CHECKOUT_FAILED, results.get(1).error().getErrorCode());
+    }
+
+    @Test
+    public void testTooManySalesAreRefused() {
+        ReflectionTestUtils.setField(offlineSalesService, "maxSales", 1);
+
+        BusinessException exception = assertThrows(BusinessException.class,
+                () -> offlineSalesService.createOfflineSales(offlineSales(2)));
+
+        assertEquals(ErrorCodes.LIMIT_EXCEEDED, exception.getErrorCode());
+        verifyNoInteractions(salesTransactionService);
+    }
+
+    // Each sale is made at a different store, so results can be matched to their sale
+    private List<OfflineSaleDto> offlineSales(int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> new OfflineSaleDto("till-1-" + i,
+                        new SalesTransactionRequestDto(i, "9.00", "109.00", List.of(new SalesDetailsDto(1L, 2, "50.00")))))
+                .toList();
+    }
+
+    private SalesTransactionResponseDto response(long businessEntityId) {
+        return new SalesTransactionResponseDto(1L, businessEntityId, "100.00", "GST", "0.09", "9.00", "109.00",
+                List.of(new SalesDetailsDto(1L, 2, "50.00")), "2026-10-18 10:00:00");
+    }
+}
@@ -0,0 +1,107 @@
+package com.retailpulse.service;
+
+import com.retailpulse.entity.Product;
+import com.retailpulse.repository.ProductRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ProductBarcodeIndexTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+    private ProductBarcodeIndex productBarcodeIndex;
+
+    @BeforeEach
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        productBarcodeIndex = new ProductBarcodeIndex(productRepository, meterRegistry);
+    }
+
+    @Test
+    public void testScanIsServedFromIndexBuiltAtStartup() {
+        when(productRepository.findByActiveTrueAndBarcodeIsNotNull()).thenReturn(List.of(product(1L, "8881", true)));
+        productBarcodeIndex.start();
+
+        Optional<Product> found = productBarcodeIndex.find("8881");
+
+        assertEquals(1L, found.orElseThrow().getId());
+        verify(productRepository, never()).findFirstByBarcodeAndActiveTrue(any());
+        assertEquals(1.0, meterRegistry.get("product.barcode.index.size").gauge().value());
+    }
+
+    @Test
+    public void testMissFallsBackToDatabaseOnce() {
+        when(productRepository.findFirstByBarcodeAndActiveTrue("8882")).thenReturn(Optional.of(product(2L, "8882", true)));
+
+        assertTrue(productBarcodeIndex.find("8882").isPresent());
+        assertTrue(productBarcodeIndex.find("8882").isPresent());
+
+        verify(productRepository, times(1)).findFirstByBarcodeAndActiveTrue("8882");
+        assertEquals(1.0, meterRegistry.get("product.barcode.index.misses").counter().count());
+    }
+
+    @Test
+    public void testRefreshMovesChangedBarcodeAndDropsDeletedProduct() {
+        when(productRepository.findByActiveTrueAndBarcodeIsNotNull())
+                .thenReturn(List.of(product(1L, "8881", true), product(2L, "8882", true)));
+        productBarcodeIndex.rebuild();
+
+        productBarcodeIndex.refresh(List.of(product(1L, "9991", true), product(2L, "8882", false)));
+
+        assertEquals(1L, productBarcodeIndex.find("9991").orElseThrow().getId());
+        assertTrue(productBarcodeIndex.find("8881").isEmpty());
+        assertTrue(productBarcodeIndex.find("8882").isEmpty());
+    }
+
+    @Test
+    public void testRefreshInsideTransactionWaitsForCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            productBarcodeIndex.refresh(product(3L, "8883", true));
+            when(productRepository.findFirstByBarcodeAndActiveTrue("8883")).thenReturn(Optional.empty());
+
+            assertTrue(productBarcodeIndex.find("8883").isEmpty());
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+            assertEquals(3L, productBarcodeIndex.find("8883").orElseThrow().getId());
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    public void testCallersCannotChangeIndexedProduct() {
+        when(productRepository.findByActiveTrueAndBarcodeIsNotNull()).thenReturn(List.of(product(1L, "8881", true)));
+        productBarcodeIndex.rebuild();
+
+        productBarcodeIndex.find("8881").orElseThrow().setRrp(99.0);
+
+        assertEquals(1.5, productBarcodeIndex.find("8881").orElseThrow().getRrp());
+    }
+
+    private static Product product(Long id, String barcode, boolean active) {
+        Product product = new Product();
+        product.setId(id);
+        product.setSku("RP" + id);
+        product.setDescription("Product " + id);
+        product.setBarcode(barcode);
+        product.setRrp(1.5);
+        product.setActive(active);
+        return product;
+    }
+}
@@ -0,0 +1,105 @@
+package com.retailpulse.service;
+
+import com.retailpulse.controller.response.ProductSearchResultDto;
+import com.retailpulse.entity.Product;
+import com.retailpulse.repository.ProductRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class ProductSearchIndexTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+    private ProductSearchIndex productSearchIndex;
+
+    @BeforeEach
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        productSearchIndex = new ProductSearchIndex(productRepository, meterRegistry);
+        when(productRepository.findByActiveTrue()).thenReturn(List.of(
+                product(1L, "Green Tea 500g", "Leafy", "Beverages", "888001"),
+                product(2L, "Teapot, Ceramic", "HomeCo", "Kitchen", "888002"),
+                product(3L, "Iced Lemon Tea", "Leafy", "Beverages", "888003"),
+                product(4L, "Dark Roast Coffee", "Bean Co", "Beverages", "888004")));
+        productSearchIndex.start();
+    }
+
+    @Test
+    public void testWholeWordMatchesRankAbovePrefixMatches() {
+        ProductSearchResultDto result = productSearchIndex.search("tea", 0, 10);
+
+        assertEquals(3, result.totalMatches());
+        assertEquals(List.of(1L, 3L, 2L), ids(result));
+    }
+
+    @Test
+    public void testEveryQueryWordMustMatch() {
+        assertEquals(List.of(1L, 3L), ids(productSearchIndex.search("leafy t", 0, 10)));
+        assertEquals(List.of(4L), ids(productSearchIndex.search("bev co", 0, 10)));
+        assertEquals(0, productSearchIndex.search("leafy coffee", 0, 10).totalMatches());
+    }
+
+    @Test
+    public void testSkuAndBarcodeAreSearchable() {
+        assertEquals(List.of(2L), ids(productSearchIndex.search("RP2", 0, 10)));
+        assertEquals(List.of(3L), ids(productSearchIndex.search("888003", 0, 10)));
+    }
+
+    @Test
+    public void testResultsArePaged() {
+        ProductSearchResultDto secondPage = productSearchIndex.search("tea", 1, 2);
+
+        assertEquals(3, secondPage.totalMatches());
+        assertEquals(List.of(2L), ids(secondPage));
+        assertTrue(productSearchIndex.search("tea", 5, 2).products().isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> productSearchIndex.search("tea", 0, 101));
+    }
+
+    @Test
+    public void testRefreshReindexesChangedAndDropsDeletedProducts() {
+        Product renamed = product(4L, "Espresso Beans", "Bean Co", "Beverages", "888004");
+        Product deleted = product(1L, "Green Tea 500g", "Leafy", "Beverages", "888001");
+        deleted.setActive(false);
+
+        productSearchIndex.refresh(List.of(renamed, deleted));
+
+        assertEquals(0, productSearchIndex.search("coffee", 0, 10).totalMatches());
+        assertEquals(List.of(4L), ids(productSearchIndex.search("espresso", 0, 10)));
+        assertEquals(List.of(3L, 2L), ids(productSearchIndex.search("tea", 0, 10)));
+        assertEquals(3.0, meterRegistry.get("product.search.indexed").gauge().value());
+    }
+
+    @Test
+    public void testSearchesAreTimed() {
+        productSearchIndex.search("tea", 0, 10);
+
+        assertEquals(1, meterRegistry.get("product.search").timer().count());
+    }
+
+    private static List<Long> ids(ProductSearchResultDto result) {
+        return result.products().stream().map(Product::getId).toList();
+    }
+
+    private static Product product(Long id, String description, String brand, String category, String barcode) {
+        Product product = new Product();
+        product.setId(id);
+        product.setSku("RP" + id);
+        product.setDescription(description);
+        product.setBrand(brand);
+        product.setCategory(category);
+        product.setBarcode(barcode);
+        return product;
+    }
+}
@@ -4,9 +4,11 @@ import com.retailpulse.entity.Product;
 import com.retailpulse.repository.ProductRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import java.util.List;
 import java.util.Optional;
@@ -26,6 +28,18 @@ public class ProductServiceTest {
     @Mock
     private InventoryService inventoryService;  // Add this
 
+    @Mock
+    private ProductBarcodeIndex productBarcodeIndex;
+
+    @Mock
+    private ProductSearchIndex productSearchIndex;
+
+    @Mock
+    private CacheInvalidationLog cacheInvalidationLog;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
     @InjectMocks
     private ProductService productService;
 
@@ -74,6 +88,18 @@ public class ProductServiceTest {
         assertEquals("RP12345", result.get().getSku());
     }
 
+    @Test
+    void testGetProductByBarcode_UsesIndex() {
+        Product product = new Product();
+        product.setBarcode("888001");
+        when(productBarcodeIndex.find("888001")).thenReturn(Optional.of(product));
+
+        Optional<Product> result = productService.getProductByBarcode("888001");
+
+        assertTrue(result.isPresent());
+        verifyNoInteractions(productRepository);
+    }
+
     @Test
     void testSaveProduct_Success() {
         Product product = new Product();
@@ -87,6 +113,32 @@ public class ProductServiceTest {
         Product result = productService.saveProduct(product);
         assertEquals("RP12345", result.getSku());
         assertNotNull(result.getId()); // Ensure the ID is set
+        verify(productBarcodeIndex).refresh(result);
+        verify(productSearchIndex).refresh(result);
+        verify(cacheInvalidationLog).append("product", 1L);
+        InOrder inOrder = inOrder(skuGeneratorService, transactionManager, productRepository, cacheInvalidationLog);
+        inOrder.verify(skuGeneratorService).generateSKU();
+        inOrder.verify(transactionManager).getTransaction(any());
+        inOrder.verify(productRepository).save(product);
+        inOrder.verify(cacheInvalidationLog).append("product", 1L);
+        inOrder.verify(transactionManager).commit(any());
+    }
+
+    @Test
+    void testSaveProduct_FailedInvalidationEntryRollsBackProduct() {
+        Product product = new Product();
+        when(skuGeneratorService.generateSKU()).thenReturn("RP12345");
+        when(productRepository.save(any(Product.class))).thenAnswer(invocation -> {
+            Product savedProduct = invocation.getArgument(0);
+            savedProduct.setId(1L);
+            return savedProduct;
+        });
+        doThrow(new IllegalStateException("Connection reset")).when(cacheInvalidationLog).append("product", 1L);
+
+        assertThrows(IllegalStateException.class, () -> productService.saveProduct(product));
+
+        verify(transactionManager).rollback(any());
+        verify(transactionManager, never()).commit(any());
     }
 
     @Test
@@ -8,8 +8,23 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
@@ -19,6 +34,9 @@ public class SKUGeneratorServiceTest {
     @Mock
     private SKUCounterRepository skuCounterRepository;
 
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
     @InjectMocks
     private SKUGeneratorService skuGeneratorService;
 
@@ -44,4 +62,58 @@ public class SKUGeneratorServiceTest {
         verify(skuCounterRepository, times(1)).save(any(SKUCounter.class));
         verify(skuCounterRepository, times(1)).getLastInsertedId();
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testBlockModeReservesManySKUsWithOneUpdate() {
+        ReflectionTestUtils.setField(skuGeneratorService, "blockSize", 3);
+        when(skuCounterRepository.findByName("product")).thenReturn(Optional.of(new SKUCounter("product", 0L)));
+        when(skuCounterRepository.getLastInsertedId()).thenReturn(3L, 6L);
+
+        List<String> generatedSKUs = List.of(skuGeneratorService.generateSKU(), skuGeneratorService.generateSKU(),
+                skuGeneratorService.generateSKU(), skuGeneratorService.generateSKU());
+
+        assertEquals(List.of("RP1", "RP2", "RP3", "RP4"), generatedSKUs);
+        // The fourth SKU needed a second block
+        verify(skuCounterRepository, times(2)).incrementAndStoreBy("product", 3);
+        verify(skuCounterRepository, never()).incrementAndStore(any());
+    }
+
+    @Test
+    public void testConcurrentBlockReservationsNeverRepeatASKU() throws Exception {
+        ReflectionTestUtils.setField(skuGeneratorService, "blockSize", 10);
+        AtomicLong counter = new AtomicLong();
+        ThreadLocal<Long> lastInserted = new ThreadLocal<>();
+        when(skuCounterRepository.findByName("product")).thenReturn(Optional.of(new SKUCounter("product", 0L)));
+        doAnswer(invocation -> {
+            lastInserted.set(counter.addAndGet(10));
+            return null;
+        }).when(skuCounterRepository).incrementAndStoreBy("product", 10);
+        when(skuCounterRepository.getLastInsertedId()).thenAnswer(invocation -> lastInserted.get());
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<List<String>>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(() -> IntStream.range(0, 50).mapToObj(j -> skuGeneratorService.generateSKU()).toList()));
+            }
+            Set<String> skus = new HashSet<>();
+            for (Future<List<String>> future : futures) {
+                skus.addAll(future.get(5, TimeUnit.SECONDS));
+            }
+
+            assertEquals(400, skus.size());
+            // A block reserved by a thread that lost the race to replace the exhausted one is kept, not skipped
+            assertTrue(counter.get() <= 400 + 8 * 10);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testGenerateSKUsReservesConsecutiveRange() {
+        when(skuCounterRepository.findByName("product")).thenReturn(Optional.of(new SKUCounter("product", 10L)));
+        when(skuCounterRepository.getLastInsertedId()).thenReturn(15L);
+
+        assertEquals(List.of("RP11", "RP12", "RP13", "RP14", "RP15"), skuGeneratorService.generateSKUs(5));
+        verify(skuCounterRepository, times(1)).incrementAndStoreBy("product", 5);
+    }
+}
@@ -0,0 +1,139 @@
+package com.retailpulse.service;
+
+import com.retailpulse.entity.SalesDetails;
+import com.retailpulse.entity.SalesTax;
+import com.retailpulse.entity.SalesTransactionMemento;
+import com.retailpulse.entity.TaxType;
+import com.retailpulse.exception.ErrorCodes;
+import com.retailpulse.service.exception.BusinessException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class SalesTransactionHistoryTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private SalesTransactionHistory salesTransactionHistory;
+
+    @BeforeEach
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        salesTransactionHistory = new SalesTransactionHistory(meterRegistry, new SuspendedTransactionJournal());
+    }
+
+    @Test
+    public void testSnapshotsAreOrderedAndImmutable() {
+        long first = salesTransactionHistory.nextTransactionId();
+        long second = salesTransactionHistory.nextTransactionId();
+        salesTransactionHistory.addTransaction(1L, memento(second));
+        Map<Long, SalesTransactionMemento> snapshot = salesTransactionHistory.addTransaction(1L, memento(first));
+
+        assertEquals(List.of(first, second), new ArrayList<>(snapshot.keySet()));
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.remove(first));
+
+        salesTransactionHistory.deleteTransaction(1L, first);
+        assertEquals(2, snapshot.size());
+    }
+
+    @Test
+    public void testRestoreFromUnknownStore() {
+        assertEquals(Map.of(), salesTransactionHistory.deleteTransaction(9L, 1L));
+    }
+
+    @Test
+    public void testEmptyStoreIsDropped() {
+        long transactionId = salesTransactionHistory.nextTransactionId();
+        salesTransactionHistory.addTransaction(1L, memento(transactionId));
+        Map<?, ?> stores = (Map<?, ?>) ReflectionTestUtils.getField(salesTransactionHistory, "suspendedTransactions");
+        assertEquals(1, stores.size());
+
+        salesTransactionHistory.deleteTransaction(1L, transactionId);
+
+        assertTrue(stores.isEmpty());
+        assertDoesNotThrow(() -> salesTransactionHistory.addTransaction(1L, memento(salesTransactionHistory.nextTransactionId())));
+        assertEquals(1, salesTransactionHistory.listTransactions(1L).size());
+    }
+
+    @Test
+    public void testPerStoreLimit() {
+        ReflectionTestUtils.setField(salesTransactionHistory, "maxPerStore", 1);
+        salesTransactionHistory.addTransaction(1L, memento(salesTransactionHistory.nextTransactionId()));
+
+        BusinessException exception = assertThrows(BusinessException.class, () ->
+                salesTransactionHistory.addTransaction(1L, memento(salesTransactionHistory.nextTransactionId())));
+
+        assertEquals(ErrorCodes.LIMIT_EXCEEDED, exception.getErrorCode());
+        assertDoesNotThrow(() -> salesTransactionHistory.addTransaction(2L, memento(salesTransactionHistory.nextTransactionId())));
+        assertEquals(1.0, meterRegistry.counter("suspended.transactions.rejected").count());
+    }
+
+    @Test
+    public void testGlobalLimitMakesRoomByDroppingExpired() {
+        ReflectionTestUtils.setField(salesTransactionHistory, "maxTotal", 1);
+        salesTransactionHistory.addTransaction(1L, memento(salesTransactionHistory.nextTransactionId()));
+        assertThrows(BusinessException.class, () ->
+                salesTransactionHistory.addTransaction(2L, memento(salesTransactionHistory.nextTransactionId())));
+
+        ReflectionTestUtils.setField(salesTransactionHistory, "ttlMs", -1L);
+        salesTransactionHistory.addTransaction(2L, memento(salesTransactionHistory.nextTransactionId()));
+
+        assertEquals(1.0, meterRegistry.counter("suspended.transactions.expired").count());
+    }
+
+    @Test
+    public void testExpiredTransactionIsJournaled() {
+        SuspendedTransactionJournal journal = mock(SuspendedTransactionJournal.class);
+        when(journal.isEnabled()).thenReturn(true);
+        salesTransactionHistory = new SalesTransactionHistory(meterRegistry, journal);
+        long transactionId = salesTransactionHistory.nextTransactionId();
+        salesTransactionHistory.addTransaction(1L, memento(transactionId));
+        ReflectionTestUtils.setField(salesTransactionHistory, "ttlMs", -1L);
+
+        salesTransactionHistory.evictExpired();
+
+        verify(journal).recordDelete(1L, transactionId);
+    }
+
+    @Test
+    public void testConcurrentSuspendsKeepEveryTransaction() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            futures.add(executor.submit(() -> {
+                long id = salesTransactionHistory.nextTransactionId();
+                ids.add(id);
+                // Callers stream their snapshot while other tills keep suspending
+                salesTransactionHistory.addTransaction(1L, memento(id)).values().forEach(SalesTransactionMemento::transactionId);
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        assertEquals(40, ids.size());
+        assertEquals(40, salesTransactionHistory.deleteTransaction(1L, -1L).size());
+        assertEquals(40.0, meterRegistry.get("suspended.transactions").gauge().value());
+    }
+
+    private SalesTransactionMemento memento(long transactionId) {
+        return new SalesTransactionMemento(transactionId, 1L, new SalesTax(TaxType.GST, new BigDecimal("0.09")),
+                List.of(new SalesDetails(1L, 2, new BigDecimal("50.00"))), Instant.now());
+    }
+}
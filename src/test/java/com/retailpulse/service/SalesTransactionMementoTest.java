@@ -3,27 +3,34 @@ package com.retailpulse.service;
 import com.retailpulse.controller.request.SalesDetailsDto;
 import com.retailpulse.controller.request.SuspendedTransactionDto;
 import com.retailpulse.controller.response.TransientSalesTransactionDto;
+import com.retailpulse.entity.SalesDetails;
 import com.retailpulse.entity.SalesTax;
+import com.retailpulse.entity.SalesTransaction;
+import com.retailpulse.entity.SalesTransactionMemento;
 import com.retailpulse.entity.TaxType;
-import com.retailpulse.repository.SalesTaxRepository;
 import com.retailpulse.repository.SalesTransactionRepository;
+import com.retailpulse.util.DateUtil;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.openjdk.jol.info.GraphLayout;
 
 import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.mockito.ArgumentMatchers.any;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
 public class SalesTransactionMementoTest {
 
     @Mock
-    private SalesTaxRepository salesTaxRepository;
+    private TaxRuleEngine taxRuleEngine;
 
     @Mock
     private SalesTransactionRepository salesTransactionRepository;
@@ -41,11 +48,11 @@ public class SalesTransactionMementoTest {
 
         SuspendedTransactionDto suspendedTransactionDto = new SuspendedTransactionDto(1L, salesDetailsDtos);
 
-        when(salesTaxRepository.save(any(SalesTax.class))).thenReturn(new SalesTax(TaxType.GST, new BigDecimal("0.09")));
+        when(taxRuleEngine.currentRule(1L, TaxType.GST)).thenReturn(new SalesTax(TaxType.GST, new BigDecimal("0.09")));
 
-        SalesTransactionHistory salesTransactionHistory = new SalesTransactionHistory();
+        SalesTransactionHistory salesTransactionHistory = new SalesTransactionHistory(new SimpleMeterRegistry(), new SuspendedTransactionJournal());
         SalesTransactionService salesTransactionService = new SalesTransactionService(
-            salesTransactionRepository, salesTaxRepository, salesTransactionHistory, stockUpdateService
+            salesTransactionRepository, taxRuleEngine, salesTransactionHistory, stockUpdateService, null
         );
 
         // Act: Suspend the transaction
@@ -63,4 +70,51 @@ public class SalesTransactionMementoTest {
         assertEquals(0, remainingTransactions.size(), "All transactions should be restored, leaving none suspended");
     }
 
+    @Test
+    public void testMementoRoundTrip() {
+        SalesTransaction salesTransaction = new SalesTransaction(1L, new SalesTax(TaxType.GST, new BigDecimal("0.09")));
+        salesTransaction.addSalesDetails(List.of(
+                new SalesDetails(1L, 2, new BigDecimal("50.0")),
+                new SalesDetails(2L, 3, new BigDecimal("19.995"))));
+
+        SalesTransaction restored = new SalesTransaction(1L, new SalesTax(TaxType.GST, BigDecimal.ZERO))
+                .restoreFromMemento(salesTransaction.saveToMemento(7L));
+
+        assertEquals(7L, restored.getId());
+        assertEquals(new BigDecimal("0.09"), restored.getSalesTax().getTaxRate());
+        assertEquals(List.of("50.0", "19.995"), restored.getSalesDetailEntities().stream()
+                .map(salesDetails -> salesDetails.getSalesPricePerUnit().toString()).toList());
+        assertEquals(salesTransaction.getTotal(), restored.getTotal());
+    }
+
+    @Test
+    public void testCompactMementoFootprint() {
+        List<SalesDetails> lines = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            lines.add(new SalesDetails((long) i, i % 4 + 1, new BigDecimal("12.95").add(BigDecimal.valueOf(i))));
+        }
+        SalesTransaction salesTransaction = new SalesTransaction(1L, new SalesTax(TaxType.GST, new BigDecimal("0.09")));
+        salesTransaction.addSalesDetails(lines);
+
+        // The string-based shape the memento used to have
+        StringMemento stringMemento = new StringMemento(1L, 1L,
+                salesTransaction.getSubtotal().toPlainString(), "GST", "0.09",
+                salesTransaction.getSalesTaxAmount().toPlainString(), salesTransaction.getTotal().toPlainString(),
+                lines.stream().map(line -> new SalesDetailsDto(line.getProductId(), line.getQuantity(),
+                        line.getSalesPricePerUnit().toString())).toList(),
+                DateUtil.convertInstantToString(Instant.now(), DateUtil.DATE_TIME_FORMAT));
+        SalesTransactionMemento compactMemento = salesTransaction.saveToMemento(1L);
+
+        // Lets JOL measure records, whose field offsets Unsafe does not hand out
+        System.setProperty("jol.magicFieldOffset", "true");
+        long stringBytes = GraphLayout.parseInstance(stringMemento).totalSize();
+        long compactBytes = GraphLayout.parseInstance(compactMemento).totalSize();
+        assertTrue(compactBytes < stringBytes / 2,
+                () -> "compact memento takes " + compactBytes + " bytes, not under half of the string form's " + stringBytes);
+    }
+
+    private record StringMemento(Long transactionId, Long businessEntityId, String subTotal, String taxType,
+                                 String taxRate, String taxAmount, String totalAmount,
+                                 List<SalesDetailsDto> salesDetails, String transactionDateTime) {
+    }
 }
@@ -0,0 +1,97 @@
+package com.retailpulse.service;
+
+import com.retailpulse.controller.request.SalesDetailsDto;
+import com.retailpulse.controller.request.SalesTransactionRequestDto;
+import com.retailpulse.entity.SalesDetails;
+import com.retailpulse.entity.SalesTax;
+import com.retailpulse.entity.SalesTransaction;
+import com.retailpulse.entity.TaxType;
+import com.retailpulse.repository.InventoryRepositoryTest;
+import com.retailpulse.repository.SalesTaxRepository;
+import com.retailpulse.repository.SalesTransactionRepository;
+import jakarta.persistence.EntityManager;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Checks that sales are written with JDBC batches: the statements sent by the checkout and group checkout paths of
+ * {@link SalesTransactionService} stay flat as lines and sales grow. Every collaborator but the sales repository is
+ * mocked; the batched stock updates are covered by {@link InventoryRepositoryTest}.
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+public class SalesTransactionServiceBatchingTest {
+
+    @Autowired
+    private SalesTransactionRepository salesTransactionRepository;
+
+    @Autowired
+    private SalesTaxRepository salesTaxRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private Statistics statistics;
+    private SalesTransactionService salesTransactionService;
+
+    @BeforeEach
+    public void setUp() {
+        SalesTax salesTax = salesTaxRepository.saveAndFlush(new SalesTax(TaxType.GST, new BigDecimal("0.09")));
+        TaxRuleEngine taxRuleEngine = mock(TaxRuleEngine.class);
+        when(taxRuleEngine.currentRule(1L, TaxType.GST)).thenReturn(salesTax);
+        salesTransactionService = new SalesTransactionService(salesTransactionRepository, taxRuleEngine,
+                mock(SuspendedTransactionStore.class), mock(StockUpdateService.class), mock(CheckoutIdempotencyService.class));
+        statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        // Allocate the first id blocks up front, so only the writes of the sales themselves are counted
+        SalesTransaction first = new SalesTransaction(1L, salesTax);
+        first.addSalesDetails(List.of(new SalesDetails(1L, 2, new BigDecimal("19.95"))));
+        salesTransactionRepository.saveAndFlush(first);
+        statistics.clear();
+    }
+
+    @Test
+    public void testCheckoutOfManyLinesIsBatched() {
+        salesTransactionService.createSalesTransaction(request(40));
+        // The commit of the checkout's transaction
+        entityManager.flush();
+
+        assertEquals(41, statistics.getEntityInsertCount());
+        // One INSERT per table instead of one per row
+        assertTrue(statistics.getPrepareStatementCount() <= 2,
+                "Expected batched inserts, got " + statistics.getPrepareStatementCount() + " statements");
+    }
+
+    @Test
+    public void testGroupOfSalesIsBatched() {
+        List<CheckoutResult> results = salesTransactionService.createSalesTransactions(
+                IntStream.range(0, 20).mapToObj(i -> request(5)).toList());
+        entityManager.flush();
+
+        assertTrue(results.stream().allMatch(CheckoutResult::isAccepted));
+        assertEquals(120, statistics.getEntityInsertCount());
+        // One batch of sales, two of lines, and two more id blocks for the lines
+        assertTrue(statistics.getPrepareStatementCount() <= 10,
+                "Expected batched inserts, got " + statistics.getPrepareStatementCount() + " statements");
+    }
+
+    private static SalesTransactionRequestDto request(int lines) {
+        return new SalesTransactionRequestDto(1L, "0.00", "0.00", IntStream.rangeClosed(1, lines)
+                .mapToObj(productId -> new SalesDetailsDto((long) productId, 2, "19.95"))
+                .toList());
+    }
+}
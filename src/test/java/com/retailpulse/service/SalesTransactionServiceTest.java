@@ -8,8 +8,9 @@ import com.retailpulse.entity.SalesDetails;
 import com.retailpulse.entity.SalesTax;
 import com.retailpulse.entity.SalesTransaction;
 import com.retailpulse.entity.TaxType;
-import com.retailpulse.repository.SalesTaxRepository;
+import com.retailpulse.exception.ErrorCodes;
 import com.retailpulse.repository.SalesTransactionRepository;
+import com.retailpulse.service.exception.BusinessException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -20,11 +21,16 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import java.lang.reflect.Field;
 import java.math.BigDecimal;
 import java.time.Instant;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.TreeMap;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -34,11 +40,14 @@ public class SalesTransactionServiceTest {
     private SalesTransactionRepository salesTransactionRepository;
 
     @Mock
-    private SalesTaxRepository salesTaxRepository;
+    private TaxRuleEngine taxRuleEngine;
 
     @Mock
     private StockUpdateService stockUpdateService;
 
+    @Mock
+    private CheckoutIdempotencyService checkoutIdempotencyService;
+
     @InjectMocks
     private SalesTransactionService salesTransactionService;
 
@@ -64,9 +73,9 @@ public class SalesTransactionServiceTest {
 
     @Test
     public void testCreateSalesTransaction() {
-        when(salesTaxRepository.save(any(SalesTax.class))).thenReturn(dummySalesTax);
+        when(taxRuleEngine.currentRule(1L, TaxType.GST)).thenReturn(dummySalesTax);
         // Mock repository save() method using thenAnswer()
-        when(salesTransactionRepository.save(any(SalesTransaction.class))).thenAnswer(invocation -> {
+        when(salesTransactionRepository.saveAndFlush(any(SalesTransaction.class))).thenAnswer(invocation -> {
             SalesTransaction arg = invocation.getArgument(0);
             setPrivateField(arg, "id", 1L);   // Simulate auto-generated ID
             setPrivateField(arg, "transactionDate", Instant.now());
@@ -76,12 +85,69 @@ public class SalesTransactionServiceTest {
         SalesTransactionResponseDto responseDto = salesTransactionService.createSalesTransaction(salesTransactionRequestDto);
 
         verify(stockUpdateService, times(1)).deductStock(any(SalesTransaction.class));
-        verify(salesTransactionRepository, times(1)).save(any(SalesTransaction.class));
+        verify(salesTransactionRepository, times(1)).saveAndFlush(any(SalesTransaction.class));
         assertEquals(TaxType.GST.name(), responseDto.taxType());
         assertEquals(salesTransactionRequestDto.totalAmount(), responseDto.totalAmount());
         assertEquals(salesTransactionRequestDto.taxAmount(), responseDto.taxAmount());
     }
 
+    @Test
+    public void testCreateSalesTransactionsRejectsOnlyTheShortSale() {
+        when(taxRuleEngine.currentRule(1L, TaxType.GST)).thenReturn(dummySalesTax);
+        when(salesTransactionRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<SalesTransaction> saved = invocation.getArgument(0);
+            saved.forEach(transaction -> {
+                setPrivateField(transaction, "id", 1L);
+                setPrivateField(transaction, "transactionDate", Instant.now());
+            });
+            return saved;
+        });
+        BusinessException shortStock = new BusinessException(ErrorCodes.INSUFFICIENT_INVENTORY, "Insufficient stock for product id: 1");
+        when(stockUpdateService.deductStockForGroup(anyList())).thenAnswer(invocation -> {
+            List<SalesTransaction> group = invocation.getArgument(0);
+            return Map.of(group.get(1), shortStock);
+        });
+
+        List<CheckoutResult> results = salesTransactionService.createSalesTransactions(
+                List.of(salesTransactionRequestDto, salesTransactionRequestDto, salesTransactionRequestDto));
+
+        assertEquals(3, results.size());
+        assertTrue(results.get(0).isAccepted());
+        assertEquals(shortStock, results.get(1).error());
+        assertTrue(results.get(2).isAccepted());
+        assertEquals("1308.00", results.get(2).response().totalAmount());
+        // One write for the whole group, without the rejected sale
+        verify(salesTransactionRepository, times(1)).saveAll(argThat(saved -> ((List<?>) saved).size() == 2));
+        verify(salesTransactionRepository, never()).saveAndFlush(any(SalesTransaction.class));
+    }
+
+    @Test
+    public void testCreateSalesTransactionsRecordsOnlyCreatedSalesWithClaims() {
+        when(taxRuleEngine.currentRule(1L, TaxType.GST)).thenReturn(dummySalesTax);
+        when(salesTransactionRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<SalesTransaction> saved = invocation.getArgument(0);
+            saved.forEach(transaction -> {
+                setPrivateField(transaction, "id", 1L);
+                setPrivateField(transaction, "transactionDate", Instant.now());
+            });
+            return saved;
+        });
+        BusinessException shortStock = new BusinessException(ErrorCodes.INSUFFICIENT_INVENTORY, "Insufficient stock for product id: 1");
+        when(stockUpdateService.deductStockForGroup(anyList())).thenAnswer(invocation -> {
+            List<SalesTransaction> group = invocation.getArgument(0);
+            return Map.of(group.get(1), shortStock);
+        });
+        IdempotencyClaim accepted = new IdempotencyClaim("till-3-0001", "attempt-1");
+        IdempotencyClaim rejected = new IdempotencyClaim("till-3-0002", "attempt-2");
+
+        List<CheckoutResult> results = salesTransactionService.createSalesTransactions(
+                List.of(salesTransactionRequestDto, salesTransactionRequestDto, salesTransactionRequestDto),
+                Arrays.asList(accepted, rejected, null));
+
+        verify(checkoutIdempotencyService).complete(accepted, results.get(0).response());
+        verifyNoMoreInteractions(checkoutIdempotencyService);
+    }
+
     @Test
     public void testUpdateSalesTransaction() {
         SalesDetailsDto newDetail = new SalesDetailsDto(1L, 5, "50.0");
@@ -93,8 +159,10 @@ public class SalesTransactionServiceTest {
 
         SalesTransactionResponseDto salesTransactionResponseDto = salesTransactionService.updateSalesTransaction(1L, newDetails);
 
-        verify(stockUpdateService, times(1)).addStock(any(SalesTransaction.class));
-        verify(stockUpdateService, times(1)).deductStock(any(SalesTransaction.class));
+        // Only the per-product difference moves stock: 3 more of product 1, products 2 and 3 returned in full
+        verify(stockUpdateService, times(1)).applyQuantityChanges(dummySalesTransaction, new TreeMap<>(Map.of(1L, 3, 2L, -3, 3L, -4)));
+        verify(stockUpdateService, never()).addStock(any(SalesTransaction.class));
+        verify(stockUpdateService, never()).deductStock(any(SalesTransaction.class));
         // Verify that the sales details were saved
         verify(salesTransactionRepository, times(1)).saveAndFlush(any(SalesTransaction.class));
 
@@ -105,11 +173,37 @@ public class SalesTransactionServiceTest {
 
     }
 
+    @Test
+    public void testUpdateSalesTransactionAmendsMatchingLinesInPlace() {
+        SalesDetails product1Line = dummySalesTransaction.getSalesDetailEntities().get(0);
+        SalesDetails product2Line = dummySalesTransaction.getSalesDetailEntities().get(1);
+        List<SalesDetailsDto> newDetails = List.of(
+                new SalesDetailsDto(1L, 2, "50.00"),
+                new SalesDetailsDto(2L, 5, "100.0"),
+                new SalesDetailsDto(4L, 1, "10.0"));
+
+        setPrivateField(dummySalesTransaction, "id", 1L);
+        setPrivateField(dummySalesTransaction, "transactionDate", Instant.now());
+        when(salesTransactionRepository.findById(1L)).thenReturn(Optional.of(dummySalesTransaction));
+
+        salesTransactionService.updateSalesTransaction(1L, newDetails);
+
+        List<SalesDetails> lines = dummySalesTransaction.getSalesDetailEntities();
+        assertEquals(3, lines.size());
+        // Unchanged and amended lines keep their entities; product 3 is removed and product 4 added
+        assertSame(product1Line, lines.get(0));
+        assertEquals(new BigDecimal("50.0"), product1Line.getSalesPricePerUnit());
+        assertSame(product2Line, lines.get(1));
+        assertEquals(5, product2Line.getQuantity());
+        assertEquals(4L, lines.get(2).getProductId());
+        verify(stockUpdateService).applyQuantityChanges(dummySalesTransaction, new TreeMap<>(Map.of(2L, 2, 3L, -4, 4L, 1)));
+    }
+
     @Test
     public void testCalculateSalesTax() {
-        when(salesTaxRepository.save(any(SalesTax.class))).thenReturn(dummySalesTax);
+        when(taxRuleEngine.currentRule(null, TaxType.GST)).thenReturn(dummySalesTax);
 
-        TaxResultDto taxResultDto = salesTransactionService.calculateSalesTax(salesDetailsDtos);
+        TaxResultDto taxResultDto = salesTransactionService.calculateSalesTax(salesDetailsDtos, null);
 
         assertEquals("GST", taxResultDto.taxType());
         assertEquals("0.09", taxResultDto.taxRate());
@@ -0,0 +1,209 @@
+package com.retailpulse.service;
+
+import com.retailpulse.DTO.PendingStockDto;
+import com.retailpulse.entity.SalesDetails;
+import com.retailpulse.entity.SalesTax;
+import com.retailpulse.entity.SalesTransaction;
+import com.retailpulse.entity.TaxType;
+import com.retailpulse.exception.ErrorCodes;
+import com.retailpulse.repository.InventoryRepository;
+import com.retailpulse.repository.SalesTransactionRepository;
+import com.retailpulse.service.exception.BusinessException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class StockReservationEngineTest {
+
+    @Mock
+    private InventoryRepository inventoryRepository;
+
+    @Mock
+    private SalesTransactionRepository salesTransactionRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private StockReservationEngine stockReservationEngine;
+
+    @BeforeEach
+    public void setUp() {
+        stockReservationEngine = new StockReservationEngine(inventoryRepository, salesTransactionRepository,
+                transactionManager, new SimpleMeterRegistry());
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    @Test
+    public void testReserveAdmitsUntilStockRunsOut() {
+        when(inventoryRepository.findQuantitiesByProductId(eq(1L), anyCollection())).thenReturn(Map.of(1L, 5));
+
+        SalesTransaction first = sale(1L, 3);
+        stockReservationEngine.reserve(first, quantities(1L, 3));
+
+        BusinessException exception = assertThrows(BusinessException.class, () ->
+                stockReservationEngine.reserve(sale(1L, 3), quantities(1L, 3)));
+
+        assertEquals(ErrorCodes.INSUFFICIENT_INVENTORY, exception.getErrorCode());
+        assertEquals("Insufficient stock for product id: 1", exception.getMessage());
+        assertTrue(first.isStockPending());
+        // The counter is loaded once and the table is not written at checkout
+        verify(inventoryRepository, times(1)).findQuantitiesByProductId(eq(1L), anyCollection());
+        verify(inventoryRepository, never()).addQuantities(anyLong(), anyMap());
+    }
+
+    @Test
+    public void testRollbackReleasesReservation() {
+        when(inventoryRepository.findQuantitiesByProductId(eq(1L), anyCollection())).thenReturn(Map.of(1L, 5));
+
+        stockReservationEngine.reserve(sale(1L, 5), quantities(1L, 5));
+        completeTransaction(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        assertDoesNotThrow(() -> stockReservationEngine.reserve(sale(1L, 5), quantities(1L, 5)));
+    }
+
+    @Test
+    public void testNotFoundInventoryWhenReserve() {
+        when(inventoryRepository.findQuantitiesByProductId(eq(1L), anyCollection())).thenReturn(Map.of());
+
+        BusinessException exception = assertThrows(BusinessException.class, () ->
+                stockReservationEngine.reserve(sale(1L, 1), quantities(1L, 1)));
+
+        assertEquals(ErrorCodes.NOT_FOUND, exception.getErrorCode());
+        assertEquals("Inventory not found for product id: 1", exception.getMessage());
+    }
+
+    @Test
+    public void testFlushWritesCommittedDeltasAndClearsPendingSales() {
+        when(inventoryRepository.findQuantitiesByProductId(eq(1L), anyCollection())).thenReturn(Map.of(1L, 5), Map.of(1L, 3));
+
+        SalesTransaction salesTransaction = sale(1L, 2);
+        stockReservationEngine.reserve(salesTransaction, quantities(1L, 2));
+        ReflectionTestUtils.setField(salesTransaction, "id", 10L);
+        completeTransaction(TransactionSynchronization.STATUS_COMMITTED);
+
+        stockReservationEngine.flush();
+
+        verify(inventoryRepository).addQuantities(1L, Map.of(1L, -2));
+        verify(salesTransactionRepository).clearStockPending(List.of(10L));
+
+        // The flushed delta is not written a second time
+        stockReservationEngine.flush();
+        verify(inventoryRepository, times(1)).addQuantities(anyLong(), anyMap());
+    }
+
+    @Test
+    public void testFailedFlushKeepsDeltasForNextFlush() {
+        when(inventoryRepository.findQuantitiesByProductId(eq(1L), anyCollection())).thenReturn(Map.of(1L, 5));
+        when(inventoryRepository.addQuantities(1L, Map.of(1L, -2)))
+                .thenThrow(new IllegalStateException("connection lost"))
+                .thenReturn(List.of());
+
+        SalesTransaction salesTransaction = sale(1L, 2);
+        stockReservationEngine.reserve(salesTransaction, quantities(1L, 2));
+        ReflectionTestUtils.setField(salesTransaction, "id", 10L);
+        completeTransaction(TransactionSynchronization.STATUS_COMMITTED);
+
+        stockReservationEngine.flush();
+        stockReservationEngine.flush();
+
+        verify(inventoryRepository, times(2)).addQuantities(1L, Map.of(1L, -2));
+        verify(salesTransactionRepository, times(1)).clearStockPending(List.of(10L));
+    }
+
+    @Test
+    public void testSettleWritesPendingSaleInCallersTransaction() {
+        when(inventoryRepository.findQuantitiesByProductId(eq(1L), anyCollection())).thenReturn(Map.of(1L, 5));
+
+        SalesTransaction salesTransaction = sale(1L, 2);
+        stockReservationEngine.reserve(salesTransaction, quantities(1L, 2));
+        ReflectionTestUtils.setField(salesTransaction, "id", 10L);
+        completeTransaction(TransactionSynchronization.STATUS_COMMITTED);
+
+        stockReservationEngine.settle(salesTransaction);
+        completeTransaction(TransactionSynchronization.STATUS_COMMITTED);
+
+        verify(inventoryRepository).addQuantities(1L, Map.of(1L, -2));
+        verifyNoInteractions(transactionManager);
+
+        // The settled sale is neither written again nor cleared by the next flush
+        stockReservationEngine.flush();
+        verify(inventoryRepository, times(1)).addQuantities(anyLong(), anyMap());
+        verify(salesTransactionRepository, never()).clearStockPending(anyCollection());
+        assertDoesNotThrow(() -> stockReservationEngine.reserve(sale(1L, 3), quantities(1L, 3)));
+    }
+
+    @Test
+    public void testApplyThroughFollowsCommittedDatabaseWrite() {
+        when(inventoryRepository.findQuantitiesByProductId(eq(1L), anyCollection())).thenReturn(Map.of(1L, 5));
+        Runnable databaseWrite = mock(Runnable.class);
+
+        stockReservationEngine.applyThrough(1L, quantities(1L, -5), databaseWrite);
+        completeTransaction(TransactionSynchronization.STATUS_COMMITTED);
+
+        verify(databaseWrite).run();
+        assertThrows(BusinessException.class, () -> stockReservationEngine.reserve(sale(1L, 1), quantities(1L, 1)));
+    }
+
+    @Test
+    public void testRecoverPendingSales() {
+        when(salesTransactionRepository.sumPendingStock()).thenReturn(List.of(new PendingStockDto(1L, 1L, 4L)));
+        when(salesTransactionRepository.clearAllStockPending()).thenReturn(2);
+
+        stockReservationEngine.recoverPendingSales();
+
+        verify(inventoryRepository).addQuantities(1L, Map.of(1L, -4));
+        verify(salesTransactionRepository).clearAllStockPending();
+    }
+
+    @Test
+    public void testReserveOutsideTransaction() {
+        TransactionSynchronizationManager.clearSynchronization();
+
+        assertThrows(IllegalStateException.class, () -> stockReservationEngine.reserve(sale(1L, 1), quantities(1L, 1)));
+
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    private void completeTransaction(int status) {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        synchronizations.forEach(synchronization -> synchronization.afterCompletion(status));
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    private SalesTransaction sale(Long productId, int quantity) {
+        SalesTransaction salesTransaction = new SalesTransaction(1L, new SalesTax(TaxType.GST, new BigDecimal("0.09")));
+        salesTransaction.addSalesDetails(new SalesDetails(productId, quantity, new BigDecimal("10.00")));
+        return salesTransaction;
+    }
+
+    private TreeMap<Long, Integer> quantities(Long productId, int quantity) {
+        return new TreeMap<>(Map.of(productId, quantity));
+    }
+}
@@ -0,0 +1,264 @@
+package com.retailpulse.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.retailpulse.DTO.InventoryDeltaDto;
+import com.retailpulse.controller.response.StockTakeErrorDto;
+import com.retailpulse.controller.response.StockTakeSummaryDto;
+import com.retailpulse.entity.BusinessEntity;
+import com.retailpulse.entity.InventoryTransaction;
+import com.retailpulse.entity.Product;
+import com.retailpulse.exception.ErrorCodes;
+import com.retailpulse.repository.BusinessEntityRepository;
+import com.retailpulse.repository.InventoryRepository;
+import com.retailpulse.repository.InventoryRepositoryCustom.StockLevelHandler;
+import com.retailpulse.repository.InventoryTransactionRepository;
+import com.retailpulse.service.exception.BusinessException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.SortedMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class StockTakeServiceTest {
+
+    private static final long STORE_ID = 1L;
+    private static final long ADJUSTMENT_ID = 99L;
+
+    @Mock
+    private InventoryRepository inventoryRepository;
+
+    @Mock
+    private InventoryTransactionRepository inventoryTransactionRepository;
+
+    @Mock
+    private BusinessEntityRepository businessEntityRepository;
+
+    @Mock
+    private ProductService productService;
+
+    @Mock
+    private InventorySlotManager inventorySlotManager;
+
+    @Mock
+    private StockReservationEngine stockReservationEngine;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private StockTakeService stockTakeService;
+
+    @BeforeEach
+    public void setUp() {
+        stockTakeService = new StockTakeService(inventoryRepository, inventoryTransactionRepository, businessEntityRepository,
+                productService, inventorySlotManager, stockReservationEngine, new ObjectMapper(), transactionManager);
+        ReflectionTestUtils.setField(stockTakeService, "adjustmentBusinessEntityId", ADJUSTMENT_ID);
+        lenient().when(businessEntityRepository.findById(STORE_ID)).thenReturn(Optional.of(businessEntity(STORE_ID, false)));
+        lenient().when(businessEntityRepository.findById(ADJUSTMENT_ID)).thenReturn(Optional.of(businessEntity(ADJUSTMENT_ID, true)));
+        // Product 1: 10 at 2.00, product 2: 5 at 2.00, product 3: 4 at 2.00
+        lenient().doAnswer(invocation -> {
+            StockLevelHandler handler = invocation.getArgument(1);
+            handler.accept(1L, 10, 20.0);
+            handler.accept(2L, 5, 10.0);
+            handler.accept(3L, 4, 8.0);
+            return null;
+        }).when(inventoryRepository).readStockLevels(eq(STORE_ID), any());
+    }
+
+    @Test
+    public void testFullCountTakesUncountedProductsAsZero() {
+        StockTakeSummaryDto summary = stockTakeService.applyStockTake(STORE_ID, json("""
+                [{"productId": 1, "quantity": 7},
+                 {"productId": 2, "quantity": 3},
+                 {"productId": 2, "quantity": 2}]
+                """), false);
+
+        verify(inventoryRepository).deductStock(STORE_ID, Map.of(
+                1L, new InventoryDeltaDto(3, 6.0),
+                3L, new InventoryDeltaDto(4, 8.0)));
+        verify(inventoryRepository, never()).addStock(anyLong(), any());
+        List<InventoryTransaction> adjustments = savedAdjustments();
+        assertEquals(2, adjustments.size());
+        assertEquals(STORE_ID, adjustments.get(0).getSource());
+        assertEquals(ADJUSTMENT_ID, adjustments.get(0).getDestination());
+        assertEquals(3, adjustments.get(0).getQuantity());
+        assertEquals(2.0, adjustments.get(0).getCostPricePerUnit(), 0.001);
+
+        assertEquals(3, summary.linesRead());
+        assertEquals(2, summary.productsCounted());
+        assertEquals(2, summary.productsAdjusted());
+        assertEquals(7, summary.unitsShort());
+        assertEquals(14.0, summary.costShort(), 0.001);
+        assertEquals(3L, summary.largestVariances().get(0).productId());
+    }
+
+    @Test
+    public void testPartialCountOnlyAdjustsCountedProducts() {
+        Product product = new Product();
+        product.setId(9L);
+        when(productService.getProductsByIds(List.of(9L))).thenReturn(List.of(product));
+
+        StockTakeSummaryDto summary = stockTakeService.applyStockTake(STORE_ID, json("""
+                [{"productId": 2, "quantity": 6}, {"productId": 9, "quantity": 2, "note": {"shelf": "A3"}}]
+                """), true);
+
+        verify(inventoryRepository).addStock(STORE_ID, Map.of(
+                2L, new InventoryDeltaDto(1, 2.0),
+                9L, new InventoryDeltaDto(2, 0.0)));
+        List<InventoryTransaction> adjustments = savedAdjustments();
+        assertEquals(ADJUSTMENT_ID, adjustments.get(1).getSource());
+        assertEquals(STORE_ID, adjustments.get(1).getDestination());
+        assertEquals(3, summary.unitsOver());
+        assertEquals(0, summary.unitsShort());
+    }
+
+    @Test
+    public void testInvalidLinesAreReportedAndSkipped() {
+        when(productService.getProductsByIds(List.of(8L))).thenReturn(List.of());
+
+        StockTakeSummaryDto summary = stockTakeService.applyStockTake(STORE_ID, json("""
+                [{"quantity": 1}, {"productId": 1, "quantity": -2}, {"productId": 1, "quantity": 10},
+                 {"productId": 8, "quantity": 1}]
+                """), true);
+
+        verify(inventoryRepository, never()).addStock(anyLong(), any());
+        assertEquals(4, summary.linesRead());
+        assertEquals(3, summary.linesRejected());
+        assertEquals(List.of(1, 2, 4), summary.errors().stream().map(StockTakeErrorDto::line).toList());
+        assertEquals(0, summary.productsAdjusted());
+    }
+
+    @Test
+    public void testFailedChunkIsReportedAndOthersPosted() {
+        ReflectionTestUtils.setField(stockTakeService, "chunkSize", 1);
+        when(inventoryRepository.deductStock(STORE_ID, Map.of(1L, new InventoryDeltaDto(1, 2.0))))
+                .thenThrow(new IllegalStateException("Lock wait timeout"));
+
+        StockTakeSummaryDto summary = stockTakeService.applyStockTake(STORE_ID, json("""
+                [{"productId": 1, "quantity": 9}, {"productId": 2, "quantity": 4}]
+                """), true);
+
+        verify(inventoryRepository).deductStock(STORE_ID, Map.of(2L, new InventoryDeltaDto(1, 2.0)));
+        assertEquals(1, summary.productsAdjusted());
+        assertEquals(1, summary.errors().get(0).line());
+    }
+
+    @Test
+    public void testShortfallTheRowCannotCoverComesOutOfSlots() {
+        when(inventoryRepository.deductStock(STORE_ID, Map.of(1L, new InventoryDeltaDto(3, 6.0)))).thenReturn(List.of(1L));
+        when(inventorySlotManager.isEnabled()).thenReturn(true);
+        when(inventorySlotManager.deduct(STORE_ID, 1L, 3)).thenReturn(true);
+
+        StockTakeSummaryDto summary = stockTakeService.applyStockTake(STORE_ID, json("""
+                [{"productId": 1, "quantity": 7}]
+                """), true);
+
+        verify(inventoryRepository).addStock(STORE_ID, Map.of(1L, new InventoryDeltaDto(0, -6.0)));
+        assertEquals(1, savedAdjustments().size());
+        assertEquals(1, summary.productsAdjusted());
+        assertEquals(3, summary.unitsShort());
+    }
+
+    @Test
+    public void testProductBelowTheShortfallIsRejectedAndOthersPosted() {
+        when(inventoryRepository.deductStock(STORE_ID, Map.of(
+                1L, new InventoryDeltaDto(3, 6.0),
+                3L, new InventoryDeltaDto(4, 8.0)))).thenReturn(List.of(1L));
+        when(inventoryRepository.deductStock(STORE_ID, Map.of(1L, new InventoryDeltaDto(3, 6.0)))).thenReturn(List.of(1L));
+
+        StockTakeSummaryDto summary = stockTakeService.applyStockTake(STORE_ID, json("""
+                [{"productId": 1, "quantity": 7}, {"productId": 3, "quantity": 0}]
+                """), true);
+
+        verify(inventoryRepository).deductStock(STORE_ID, Map.of(3L, new InventoryDeltaDto(4, 8.0)));
+        List<InventoryTransaction> adjustments = savedAdjustments();
+        assertEquals(1, adjustments.size());
+        assertEquals(3L, adjustments.get(0).getProductId());
+        assertEquals(1, summary.productsAdjusted());
+        assertEquals(List.of(new StockTakeErrorDto(1,
+                "Could not be adjusted: Stock of product id: 1 has fallen below the shortfall counted; count it again")), summary.errors());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testAdjustmentsGoThroughReservationEngine() {
+        when(stockReservationEngine.isEnabled()).thenReturn(true);
+        doAnswer(invocation -> {
+            invocation.getArgument(2, Runnable.class).run();
+            return null;
+        }).when(stockReservationEngine).applyThrough(eq(STORE_ID), any(), any());
+
+        stockTakeService.applyStockTake(STORE_ID, json("""
+                [{"productId": 1, "quantity": 7}, {"productId": 2, "quantity": 6}]
+                """), true);
+
+        ArgumentCaptor<SortedMap<Long, Integer>> captor = ArgumentCaptor.forClass(SortedMap.class);
+        verify(stockReservationEngine).applyThrough(eq(STORE_ID), captor.capture(), any());
+        assertEquals(Map.of(1L, -3, 2L, 1), captor.getValue());
+        verify(inventoryRepository).deductStock(STORE_ID, Map.of(1L, new InventoryDeltaDto(3, 6.0)));
+        verify(inventoryRepository).addStock(STORE_ID, Map.of(2L, new InventoryDeltaDto(1, 2.0)));
+    }
+
+    @Test
+    public void testCountOverflowingAnIntIsRejected() {
+        StockTakeSummaryDto summary = stockTakeService.applyStockTake(STORE_ID, json("""
+                [{"productId": 2, "quantity": 2147483647}, {"productId": 2, "quantity": 1}]
+                """), true);
+
+        assertEquals(List.of(new StockTakeErrorDto(2, "Total quantity counted for product id: 2 exceeds 2147483647")),
+                summary.errors());
+        verify(inventoryRepository).addStock(STORE_ID, Map.of(2L, new InventoryDeltaDto(2147483642, 4294967284.0)));
+    }
+
+    @Test
+    public void testAdjustmentEntityMustBeExternal() {
+        when(businessEntityRepository.findById(ADJUSTMENT_ID)).thenReturn(Optional.of(businessEntity(ADJUSTMENT_ID, false)));
+
+        BusinessException exception = assertThrows(BusinessException.class,
+                () -> stockTakeService.applyStockTake(STORE_ID, json("[]"), false));
+
+        assertEquals(ErrorCodes.INVALID_REQUEST, exception.getErrorCode());
+        verifyNoInteractions(inventoryRepository);
+    }
+
+    @Test
+    public void testContentMustBeJsonArray() {
+        assertThrows(IllegalArgumentException.class,
+                () -> stockTakeService.applyStockTake(STORE_ID, json("{\"productId\": 1}"), false));
+        assertThrows(IllegalArgumentException.class,
+                () -> stockTakeService.applyStockTake(STORE_ID, json("[{\"productId\": 1, \"quantity\": 1}, 5]"), false));
+        verify(inventoryRepository, never()).addStock(anyLong(), any());
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<InventoryTransaction> savedAdjustments() {
+        ArgumentCaptor<List<InventoryTransaction>> captor = ArgumentCaptor.forClass(List.class);
+        verify(inventoryTransactionRepository).saveAll(captor.capture());
+        return captor.getValue();
+    }
+
+    private static BusinessEntity businessEntity(long id, boolean external) {
+        BusinessEntity businessEntity = new BusinessEntity("Entity " + id, "Downtown", external ? "SUPPLIER" : "SHOP", external);
+        businessEntity.setId(id);
+        return businessEntity;
+    }
+
+    private static InputStream json(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -7,17 +7,23 @@ import com.retailpulse.service.exception.BusinessException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.math.BigDecimal;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyCollection;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -26,6 +32,15 @@ public class StockUpdateServiceTest {
     @Mock
     private InventoryRepository inventoryRepository;
 
+    @Mock
+    private InventoryLockManager inventoryLockManager;
+
+    @Mock
+    private StockReservationEngine stockReservationEngine;
+
+    @Mock
+    private InventorySlotManager inventorySlotManager;
+
     @InjectMocks
     private StockUpdateService stockUpdateService;
 
@@ -45,38 +60,57 @@ public class StockUpdateServiceTest {
 
     @Test
     public void testDeductStock() {
-        Inventory dummyInventory = new Inventory();
-        dummyInventory.setQuantity(10);
+        when(inventoryRepository.findRowQuantitiesByProductId(eq(1L), anyCollection())).thenReturn(Map.of(1L, 10, 2L, 10, 3L, 10));
+        when(inventoryRepository.deductQuantities(eq(1L), anyMap())).thenReturn(List.of());
 
-        when(inventoryRepository.findByProductIdAndBusinessEntityId(anyLong(), anyLong())).thenReturn(Optional.of(dummyInventory));
+        stockUpdateService.deductStock(dummySalesTransaction);
+
+        // One keyed read and one batch of conditional updates for the whole basket
+        verify(inventoryRepository, times(1)).findRowQuantitiesByProductId(eq(1L), anyCollection());
+        verify(inventoryRepository, times(1)).deductQuantities(1L, Map.of(1L, 2, 2L, 3, 3L, 4));
+        verify(inventoryRepository, never()).save(any(Inventory.class));
+    }
+
+    @Test
+    public void testDeductStockMergesDuplicateProductLines() {
+        dummySalesTransaction.addSalesDetails(new SalesDetails(1L, 5, new BigDecimal("50.0")));
+        when(inventoryRepository.findRowQuantitiesByProductId(eq(1L), anyCollection())).thenReturn(Map.of(1L, 10, 2L, 10, 3L, 10));
+        when(inventoryRepository.deductQuantities(eq(1L), anyMap())).thenReturn(List.of());
 
         stockUpdateService.deductStock(dummySalesTransaction);
 
-        // Verify that the inventory quantity was updated correctly
-        assertEquals(10 - dummySalesTransaction.getSalesDetailEntities().stream().mapToInt(SalesDetails::getQuantity).sum(), dummyInventory.getQuantity());
-        verify(inventoryRepository, times(3)).save(dummyInventory);
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Map<Long, Integer>> captor = ArgumentCaptor.forClass(Map.class);
+        verify(inventoryRepository).deductQuantities(eq(1L), captor.capture());
+        assertEquals(List.of(1L, 2L, 3L), List.copyOf(captor.getValue().keySet()));
+        assertEquals(7, captor.getValue().get(1L));
     }
 
     @Test
     public void testAddStock() {
-        Inventory dummyInventory = new Inventory();
-        dummyInventory.setQuantity(10);
-
-        when(inventoryRepository.findByProductIdAndBusinessEntityId(anyLong(), anyLong())).thenReturn(Optional.of(dummyInventory));
+        when(inventoryRepository.addQuantities(eq(1L), anyMap())).thenReturn(List.of());
 
         stockUpdateService.addStock(dummySalesTransaction);
 
-        // Verify that the inventory quantity was updated correctly
-        assertEquals(10 + dummySalesTransaction.getSalesDetailEntities().stream().mapToInt(SalesDetails::getQuantity).sum(), dummyInventory.getQuantity());
-        verify(inventoryRepository, times(3)).save(dummyInventory);
+        verify(inventoryRepository, times(1)).addQuantities(1L, Map.of(1L, 2, 2L, 3, 3L, 4));
+        verify(inventoryRepository, never()).findRowQuantitiesByProductId(anyLong(), anyCollection());
     }
 
     @Test
-    public void testInsufficientStockWhenDeductStock() {
-        Inventory dummyInventory = new Inventory();
-        dummyInventory.setQuantity(1);
+    public void testNotFoundInventoryWhenAddStock() {
+        when(inventoryRepository.addQuantities(eq(1L), anyMap())).thenReturn(List.of(2L));
 
-        when(inventoryRepository.findByProductIdAndBusinessEntityId(anyLong(), anyLong())).thenReturn(Optional.of(dummyInventory));
+        BusinessException exception = assertThrows(BusinessException.class, () -> {
+            stockUpdateService.addStock(dummySalesTransaction);
+        });
+
+        assertEquals("Inventory not found for product id: 2", exception.getMessage());
+        assertEquals(ErrorCodes.NOT_FOUND, exception.getErrorCode());
+    }
+
+    @Test
+    public void testInsufficientStockWhenDeductStock() {
+        when(inventoryRepository.findRowQuantitiesByProductId(eq(1L), anyCollection())).thenReturn(Map.of(1L, 1, 2L, 10, 3L, 10));
 
         // Expect an exception to be thrown
         BusinessException exception = assertThrows(BusinessException.class, () -> {
@@ -85,18 +119,189 @@ public class StockUpdateServiceTest {
 
         assertEquals("Insufficient stock for product id: 1", exception.getMessage());
         assertEquals(ErrorCodes.INSUFFICIENT_INVENTORY, exception.getErrorCode());
+        verify(inventoryRepository, never()).deductQuantities(anyLong(), anyMap());
+    }
+
+    @Test
+    public void testInsufficientStockReportsEveryShortProduct() {
+        when(inventoryRepository.findRowQuantitiesByProductId(eq(1L), anyCollection())).thenReturn(Map.of(1L, 1, 2L, 10, 3L, 3));
+
+        BusinessException exception = assertThrows(BusinessException.class, () -> {
+            stockUpdateService.deductStock(dummySalesTransaction);
+        });
+
+        assertEquals("Insufficient stock for product id: 1, 3", exception.getMessage());
+        assertEquals(ErrorCodes.INSUFFICIENT_INVENTORY, exception.getErrorCode());
+    }
+
+    @Test
+    public void testConcurrentSaleFailsConditionalUpdate() {
+        when(inventoryRepository.findRowQuantitiesByProductId(eq(1L), anyCollection())).thenReturn(Map.of(1L, 10, 2L, 10, 3L, 10));
+        when(inventoryRepository.deductQuantities(eq(1L), anyMap())).thenReturn(List.of(2L));
+
+        BusinessException exception = assertThrows(BusinessException.class, () -> {
+            stockUpdateService.deductStock(dummySalesTransaction);
+        });
+
+        assertEquals("Insufficient stock for product id: 2", exception.getMessage());
+        assertEquals(ErrorCodes.INSUFFICIENT_INVENTORY, exception.getErrorCode());
+    }
+
+    @Test
+    public void testDeductStockWithPessimisticLocking() {
+        Inventory inventory1 = inventory(1L, 10);
+        Inventory inventory2 = inventory(2L, 10);
+        Inventory inventory3 = inventory(3L, 10);
+        when(inventoryLockManager.isPessimistic()).thenReturn(true);
+        when(inventoryLockManager.lockBasketRows(eq(1L), anyCollection())).thenReturn(List.of(inventory1, inventory2, inventory3));
+
+        stockUpdateService.deductStock(dummySalesTransaction);
+
+        assertEquals(8, inventory1.getQuantity());
+        assertEquals(7, inventory2.getQuantity());
+        assertEquals(6, inventory3.getQuantity());
+        verify(inventoryRepository, never()).deductQuantities(anyLong(), anyMap());
+    }
+
+    @Test
+    public void testInsufficientStockWithPessimisticLocking() {
+        Inventory inventory1 = inventory(1L, 10);
+        Inventory inventory2 = inventory(2L, 1);
+        Inventory inventory3 = inventory(3L, 10);
+        when(inventoryLockManager.isPessimistic()).thenReturn(true);
+        when(inventoryLockManager.lockBasketRows(eq(1L), anyCollection())).thenReturn(List.of(inventory1, inventory2, inventory3));
+
+        BusinessException exception = assertThrows(BusinessException.class, () -> {
+            stockUpdateService.deductStock(dummySalesTransaction);
+        });
+
+        assertEquals("Insufficient stock for product id: 2", exception.getMessage());
+        // Nothing is changed when any line is short
+        assertEquals(10, inventory1.getQuantity());
+    }
+
+    @Test
+    public void testAddStockWithPessimisticLocking() {
+        Inventory inventory1 = inventory(1L, 10);
+        Inventory inventory2 = inventory(2L, 10);
+        Inventory inventory3 = inventory(3L, 10);
+        when(inventoryLockManager.isPessimistic()).thenReturn(true);
+        when(inventoryLockManager.lockBasketRows(eq(1L), anyCollection())).thenReturn(List.of(inventory1, inventory2, inventory3));
+
+        stockUpdateService.addStock(dummySalesTransaction);
+
+        assertEquals(12, inventory1.getQuantity());
+        assertEquals(13, inventory2.getQuantity());
+        assertEquals(14, inventory3.getQuantity());
+        verify(inventoryRepository, never()).addQuantities(anyLong(), anyMap());
+    }
+
+    @Test
+    public void testDeductStockReservesNewSaleWhenEngineEnabled() {
+        when(stockReservationEngine.isEnabled()).thenReturn(true);
+
+        stockUpdateService.deductStock(dummySalesTransaction);
+
+        verify(stockReservationEngine).reserve(dummySalesTransaction, new TreeMap<>(Map.of(1L, 2, 2L, 3, 3L, 4)));
+        verifyNoInteractions(inventoryRepository);
+    }
+
+    @Test
+    public void testDeductStockRoutesHotProductsToSlots() {
+        when(inventorySlotManager.isEnabled()).thenReturn(true);
+        when(inventorySlotManager.isHot(any(InventoryKey.class))).thenAnswer(invocation ->
+                invocation.<InventoryKey>getArgument(0).productId() == 2L);
+        when(inventoryRepository.findQuantitiesByProductId(eq(1L), anyCollection())).thenReturn(Map.of(1L, 10, 3L, 10));
+        when(inventoryRepository.deductQuantities(eq(1L), anyMap())).thenReturn(List.of());
+        when(inventorySlotManager.deduct(1L, 2L, 3)).thenReturn(false);
+
+        BusinessException exception = assertThrows(BusinessException.class, () -> {
+            stockUpdateService.deductStock(dummySalesTransaction);
+        });
+
+        assertEquals("Insufficient stock for product id: 2", exception.getMessage());
+        verify(inventoryRepository).deductQuantities(1L, new TreeMap<>(Map.of(1L, 2, 3L, 4)));
+    }
+
+    @Test
+    public void testShortRowFallsBackToSlotsSplitElsewhere() {
+        when(inventorySlotManager.isEnabled()).thenReturn(true);
+        when(inventoryRepository.findQuantitiesByProductId(eq(1L), anyCollection())).thenReturn(Map.of(1L, 10, 2L, 10, 3L, 10));
+        when(inventoryRepository.deductQuantities(eq(1L), anyMap())).thenReturn(List.of(2L));
+        when(inventorySlotManager.deduct(1L, 2L, 3)).thenReturn(true);
+
+        stockUpdateService.deductStock(dummySalesTransaction);
+
+        // Product 2 is not hot on this node, but its row fell short while its slots still held the stock
+        verify(inventorySlotManager).deduct(1L, 2L, 3);
+        verify(inventoryRepository, never()).findRowQuantitiesByProductId(anyLong(), anyCollection());
+    }
+
+    @Test
+    public void testDeductStockForGroupRejectsOnlyTheShortSale() {
+        SalesTransaction second = new SalesTransaction(1L, new SalesTax(TaxType.GST, new BigDecimal("0.09")));
+        second.addSalesDetails(new SalesDetails(1L, 5, new BigDecimal("50.0")));
+        SalesTransaction third = new SalesTransaction(1L, new SalesTax(TaxType.GST, new BigDecimal("0.09")));
+        third.addSalesDetails(new SalesDetails(1L, 3, new BigDecimal("50.0")));
+        // The first sale takes 2 of product 1, leaving 4: the second sale is short, the third still fits
+        when(inventoryRepository.findRowQuantitiesByProductId(eq(1L), anyCollection())).thenReturn(Map.of(1L, 6, 2L, 10, 3L, 10));
+        when(inventoryRepository.deductQuantities(eq(1L), anyMap())).thenReturn(List.of());
+
+        Map<SalesTransaction, BusinessException> rejected = stockUpdateService.deductStockForGroup(List.of(dummySalesTransaction, second, third));
+
+        assertEquals(Set.of(second), rejected.keySet());
+        assertEquals("Insufficient stock for product id: 1", rejected.get(second).getMessage());
+        // One keyed read and one deduction for the accepted lines of the whole group
+        verify(inventoryRepository, times(1)).findRowQuantitiesByProductId(eq(1L), anyCollection());
+        verify(inventoryRepository, times(1)).deductQuantities(1L, new TreeMap<>(Map.of(1L, 5, 2L, 3, 3L, 4)));
+    }
+
+    @Test
+    public void testApplyQuantityChangesTouchesOnlyChangedProducts() {
+        when(inventoryRepository.findRowQuantitiesByProductId(1L, Set.of(1L))).thenReturn(Map.of(1L, 10));
+        when(inventoryRepository.applyQuantityDeltas(eq(1L), anyMap())).thenReturn(List.of());
+
+        stockUpdateService.applyQuantityChanges(dummySalesTransaction, new TreeMap<>(Map.of(1L, 3, 2L, 0, 3L, -4)));
+
+        // The return and the deduction go out as one batch in product id order
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Map<Long, Integer>> deltas = ArgumentCaptor.forClass(Map.class);
+        verify(inventoryRepository, times(1)).applyQuantityDeltas(eq(1L), deltas.capture());
+        assertEquals(List.of(1L, 3L), List.copyOf(deltas.getValue().keySet()));
+        assertEquals(Map.of(1L, -3, 3L, 4), deltas.getValue());
+        verify(inventoryRepository, never()).addQuantities(anyLong(), anyMap());
+        verify(inventoryRepository, never()).deductQuantities(anyLong(), anyMap());
+    }
+
+    @Test
+    public void testApplyQuantityChangesReportsShortDeduction() {
+        when(inventoryRepository.findRowQuantitiesByProductId(1L, Set.of(1L))).thenReturn(Map.of(1L, 10));
+        when(inventoryRepository.applyQuantityDeltas(eq(1L), anyMap())).thenReturn(List.of(1L));
+
+        BusinessException exception = assertThrows(BusinessException.class, () ->
+                stockUpdateService.applyQuantityChanges(dummySalesTransaction, new TreeMap<>(Map.of(1L, 3, 3L, -4))));
+
+        assertEquals("Insufficient stock for product id: 1", exception.getMessage());
     }
 
     @Test
     public void testNotFoundInventoryWhenDeductStock() {
-        when(inventoryRepository.findByProductIdAndBusinessEntityId(anyLong(), anyLong())).thenReturn(Optional.empty());
+        when(inventoryRepository.findRowQuantitiesByProductId(eq(1L), anyCollection())).thenReturn(Map.of());
 
         // Expect an exception to be thrown
         BusinessException exception = assertThrows(BusinessException.class, () -> {
             stockUpdateService.deductStock(dummySalesTransaction);
         });
 
-        assertEquals("Inventory not found for product id: 1", exception.getMessage());
+        assertEquals("Inventory not found for product id: 1, 2, 3", exception.getMessage());
         assertEquals(ErrorCodes.NOT_FOUND, exception.getErrorCode());
     }
-}
\ No newline at end of file
+
+    private Inventory inventory(Long productId, int quantity) {
+        Inventory inventory = new Inventory();
+        inventory.setProductId(productId);
+        inventory.setBusinessEntityId(1L);
+        inventory.setQuantity(quantity);
+        return inventory;
+    }
+}
@@ -0,0 +1,109 @@
+package com.retailpulse.service;
+
+import com.retailpulse.entity.SalesDetails;
+import com.retailpulse.entity.SalesTax;
+import com.retailpulse.entity.SalesTransactionMemento;
+import com.retailpulse.entity.TaxType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SuspendedTransactionJournalTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testSuspendedTransactionsSurviveRestart() {
+        SalesTransactionHistory history = startHistory(4096);
+        long kept = history.nextTransactionId();
+        long restored = history.nextTransactionId();
+        history.addTransaction(1L, memento(kept, 1L));
+        history.addTransaction(2L, memento(restored, 2L));
+        history.deleteTransaction(2L, restored);
+        history.stop();
+
+        SalesTransactionHistory restartedHistory = startHistory(4096);
+
+        assertEquals(List.of(kept), List.copyOf(restartedHistory.deleteTransaction(1L, -1L).keySet()));
+        assertEquals(List.of(), List.copyOf(restartedHistory.deleteTransaction(2L, -1L).keySet()));
+        assertEquals("19.95", restartedHistory.deleteTransaction(1L, -1L).get(kept).salesDetails().get(0).getSalesPricePerUnit().toString());
+        // New ids continue after the recovered ones
+        assertTrue(restartedHistory.nextTransactionId() > restored);
+        restartedHistory.stop();
+    }
+
+    @Test
+    public void testFullJournalIsCompacted() {
+        // Room for only a few records, so the journal has to compact repeatedly
+        SalesTransactionHistory history = startHistory(400);
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            long id = history.nextTransactionId();
+            history.addTransaction(1L, memento(id, 1L));
+            if (i % 2 == 0) {
+                history.deleteTransaction(1L, id);
+            } else {
+                ids.add(id);
+            }
+        }
+        history.stop();
+
+        assertEquals(ids, List.copyOf(startHistory(400).deleteTransaction(1L, -1L).keySet()));
+    }
+
+    @Test
+    public void testTornTailIsIgnored() throws IOException {
+        SuspendedTransactionJournal journal = journal(4096);
+        journal.open(List::of);
+        journal.recordAdd(memento(1L, 1L));
+        journal.recordAdd(memento(2L, 1L));
+        journal.close();
+
+        // Corrupt the last byte of the second record, as if the process died while writing it
+        int firstRecordBytes = 4 + 8 + 1 + memento(1L, 1L).encodedSize() + 4;
+        int secondRecordEnd = 2 * firstRecordBytes;
+        try (FileChannel channel = FileChannel.open(directory.resolve("journal.bin"), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer lastByte = ByteBuffer.allocate(1);
+            channel.read(lastByte, secondRecordEnd - 1);
+            channel.write(ByteBuffer.wrap(new byte[]{(byte) ~lastByte.get(0)}), secondRecordEnd - 1);
+        }
+
+        Collection<SalesTransactionMemento> recovered = journal(4096).open(List::of);
+
+        assertEquals(List.of(1L), recovered.stream().map(SalesTransactionMemento::transactionId).toList());
+    }
+
+    private SalesTransactionHistory startHistory(int journalBytes) {
+        SalesTransactionHistory history = new SalesTransactionHistory(new SimpleMeterRegistry(), journal(journalBytes));
+        history.start();
+        return history;
+    }
+
+    private SuspendedTransactionJournal journal(int journalBytes) {
+        SuspendedTransactionJournal journal = new SuspendedTransactionJournal();
+        ReflectionTestUtils.setField(journal, "enabled", true);
+        ReflectionTestUtils.setField(journal, "directory", directory.toString());
+        ReflectionTestUtils.setField(journal, "sizeBytes", journalBytes);
+        return journal;
+    }
+
+    private SalesTransactionMemento memento(long transactionId, long businessEntityId) {
+        return new SalesTransactionMemento(transactionId, businessEntityId, new SalesTax(TaxType.GST, new BigDecimal("0.09")),
+                List.of(new SalesDetails(1L, 2, new BigDecimal("19.95"))), Instant.now());
+    }
+}
@@ -0,0 +1,103 @@
+package com.retailpulse.service;
+
+import com.retailpulse.entity.SalesTax;
+import com.retailpulse.entity.TaxType;
+import com.retailpulse.exception.ErrorCodes;
+import com.retailpulse.repository.SalesTaxRepository;
+import com.retailpulse.service.exception.BusinessException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class TaxRuleEngineTest {
+
+    @Mock
+    private SalesTaxRepository salesTaxRepository;
+
+    @Mock
+    private CacheInvalidationLog cacheInvalidationLog;
+
+    private TaxRuleEngine taxRuleEngine;
+
+    @BeforeEach
+    public void setUp() {
+        taxRuleEngine = new TaxRuleEngine(salesTaxRepository, cacheInvalidationLog, new SimpleMeterRegistry());
+    }
+
+    @Test
+    public void testStoreRuleOverridesDefaultRule() {
+        when(salesTaxRepository.findAll()).thenReturn(List.of(
+                new SalesTax(TaxType.GST, new BigDecimal("0.09")),
+                new SalesTax(TaxType.GST, new BigDecimal("0.07"), 2L, null, null)));
+
+        assertEquals(new BigDecimal("0.07"), taxRuleEngine.currentRule(2L, TaxType.GST).getTaxRate());
+        assertEquals(new BigDecimal("0.09"), taxRuleEngine.currentRule(3L, TaxType.GST).getTaxRate());
+        assertEquals(new BigDecimal("0.09"), taxRuleEngine.currentRule(null, TaxType.GST).getTaxRate());
+        // The rules are read once, not per lookup
+        verify(salesTaxRepository, times(1)).findAll();
+    }
+
+    @Test
+    public void testLatestRuleInEffectApplies() {
+        Instant now = Instant.now();
+        when(salesTaxRepository.findAll()).thenReturn(List.of(
+                new SalesTax(TaxType.GST, new BigDecimal("0.08"), null, null, null),
+                new SalesTax(TaxType.GST, new BigDecimal("0.09"), null, now.minus(Duration.ofDays(1)), null),
+                new SalesTax(TaxType.GST, new BigDecimal("0.10"), null, now.plus(Duration.ofDays(1)), null),
+                new SalesTax(TaxType.GST, new BigDecimal("0.05"), 2L, null, now.minus(Duration.ofHours(1)))));
+
+        assertEquals(new BigDecimal("0.09"), taxRuleEngine.currentRule(null, TaxType.GST).getTaxRate());
+        // The store's expired rule no longer applies, so the store falls back to the default
+        assertEquals(new BigDecimal("0.09"), taxRuleEngine.currentRule(2L, TaxType.GST).getTaxRate());
+    }
+
+    @Test
+    public void testNoRuleInEffect() {
+        when(salesTaxRepository.findAll()).thenReturn(List.of(
+                new SalesTax(TaxType.GST, new BigDecimal("0.09"), null, Instant.now().plus(Duration.ofDays(1)), null)));
+
+        BusinessException exception = assertThrows(BusinessException.class, () -> taxRuleEngine.currentRule(1L, TaxType.GST));
+
+        assertEquals(ErrorCodes.NOT_FOUND, exception.getErrorCode());
+        assertEquals("No GST rate in effect for business entity id: 1", exception.getMessage());
+    }
+
+    @Test
+    public void testReloadSeedsGstWhenMissing() {
+        SalesTax seeded = new SalesTax(TaxType.GST, new BigDecimal("0.09"));
+        ReflectionTestUtils.setField(seeded, "id", 5L);
+        when(salesTaxRepository.findAll()).thenReturn(List.of(), List.of(seeded));
+        when(salesTaxRepository.save(any(SalesTax.class))).thenReturn(seeded);
+
+        assertSame(seeded, taxRuleEngine.currentRule(1L, TaxType.GST));
+        verify(cacheInvalidationLog).append("sales_tax", 5L);
+    }
+
+    @Test
+    public void testReloadSwapsInNewRates() {
+        when(salesTaxRepository.findAll()).thenReturn(
+                List.of(new SalesTax(TaxType.GST, new BigDecimal("0.08"))),
+                List.of(new SalesTax(TaxType.GST, new BigDecimal("0.09"))));
+
+        assertEquals(new BigDecimal("0.08"), taxRuleEngine.currentRule(1L, TaxType.GST).getTaxRate());
+
+        taxRuleEngine.reload();
+
+        assertEquals(new BigDecimal("0.09"), taxRuleEngine.currentRule(1L, TaxType.GST).getTaxRate());
+        verify(salesTaxRepository, never()).save(any(SalesTax.class));
+    }
+}
@@ -0,0 +1,257 @@
+package com.retailpulse.service.productImport;
+
+import com.retailpulse.controller.response.ProductImportErrorDto;
+import com.retailpulse.controller.response.ProductImportReportDto;
+import com.retailpulse.entity.Product;
+import com.retailpulse.repository.ProductRepository;
+import com.retailpulse.service.CacheInvalidationLog;
+import com.retailpulse.service.ProductBarcodeIndex;
+import com.retailpulse.service.ProductSearchIndex;
+import com.retailpulse.service.SKUGeneratorService;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ProductImportServiceTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private SKUGeneratorService skuGeneratorService;
+
+    @Mock
+    private ProductBarcodeIndex productBarcodeIndex;
+
+    @Mock
+    private ProductSearchIndex productSearchIndex;
+
+    @Mock
+    private CacheInvalidationLog cacheInvalidationLog;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private ProductImportService productImportService;
+
+    @BeforeEach
+    public void setUp() {
+        productImportService = new ProductImportService(productRepository, skuGeneratorService, productBarcodeIndex, productSearchIndex, cacheInvalidationLog, transactionManager);
+    }
+
+    @Test
+    public void testCsvCreatesNewAndUpdatesExistingProducts() {
+        Product existing = product("RP1", "Green Tea", "111");
+        existing.setBrand("Leafy");
+        when(productRepository.findByBarcodeIn(anyCollection())).thenReturn(List.of(existing));
+        when(skuGeneratorService.generateSKUs(1)).thenReturn(List.of("RP2"));
+
+        ProductImportReportDto report = productImportService.importProducts("prices.csv", csv(
+                "Description,Brand,Barcode,RRP",
+                "Green Tea 500g,,111,4.50",
+                "\"Coffee, Dark Roast\",Bean Co,222,12"));
+
+        assertEquals(new ProductImportReportDto(2, 1, 1, 0, List.of()), report);
+        List<Product> saved = savedProducts();
+        assertSame(existing, saved.get(0));
+        assertEquals("Green Tea 500g", existing.getDescription());
+        assertEquals("Leafy", existing.getBrand());
+        assertEquals(4.5, existing.getRrp());
+        assertEquals("RP2", saved.get(1).getSku());
+        assertEquals("Coffee, Dark Roast", saved.get(1).getDescription());
+    }
+
+    @Test
+    public void testInvalidAndRepeatedRowsAreReported() {
+        when(skuGeneratorService.generateSKUs(1)).thenReturn(List.of("RP1"));
+
+        ProductImportReportDto report = productImportService.importProducts("prices.csv", csv(
+                "description,barcode,rrp",
+                "Rice,333,2.10",
+                "Rice again,333,2.20",
+                "Noodles,444,cheap",
+                "Flour,555,-1",
+                ",666,1.00"));
+
+        assertEquals(5, report.rowsRead());
+        assertEquals(1, report.created());
+        assertEquals(4, report.rejected());
+        assertEquals(List.of(3, 4, 5, 6), report.errors().stream().map(ProductImportErrorDto::row).toList());
+    }
+
+    @Test
+    public void testVendorCodeMatchesWhenThereIsNoBarcode() {
+        Product existing = product("RP1", "Salt", null);
+        existing.setVendorCode("V-1");
+        Product deleted = product("RP2", "Sugar", null);
+        deleted.setVendorCode("V-2");
+        deleted.setActive(false);
+        when(productRepository.findByVendorCodeIn(anyCollection())).thenReturn(List.of(existing, deleted));
+
+        ProductImportReportDto report = productImportService.importProducts("prices.csv", csv(
+                "vendorCode,rrp",
+                "V-1,0.80",
+                "V-2,1.20"));
+
+        assertEquals(1, report.updated());
+        assertEquals(1, report.rejected());
+        assertEquals(0.8, existing.getRrp());
+        assertEquals(List.of(existing), savedProducts());
+    }
+
+    @Test
+    public void testXlsxIsImportedInChunks() throws IOException {
+        ReflectionTestUtils.setField(productImportService, "chunkSize", 2);
+        when(skuGeneratorService.generateSKUs(anyInt())).thenAnswer(invocation -> {
+            List<String> skus = new ArrayList<>();
+            for (int i = 0; i < (int) invocation.getArgument(0); i++) {
+                skus.add("RP" + i);
+            }
+            return skus;
+        });
+
+        ProductImportReportDto report = productImportService.importProducts("prices.xlsx", xlsx(
+                new Object[]{"Description", "Barcode", "RRP"},
+                new Object[]{"Milk", "888001", 2.35},
+                new Object[]{"Bread", "888002", 3.0},
+                new Object[]{"Eggs", "888003", 4.5}));
+
+        assertEquals(new ProductImportReportDto(3, 3, 0, 0, List.of()), report);
+        verify(productRepository, times(2)).saveAll(any());
+        verify(transactionManager, times(2)).commit(any());
+    }
+
+    @Test
+    public void testFailedChunkRejectsItsRows() {
+        when(skuGeneratorService.generateSKUs(2)).thenReturn(List.of("RP1", "RP2"));
+        when(skuGeneratorService.generateSKUs(1)).thenReturn(List.of("RP3"), List.of("RP4"));
+        when(productRepository.saveAll(any())).thenThrow(new DataIntegrityViolationException("Duplicate entry"));
+
+        ProductImportReportDto report = productImportService.importProducts("prices.csv", csv(
+                "description,barcode",
+                "Soap,777",
+                "Shampoo,778"));
+
+        assertEquals(0, report.created());
+        assertEquals(2, report.rejected());
+        verify(transactionManager, times(3)).rollback(any());
+    }
+
+    @Test
+    public void testFailedChunkIsRetriedRowByRow() {
+        when(skuGeneratorService.generateSKUs(2)).thenReturn(List.of("RP1", "RP2"));
+        when(skuGeneratorService.generateSKUs(1)).thenReturn(List.of("RP3"), List.of("RP4"));
+        when(productRepository.saveAll(any()))
+                .thenThrow(new DataIntegrityViolationException("Duplicate entry"))
+                .thenThrow(new DataIntegrityViolationException("Duplicate entry"))
+                .thenReturn(List.of());
+
+        ProductImportReportDto report = productImportService.importProducts("prices.csv", csv(
+                "description,barcode",
+                "Soap,777",
+                "Shampoo,778"));
+
+        assertEquals(1, report.created());
+        assertEquals(1, report.rejected());
+        assertEquals(List.of(new ProductImportErrorDto(2, "Could not be saved: Duplicate entry")), report.errors());
+        verify(transactionManager, times(2)).rollback(any());
+        verify(transactionManager).commit(any());
+    }
+
+    @Test
+    public void testRowsSharingAVendorCodeCreateOneProduct() {
+        when(skuGeneratorService.generateSKUs(1)).thenReturn(List.of("RP1"));
+
+        ProductImportReportDto report = productImportService.importProducts("prices.csv", csv(
+                "description,vendorcode,rrp",
+                "Soap,V-1,1.5",
+                ",V-1,1.75"));
+
+        assertEquals(new ProductImportReportDto(2, 1, 1, 0, List.of()), report);
+        List<Product> saved = savedProducts();
+        assertEquals(1, saved.size());
+        assertEquals("RP1", saved.get(0).getSku());
+        assertEquals("Soap", saved.get(0).getDescription());
+        assertEquals(1.75, saved.get(0).getRrp());
+    }
+
+    @Test
+    public void testReportedErrorsAreCapped() {
+        ReflectionTestUtils.setField(productImportService, "maxReportedErrors", 1);
+
+        ProductImportReportDto report = productImportService.importProducts("prices.csv", csv(
+                "description,rrp",
+                "A,x",
+                "B,y"));
+
+        assertEquals(2, report.rejected());
+        assertEquals(1, report.errors().size());
+    }
+
+    @Test
+    public void testUnsupportedFileTypeIsRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> productImportService.importProducts("prices.pdf", new ByteArrayInputStream(new byte[0])));
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Product> savedProducts() {
+        ArgumentCaptor<List<Product>> captor = ArgumentCaptor.forClass(List.class);
+        verify(productRepository).saveAll(captor.capture());
+        return captor.getValue();
+    }
+
+    private static Product product(String sku, String description, String barcode) {
+        Product product = new Product();
+        product.setSku(sku);
+        product.setDescription(description);
+        product.setBarcode(barcode);
+        return product;
+    }
+
+    private static InputStream csv(String... lines) {
+        return new ByteArrayInputStream(String.join("\r\n", lines).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static InputStream xlsx(Object[]... rows) throws IOException {
+        try (XSSFWorkbook workbook = new XSSFWorkbook(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            Sheet sheet = workbook.createSheet("Products");
+            for (int r = 0; r < rows.length; r++) {
+                Row row = sheet.createRow(r);
+                for (int c = 0; c < rows[r].length; c++) {
+                    if (rows[r][c] instanceof Double value) {
+                        row.createCell(c).setCellValue(value);
+                    } else {
+                        row.createCell(c).setCellValue((String) rows[r][c]);
+                    }
+                }
+            }
+            workbook.write(out);
+            return new ByteArrayInputStream(out.toByteArray());
+        }
+    }
+}